@@ -35,4 +35,12 @@ public interface MetricsConstants {
     String STORAGE_METHOD_CALL_TAG_TENANT = "tenant_id";
     String STORAGE_METHOD_CALL_TAG_METHOD = "method";
     String STORAGE_METHOD_CALL_TAG_SUCCESS = "success";
+
+    // KafkaSQL storage
+
+    String KAFKASQL_PREFIX = STORAGE_PREFIX + "kafkasql.";
+    String KAFKASQL_APPLY_QUEUE_DEPTH = KAFKASQL_PREFIX + "apply.queue.depth";
+    String KAFKASQL_APPLY_QUEUE_DEPTH_DESCRIPTION = "Number of journal records waiting to be applied to the local store";
+    String KAFKASQL_APPLY_LAG = KAFKASQL_PREFIX + "apply.lag";
+    String KAFKASQL_APPLY_LAG_DESCRIPTION = "Time between a journal record being produced and being applied to the local store";
 }
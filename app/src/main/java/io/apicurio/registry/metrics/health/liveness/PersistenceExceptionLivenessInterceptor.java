@@ -1,5 +1,8 @@
 package io.apicurio.registry.metrics.health.liveness;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
 import javax.annotation.Priority;
 import javax.inject.Inject;
 import javax.interceptor.AroundInvoke;
@@ -23,14 +26,28 @@ public class PersistenceExceptionLivenessInterceptor {
 
     @AroundInvoke
     public Object intercept(InvocationContext context) throws Exception {
+        Object result;
         try {
-            return context.proceed();
+            result = context.proceed();
         } catch (Exception ex) {
-            if (!livenessUtil.isIgnoreError(ex)) {
-                check.suspectWithException(ex);
-            }
+            suspect(ex);
             throw ex;
         }
+
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((ok, ex) -> {
+                if (ex != null) {
+                    suspect(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+                }
+            });
+        }
+        return result;
+    }
+
+    private void suspect(Throwable ex) {
+        if (!livenessUtil.isIgnoreError(ex)) {
+            check.suspectWithException(ex);
+        }
     }
 
 }
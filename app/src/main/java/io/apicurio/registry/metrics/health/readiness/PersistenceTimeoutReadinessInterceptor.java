@@ -1,6 +1,7 @@
 package io.apicurio.registry.metrics.health.readiness;
 
 import java.time.Instant;
+import java.util.concurrent.CompletionStage;
 
 import javax.annotation.Priority;
 import javax.inject.Inject;
@@ -30,9 +31,17 @@ public class PersistenceTimeoutReadinessInterceptor {
     public Object intercept(InvocationContext context) throws Exception {
         Instant start = Instant.now();
         Object result = context.proceed();
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((ok, ex) -> checkTimeout(start));
+        } else {
+            checkTimeout(start);
+        }
+        return result;
+    }
+
+    private void checkTimeout(Instant start) {
         if (start.plus(check.getTimeoutSec()).isBefore(Instant.now())) {
             check.suspect();
         }
-        return result;
     }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.rest;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+
+import io.apicurio.registry.storage.RegistryStorage;
+import io.apicurio.registry.types.Current;
+
+/**
+ * Provides read-your-writes consistency across the nodes of a cluster whose nodes may lag behind each
+ * other (e.g. KafkaSQL).  Every successful write response includes a consistency token header.  When a
+ * client sends that token with a later request (to any node), the request is only processed once that
+ * node has caught up with the token, or once the configured timeout elapses, whichever comes first.
+ *
+ * Nothing happens if the storage does not support consistency tokens.
+ */
+@Provider
+@ApplicationScoped
+public class ConsistencyTokenFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    public static final String CONSISTENCY_TOKEN_HEADER = "X-Registry-Consistency-Token";
+
+    static final Pattern ENABLED_PATTERN = Pattern.compile("/apis/.*");
+
+    @Inject
+    Logger log;
+
+    @Inject
+    @Current
+    RegistryStorage storage;
+
+    @Inject
+    @ConfigProperty(name = "registry.consistency.wait-timeout-ms", defaultValue = "5000")
+    Long waitTimeout;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        String token = requestContext.getHeaderString(CONSISTENCY_TOKEN_HEADER);
+        if (token == null || token.isEmpty() || !isEnabled(requestContext)) {
+            return;
+        }
+        if (!storage.awaitConsistency(token, waitTimeout)) {
+            log.debug("Storage did not catch up with consistency token {} within {}ms, serving the request anyway.", token, waitTimeout);
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+        if (!isWrite(requestContext) || !isEnabled(requestContext)
+                || responseContext.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            return;
+        }
+        String token = storage.consistencyToken();
+        if (token != null) {
+            responseContext.getHeaders().putSingle(CONSISTENCY_TOKEN_HEADER, token);
+        }
+    }
+
+    private static boolean isEnabled(ContainerRequestContext requestContext) {
+        return ENABLED_PATTERN.matcher(requestContext.getUriInfo().getPath()).matches();
+    }
+
+    private static boolean isWrite(ContainerRequestContext requestContext) {
+        String method = requestContext.getMethod();
+        return !HttpMethod.GET.equals(method) && !HttpMethod.HEAD.equals(method) && !HttpMethod.OPTIONS.equals(method);
+    }
+
+}
@@ -84,6 +84,29 @@ public interface RegistryStorage {
         return true;
     }
 
+    /**
+     * Returns a token identifying the data this node of the cluster has seen so far (including its own writes),
+     * or null if every node always sees the same data (e.g. a single shared database).  The token can be passed
+     * to {@link #awaitConsistency(String, long)} on any other node, to make sure it has caught up.
+     */
+    default String consistencyToken() {
+        return null;
+    }
+
+    /**
+     * Waits until this node has seen all the data identified by the given consistency token (see
+     * {@link #consistencyToken()}), or until the timeout elapses.
+     * <p>
+     * By default there is nothing to wait for.
+     *
+     * @param token
+     * @param timeoutMs
+     * @return true if this node has caught up, false if the timeout elapsed first
+     */
+    default boolean awaitConsistency(String token, long timeoutMs) {
+        return true;
+    }
+
     /**
      * Update artifact state.
      * @param groupId (optional)
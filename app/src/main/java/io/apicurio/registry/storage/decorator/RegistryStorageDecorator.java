@@ -100,6 +100,22 @@ public abstract class RegistryStorageDecorator implements RegistryStorage {
         return delegate.isAlive();
     }
 
+    /**
+     * @see io.apicurio.registry.storage.RegistryStorage#consistencyToken()
+     */
+    @Override
+    public String consistencyToken() {
+        return delegate.consistencyToken();
+    }
+
+    /**
+     * @see io.apicurio.registry.storage.RegistryStorage#awaitConsistency(java.lang.String, long)
+     */
+    @Override
+    public boolean awaitConsistency(String token, long timeoutMs) {
+        return delegate.awaitConsistency(token, timeoutMs);
+    }
+
     /**
      * @param groupId
      * @param artifactId
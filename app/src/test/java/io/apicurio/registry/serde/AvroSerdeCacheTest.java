@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.serde.avro.AvroKafkaDeserializer;
+import io.apicurio.registry.serde.avro.AvroKafkaSerdeConfig;
+import io.apicurio.registry.serde.avro.AvroKafkaSerializer;
+
+/**
+ * Tests what the Avro serializer and deserializer cache between records.
+ *
+ * @author Ales Justin
+ */
+public class AvroSerdeCacheTest {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"order\",\"fields\":[{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"item\",\"type\":\"string\"}]}";
+    private static final String SCHEMA_V2 = "{\"type\":\"record\",\"name\":\"order\",\"fields\":[{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"item\",\"type\":\"string\"},"
+            + "{\"name\":\"quantity\",\"type\":\"int\",\"default\":1}]}";
+
+    private AvroKafkaSerializer<GenericRecord> serializer;
+    private AvroKafkaDeserializer<GenericRecord> deserializer;
+
+    private CountingSchemaResolver<Schema, GenericRecord> configure(boolean cacheable) {
+        return configure(cacheable, Collections.emptyMap());
+    }
+
+    private CountingSchemaResolver<Schema, GenericRecord> configure(boolean cacheable, Map<String, ?> configs) {
+        CountingSchemaResolver<Schema, GenericRecord> resolver = new CountingSchemaResolver<>(cacheable);
+        serializer = new AvroKafkaSerializer<>(resolver);
+        serializer.configure(configs, false);
+        deserializer = new AvroKafkaDeserializer<>();
+        deserializer.setSchemaResolver(resolver);
+        deserializer.configure(configs, false);
+        return resolver;
+    }
+
+    @AfterEach
+    public void close() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    private static GenericRecord record(Schema schema, long id) {
+        GenericData.Record record = new GenericData.Record(schema);
+        record.put("id", id);
+        record.put("item", "item-" + id);
+        if (schema.getField("quantity") != null) {
+            record.put("quantity", (int) id);
+        }
+        return record;
+    }
+
+    private void assertRoundTrip(String topic, GenericRecord record) {
+        GenericRecord read = deserializer.deserialize(topic, serializer.serialize(topic, record));
+        assertEquals(record.get("id"), read.get("id"));
+        assertEquals(record.get("item"), read.get("item").toString());
+    }
+
+    @Test
+    public void testLookupCachedBySchemaInstanceAndTopic() {
+        CountingSchemaResolver<Schema, GenericRecord> resolver = configure(true);
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+
+        for (int i = 0; i < 10; i++) {
+            assertRoundTrip("orders", record(schema, i));
+        }
+        assertEquals(1, resolver.resolved());
+
+        assertRoundTrip("orders-copy", record(schema, 10));
+        assertEquals(2, resolver.resolved());
+
+        // An equal schema parsed again is another instance, resolved again (to the same globalId)
+        Schema parsedAgain = new Schema.Parser().parse(SCHEMA);
+        assertRoundTrip("orders", record(parsedAgain, 11));
+        assertRoundTrip("orders", record(parsedAgain, 12));
+        assertEquals(3, resolver.resolved());
+    }
+
+    @Test
+    public void testLookupNotCachedUnlessCacheable() {
+        CountingSchemaResolver<Schema, GenericRecord> resolver = configure(false);
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+
+        for (int i = 0; i < 10; i++) {
+            assertRoundTrip("orders", record(schema, i));
+        }
+        assertEquals(10, resolver.resolved());
+    }
+
+    @Test
+    public void testResetClearsLookupCache() {
+        CountingSchemaResolver<Schema, GenericRecord> resolver = configure(true);
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+
+        assertRoundTrip("orders", record(schema, 1));
+        serializer.reset();
+        assertRoundTrip("orders", record(schema, 2));
+        assertRoundTrip("orders", record(schema, 3));
+        assertEquals(2, resolver.resolved());
+    }
+
+    @Test
+    public void testSerializedBytesNotReused() {
+        configure(true);
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+
+        byte[] first = serializer.serialize("orders", record(schema, 1));
+        byte[] copy = first.clone();
+        byte[] second = serializer.serialize("orders", record(schema, 2));
+        assertArrayEquals(copy, first);
+        assertEquals(1L, deserializer.deserialize("orders", first).get("id"));
+        assertEquals(2L, deserializer.deserialize("orders", second).get("id"));
+    }
+
+    @Test
+    public void testLargeRecordThenSmall() {
+        configure(true);
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+
+        // Larger than the output buffers kept for the next record
+        GenericRecord large = record(schema, 1);
+        large.put("item", String.join("", Collections.nCopies(2 * 1024 * 1024, "x")));
+        assertRoundTrip("orders", large);
+        assertRoundTrip("orders", record(schema, 2));
+        assertRoundTrip("orders", large);
+    }
+
+    @Test
+    public void testWriterSchemasInterleaved() {
+        CountingSchemaResolver<Schema, GenericRecord> resolver = configure(true);
+        Schema v1 = new Schema.Parser().parse(SCHEMA);
+        Schema v2 = new Schema.Parser().parse(SCHEMA_V2);
+
+        for (int i = 0; i < 4; i++) {
+            GenericRecord record = record(i % 2 == 0 ? v1 : v2, i);
+            GenericRecord read = deserializer.deserialize("orders", serializer.serialize("orders", record));
+            // Read with the schema it was written with
+            assertEquals(record.getSchema(), read.getSchema());
+            assertEquals(record.get("id"), read.get("id"));
+            if (i % 2 == 1) {
+                assertEquals(i, read.get("quantity"));
+            }
+        }
+        assertEquals(2, resolver.resolved());
+    }
+
+    @Test
+    public void testJsonEncoding() {
+        configure(true, Collections.singletonMap(AvroKafkaSerdeConfig.AVRO_ENCODING, AvroKafkaSerdeConfig.AVRO_ENCODING_JSON));
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+
+        for (int i = 0; i < 3; i++) {
+            assertRoundTrip("orders", record(schema, i));
+        }
+    }
+
+    @Test
+    public void testConcurrentRoundTrips() throws Exception {
+        configure(true);
+        Schema v1 = new Schema.Parser().parse(SCHEMA);
+        Schema v2 = new Schema.Parser().parse(SCHEMA_V2);
+
+        // Every thread uses its own encoder, decoder and output buffer, but they share the datum writers and readers
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        long id = thread * 1000L + i;
+                        assertRoundTrip("orders", record(i % 2 == 0 ? v1 : v2, id));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -32,6 +32,7 @@ import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.ByteUtils;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -170,6 +171,51 @@ public class AvroSerdeTest extends AbstractResourceTestBase {
         }
     }
 
+    @Test
+    public void testAvroVarintIdHandler() throws Exception {
+        Schema schema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"myrecord6\",\"namespace\":\"test-group-avro-varint\",\"fields\":[{\"name\":\"bar\",\"type\":\"string\"}]}");
+        try (AvroKafkaSerializer<GenericData.Record> serializer = new AvroKafkaSerializer<GenericData.Record>(restClient);
+             AvroKafkaSerializer<GenericData.Record> legacySerializer = new AvroKafkaSerializer<GenericData.Record>(restClient);
+             Deserializer<GenericData.Record> deserializer = new AvroKafkaDeserializer<>(restClient)) {
+
+            Map<String, Object> config = new HashMap<>();
+            config.put(SerdeConfig.ARTIFACT_RESOLVER_STRATEGY, RecordIdStrategy.class);
+            config.put(SerdeConfig.AUTO_REGISTER_ARTIFACT, "true");
+            config.put(SerdeConfig.ENABLE_HEADERS, "false");
+            config.put(SerdeConfig.USE_ID, IdOption.contentId.name());
+            // A producer that has not been migrated yet
+            legacySerializer.configure(config, false);
+            config.put(SerdeConfig.ID_HANDLER, VarintIdHandler.class.getName());
+            serializer.configure(config, false);
+
+            config = new HashMap<>();
+            config.put(SerdeConfig.USE_ID, IdOption.contentId.name());
+            config.put(SerdeConfig.ID_HANDLER, VarintIdHandler.class.getName());
+            deserializer.configure(config, false);
+
+            GenericData.Record record = new GenericData.Record(schema);
+            record.put("bar", "somebar");
+
+            String topic = generateArtifactId();
+
+            byte[] bytes = serializer.serialize(topic, record);
+            Assertions.assertEquals(VarintIdHandler.VARINT_MAGIC_BYTE, bytes[0]);
+
+            waitForSchema(contentId -> restClient.getContentById(contentId) != null, bytes, ByteUtils::readVarlong);
+
+            GenericData.Record ir = deserializer.deserialize(topic, bytes);
+            Assertions.assertEquals("somebar", ir.get("bar").toString());
+
+            byte[] legacyBytes = legacySerializer.serialize(topic, record);
+            Assertions.assertEquals(AbstractKafkaSerDe.MAGIC_BYTE, legacyBytes[0]);
+            // The varint id is shorter than the 8 byte one
+            Assertions.assertTrue(bytes.length < legacyBytes.length);
+
+            ir = deserializer.deserialize(topic, legacyBytes);
+            Assertions.assertEquals("somebar", ir.get("bar").toString());
+        }
+    }
+
     @Test
     public void testAvroJSON() throws Exception {
         Schema schema = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"myrecord3\",\"fields\":[{\"name\":\"bar\",\"type\":\"string\"}]}");
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.kafka.common.header.Headers;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+import io.apicurio.registry.serde.strategy.ArtifactResolverStrategy;
+
+/**
+ * A {@link SchemaResolver} giving every distinct schema (by content) its own globalId, without a registry,
+ * and counting how often the serdes call it, for testing what the serdes cache.  Serializers that do not
+ * derive the schema from the data resolve to the schema given to {@link #schema(ParsedSchema)}.
+ *
+ * @author Ales Justin
+ */
+class CountingSchemaResolver<S, D> implements SchemaResolver<S, D> {
+
+    private final Map<String, SchemaLookupResult<S>> byContent = new ConcurrentHashMap<>();
+    private final Map<Long, SchemaLookupResult<S>> byGlobalId = new ConcurrentHashMap<>();
+    private final AtomicLong nextGlobalId = new AtomicLong(1);
+    private final AtomicInteger resolved = new AtomicInteger();
+    private final AtomicInteger resolvedByReference = new AtomicInteger();
+    private final boolean cacheable;
+    private volatile ParsedSchema<S> schema;
+    private volatile ParsedSchema<S> lastResolved;
+
+    CountingSchemaResolver(boolean cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    CountingSchemaResolver<S, D> schema(ParsedSchema<S> schema) {
+        this.schema = schema;
+        return this;
+    }
+
+    /**
+     * @return the number of schemas resolved for serializers so far
+     */
+    int resolved() {
+        return resolved.get();
+    }
+
+    /**
+     * @return the number of schemas resolved for deserializers so far
+     */
+    int resolvedByReference() {
+        return resolvedByReference.get();
+    }
+
+    /**
+     * @return the schema last passed in by a serializer (or {@link #schema(ParsedSchema)})
+     */
+    ParsedSchema<S> lastResolved() {
+        return lastResolved;
+    }
+
+    @Override
+    public void setClient(RegistryClient client) {
+    }
+
+    @Override
+    public void setArtifactResolverStrategy(ArtifactResolverStrategy<S> artifactResolverStrategy) {
+    }
+
+    @Override
+    public SchemaLookupResult<S> resolveSchema(String topic, Headers headers, D data, ParsedSchema<S> parsedSchema) {
+        resolved.incrementAndGet();
+        ParsedSchema<S> ps = parsedSchema == null || parsedSchema.getRawSchema() == null ? schema : parsedSchema;
+        lastResolved = ps;
+        return byContent.computeIfAbsent(new String(ps.getRawSchema(), StandardCharsets.UTF_8), content -> {
+            long globalId = nextGlobalId.getAndIncrement();
+            SchemaLookupResult<S> result = SchemaLookupResult.<S>builder()
+                    .globalId(globalId)
+                    .schema(ps.getParsedSchema())
+                    .rawSchema(ps.getRawSchema())
+                    .build();
+            byGlobalId.put(globalId, result);
+            return result;
+        });
+    }
+
+    @Override
+    public SchemaLookupResult<S> resolveSchemaByArtifactReference(ArtifactReference reference) {
+        resolvedByReference.incrementAndGet();
+        SchemaLookupResult<S> result = byGlobalId.get(reference.getGlobalId());
+        if (result == null) {
+            throw new IllegalStateException("No schema with globalId " + reference.getGlobalId());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isSchemaLookupCacheable() {
+        return cacheable;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
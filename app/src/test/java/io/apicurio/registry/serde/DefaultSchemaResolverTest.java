@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.serde.avro.AvroSchemaParser;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+
+/**
+ * Checks how the schema resolver fetches schemas in the background: concurrent lookups of a schema share a
+ * single request, waiting for a schema is bounded by the resolution timeout and lookups are rejected once
+ * the cache loader pool is saturated.
+ *
+ * @author Ales Justin
+ */
+public class DefaultSchemaResolverTest {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"One\",\"fields\":[{\"name\":\"a\",\"type\":\"string\"}]}";
+
+    private final StubRegistryClient registry = new StubRegistryClient()
+            .schema(1, SCHEMA);
+
+    @AfterEach
+    public void releaseRegistry() {
+        registry.release();
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        registry.hang(1);
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(new HashMap<>());
+
+        List<CompletableFuture<SchemaLookupResult<Schema>>> lookups = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lookups.add(resolver.resolveSchemaByArtifactReferenceAsync(ArtifactReference.builder().globalId(1L).build()));
+        }
+        Thread.sleep(100);
+        lookups.forEach(lookup -> assertFalse(lookup.isDone()));
+
+        registry.release();
+        for (CompletableFuture<SchemaLookupResult<Schema>> lookup : lookups) {
+            assertEquals("One", lookup.get(5, TimeUnit.SECONDS).getSchema().getName());
+        }
+        assertEquals(1, registry.calls());
+    }
+
+    @Test
+    public void testResolutionTimeout() {
+        registry.hang(1);
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.SCHEMA_RESOLUTION_TIMEOUT_MS, "200");
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(configs);
+
+        long start = System.currentTimeMillis();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().globalId(1L).build()));
+        long duration = System.currentTimeMillis() - start;
+        assertTrue(e.getMessage().startsWith("Timed out after 200ms"), e.getMessage());
+        assertTrue(duration >= 200, "Took " + duration + "ms");
+        assertTrue(duration < 5000, "Took " + duration + "ms");
+
+        // The lookup that timed out is still completed in the background, and then served from the cache
+        registry.release();
+        assertEquals("One", resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().globalId(1L).build()).getSchema().getName());
+        assertEquals(1, registry.calls());
+    }
+
+    @Test
+    public void testLoaderPoolRejection() throws Exception {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.CACHE_LOADER_THREADS, "1");
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(configs);
+
+        // The only loader thread hangs and the lookups queue up behind it, until the queue is full
+        CompletableFuture<SchemaLookupResult<Schema>> rejected = null;
+        long globalId = 100;
+        while (rejected == null && globalId < 20100) {
+            registry.hang(globalId);
+            CompletableFuture<SchemaLookupResult<Schema>> lookup = resolver.resolveSchemaByArtifactReferenceAsync(ArtifactReference.builder().globalId(globalId).build());
+            if (lookup.isCompletedExceptionally()) {
+                rejected = lookup;
+            } else {
+                globalId++;
+            }
+        }
+        assertNotNull(rejected, "No lookup rejected");
+        assertTrue(globalId - 100 >= 10000, "Rejected after " + (globalId - 100) + " lookups");
+        ExecutionException e = assertThrows(ExecutionException.class, rejected::get);
+        assertTrue(e.getCause() instanceof RejectedExecutionException, e.getCause().toString());
+
+        // The rejection is not remembered, the lookup succeeds once the pool has drained
+        registry.schema(globalId, SCHEMA);
+        registry.release();
+        assertEquals("One", resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().globalId(globalId).build()).getSchema().getName());
+    }
+
+    @Test
+    public void testNullArtifactIdAsync() {
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(new HashMap<>());
+
+        CompletableFuture<SchemaLookupResult<Schema>> lookup = resolver.resolveSchemaByArtifactReferenceAsync(ArtifactReference.builder().groupId("group").build());
+        assertTrue(lookup.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class, lookup::get);
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals("artifactId cannot be null", e.getCause().getMessage());
+        assertEquals(0, registry.calls());
+    }
+
+    private DefaultSchemaResolver<Schema, Object> resolver(Map<String, Object> configs) {
+        DefaultSchemaResolver<Schema, Object> resolver = new DefaultSchemaResolver<>();
+        resolver.setClient(registry.client());
+        resolver.configure(configs, false, new AvroSchemaParser());
+        return resolver;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.serde.avro.AvroSchemaParser;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+import io.apicurio.registry.utils.IoUtil;
+
+/**
+ * Checks that schemas looked up by id are cached on disk, served from there when the registry fails, and
+ * fetched again when the cached file is damaged.
+ *
+ * @author Ales Justin
+ */
+public class DiskCacheSerdeTest {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"Cached\",\"fields\":[{\"name\":\"a\",\"type\":\"string\"}]}";
+
+    private final StubRegistryClient registry = new StubRegistryClient()
+            .schema(1, SCHEMA)
+            .schema(2, SCHEMA);
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("schema-cache");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        registry.release();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testFallbackWhenRegistryFails() throws Exception {
+        assertEquals("Cached", resolveByGlobalId(resolver(), 1).getName());
+        assertEquals("Cached", resolveByContentId(resolver(), 2).getName());
+        assertEquals(2, registry.calls());
+        assertEquals(SCHEMA, cached("globalId-1.schema"));
+        assertEquals(SCHEMA, cached("contentId-2.schema"));
+
+        // A new resolver (e.g. after a restart) reads the cached schemas, without needing the registry
+        registry.unavailable(true);
+        DefaultSchemaResolver<Schema, Object> restarted = resolver();
+        assertEquals("Cached", resolveByGlobalId(restarted, 1).getName());
+        assertEquals("Cached", resolveByContentId(restarted, 2).getName());
+        assertEquals(2, registry.calls());
+    }
+
+    @Test
+    public void testRegistryFailsWithoutCachedSchema() {
+        registry.unavailable(true);
+        assertThrows(IllegalStateException.class, () -> resolveByGlobalId(resolver(), 1));
+        assertFalse(Files.exists(directory.resolve("globalId-1.schema")));
+    }
+
+    @Test
+    public void testCorruptFile() throws Exception {
+        assertFetchedAgain("{not a schema".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPartialFile() throws Exception {
+        byte[] schema = IoUtil.toBytes(SCHEMA);
+        assertFetchedAgain(Arrays.copyOf(schema, schema.length / 2));
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        assertFetchedAgain(new byte[0]);
+    }
+
+    @Test
+    public void testCorruptFileWhenRegistryFails() throws Exception {
+        Files.write(directory.resolve("globalId-1.schema"), "{not a schema".getBytes(StandardCharsets.UTF_8));
+        registry.unavailable(true);
+
+        assertThrows(IllegalStateException.class, () -> resolveByGlobalId(resolver(), 1));
+        // The damaged file is not kept around, the schema is cached again once the registry is back
+        assertFalse(Files.exists(directory.resolve("globalId-1.schema")));
+
+        registry.unavailable(false);
+        assertEquals("Cached", resolveByGlobalId(resolver(), 1).getName());
+        assertEquals(SCHEMA, cached("globalId-1.schema"));
+    }
+
+    @Test
+    public void testTemporaryFilesIgnored() throws Exception {
+        // Left behind by a write that did not complete
+        Files.write(directory.resolve("globalId-1-12345.tmp"), Arrays.copyOf(IoUtil.toBytes(SCHEMA), 10));
+
+        assertEquals("Cached", resolveByGlobalId(resolver(), 1).getName());
+        assertEquals(1, registry.calls());
+        assertEquals(SCHEMA, cached("globalId-1.schema"));
+    }
+
+    /**
+     * Checks that a schema whose cached file has the given content is fetched from the registry, and cached again.
+     */
+    private void assertFetchedAgain(byte[] content) throws Exception {
+        Files.write(directory.resolve("globalId-1.schema"), content);
+
+        assertEquals("Cached", resolveByGlobalId(resolver(), 1).getName());
+        assertEquals(1, registry.calls());
+        assertEquals(SCHEMA, cached("globalId-1.schema"));
+
+        registry.unavailable(true);
+        assertEquals("Cached", resolveByGlobalId(resolver(), 1).getName());
+        assertEquals(1, registry.calls());
+    }
+
+    private String cached(String file) throws IOException {
+        return new String(Files.readAllBytes(directory.resolve(file)), StandardCharsets.UTF_8);
+    }
+
+    private static Schema resolveByGlobalId(DefaultSchemaResolver<Schema, Object> resolver, long globalId) {
+        return resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().globalId(globalId).build()).getSchema();
+    }
+
+    private static Schema resolveByContentId(DefaultSchemaResolver<Schema, Object> resolver, long contentId) {
+        return resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().contentId(contentId).build()).getSchema();
+    }
+
+    private DefaultSchemaResolver<Schema, Object> resolver() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.CACHE_DISK_DIRECTORY, directory.toString());
+        DefaultSchemaResolver<Schema, Object> resolver = new DefaultSchemaResolver<>();
+        resolver.setClient(registry.client());
+        resolver.configure(configs, false, new AvroSchemaParser());
+        return resolver;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.worldturner.medeia.schema.validation.SchemaValidator;
+
+import io.apicurio.registry.serde.jsonschema.JsonSchemaKafkaDeserializer;
+import io.apicurio.registry.serde.jsonschema.JsonSchemaKafkaSerializer;
+import io.apicurio.registry.utils.IoUtil;
+
+/**
+ * Tests what the JSON Schema serializer and deserializer cache between records, and sampled validation.
+ *
+ * @author Ales Justin
+ */
+public class JsonSchemaSerdeCacheTest {
+
+    private static final String SCHEMA = "{\"$schema\":\"http://json-schema.org/draft-07/schema#\",\"type\":\"object\"%s,"
+            + "\"properties\":{\"id\":{\"type\":\"integer\",\"minimum\":0},\"item\":{\"type\":\"string\"}}}";
+
+    private JsonSchemaKafkaSerializer<Object> serializer;
+    private JsonSchemaKafkaDeserializer<Object> deserializer;
+
+    private CountingSchemaResolver<SchemaValidator, Object> configure(String javaType, Map<String, Object> configs) {
+        CountingSchemaResolver<SchemaValidator, Object> resolver = new CountingSchemaResolver<>(true);
+        serializer = new JsonSchemaKafkaSerializer<>(resolver);
+        serializer.configure(configs, false);
+        deserializer = new JsonSchemaKafkaDeserializer<>(resolver);
+        deserializer.configure(configs, false);
+        resolver.schema(schema(javaType));
+        return resolver;
+    }
+
+    private ParsedSchema<SchemaValidator> schema(String javaType) {
+        byte[] raw = IoUtil.toBytes(String.format(SCHEMA, javaType == null ? "" : ",\"javaType\":\"" + javaType + "\""));
+        return new ParsedSchemaImpl<SchemaValidator>()
+                .setParsedSchema(serializer.parseSchema(raw))
+                .setRawSchema(raw);
+    }
+
+    @AfterEach
+    public void close() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    @Test
+    public void testJavaTypeFromSchema() {
+        CountingSchemaResolver<SchemaValidator, Object> resolver = configure(Order.class.getName(), new HashMap<>());
+
+        byte[] first = serializer.serialize("orders", new Order(0, "item-0"));
+        for (long i = 0; i < 3; i++) {
+            Object read = deserializer.deserialize("orders", serializer.serialize("orders", new Order(i, "item-" + i)));
+            assertEquals(new Order(i, "item-" + i), read);
+        }
+
+        // Another schema (globalId) has its own javaType
+        resolver.schema(schema(null));
+        Object read = deserializer.deserialize("orders-copy", serializer.serialize("orders-copy", new Order(3, "item-3")));
+        assertTrue(read instanceof JsonNode);
+        assertEquals(3, ((JsonNode) read).get("id").asLong());
+
+        resolver.schema(schema(Item.class.getName()));
+        read = deserializer.deserialize("items", serializer.serialize("items", new Order(4, "item-4")));
+        assertEquals("item-4", ((Item) read).item);
+        assertEquals(new Order(0, "item-0"), deserializer.deserialize("orders", first));
+    }
+
+    @Test
+    public void testJavaTypeFromHeaders() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.ENABLE_HEADERS, true);
+        configure(null, configs);
+
+        for (long i = 0; i < 3; i++) {
+            Headers headers = new RecordHeaders();
+            byte[] bytes = serializer.serialize("orders", headers, new Order(i, "item-" + i));
+            assertEquals(new Order(i, "item-" + i), deserializer.deserialize("orders", headers, bytes));
+        }
+        Headers headers = new RecordHeaders();
+        byte[] bytes = serializer.serialize("orders", headers, new Item("item"));
+        assertEquals("item", ((Item) deserializer.deserialize("orders", headers, bytes)).item);
+    }
+
+    @Test
+    public void testEveryRecordValidatedByDefault() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.VALIDATION_ENABLED, true);
+        configure(Order.class.getName(), configs);
+
+        assertEquals(6, invalidRecordsRejected());
+    }
+
+    @Test
+    public void testSampledSerializerValidation() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.VALIDATION_ENABLED, true);
+        configs.put(SerdeConfig.VALIDATION_SAMPLE_RATE, 3);
+        configure(Order.class.getName(), configs);
+
+        // The 1st and 4th records are validated
+        assertEquals(2, invalidRecordsRejected());
+    }
+
+    @Test
+    public void testSampledDeserializerValidation() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.VALIDATION_ENABLED, false);
+        CountingSchemaResolver<SchemaValidator, Object> resolver = configure(Order.class.getName(), configs);
+        byte[] invalid = serializer.serialize("orders", new Order(-1, "item"));
+
+        configs.put(SerdeConfig.VALIDATION_ENABLED, true);
+        configs.put(SerdeConfig.VALIDATION_SAMPLE_RATE, 2);
+        deserializer.close();
+        deserializer = new JsonSchemaKafkaDeserializer<>(resolver);
+        deserializer.configure(configs, false);
+        int rejected = 0;
+        for (int i = 0; i < 6; i++) {
+            try {
+                deserializer.deserialize("orders", invalid);
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains("Validation Failure"), e.getMessage());
+                rejected++;
+            }
+        }
+        assertEquals(3, rejected);
+    }
+
+    /**
+     * Serializes 6 invalid records, returning how many were rejected.
+     */
+    private int invalidRecordsRejected() {
+        int rejected = 0;
+        for (int i = 0; i < 6; i++) {
+            try {
+                serializer.serialize("orders", new Order(-1, "item"));
+            } catch (RuntimeException e) {
+                assertTrue(e.getMessage().contains("Validation Failure"), e.getMessage());
+                rejected++;
+            }
+        }
+        return rejected;
+    }
+
+    public static class Order {
+
+        public long id;
+        public String item;
+
+        public Order() {
+        }
+
+        public Order(long id, String item) {
+            this.id = id;
+            this.item = item;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Order && ((Order) obj).id == id && item.equals(((Order) obj).item);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id);
+        }
+
+        @Override
+        public String toString() {
+            return "Order " + id + " " + item;
+        }
+    }
+
+    public static class Item {
+
+        public long id;
+        public String item;
+
+        public Item() {
+        }
+
+        public Item(String item) {
+            this.item = item;
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.Duration;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.protobuf.Timestamp;
+
+import io.apicurio.registry.serde.protobuf.ProtobufKafkaDeserializer;
+import io.apicurio.registry.serde.protobuf.ProtobufKafkaDeserializerConfig;
+import io.apicurio.registry.serde.protobuf.ProtobufKafkaSerializer;
+import io.apicurio.registry.utils.protobuf.schema.ProtobufSchema;
+
+/**
+ * Tests what the Protobuf serializer and deserializer cache between records.
+ *
+ * @author Ales Justin
+ */
+public class ProtobufSerdeCacheTest {
+
+    private ProtobufKafkaSerializer<Message> serializer;
+    private ProtobufKafkaDeserializer<Message> deserializer;
+
+    private CountingSchemaResolver<ProtobufSchema, Message> configure(boolean cacheable, Map<String, Object> configs) {
+        CountingSchemaResolver<ProtobufSchema, Message> resolver = new CountingSchemaResolver<>(cacheable);
+        serializer = new ProtobufKafkaSerializer<>(resolver);
+        serializer.configure(configs, false);
+        deserializer = new ProtobufKafkaDeserializer<>(resolver);
+        deserializer.configure(configs, false);
+        return resolver;
+    }
+
+    @AfterEach
+    public void close() {
+        serializer.close();
+        deserializer.close();
+    }
+
+    private static Timestamp timestamp(long seconds) {
+        return Timestamp.newBuilder().setSeconds(seconds).setNanos(7).build();
+    }
+
+    @Test
+    public void testDynamicMessages() {
+        configure(true, new HashMap<>());
+
+        Message first = deserializer.deserialize("times", serializer.serialize("times", timestamp(1)));
+        Message second = deserializer.deserialize("times", serializer.serialize("times", timestamp(2)));
+        assertTrue(first instanceof DynamicMessage);
+        assertEquals(timestamp(1), Timestamp.newBuilder().mergeFrom(first).build());
+        assertEquals(timestamp(2), Timestamp.newBuilder().mergeFrom(second).build());
+        // The message type is looked up once per schema
+        assertSame(first.getDescriptorForType(), second.getDescriptorForType());
+    }
+
+    @Test
+    public void testSpecificReturnClass() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.DESERIALIZER_SPECIFIC_VALUE_RETURN_CLASS, Timestamp.class.getName());
+        configure(true, configs);
+
+        for (long i = 0; i < 3; i++) {
+            assertEquals(timestamp(i), deserializer.deserialize("times", serializer.serialize("times", timestamp(i))));
+        }
+    }
+
+    @Test
+    public void testDerivedClass() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ProtobufKafkaDeserializerConfig.DERIVE_CLASS_FROM_SCHEMA, true);
+        configure(true, configs);
+
+        for (long i = 0; i < 3; i++) {
+            assertEquals(timestamp(i), deserializer.deserialize("times", serializer.serialize("times", timestamp(i))));
+        }
+        Duration duration = Duration.newBuilder().setSeconds(5).build();
+        assertEquals(duration, deserializer.deserialize("durations", serializer.serialize("durations", duration)));
+    }
+
+    @Test
+    public void testMessageTypeFromHeaders() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.ENABLE_HEADERS, true);
+        configure(true, configs);
+
+        for (long i = 0; i < 3; i++) {
+            Headers headers = new RecordHeaders();
+            byte[] bytes = serializer.serialize("times", headers, timestamp(i));
+            assertEquals(timestamp(i), deserializer.deserialize("times", headers, bytes));
+        }
+    }
+
+    @Test
+    public void testSchemaRenderedOncePerDescriptor() {
+        CountingSchemaResolver<ProtobufSchema, Message> resolver = configure(false, new HashMap<>());
+
+        serializer.serialize("times", timestamp(1));
+        ParsedSchema<ProtobufSchema> first = resolver.lastResolved();
+        serializer.serialize("times", timestamp(2));
+        ParsedSchema<ProtobufSchema> second = resolver.lastResolved();
+        assertEquals(2, resolver.resolved());
+        assertSame(first.getRawSchema(), second.getRawSchema());
+        assertTrue(new String(first.getRawSchema(), StandardCharsets.UTF_8).contains("message Timestamp"));
+
+        serializer.serialize("durations", Duration.newBuilder().setSeconds(5).build());
+        assertTrue(new String(resolver.lastResolved().getRawSchema(), StandardCharsets.UTF_8).contains("message Duration"));
+    }
+
+    @Test
+    public void testLookupCachedByMessageTypeAndTopic() {
+        CountingSchemaResolver<ProtobufSchema, Message> resolver = configure(true, new HashMap<>());
+
+        for (long i = 0; i < 5; i++) {
+            serializer.serialize("times", timestamp(i));
+        }
+        assertEquals(1, resolver.resolved());
+        serializer.serialize("times-copy", timestamp(5));
+        assertEquals(2, resolver.resolved());
+        serializer.serialize("times", Duration.newBuilder().setSeconds(5).build());
+        assertEquals(3, resolver.resolved());
+    }
+
+    @Test
+    public void testResetClearsLookupCache() {
+        CountingSchemaResolver<ProtobufSchema, Message> resolver = configure(true, new HashMap<>());
+
+        serializer.serialize("times", timestamp(1));
+        serializer.reset();
+        serializer.serialize("times", timestamp(2));
+        serializer.serialize("times", timestamp(3));
+        assertEquals(2, resolver.resolved());
+    }
+
+    @Test
+    public void testValidationWithCachedSchemas() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.VALIDATION_ENABLED, true);
+        configure(true, configs);
+
+        for (long i = 0; i < 3; i++) {
+            assertEquals(timestamp(i), Timestamp.newBuilder()
+                    .mergeFrom(deserializer.deserialize("times", serializer.serialize("times", timestamp(i)))).build());
+        }
+    }
+
+}
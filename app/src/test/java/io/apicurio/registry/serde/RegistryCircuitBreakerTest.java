@@ -0,0 +1,235 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.rest.client.exception.RestClientException;
+import io.apicurio.registry.rest.v2.beans.Error;
+
+/**
+ * Tests when {@link RegistryCircuitBreaker} opens, lets a call through again and closes, against a client
+ * whose calls can be made to fail.
+ */
+public class RegistryCircuitBreakerTest {
+
+    private static final long BACKOFF_MS = 100;
+
+    private final ScriptedClient registry = new ScriptedClient();
+
+    private static RestClientException restError(int code, String name) {
+        Error error = new Error();
+        error.setErrorCode(code);
+        error.setName(name);
+        return new RestClientException(error);
+    }
+
+    private static void lookup(RegistryClient client) {
+        client.getContentByGlobalId(1);
+    }
+
+    @Test
+    public void testOpensAtThreshold() {
+        RegistryCircuitBreaker breaker = new RegistryCircuitBreaker(3, BACKOFF_MS, BACKOFF_MS * 4);
+        RegistryClient client = breaker.wrap(registry.client());
+        registry.error = restError(503, "ServiceUnavailable");
+
+        for (int i = 1; i <= 3; i++) {
+            assertSame(registry.error, assertThrows(RestClientException.class, () -> lookup(client)));
+            assertEquals(i, breaker.getConsecutiveFailures());
+            assertEquals(i < 3 ? RegistryCircuitBreaker.State.CLOSED : RegistryCircuitBreaker.State.OPEN, breaker.getState());
+        }
+        assertEquals(1, breaker.getOpenedCount());
+        assertTrue(breaker.getRemainingBackoffMs() > 0);
+
+        // Rejected without calling the registry, reporting the last failure
+        CircuitBreakerOpenException rejected = assertThrows(CircuitBreakerOpenException.class, () -> lookup(client));
+        assertSame(registry.error, rejected.getCause());
+        assertEquals(3, registry.calls.get());
+        assertEquals(1, breaker.getRejectedCount());
+    }
+
+    @Test
+    public void testSuccessResetsFailures() {
+        RegistryCircuitBreaker breaker = new RegistryCircuitBreaker(3, BACKOFF_MS, BACKOFF_MS);
+        RegistryClient client = breaker.wrap(registry.client());
+
+        registry.error = restError(500, "Error");
+        assertThrows(RestClientException.class, () -> lookup(client));
+        assertThrows(RestClientException.class, () -> lookup(client));
+        registry.error = null;
+        lookup(client);
+        assertEquals(0, breaker.getConsecutiveFailures());
+
+        registry.error = restError(500, "Error");
+        assertThrows(RestClientException.class, () -> lookup(client));
+        assertThrows(RestClientException.class, () -> lookup(client));
+        assertEquals(RegistryCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testSingleProbeWhenHalfOpen() throws Exception {
+        RegistryCircuitBreaker breaker = new RegistryCircuitBreaker(1, BACKOFF_MS, BACKOFF_MS * 4);
+        RegistryClient client = breaker.wrap(registry.client());
+        registry.error = restError(503, "ServiceUnavailable");
+        assertThrows(RestClientException.class, () -> lookup(client));
+        assertEquals(RegistryCircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(BACKOFF_MS + 20);
+        // The first call after the backoff is let through, the ones made while it is in flight are not
+        breaker.beforeCall();
+        assertEquals(RegistryCircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertThrows(CircuitBreakerOpenException.class, () -> lookup(client));
+        assertThrows(CircuitBreakerOpenException.class, () -> lookup(client));
+        assertEquals(1, registry.calls.get());
+
+        breaker.onSuccess();
+        assertEquals(RegistryCircuitBreaker.State.CLOSED, breaker.getState());
+        registry.error = null;
+        lookup(client);
+        assertEquals(2, registry.calls.get());
+        assertEquals(0, breaker.getRemainingBackoffMs());
+    }
+
+    @Test
+    public void testBackoffDoublesUpToMaximum() throws Exception {
+        RegistryCircuitBreaker breaker = new RegistryCircuitBreaker(1, BACKOFF_MS, BACKOFF_MS * 3);
+        RegistryClient client = breaker.wrap(registry.client());
+        registry.error = new RuntimeException(new ConnectException("Connection refused"));
+
+        assertThrows(RuntimeException.class, () -> lookup(client));
+        long[] expected = { BACKOFF_MS, BACKOFF_MS * 2, BACKOFF_MS * 3, BACKOFF_MS * 3 };
+        for (int i = 0; i < expected.length; i++) {
+            long remaining = breaker.getRemainingBackoffMs();
+            assertTrue(remaining > expected[i] - 50 && remaining <= expected[i], "Backoff " + i + ": " + remaining);
+            Thread.sleep(remaining + 20);
+
+            // The probe fails again
+            assertThrows(RuntimeException.class, () -> lookup(client));
+            assertEquals(RegistryCircuitBreaker.State.OPEN, breaker.getState());
+        }
+        assertEquals(5, breaker.getOpenedCount());
+
+        // Once the registry is back, the backoff starts over
+        Thread.sleep(breaker.getRemainingBackoffMs() + 20);
+        registry.error = null;
+        lookup(client);
+        registry.error = restError(503, "ServiceUnavailable");
+        assertThrows(RestClientException.class, () -> lookup(client));
+        long remaining = breaker.getRemainingBackoffMs();
+        assertTrue(remaining > BACKOFF_MS - 50 && remaining <= BACKOFF_MS, "Backoff after recovery: " + remaining);
+    }
+
+    @Test
+    public void testIsUnavailable() {
+        assertTrue(RegistryCircuitBreaker.isUnavailable(restError(500, "Error")));
+        assertTrue(RegistryCircuitBreaker.isUnavailable(restError(503, "ServiceUnavailable")));
+        assertTrue(RegistryCircuitBreaker.isUnavailable(restError(429, "TooManyRequests")));
+        assertFalse(RegistryCircuitBreaker.isUnavailable(restError(404, "ArtifactNotFoundException")));
+        assertFalse(RegistryCircuitBreaker.isUnavailable(restError(400, "BadRequestException")));
+        assertFalse(RegistryCircuitBreaker.isUnavailable(restError(409, "ArtifactAlreadyExistsException")));
+
+        // I/O errors are reported by the REST client without an error code
+        assertTrue(RegistryCircuitBreaker.isUnavailable(restError(0, "ConnectException")));
+        assertTrue(RegistryCircuitBreaker.isUnavailable(restError(0, "SocketTimeoutException")));
+        assertFalse(RegistryCircuitBreaker.isUnavailable(restError(0, "JsonParseException")));
+
+        assertTrue(RegistryCircuitBreaker.isUnavailable(new ConnectException("Connection refused")));
+        assertTrue(RegistryCircuitBreaker.isUnavailable(new CompletionException(new SocketTimeoutException())));
+        assertTrue(RegistryCircuitBreaker.isUnavailable(new TimeoutException()));
+        assertTrue(RegistryCircuitBreaker.isUnavailable(new IOException("Broken pipe")));
+        assertFalse(RegistryCircuitBreaker.isUnavailable(new IllegalArgumentException("Invalid schema")));
+        assertFalse(RegistryCircuitBreaker.isUnavailable(new IllegalStateException()));
+    }
+
+    @Test
+    public void testClientErrorsNotCounted() {
+        RegistryCircuitBreaker breaker = new RegistryCircuitBreaker(1, BACKOFF_MS, BACKOFF_MS);
+        RegistryClient client = breaker.wrap(registry.client());
+        registry.error = restError(404, "ArtifactNotFoundException");
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(RestClientException.class, () -> lookup(client));
+        }
+        assertEquals(RegistryCircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getConsecutiveFailures());
+        assertEquals(5, registry.calls.get());
+    }
+
+    @Test
+    public void testOtherMethodsNotGated() {
+        RegistryCircuitBreaker breaker = new RegistryCircuitBreaker(1, BACKOFF_MS, BACKOFF_MS);
+        RegistryClient client = breaker.wrap(registry.client());
+        registry.error = restError(503, "ServiceUnavailable");
+
+        // Neither counted, nor rejected while the breaker is open
+        assertThrows(RestClientException.class, () -> client.deleteArtifact("group", "artifact"));
+        assertEquals(RegistryCircuitBreaker.State.CLOSED, breaker.getState());
+        assertThrows(RestClientException.class, () -> lookup(client));
+        assertEquals(RegistryCircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(RestClientException.class, () -> client.deleteArtifact("group", "artifact"));
+        assertEquals(3, registry.calls.get());
+        assertEquals(0, breaker.getRejectedCount());
+
+        assertTrue(RegistryCircuitBreaker.isWrapped(client));
+        assertFalse(RegistryCircuitBreaker.isWrapped(registry.client()));
+    }
+
+    /**
+     * A {@link RegistryClient} that throws the configured error from every call (if any) and otherwise
+     * returns an empty schema.
+     */
+    private static class ScriptedClient implements InvocationHandler {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile RuntimeException error;
+
+        RegistryClient client() {
+            return (RegistryClient) Proxy.newProxyInstance(RegistryClient.class.getClassLoader(),
+                    new Class<?>[] { RegistryClient.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            calls.incrementAndGet();
+            if (error != null) {
+                throw error;
+            }
+            return method.getReturnType() == InputStream.class ? new ByteArrayInputStream(new byte[0]) : null;
+        }
+    }
+
+}
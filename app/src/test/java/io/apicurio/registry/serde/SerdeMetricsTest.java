@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.serde.avro.AvroKafkaDeserializer;
+import io.apicurio.registry.serde.cache.DefaultResolverCache;
+import io.apicurio.registry.serde.metrics.MicrometerSerdeMetrics;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests the meters registered by {@link MicrometerSerdeMetrics}, and that they are removed once the serde
+ * classes using them are closed.
+ */
+public class SerdeMetricsTest {
+
+    private static final String SCHEMA = "{\"type\":\"record\",\"name\":\"One\",\"fields\":[{\"name\":\"a\",\"type\":\"string\"}]}";
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private static Map<String, Object> configs(String clientId) {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put("client.id", clientId);
+        return configs;
+    }
+
+    @Test
+    public void testMetersTaggedAndRemovedOnClose() {
+        MicrometerSerdeMetrics metrics = new MicrometerSerdeMetrics(registry);
+        metrics.configure(configs("producer-1"), false);
+        metrics.recordSerialization("orders", 1000, 42);
+        metrics.recordSerializationFailure("orders", new IllegalStateException());
+        metrics.recordRegistryCall("getContentByGlobalId", 1000, true);
+        metrics.recordValidation(1000, true);
+        metrics.bindCache("schemaByGlobalId", new DefaultResolverCache<Long, String>());
+        metrics.bindCircuitBreaker(new RegistryCircuitBreaker(3, 100, 1000));
+
+        assertEquals(42, registry.get(MicrometerSerdeMetrics.PREFIX + "serialization.bytes")
+                .tag("topic", "orders").tag("key", "false").tag("client.id", "producer-1")
+                .summary().totalAmount());
+        assertEquals(1, registry.get(MicrometerSerdeMetrics.PREFIX + "serialization.failures")
+                .tag("exception", "IllegalStateException").counter().count());
+        assertEquals(1, registry.get(MicrometerSerdeMetrics.PREFIX + "registry.requests")
+                .tag("operation", "getContentByGlobalId").tag("outcome", "success").timer().count());
+        assertNotNull(registry.get(MicrometerSerdeMetrics.PREFIX + "cache.size").tag("cache", "schemaByGlobalId").gauge());
+        assertNotNull(registry.get(MicrometerSerdeMetrics.PREFIX + "circuit.breaker.state").gauge());
+        for (Meter meter : registry.getMeters()) {
+            assertEquals("producer-1", meter.getId().getTag("client.id"), meter.getId().getName());
+        }
+
+        metrics.close();
+        assertTrue(registry.getMeters().isEmpty(), registry.getMeters().toString());
+    }
+
+    @Test
+    public void testSharedBySerializerAndDeserializer() {
+        MicrometerSerdeMetrics metrics = new MicrometerSerdeMetrics(registry);
+        metrics.configure(configs("streams-1"), true);
+        metrics.configure(configs("streams-1"), true);
+        metrics.recordSerialization("orders", 1000, 42);
+        metrics.recordDeserialization("orders", 1000, 42);
+
+        // Still in use by the other one
+        metrics.close();
+        assertFalse(registry.getMeters().isEmpty());
+        metrics.recordDeserialization("orders", 1000, 42);
+        assertEquals(84, registry.get(MicrometerSerdeMetrics.PREFIX + "deserialization.bytes").summary().totalAmount());
+
+        metrics.close();
+        assertTrue(registry.getMeters().isEmpty(), registry.getMeters().toString());
+    }
+
+    @Test
+    public void testKeyAndValueRejected() {
+        MicrometerSerdeMetrics metrics = new MicrometerSerdeMetrics(registry);
+        metrics.configure(configs("producer-1"), false);
+
+        assertThrows(IllegalStateException.class, () -> metrics.configure(configs("producer-1"), true));
+        assertThrows(IllegalStateException.class, () -> metrics.configure(configs("producer-2"), false));
+
+        // The meters keep the tags they were first configured with
+        metrics.recordSerialization("orders", 1000, 42);
+        Meter meter = registry.get(MicrometerSerdeMetrics.PREFIX + "serialization").meter();
+        assertEquals("false", meter.getId().getTag("key"));
+        assertEquals("producer-1", meter.getId().getTag("client.id"));
+
+        // The rejected configurations are not counted as users
+        metrics.close();
+        assertTrue(registry.getMeters().isEmpty(), registry.getMeters().toString());
+    }
+
+    @Test
+    public void testMetersRemovedWhenDeserializerClosed() throws Exception {
+        StubRegistryClient stub = new StubRegistryClient().schema(1, SCHEMA);
+        Map<String, Object> configs = configs("consumer-1");
+        configs.put(SerdeConfig.METRICS, MicrometerSerdeMetrics.class.getName());
+        configs.put(SerdeConfig.METRICS_MICROMETER_REGISTRY, registry);
+
+        AvroKafkaDeserializer<GenericRecord> deserializer = new AvroKafkaDeserializer<>(stub.client());
+        deserializer.configure(configs, false);
+        GenericRecord record = (GenericRecord) deserializer.deserialize("orders", payload(1, "value"));
+        assertEquals("value", record.get("a").toString());
+
+        assertEquals(1, registry.get(MicrometerSerdeMetrics.PREFIX + "deserialization").timer().count());
+        assertNotNull(registry.get(MicrometerSerdeMetrics.PREFIX + "cache.hits").tag("cache", "schemaByGlobalId").functionCounter());
+
+        deserializer.close();
+        assertTrue(registry.getMeters().isEmpty(), registry.getMeters().toString());
+    }
+
+    private static byte[] payload(long globalId, String value) throws Exception {
+        Schema schema = new Schema.Parser().parse(SCHEMA);
+        GenericRecord record = new GenericData.Record(schema);
+        record.put("a", value);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DefaultIdHandler().writeMagicByteAndId(ArtifactReference.fromGlobalId(globalId), out);
+        BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(out, null);
+        new GenericDatumWriter<GenericRecord>(schema).write(record, encoder);
+        encoder.flush();
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.utils.IoUtil;
+
+/**
+ * A {@link RegistryClient} serving schemas by globalId and contentId from memory, for testing the schema
+ * resolvers without a registry.  Lookups can be made to fail or to hang until {@link #release()}.
+ *
+ * @author Ales Justin
+ */
+class StubRegistryClient implements InvocationHandler {
+
+    private final Map<Long, byte[]> schemas = new ConcurrentHashMap<>();
+    private final Set<Long> hanging = ConcurrentHashMap.newKeySet();
+    private final Set<Long> failing = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile boolean unavailable;
+
+    StubRegistryClient schema(long id, String schema) {
+        schemas.put(id, IoUtil.toBytes(schema));
+        return this;
+    }
+
+    /**
+     * Makes the lookups of the given id hang until {@link #release()}.
+     */
+    StubRegistryClient hang(long id) {
+        hanging.add(id);
+        return this;
+    }
+
+    /**
+     * Makes the lookups of the given id fail.
+     */
+    StubRegistryClient fail(long id) {
+        failing.add(id);
+        return this;
+    }
+
+    /**
+     * Makes every lookup fail, as if the registry was down.
+     */
+    StubRegistryClient unavailable(boolean unavailable) {
+        this.unavailable = unavailable;
+        return this;
+    }
+
+    void release() {
+        released.countDown();
+    }
+
+    /**
+     * @return the number of schemas looked up so far
+     */
+    int calls() {
+        return calls.get();
+    }
+
+    RegistryClient client() {
+        return (RegistryClient) Proxy.newProxyInstance(RegistryClient.class.getClassLoader(),
+                new Class<?>[] { RegistryClient.class }, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "getContentByGlobalId":
+            case "getContentById":
+                return content((Long) args[0]);
+            case "close":
+                return null;
+            case "toString":
+                return "StubRegistryClient";
+            default:
+                throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    private ByteArrayInputStream content(long id) throws InterruptedException {
+        calls.incrementAndGet();
+        if (unavailable) {
+            throw new IllegalStateException("Registry unavailable");
+        }
+        if (hanging.contains(id)) {
+            released.await();
+        }
+        byte[] schema = schemas.get(id);
+        if (schema == null || failing.contains(id)) {
+            throw new IllegalStateException("No schema with id " + id);
+        }
+        return new ByteArrayInputStream(schema);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.serde.config.IdOption;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+
+/**
+ * Tests the id encoding of {@link VarintIdHandler}, and that it reads payloads written by the fixed-width id
+ * handlers.
+ */
+public class VarintIdSerdeTest {
+
+    private static final byte[] DATA = { 42, 43 };
+
+    private static VarintIdHandler handler(Map<String, Object> configs) {
+        VarintIdHandler handler = new VarintIdHandler();
+        handler.configure(configs, false);
+        return handler;
+    }
+
+    private static VarintIdHandler handler() {
+        return handler(new HashMap<>());
+    }
+
+    private static byte[] write(IdHandler handler, ArtifactReference reference) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        handler.writeMagicByteAndId(reference, out);
+        out.write(DATA);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the id, checking that the buffer is left at the start of the data.
+     */
+    private static ArtifactReference read(IdHandler handler, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        ArtifactReference reference = handler.readMagicByteAndId(buffer);
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        assertArrayEquals(DATA, data);
+        return reference;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        VarintIdHandler handler = handler();
+        long[] ids = { 0, 1, 63, 64, 127, 128, 8191, 8192, Integer.MAX_VALUE, Long.MAX_VALUE, -1, -64, -65, Long.MIN_VALUE };
+        int[] sizes = { 1, 1, 1, 2, 2, 2, 2, 3, 5, 10, 1, 1, 2, 10 };
+        for (int i = 0; i < ids.length; i++) {
+            ArtifactReference reference = ArtifactReference.fromGlobalId(ids[i]);
+            byte[] payload = write(handler, reference);
+            assertEquals(VarintIdHandler.VARINT_MAGIC_BYTE, payload[0]);
+            assertEquals(1 + sizes[i] + DATA.length, payload.length, "Size of " + ids[i]);
+            assertEquals(sizes[i], handler.idSize(reference));
+
+            // Writing to a buffer gives the same bytes as writing to a stream
+            ByteBuffer buffer = ByteBuffer.allocate(1 + handler.idSize(reference) + DATA.length);
+            handler.writeMagicByteAndId(reference, buffer);
+            buffer.put(DATA);
+            assertArrayEquals(payload, buffer.array());
+
+            assertEquals(ids[i], read(handler, payload).getGlobalId());
+        }
+    }
+
+    @Test
+    public void testZigZagEncoding() throws Exception {
+        // Small negative ids take as little space as small positive ones
+        assertArrayEquals(new byte[] { 0x1, 0x0, 42, 43 }, write(handler(), ArtifactReference.fromGlobalId(0L)));
+        assertArrayEquals(new byte[] { 0x1, 0x1, 42, 43 }, write(handler(), ArtifactReference.fromGlobalId(-1L)));
+        assertArrayEquals(new byte[] { 0x1, 0x2, 42, 43 }, write(handler(), ArtifactReference.fromGlobalId(1L)));
+        assertArrayEquals(new byte[] { 0x1, (byte) 0xfe, 0x1, 42, 43 }, write(handler(), ArtifactReference.fromGlobalId(127L)));
+        assertArrayEquals(new byte[] { 0x1, (byte) 0x80, 0x2, 42, 43 }, write(handler(), ArtifactReference.fromGlobalId(128L)));
+    }
+
+    @Test
+    public void testReadLegacy8ByteIds() throws Exception {
+        VarintIdHandler handler = handler();
+        for (long id : new long[] { 0, 128, Long.MAX_VALUE }) {
+            byte[] payload = write(new DefaultIdHandler(), ArtifactReference.fromGlobalId(id));
+            assertEquals(AbstractKafkaSerDe.MAGIC_BYTE, payload[0]);
+            assertEquals(id, read(handler, payload).getGlobalId());
+        }
+    }
+
+    @Test
+    public void testReadLegacy4ByteIds() throws Exception {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.VARINT_ID_HANDLER_LEGACY_ID_SIZE, 4);
+        VarintIdHandler handler = handler(configs);
+        for (long id : new long[] { 0, 128, Integer.MAX_VALUE }) {
+            byte[] payload = write(new Legacy4ByteIdHandler(), ArtifactReference.fromGlobalId(id));
+            assertEquals(AbstractKafkaSerDe.MAGIC_BYTE, payload[0]);
+            assertEquals(id, read(handler, payload).getGlobalId());
+        }
+        // New payloads are still read as varints
+        assertEquals(128L, read(handler, write(handler, ArtifactReference.fromGlobalId(128L))).getGlobalId());
+    }
+
+    @Test
+    public void testInvalidLegacyIdSize() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.VARINT_ID_HANDLER_LEGACY_ID_SIZE, 2);
+        assertThrows(ConfigException.class, () -> handler(configs));
+    }
+
+    @Test
+    public void testContentId() throws Exception {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.USE_ID, IdOption.contentId.name());
+        VarintIdHandler handler = handler(configs);
+
+        ArtifactReference reference = ArtifactReference.builder().globalId(1000L).contentId(5L).build();
+        byte[] payload = write(handler, reference);
+        assertEquals(1 + 1 + DATA.length, payload.length);
+        ArtifactReference read = read(handler, payload);
+        assertEquals(5L, read.getContentId());
+        assertNull(read.getGlobalId());
+
+        assertThrows(SerializationException.class, () -> write(handler, ArtifactReference.fromGlobalId(1000L)));
+
+        // Legacy payloads carry a contentId too when the serializer used contentIds
+        Legacy4ByteIdHandler legacy = new Legacy4ByteIdHandler();
+        legacy.configure(configs, false);
+        configs.put(SerdeConfig.VARINT_ID_HANDLER_LEGACY_ID_SIZE, 4);
+        assertEquals(5L, read(handler(configs), write(legacy, reference)).getContentId());
+    }
+
+    @Test
+    public void testUnknownMagicByte() {
+        VarintIdHandler handler = handler();
+        assertTrue(handler.isMagicByte(AbstractKafkaSerDe.MAGIC_BYTE));
+        assertTrue(handler.isMagicByte(VarintIdHandler.VARINT_MAGIC_BYTE));
+        assertThrows(SerializationException.class, () -> handler.readMagicByteAndId(ByteBuffer.wrap(new byte[] { 0x2, 0x0 })));
+    }
+
+    @Test
+    public void testTruncatedVarint() {
+        // A continuation bit on the last byte
+        assertThrows(RuntimeException.class, () -> handler().readMagicByteAndId(ByteBuffer.wrap(new byte[] { 0x1, (byte) 0x80 })));
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.avro.Schema;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.serde.avro.AvroSchemaParser;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+
+/**
+ * Checks that the schema resolver fetches the schemas configured to be warmed up when it is configured.
+ *
+ * @author Ales Justin
+ */
+public class WarmupSerdeTest {
+
+    private static final String SCHEMA_1 = "{\"type\":\"record\",\"name\":\"One\",\"fields\":[{\"name\":\"a\",\"type\":\"string\"}]}";
+    private static final String SCHEMA_2 = "{\"type\":\"record\",\"name\":\"Two\",\"fields\":[{\"name\":\"b\",\"type\":\"int\"}]}";
+    private static final String SCHEMA_3 = "{\"type\":\"record\",\"name\":\"Three\",\"fields\":[{\"name\":\"c\",\"type\":\"long\"}]}";
+
+    private final StubRegistryClient registry = new StubRegistryClient()
+            .schema(1, SCHEMA_1)
+            .schema(2, SCHEMA_2)
+            .schema(3, SCHEMA_3);
+
+    @AfterEach
+    public void releaseRegistry() {
+        registry.release();
+    }
+
+    @Test
+    public void testWarmupByGlobalIds() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.WARMUP_GLOBAL_IDS, "1, 2,3");
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(configs);
+
+        WarmupResult result = resolver.getWarmupResult();
+        assertTrue(result.isSuccessful());
+        assertEquals(3, result.getRequested());
+        assertEquals(3, result.getLoaded());
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(3, registry.calls());
+
+        // Served from the caches, without calling the registry again
+        for (long globalId = 1; globalId <= 3; globalId++) {
+            SchemaLookupResult<Schema> lookup = resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().globalId(globalId).build());
+            assertEquals(globalId, lookup.getGlobalId());
+        }
+        assertEquals("Two", resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().globalId(2L).build()).getSchema().getName());
+        assertEquals(3, registry.calls());
+    }
+
+    @Test
+    public void testNothingToWarmup() {
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(new HashMap<>());
+        assertNull(resolver.getWarmupResult());
+        assertEquals(0, registry.calls());
+    }
+
+    @Test
+    public void testWarmupFailure() {
+        registry.fail(2);
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.WARMUP_GLOBAL_IDS, "1,2,3");
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(configs);
+
+        WarmupResult result = resolver.getWarmupResult();
+        assertFalse(result.isSuccessful());
+        assertEquals(3, result.getRequested());
+        assertEquals(2, result.getLoaded());
+        assertEquals(1, result.getFailures().size());
+        assertTrue(result.getFailures().get("globalId 2") instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testWarmupDeadline() {
+        registry.hang(2);
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.WARMUP_GLOBAL_IDS, "1,2,3");
+        configs.put(SerdeConfig.WARMUP_TIMEOUT_MS, "200");
+
+        long start = System.currentTimeMillis();
+        DefaultSchemaResolver<Schema, Object> resolver = resolver(configs);
+        long duration = System.currentTimeMillis() - start;
+
+        // The deadline is for the whole warmup, not for every schema
+        assertTrue(duration >= 200, "Took " + duration + "ms");
+        assertTrue(duration < 5000, "Took " + duration + "ms");
+
+        WarmupResult result = resolver.getWarmupResult();
+        assertFalse(result.isSuccessful());
+        assertEquals(3, result.getRequested());
+        assertEquals(2, result.getLoaded());
+        assertEquals(1, result.getFailures().size());
+        assertTrue(result.getFailures().get("globalId 2") instanceof TimeoutException);
+
+        // The lookup that timed out is still completed in the background, and then served from the cache
+        registry.release();
+        assertEquals("Two", resolver.resolveSchemaByArtifactReference(ArtifactReference.builder().globalId(2L).build()).getSchema().getName());
+        assertEquals(3, registry.calls());
+    }
+
+    @Test
+    public void testWarmupRequired() {
+        registry.fail(3);
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.WARMUP_GLOBAL_IDS, "1,3");
+        configs.put(SerdeConfig.WARMUP_REQUIRED, "true");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> resolver(configs));
+        assertTrue(e.getMessage().contains("globalId 3"), e.getMessage());
+        assertFalse(e.getMessage().contains("globalId 1"), e.getMessage());
+    }
+
+    @Test
+    public void testWarmupRequiredDeadline() {
+        registry.hang(1);
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.WARMUP_GLOBAL_IDS, "1,2");
+        configs.put(SerdeConfig.WARMUP_TIMEOUT_MS, "200");
+        configs.put(SerdeConfig.WARMUP_REQUIRED, "true");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> resolver(configs));
+        assertTrue(e.getMessage().contains("globalId 1"), e.getMessage());
+        assertTrue(e.getCause() instanceof TimeoutException);
+    }
+
+    @Test
+    public void testWarmupRequiredSuccessful() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.WARMUP_GLOBAL_IDS, "1,2,3");
+        configs.put(SerdeConfig.WARMUP_REQUIRED, "true");
+
+        assertTrue(resolver(configs).getWarmupResult().isSuccessful());
+    }
+
+    private DefaultSchemaResolver<Schema, Object> resolver(Map<String, Object> configs) {
+        DefaultSchemaResolver<Schema, Object> resolver = new DefaultSchemaResolver<>();
+        resolver.setClient(registry.client());
+        resolver.configure(configs, false, new AvroSchemaParser());
+        return resolver;
+    }
+}
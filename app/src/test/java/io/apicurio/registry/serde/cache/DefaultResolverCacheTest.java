@@ -0,0 +1,253 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the eviction, expiration, negative caching and refreshing of {@link DefaultResolverCache}.
+ *
+ * @author Ales Justin
+ */
+public class DefaultResolverCacheTest {
+
+    // Runs the background loads and refreshes on the calling thread, so that they are done when get returns
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    public void testEvictionKeepsEntriesInUse() {
+        for (EvictionPolicy policy : EvictionPolicy.values()) {
+            DefaultResolverCache<Integer, String> cache = new DefaultResolverCache<>(100, policy, -1, -1);
+            for (int i = 0; i < 5; i++) {
+                cache.put(-1 - i, "hot-" + i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i, "cold-" + i);
+                for (int hot = 0; hot < 5; hot++) {
+                    cache.get(-1 - hot);
+                }
+                assertTrue(cache.size() <= 100, policy + ": " + cache.size());
+            }
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals("hot-" + i, cache.get(-1 - i), policy.name());
+            }
+            // The last entries put have not had the time to be read, but are kept too
+            assertEquals("cold-999", cache.get(999), policy.name());
+            assertEquals("cold-998", cache.get(998), policy.name());
+            // Evicted in batches of about a tenth of the cache
+            assertTrue(cache.size() >= 89, policy + ": " + cache.size());
+            assertEquals(1005, cache.size() + cache.stats().getEvictions(), policy.name());
+        }
+    }
+
+    @Test
+    public void testUnboundedByDefault() {
+        DefaultResolverCache<Integer, String> cache = new DefaultResolverCache<>();
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, "value-" + i);
+        }
+        assertEquals(10000, cache.size());
+        assertEquals(0, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, 50, -1);
+        CountingLoader loader = new CountingLoader();
+
+        assertEquals("key-1", cache.get("key", loader));
+        assertEquals("key-1", cache.get("key", loader));
+        cache.put("put", "value");
+        Thread.sleep(80);
+
+        assertNull(cache.get("put"));
+        assertEquals("key-2", cache.get("key", loader));
+        assertEquals(2, cache.stats().getExpirations());
+    }
+
+    @Test
+    public void testNegativeCaching() throws Exception {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, -1, -1, 100);
+        CountingLoader loader = new CountingLoader().failing(true);
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () -> cache.get("key", loader));
+        // Fails with the same error, without loading it again
+        assertSame(error, assertThrows(IllegalStateException.class, () -> cache.get("key", loader)));
+        ExecutionException async = assertThrows(ExecutionException.class, () -> cache.getAsync("key", loader).get());
+        assertSame(error, async.getCause());
+        assertEquals(1, loader.calls.get());
+        assertEquals(2, cache.stats().getNegativeHits());
+
+        Thread.sleep(150);
+        loader.failing(false);
+        assertEquals("key-2", cache.get("key", loader));
+    }
+
+    @Test
+    public void testNoNegativeCachingByDefault() {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, -1, -1);
+        CountingLoader loader = new CountingLoader().failing(true);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("key", loader));
+        assertThrows(IllegalStateException.class, () -> cache.get("key", loader));
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void testPutForgetsFailure() {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, -1, -1, 60000);
+        CountingLoader loader = new CountingLoader().failing(true);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("key", loader));
+        cache.put("key", "value");
+        assertEquals("value", cache.get("key", loader));
+        cache.remove("key");
+        loader.failing(false);
+        assertEquals("key-2", cache.get("key", loader));
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, -1, 50, 0, DIRECT);
+        CountingLoader loader = new CountingLoader();
+
+        assertEquals("key-1", cache.get("key", loader));
+        cache.put("put", "value");
+        Thread.sleep(80);
+
+        // The current value is returned while it is reloaded
+        assertEquals("key-1", cache.get("key", loader));
+        assertEquals("key-2", cache.get("key", loader));
+        assertEquals("key-2", cache.get("key", loader));
+        assertEquals(1, cache.stats().getRefreshes());
+
+        // Only the entries loaded by the cache can be refreshed
+        assertEquals("value", cache.get("put"));
+        assertEquals(2, loader.calls.get());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsValue() throws Exception {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, -1, 50, 0, DIRECT);
+        CountingLoader loader = new CountingLoader();
+
+        assertEquals("key-1", cache.get("key", loader));
+        Thread.sleep(80);
+        loader.failing(true);
+        assertEquals("key-1", cache.get("key", loader));
+        assertEquals("key-1", cache.get("key", loader));
+        assertEquals(0, cache.stats().getRefreshes());
+    }
+
+    @Test
+    public void testRemoveDuringLoad() throws Exception {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, -1, -1, 60000);
+        BlockingLoader loader = new BlockingLoader();
+
+        CompletableFuture<String> loading = cache.getAsync("key", loader);
+        assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+        cache.remove("key");
+        loader.release.countDown();
+
+        // The load still completes, but its value isn't cached
+        assertEquals("value", loading.get(5, TimeUnit.SECONDS));
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testClearDuringFailingLoad() throws Exception {
+        DefaultResolverCache<String, String> cache = new DefaultResolverCache<>(0, EvictionPolicy.LRU, -1, -1, 60000);
+        BlockingLoader loader = new BlockingLoader();
+        loader.failing = true;
+
+        CompletableFuture<String> loading = cache.getAsync("key", loader);
+        assertTrue(loader.started.await(5, TimeUnit.SECONDS));
+        cache.clear();
+        loader.release.countDown();
+
+        // The failure isn't remembered either
+        ExecutionException error = assertThrows(ExecutionException.class, () -> loading.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        CountingLoader counting = new CountingLoader();
+        assertEquals("key-1", cache.get("key", counting));
+    }
+
+    /**
+     * Returns the key and the number of calls so far, or fails.
+     */
+    private static class CountingLoader implements Function<String, String> {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile boolean failing;
+
+        CountingLoader failing(boolean failing) {
+            this.failing = failing;
+            return this;
+        }
+
+        @Override
+        public String apply(String key) {
+            int call = calls.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("Failed to load " + key);
+            }
+            return key + "-" + call;
+        }
+    }
+
+    /**
+     * Waits until released to return its value, or fail.
+     */
+    private static class BlockingLoader implements Function<String, String> {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean failing;
+
+        @Override
+        public String apply(String key) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failing) {
+                throw new IllegalStateException("Failed to load " + key);
+            }
+            return "value";
+        }
+    }
+
+}
@@ -26,6 +26,7 @@ import java.util.Objects;
 import java.util.function.Consumer;
 
 import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.kafka.common.header.Headers;
@@ -34,6 +35,10 @@ import io.apicurio.registry.rest.client.RegistryClient;
 import io.apicurio.registry.serde.AbstractKafkaDeserializer;
 import io.apicurio.registry.serde.ParsedSchema;
 import io.apicurio.registry.serde.SchemaParser;
+import io.apicurio.registry.serde.cache.DefaultResolverCache;
+import io.apicurio.registry.serde.cache.EvictionPolicy;
+import io.apicurio.registry.serde.cache.ResolverCache;
+import io.apicurio.registry.serde.config.DefaultSchemaResolverConfig;
 import io.apicurio.registry.serde.utils.Utils;
 
 /**
@@ -42,12 +47,19 @@ import io.apicurio.registry.serde.utils.Utils;
  */
 public class AvroKafkaDeserializer<U> extends AbstractKafkaDeserializer<Schema, U> {
 
+    // Binary decoders hold no state between records, so each thread reuses its own.
+    private static final ThreadLocal<BinaryDecoder> BINARY_DECODER = new ThreadLocal<>();
+
     private final DecoderFactory decoderFactory = DecoderFactory.get();
     private AvroSchemaParser parser = new AvroSchemaParser();
     private AvroDatumProvider<U> avroDatumProvider;
     private AvroEncoding configEncoding;
     private AvroSerdeHeaders avroHeaders;
 
+    // Datum readers by writer schema.  The reader schema is derived from the writer schema by the datum
+    // provider, so this also keys them by writer/reader schema pair.
+    private ResolverCache<Schema, DatumReader<U>> readerCache = new DefaultResolverCache<>();
+
     public AvroKafkaDeserializer() {
         super();
     }
@@ -74,6 +86,9 @@ public class AvroKafkaDeserializer<U> extends AbstractKafkaDeserializer<Schema,
         avroDatumProvider.configure(config);
 
         avroHeaders = new AvroSerdeHeaders(isKey);
+
+        long maxSize = new DefaultSchemaResolverConfig(configs).getCacheMaxSize();
+        readerCache = new DefaultResolverCache<>(maxSize, EvictionPolicy.LRU, -1, -1);
     }
 
     /**
@@ -103,14 +118,16 @@ public class AvroKafkaDeserializer<U> extends AbstractKafkaDeserializer<Schema,
             encoding = configEncoding;
         }
         try {
-            DatumReader<U> reader = avroDatumProvider.createDatumReader(schema.getParsedSchema());
+            DatumReader<U> reader = readerCache.get(schema.getParsedSchema(), avroDatumProvider::createDatumReader);
             if( encoding == AvroEncoding.JSON) {
                 // copy the data into a new byte[]
                 byte[] msgData = new byte[length];
                 System.arraycopy(buffer.array(), start, msgData, 0, length);
                 return reader.read(null, decoderFactory.jsonDecoder(schema.getParsedSchema(), new ByteArrayInputStream(msgData)));
             } else {
-                return reader.read(null, decoderFactory.binaryDecoder(buffer.array(), start, length, null));
+                BinaryDecoder decoder = decoderFactory.binaryDecoder(buffer.array(), start, length, BINARY_DECODER.get());
+                BINARY_DECODER.set(decoder);
+                return reader.read(null, decoder);
             }
 
         } catch (IOException e) {
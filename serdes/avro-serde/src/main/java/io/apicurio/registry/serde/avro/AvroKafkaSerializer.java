@@ -19,11 +19,14 @@ package io.apicurio.registry.serde.avro;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
@@ -33,8 +36,14 @@ import io.apicurio.registry.rest.client.RegistryClient;
 import io.apicurio.registry.serde.AbstractKafkaSerializer;
 import io.apicurio.registry.serde.ParsedSchema;
 import io.apicurio.registry.serde.ParsedSchemaImpl;
+import io.apicurio.registry.serde.SchemaLookupResult;
 import io.apicurio.registry.serde.SchemaParser;
 import io.apicurio.registry.serde.SchemaResolver;
+import io.apicurio.registry.serde.cache.DefaultResolverCache;
+import io.apicurio.registry.serde.cache.EvictionPolicy;
+import io.apicurio.registry.serde.cache.ResolverCache;
+import io.apicurio.registry.serde.cache.WeakIdentityCache;
+import io.apicurio.registry.serde.config.DefaultSchemaResolverConfig;
 import io.apicurio.registry.serde.strategy.ArtifactResolverStrategy;
 import io.apicurio.registry.serde.utils.Utils;
 import io.apicurio.registry.utils.IoUtil;
@@ -45,12 +54,23 @@ import io.apicurio.registry.utils.IoUtil;
  */
 public class AvroKafkaSerializer<U> extends AbstractKafkaSerializer<Schema, U> {
 
+    // Binary encoders hold no state between records, so each thread reuses its own.
+    private static final ThreadLocal<BinaryEncoder> BINARY_ENCODER = new ThreadLocal<>();
+
     private final EncoderFactory encoderFactory = EncoderFactory.get();
     private AvroSchemaParser parser = new AvroSchemaParser();
     private AvroDatumProvider<U> avroDatumProvider;
     private AvroEncoding encoding;
     private AvroSerdeHeaders avroHeaders;
 
+    // Resolved schemas by schema instance and topic, used when the lookups are cacheable.  The results are
+    // only weakly referenced, so they are dropped along with the schema resolver's own cache entries.
+    private final WeakIdentityCache<Schema, Map<String, WeakReference<SchemaLookupResult<Schema>>>> lookupCache = new WeakIdentityCache<>();
+
+    // Datum writers by writer schema and data class (the datum provider picks the writer by both).  Datum
+    // writers reference their schema, so this cache is bounded rather than weakly keyed.
+    private ResolverCache<Schema, Map<Class<?>, DatumWriter<U>>> writerCache = new DefaultResolverCache<>();
+
     public AvroKafkaSerializer() {
         super();
     }
@@ -87,6 +107,9 @@ public class AvroKafkaSerializer<U> extends AbstractKafkaSerializer<Schema, U> {
         avroDatumProvider.configure(config);
 
         avroHeaders = new AvroSerdeHeaders(isKey);
+
+        long maxSize = new DefaultSchemaResolverConfig(configs).getCacheMaxSize();
+        writerCache = new DefaultResolverCache<>(maxSize, EvictionPolicy.LRU, -1, -1);
     }
 
     /**
@@ -108,6 +131,36 @@ public class AvroKafkaSerializer<U> extends AbstractKafkaSerializer<Schema, U> {
                 .setRawSchema(IoUtil.toBytes(schema.toString()));
     }
 
+    /**
+     * Avoids rendering the schema of the data (to look it up by content) for every record, by caching the
+     * lookup results by schema instance.
+     * @see io.apicurio.registry.serde.AbstractKafkaSerializer#resolveSchema(java.lang.String, org.apache.kafka.common.header.Headers, java.lang.Object, io.apicurio.registry.serde.ParsedSchema)
+     */
+    @Override
+    protected SchemaLookupResult<Schema> resolveSchema(String topic, Headers headers, U data, ParsedSchema<Schema> schemaFromData) {
+        if (topic == null || !getSchemaResolver().isSchemaLookupCacheable()) {
+            return super.resolveSchema(topic, headers, data, schemaFromData);
+        }
+        Map<String, WeakReference<SchemaLookupResult<Schema>>> byTopic = lookupCache.computeIfAbsent(avroDatumProvider.toSchema(data),
+                k -> new ConcurrentHashMap<>());
+        WeakReference<SchemaLookupResult<Schema>> cached = byTopic.get(topic);
+        SchemaLookupResult<Schema> result = cached == null ? null : cached.get();
+        if (result == null) {
+            result = super.resolveSchema(topic, headers, data, schemaFromData);
+            byTopic.put(topic, new WeakReference<>(result));
+        }
+        return result;
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.AbstractKafkaSerDe#reset()
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        lookupCache.clear();
+    }
+
     /**
      * @see io.apicurio.registry.serde.AbstractKafkaSerializer#serializeData(io.apicurio.registry.serde.ParsedSchema, java.lang.Object, java.io.OutputStream)
      */
@@ -122,11 +175,21 @@ public class AvroKafkaSerializer<U> extends AbstractKafkaSerializer<Schema, U> {
             data = (U) NonRecordContainer.class.cast(data).getValue();
         }
 
-        DatumWriter<U> writer = avroDatumProvider.createDatumWriter(data, schema.getParsedSchema());
+        DatumWriter<U> writer = getDatumWriter(data, schema.getParsedSchema());
         writer.write(data, encoder);
         encoder.flush();
     }
 
+    private DatumWriter<U> getDatumWriter(U data, Schema schema) {
+        Map<Class<?>, DatumWriter<U>> byClass = writerCache.get(schema, k -> new ConcurrentHashMap<>());
+        DatumWriter<U> writer = byClass.get(data.getClass());
+        if (writer == null) {
+            writer = avroDatumProvider.createDatumWriter(data, schema);
+            byClass.put(data.getClass(), writer);
+        }
+        return writer;
+    }
+
     /**
      * @see io.apicurio.registry.serde.AbstractKafkaSerializer#serializeData(org.apache.kafka.common.header.Headers, io.apicurio.registry.serde.ParsedSchema, java.lang.Object, java.io.OutputStream)
      */
@@ -142,7 +205,9 @@ public class AvroKafkaSerializer<U> extends AbstractKafkaSerializer<Schema, U> {
         if(encoding == AvroEncoding.JSON) {
             return encoderFactory.jsonEncoder(schema, os);
         } else {
-            return encoderFactory.directBinaryEncoder(os, null);
+            BinaryEncoder encoder = encoderFactory.directBinaryEncoder(os, BINARY_ENCODER.get());
+            BINARY_ENCODER.set(encoder);
+            return encoder;
         }
     }
 }
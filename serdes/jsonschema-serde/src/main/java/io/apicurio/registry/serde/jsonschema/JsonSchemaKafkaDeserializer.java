@@ -21,6 +21,8 @@ import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.common.serialization.Deserializer;
@@ -37,6 +39,7 @@ import io.apicurio.registry.serde.AbstractKafkaDeserializer;
 import io.apicurio.registry.serde.ParsedSchema;
 import io.apicurio.registry.serde.SchemaParser;
 import io.apicurio.registry.serde.SchemaResolver;
+import io.apicurio.registry.serde.cache.WeakIdentityCache;
 import io.apicurio.registry.serde.headers.MessageTypeSerdeHeaders;
 import io.apicurio.registry.serde.utils.Utils;
 import io.apicurio.registry.types.ArtifactType;
@@ -58,6 +61,12 @@ public class JsonSchemaKafkaDeserializer<T> extends AbstractKafkaDeserializer<Sc
      */
     private Class<T> specificReturnClass;
     private MessageTypeSerdeHeaders serdeHeaders;
+    private ValidationSampler validationSampler = new ValidationSampler(1);
+
+    // The javaType of each schema instance (i.e. of each globalId, as the schema resolver caches one schema
+    // per globalId), and the classes named by the message type header.
+    private final WeakIdentityCache<SchemaValidator, Optional<Class<T>>> schemaJavaTypes = new WeakIdentityCache<>();
+    private final Map<String, Class<T>> headerJavaTypes = new ConcurrentHashMap<>();
 
     public JsonSchemaKafkaDeserializer() {
         super();
@@ -98,6 +107,7 @@ public class JsonSchemaKafkaDeserializer<T> extends AbstractKafkaDeserializer<Sc
 
         this.serdeHeaders = new MessageTypeSerdeHeaders(new HashMap<>(configs), isKey);
 
+        this.validationSampler = new ValidationSampler(config.getValidationSampleRate());
     }
 
     public boolean isValidationEnabled() {
@@ -145,13 +155,11 @@ public class JsonSchemaKafkaDeserializer<T> extends AbstractKafkaDeserializer<Sc
     }
 
     private T internalReadData(Headers headers, ParsedSchema<SchemaValidator> schema, ByteBuffer buffer, int start, int length) {
-        byte[] data = new byte[length];
-        System.arraycopy(buffer.array(), start, data, 0, length);
-
         try {
-            JsonParser parser = mapper.getFactory().createParser(data);
+            JsonParser parser = mapper.getFactory().createParser(buffer.array(), start, length);
 
-            if (isValidationEnabled()) {
+            boolean validate = isValidationEnabled() && validationSampler.sample();
+            if (validate) {
                 parser = api.decorateJsonParser(schema.getParsedSchema(), parser);
             }
 
@@ -160,30 +168,56 @@ public class JsonSchemaKafkaDeserializer<T> extends AbstractKafkaDeserializer<Sc
             if (this.specificReturnClass != null) {
                 messageType = this.specificReturnClass;
             } else if (headers == null) {
-                JsonNode jsonSchema = mapper.readTree(schema.getRawSchema());
-
-                String javaType = null;
-                JsonNode javaTypeNode = jsonSchema.get("javaType");
-                if (javaTypeNode != null && !javaTypeNode.isNull()) {
-                    javaType = javaTypeNode.textValue();
-                }
-                //TODO if javaType is null, maybe warn something like this?
-                //You can try configure the property \"apicurio.registry.serde.json-schema.java-type\" with the full class name to use for deserialization
-                messageType = javaType == null ? null : Utils.loadClass(javaType);
+                messageType = schemaJavaTypes.computeIfAbsent(schema.getParsedSchema(), k -> javaTypeOf(schema.getRawSchema()))
+                        .orElse(null);
             } else {
                 String javaType = serdeHeaders.getMessageType(headers);
-                messageType = javaType == null ? null : Utils.loadClass(javaType);
+                messageType = javaType == null ? null : headerJavaTypes.computeIfAbsent(javaType, Utils::loadClass);
             }
 
-            if (messageType == null) {
-                //TODO maybe warn there is no message type and the deserializer will return a JsonNode
-                return mapper.readTree(parser);
-            } else {
-                return mapper.readValue(parser, messageType);
+            if (!validate || !metricsEnabled) {
+                return readValue(parser, messageType);
+            }
+            // The data is validated while it is read
+            long validationStart = System.nanoTime();
+            boolean valid = false;
+            try {
+                T value = readValue(parser, messageType);
+                valid = true;
+                return value;
+            } finally {
+                metrics.recordValidation(System.nanoTime() - validationStart, valid);
             }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    private T readValue(JsonParser parser, Class<T> messageType) throws IOException {
+        if (messageType == null) {
+            //TODO maybe warn there is no message type and the deserializer will return a JsonNode
+            return mapper.readTree(parser);
+        } else {
+            return mapper.readValue(parser, messageType);
+        }
+    }
+
+    private Optional<Class<T>> javaTypeOf(byte[] rawSchema) {
+        JsonNode jsonSchema;
+        try {
+            jsonSchema = mapper.readTree(rawSchema);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        String javaType = null;
+        JsonNode javaTypeNode = jsonSchema.get("javaType");
+        if (javaTypeNode != null && !javaTypeNode.isNull()) {
+            javaType = javaTypeNode.textValue();
+        }
+        //TODO if javaType is null, maybe warn something like this?
+        //You can try configure the property \"apicurio.registry.serde.json-schema.java-type\" with the full class name to use for deserialization
+        return javaType == null ? Optional.empty() : Optional.of(Utils.loadClass(javaType));
+    }
+
 }
@@ -38,7 +38,8 @@ public class JsonSchemaKafkaDeserializerConfig extends BaseKafkaSerDeConfig {
         ConfigDef configDef = new ConfigDef()
                 .define(DESERIALIZER_SPECIFIC_KEY_RETURN_CLASS, Type.CLASS, null, Importance.MEDIUM, SPECIFIC_RETURN_CLASS_DOC)
                 .define(DESERIALIZER_SPECIFIC_VALUE_RETURN_CLASS, Type.CLASS, null, Importance.MEDIUM, SPECIFIC_RETURN_CLASS_DOC)
-                .define(VALIDATION_ENABLED, Type.BOOLEAN, VALIDATION_ENABLED_DEFAULT, Importance.MEDIUM, "Whether to validate the data against the json schema");
+                .define(VALIDATION_ENABLED, Type.BOOLEAN, VALIDATION_ENABLED_DEFAULT, Importance.MEDIUM, "Whether to validate the data against the json schema")
+                .define(VALIDATION_SAMPLE_RATE, Type.INT, VALIDATION_SAMPLE_RATE_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, "When validation is enabled, validate only one of every N records");
         return configDef;
     }
 
@@ -65,4 +66,8 @@ public class JsonSchemaKafkaDeserializerConfig extends BaseKafkaSerDeConfig {
     public boolean validationEnabled() {
         return this.getBoolean(VALIDATION_ENABLED);
     }
+
+    public int getValidationSampleRate() {
+        return this.getInt(VALIDATION_SAMPLE_RATE);
+    }
 }
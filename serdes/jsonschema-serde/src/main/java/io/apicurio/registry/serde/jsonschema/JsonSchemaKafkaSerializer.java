@@ -55,6 +55,7 @@ public class JsonSchemaKafkaSerializer<T> extends AbstractKafkaSerializer<Schema
 
     private Boolean validationEnabled;
     private MessageTypeSerdeHeaders serdeHeaders;
+    private ValidationSampler validationSampler = new ValidationSampler(1);
 
     public JsonSchemaKafkaSerializer() {
         super();
@@ -92,6 +93,8 @@ public class JsonSchemaKafkaSerializer<T> extends AbstractKafkaSerializer<Schema
         }
 
         serdeHeaders = new MessageTypeSerdeHeaders(new HashMap<>(configs), isKey);
+
+        validationSampler = new ValidationSampler(config.getValidationSampleRate());
     }
 
     public boolean isValidationEnabled() {
@@ -157,13 +160,26 @@ public class JsonSchemaKafkaSerializer<T> extends AbstractKafkaSerializer<Schema
     @Override
     protected void serializeData(Headers headers, ParsedSchema<SchemaValidator> schema, T data, OutputStream out) throws IOException {
         JsonGenerator generator = mapper.getFactory().createGenerator(out);
-        if (isValidationEnabled()) {
+        boolean validate = isValidationEnabled() && validationSampler.sample();
+        if (validate) {
             generator = api.decorateJsonGenerator(schema.getParsedSchema(), generator);
         }
         if (headers != null) {
             serdeHeaders.addMessageTypeHeader(headers, data.getClass().getName());
         }
-        mapper.writeValue(generator, data);
+        if (!validate || !metricsEnabled) {
+            mapper.writeValue(generator, data);
+            return;
+        }
+        // The data is validated while it is written
+        long start = System.nanoTime();
+        boolean valid = false;
+        try {
+            mapper.writeValue(generator, data);
+            valid = true;
+        } finally {
+            metrics.recordValidation(System.nanoTime() - start, valid);
+        }
     }
 
 }
@@ -33,7 +33,8 @@ public class JsonSchemaKafkaSerializerConfig extends BaseKafkaSerDeConfig {
 
     private static ConfigDef configDef() {
         ConfigDef configDef = new ConfigDef()
-                .define(VALIDATION_ENABLED, Type.BOOLEAN, VALIDATION_ENABLED_DEFAULT, Importance.MEDIUM, "Whether to validate the data against the json schema");
+                .define(VALIDATION_ENABLED, Type.BOOLEAN, VALIDATION_ENABLED_DEFAULT, Importance.MEDIUM, "Whether to validate the data against the json schema")
+                .define(VALIDATION_SAMPLE_RATE, Type.INT, VALIDATION_SAMPLE_RATE_DEFAULT, ConfigDef.Range.atLeast(1), Importance.LOW, "When validation is enabled, validate only one of every N records");
         return configDef;
     }
 
@@ -50,4 +51,8 @@ public class JsonSchemaKafkaSerializerConfig extends BaseKafkaSerDeConfig {
         return this.getBoolean(VALIDATION_ENABLED);
     }
 
+    public int getValidationSampleRate() {
+        return this.getInt(VALIDATION_SAMPLE_RATE);
+    }
+
 }
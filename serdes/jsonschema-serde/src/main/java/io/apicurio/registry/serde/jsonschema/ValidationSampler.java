@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.jsonschema;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which records are validated when validation is sampled, i.e. only one of every N records
+ * is validated.
+ */
+class ValidationSampler {
+
+    private final int sampleRate;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * Constructor.
+     * @param sampleRate validate one of every sampleRate records (1 or less validates every record)
+     */
+    ValidationSampler(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Returns true if the next record must be validated.
+     */
+    boolean sample() {
+        if (sampleRate <= 1) {
+            return true;
+        }
+        return counter.getAndIncrement() % sampleRate == 0;
+    }
+
+}
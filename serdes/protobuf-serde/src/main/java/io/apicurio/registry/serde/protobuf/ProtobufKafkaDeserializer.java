@@ -16,11 +16,8 @@
 
 package io.apicurio.registry.serde.protobuf;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
@@ -31,16 +28,20 @@ import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.header.Headers;
 
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FileDescriptor;
 import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.ExtensionRegistryLite;
 import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
 import io.apicurio.registry.rest.client.RegistryClient;
 import io.apicurio.registry.serde.AbstractKafkaDeserializer;
 import io.apicurio.registry.serde.ParsedSchema;
 import io.apicurio.registry.serde.SchemaParser;
 import io.apicurio.registry.serde.SchemaResolver;
+import io.apicurio.registry.serde.cache.WeakIdentityCache;
 import io.apicurio.registry.serde.protobuf.ref.RefOuterClass.Ref;
 import io.apicurio.registry.utils.protobuf.schema.ProtobufSchema;
 import io.apicurio.registry.serde.utils.Utils;
@@ -52,15 +53,24 @@ import io.apicurio.registry.serde.utils.Utils;
  */
 public class ProtobufKafkaDeserializer<U extends Message> extends AbstractKafkaDeserializer<ProtobufSchema, U> {
 
-    private static final String PROTOBUF_PARSE_METHOD = "parseFrom";
+    private static final String PROTOBUF_PARSER_METHOD = "parser";
+    private static final String PROTOBUF_DEFAULT_INSTANCE_METHOD = "getDefaultInstance";
+
+    // Cache key of the message type used when the data does not name one
+    private static final String FIRST_MESSAGE_TYPE = "";
 
     private ProtobufSchemaParser parser = new ProtobufSchemaParser();
 
     private Class<?> specificReturnClass;
-    private Method specificReturnClassParseMethod;
+    private Parser<?> specificReturnClassParser;
     private boolean deriveClass;
 
-    private Map<String, Method> parseMethodsCache = new ConcurrentHashMap<>();
+    private Map<String, Parser<?>> parsersCache = new ConcurrentHashMap<>();
+
+    // Message types by schema instance (i.e. by globalId, as the schema resolver caches one schema per
+    // globalId) and message name.  Message types do not reference the schema instance, so they are
+    // dropped along with the schema resolver's own cache entries.
+    private final WeakIdentityCache<ProtobufSchema, Map<String, MessageType>> messageTypesCache = new WeakIdentityCache<>();
 
     private ProtobufSerdeHeaders serdeHeaders;
 
@@ -90,12 +100,10 @@ public class ProtobufKafkaDeserializer<U extends Message> extends AbstractKafkaD
         specificReturnClass = config.getSpecificReturnClass();
         try {
             if (specificReturnClass != null) {
-                if (specificReturnClass.equals(DynamicMessage.class)) {
-                    this.specificReturnClassParseMethod = specificReturnClass.getDeclaredMethod(PROTOBUF_PARSE_METHOD, Descriptor.class, InputStream.class);
-                } else if (!specificReturnClass.equals(Object.class)) {
-                    this.specificReturnClassParseMethod = specificReturnClass.getDeclaredMethod(PROTOBUF_PARSE_METHOD, InputStream.class);
-                } else {
+                if (specificReturnClass.equals(Object.class)) {
                     throw new ConfigException("Class " + specificReturnClass.getCanonicalName() + " is not a valid protobuf message class");
+                } else if (!specificReturnClass.equals(DynamicMessage.class)) {
+                    this.specificReturnClassParser = parserOf(specificReturnClass);
                 }
             }
         } catch (Exception e) {
@@ -134,72 +142,101 @@ public class ProtobufKafkaDeserializer<U extends Message> extends AbstractKafkaD
     @SuppressWarnings("unchecked")
     protected U internalReadData(Headers headers, ParsedSchema<ProtobufSchema> schema, ByteBuffer buff, int start, int length) {
         try {
-            byte[] bytes = new byte[length];
-            System.arraycopy(buff.array(), start, bytes, 0, length);
-
-            ByteArrayInputStream is = new ByteArrayInputStream(bytes);
+            // Parse straight from the record's bytes, without copying them
+            CodedInputStream input = CodedInputStream.newInstance(buff.array(), start, length);
 
-            Descriptor descriptor = null;
+            MessageType messageType = null;
             if (headers != null) {
                 String messageTypeName = serdeHeaders.getProtobufTypeName(headers);
                 if (messageTypeName != null) {
-                    descriptor = schema.getParsedSchema().getFileDescriptor().findMessageTypeByName(messageTypeName);
+                    messageType = getMessageType(schema.getParsedSchema(), messageTypeName);
                 }
             }
-            if (descriptor == null){
+            if (messageType == null) {
                 try {
-                    Ref ref = Ref.parseDelimitedFrom(is);
-                    descriptor = schema.getParsedSchema().getFileDescriptor().findMessageTypeByName(ref.getName());
+                    Ref ref = input.readMessage(Ref.parser(), ExtensionRegistryLite.getEmptyRegistry());
+                    messageType = getMessageType(schema.getParsedSchema(), ref.getName());
+                    if (messageType == null) {
+                        throw new SerializationException("Message type " + ref.getName() + " not found in schema");
+                    }
                 } catch (IOException e) {
-                    is = new ByteArrayInputStream(bytes);
+                    input = CodedInputStream.newInstance(buff.array(), start, length);
                     //use the first message type found
-                    descriptor = schema.getParsedSchema().getFileDescriptor().getMessageTypes().get(0);
+                    messageType = getMessageType(schema.getParsedSchema(), FIRST_MESSAGE_TYPE);
                 }
             }
 
-            if (specificReturnClassParseMethod != null) {
-                try {
-                    if (specificReturnClass.equals(DynamicMessage.class)) {
-                        return (U) specificReturnClassParseMethod.invoke(null, descriptor, is);
-                    }
-                    return (U) specificReturnClassParseMethod.invoke(null, is);
-                } catch (Exception e) {
-                    throw new ConfigException("Not a valid protobuf builder", e);
+            if (specificReturnClass != null) {
+                if (specificReturnClassParser == null) {
+                    return (U) DynamicMessage.parseFrom(messageType.descriptor, input);
                 }
+                return (U) specificReturnClassParser.parseFrom(input);
             } else if (deriveClass) {
-                String className = deriveClassFromDescriptor(descriptor);
-                if (className != null) {
-                    return invokeParseMethod(is, className);
+                if (messageType.derivedClassParser != null) {
+                    return (U) messageType.derivedClassParser.parseFrom(input);
                 }
             } else if (headers != null) {
                 String messageTypeHeader = serdeHeaders.getMessageType(headers);
                 if (messageTypeHeader != null) {
-                    return invokeParseMethod(is, messageTypeHeader);
+                    return (U) getParser(messageTypeHeader).parseFrom(input);
                 }
             }
 
-            return (U) DynamicMessage.parseFrom(descriptor, is);
+            return (U) DynamicMessage.parseFrom(messageType.descriptor, input);
 
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private U invokeParseMethod(InputStream buffer, String className) {
-        try {
-            Method parseMethod = parseMethodsCache.computeIfAbsent(className, k -> {
-                Class<?> protobufClass = Utils.loadClass(className);
-                try {
-                    return protobufClass.getDeclaredMethod(PROTOBUF_PARSE_METHOD, InputStream.class);
-                } catch (NoSuchMethodException | SecurityException e) {
-                    throw new SerializationException("Class " + className + " is not a valid protobuf message class", e);
+    /**
+     * Returns the message type with the given name (or the first message type of the schema, for
+     * {@link #FIRST_MESSAGE_TYPE}), or null if the schema does not define it.
+     */
+    private MessageType getMessageType(ProtobufSchema schema, String name) {
+        Map<String, MessageType> byName = messageTypesCache.computeIfAbsent(schema, k -> new ConcurrentHashMap<>());
+        MessageType messageType = byName.get(name);
+        if (messageType == null) {
+            FileDescriptor fileDescriptor = schema.getFileDescriptor();
+            Descriptor descriptor = FIRST_MESSAGE_TYPE.equals(name) ? fileDescriptor.getMessageTypes().get(0) : fileDescriptor.findMessageTypeByName(name);
+            if (descriptor == null) {
+                return null;
+            }
+            Parser<?> derivedClassParser = null;
+            if (deriveClass) {
+                String className = deriveClassFromDescriptor(descriptor);
+                if (className != null) {
+                    derivedClassParser = getParser(className);
                 }
-            });
-            return (U) parseMethod.invoke(null, buffer);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            parseMethodsCache.remove(className);
-            throw new SerializationException("Not a valid protobuf builder", e);
+            }
+            messageType = new MessageType(descriptor, derivedClassParser);
+            byName.put(name, messageType);
+        }
+        return messageType;
+    }
+
+    private Parser<?> getParser(String className) {
+        return parsersCache.computeIfAbsent(className, k -> {
+            Class<?> protobufClass = Utils.loadClass(className);
+            try {
+                return parserOf(protobufClass);
+            } catch (ReflectiveOperationException | SecurityException | ClassCastException e) {
+                throw new SerializationException("Class " + className + " is not a valid protobuf message class", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the parser of the given generated message class, so messages are parsed without reflection.
+     */
+    private static Parser<?> parserOf(Class<?> protobufClass) throws ReflectiveOperationException {
+        try {
+            Method parserMethod = protobufClass.getMethod(PROTOBUF_PARSER_METHOD);
+            return (Parser<?>) parserMethod.invoke(null);
+        } catch (NoSuchMethodException e) {
+            // Older generated code does not have the static parser() method
+            Method defaultInstanceMethod = protobufClass.getMethod(PROTOBUF_DEFAULT_INSTANCE_METHOD);
+            return ((Message) defaultInstanceMethod.invoke(null)).getParserForType();
         }
     }
 
@@ -232,4 +269,16 @@ public class ProtobufKafkaDeserializer<U extends Message> extends AbstractKafkaD
         return p + d1 + outer + d2 + inner;
       }
 
+    private static class MessageType {
+
+        private final Descriptor descriptor;
+        // Parser of the class derived from the descriptor, if any
+        private final Parser<?> derivedClassParser;
+
+        MessageType(Descriptor descriptor, Parser<?> derivedClassParser) {
+            this.descriptor = descriptor;
+            this.derivedClassParser = derivedClassParser;
+        }
+    }
+
 }
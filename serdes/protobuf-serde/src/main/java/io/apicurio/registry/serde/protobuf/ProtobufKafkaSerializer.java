@@ -16,16 +16,22 @@
 
 package io.apicurio.registry.serde.protobuf;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.header.Headers;
 
 import com.squareup.wire.schema.internal.parser.ProtoFileElement;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FileDescriptor;
 import com.google.protobuf.Message;
 
 import io.apicurio.registry.protobuf.ProtobufDifference;
@@ -35,8 +41,10 @@ import io.apicurio.registry.rules.compatibility.protobuf.ProtobufCompatibilityCh
 import io.apicurio.registry.serde.AbstractKafkaSerializer;
 import io.apicurio.registry.serde.ParsedSchema;
 import io.apicurio.registry.serde.ParsedSchemaImpl;
+import io.apicurio.registry.serde.SchemaLookupResult;
 import io.apicurio.registry.serde.SchemaParser;
 import io.apicurio.registry.serde.SchemaResolver;
+import io.apicurio.registry.serde.cache.WeakIdentityCache;
 import io.apicurio.registry.serde.protobuf.ref.RefOuterClass.Ref;
 import io.apicurio.registry.utils.protobuf.schema.ProtobufSchema;
 import io.apicurio.registry.serde.strategy.ArtifactResolverStrategy;
@@ -54,6 +62,14 @@ public class ProtobufKafkaSerializer<U extends Message> extends AbstractKafkaSer
     private ProtobufSerdeHeaders serdeHeaders;
     private ProtobufSchemaParser parser = new ProtobufSchemaParser();
 
+    // Schemas rendered from the file descriptors of the data, by file descriptor instance.  The cached
+    // values do not reference the descriptors, so they are dropped along with them.
+    private final WeakIdentityCache<FileDescriptor, RenderedSchema> renderedSchemas = new WeakIdentityCache<>();
+
+    // Per message type (descriptor instance) data: its serialized reference and, when the lookups are
+    // cacheable, the resolved schemas by topic.
+    private final WeakIdentityCache<Descriptor, MessageTypeInfo> messageTypes = new WeakIdentityCache<>();
+
     public ProtobufKafkaSerializer() {
         super();
     }
@@ -95,14 +111,42 @@ public class ProtobufKafkaSerializer<U extends Message> extends AbstractKafkaSer
      */
     @Override
     protected ParsedSchema<ProtobufSchema> getSchemaFromData(U data) {
-        ProtoFileElement protoFileElement = parser.toProtoFileElement(data.getDescriptorForType().getFile());
-        ProtobufSchema protobufSchema = new ProtobufSchema(data.getDescriptorForType().getFile(), protoFileElement);
-
-        byte[] rawSchema = IoUtil.toBytes(protoFileElement.toSchema());
+        FileDescriptor fileDescriptor = data.getDescriptorForType().getFile();
+        RenderedSchema rendered = getRenderedSchema(fileDescriptor);
+        ProtobufSchema protobufSchema = new ProtobufSchema(fileDescriptor, rendered.protoFileElement);
 
         return new ParsedSchemaImpl<ProtobufSchema>()
                 .setParsedSchema(protobufSchema)
-                .setRawSchema(rawSchema);
+                .setRawSchema(rendered.rawSchema);
+    }
+
+    /**
+     * Avoids rendering the schema of the data (to look it up by content) for every record, by caching the
+     * lookup results by message type.
+     * @see io.apicurio.registry.serde.AbstractKafkaSerializer#resolveSchema(java.lang.String, org.apache.kafka.common.header.Headers, java.lang.Object, io.apicurio.registry.serde.ParsedSchema)
+     */
+    @Override
+    protected SchemaLookupResult<ProtobufSchema> resolveSchema(String topic, Headers headers, U data, ParsedSchema<ProtobufSchema> schemaFromData) {
+        if (topic == null || !getSchemaResolver().isSchemaLookupCacheable()) {
+            return super.resolveSchema(topic, headers, data, schemaFromData);
+        }
+        Map<String, WeakReference<SchemaLookupResult<ProtobufSchema>>> byTopic = getMessageTypeInfo(data.getDescriptorForType()).lookups;
+        WeakReference<SchemaLookupResult<ProtobufSchema>> cached = byTopic.get(topic);
+        SchemaLookupResult<ProtobufSchema> result = cached == null ? null : cached.get();
+        if (result == null) {
+            result = super.resolveSchema(topic, headers, data, schemaFromData);
+            byTopic.put(topic, new WeakReference<>(result));
+        }
+        return result;
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.AbstractKafkaSerDe#reset()
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        messageTypes.clear();
     }
 
     /**
@@ -119,12 +163,15 @@ public class ProtobufKafkaSerializer<U extends Message> extends AbstractKafkaSer
     @Override
     protected void serializeData(Headers headers, ParsedSchema<ProtobufSchema> schema, U data, OutputStream out) throws IOException {
         if (validationEnabled) {
+            long start = metricsEnabled ? System.nanoTime() : 0;
 
             if (schema.getParsedSchema() != null && schema.getParsedSchema().getFileDescriptor().findMessageTypeByName(data.getDescriptorForType().getName()) == null) {
+                recordValidation(start, false);
                 throw new SerializationException("Missing message type " + data.getDescriptorForType().getName() + " in the protobuf schema");
             }
 
             List<ProtobufDifference> diffs = validate(schema, data);
+            recordValidation(start, diffs.isEmpty());
             if (!diffs.isEmpty()) {
                 throw new SerializationException("The data to send is not compatible with the schema. " + diffs);
             }
@@ -135,20 +182,79 @@ public class ProtobufKafkaSerializer<U extends Message> extends AbstractKafkaSer
             serdeHeaders.addMessageTypeHeader(headers, data.getClass().getName());
             serdeHeaders.addProtobufTypeNameHeader(headers, data.getDescriptorForType().getName());
         } else {
-            Ref ref = Ref.newBuilder()
-                    .setName(data.getDescriptorForType().getName())
-                    .build();
-            ref.writeDelimitedTo(out);
+            out.write(getMessageTypeInfo(data.getDescriptorForType()).ref);
         }
 
         data.writeTo(out);
     }
 
+    private void recordValidation(long start, boolean valid) {
+        if (metricsEnabled) {
+            metrics.recordValidation(System.nanoTime() - start, valid);
+        }
+    }
+
     private List<ProtobufDifference> validate(ParsedSchema<ProtobufSchema> schemaFromRegistry, U data) {
-        ProtobufFile fileBefore = schemaFromRegistry.getParsedSchema().getProtobufFile();
-        ProtobufFile fileAfter = new ProtobufFile(parser.toProtoFileElement(data.getDescriptorForType().getFile()));
-        ProtobufCompatibilityCheckerLibrary checker = new ProtobufCompatibilityCheckerLibrary(fileBefore, fileAfter);
-        return checker.findDifferences();
+        RenderedSchema rendered = getRenderedSchema(data.getDescriptorForType().getFile());
+        // The differences only depend on the two schemas, so they are computed once per registry schema instance
+        return rendered.differences.computeIfAbsent(schemaFromRegistry.getParsedSchema(), schemaBefore -> {
+            ProtobufFile fileBefore = schemaBefore.getProtobufFile();
+            ProtobufFile fileAfter = rendered.getProtobufFile();
+            ProtobufCompatibilityCheckerLibrary checker = new ProtobufCompatibilityCheckerLibrary(fileBefore, fileAfter);
+            return checker.findDifferences();
+        });
+    }
+
+    private RenderedSchema getRenderedSchema(FileDescriptor fileDescriptor) {
+        return renderedSchemas.computeIfAbsent(fileDescriptor, fd -> new RenderedSchema(parser.toProtoFileElement(fd)));
+    }
+
+    private MessageTypeInfo getMessageTypeInfo(Descriptor descriptor) {
+        return messageTypes.computeIfAbsent(descriptor, MessageTypeInfo::new);
+    }
+
+    private static class RenderedSchema {
+
+        private final ProtoFileElement protoFileElement;
+        private final byte[] rawSchema;
+        private volatile ProtobufFile protobufFile;
+        private final WeakIdentityCache<ProtobufSchema, List<ProtobufDifference>> differences = new WeakIdentityCache<>();
+
+        RenderedSchema(ProtoFileElement protoFileElement) {
+            this.protoFileElement = protoFileElement;
+            this.rawSchema = IoUtil.toBytes(protoFileElement.toSchema());
+        }
+
+        ProtobufFile getProtobufFile() {
+            ProtobufFile file = protobufFile;
+            if (file == null) {
+                file = new ProtobufFile(protoFileElement);
+                protobufFile = file;
+            }
+            return file;
+        }
+    }
+
+    private static class MessageTypeInfo {
+
+        private final byte[] ref;
+        private final Map<String, WeakReference<SchemaLookupResult<ProtobufSchema>>> lookups = new ConcurrentHashMap<>();
+
+        MessageTypeInfo(Descriptor descriptor) {
+            this.ref = toDelimitedBytes(Ref.newBuilder()
+                    .setName(descriptor.getName())
+                    .build());
+        }
+
+        private static byte[] toDelimitedBytes(Ref ref) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                ref.writeDelimitedTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
     }
 
 }
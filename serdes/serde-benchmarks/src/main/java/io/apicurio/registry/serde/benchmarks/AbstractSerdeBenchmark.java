@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.AbstractKafkaDeserializer;
+import io.apicurio.registry.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.serde.SerdeConfig;
+
+/**
+ * Serializes and deserializes one record with a serializer/deserializer pair connected to a
+ * {@link StubRegistryClient}, for every combination of:
+ * <ul>
+ * <li>payload size, see {@link PayloadSize}</li>
+ * <li>cache: "warm" reuses the schemas cached by the resolver, "cold" clears the resolver caches before every
+ * record, so every record is resolved from the (in-process) registry and its schema parsed again</li>
+ * <li>id handling: the schema id is passed either after the magic byte in the record or in the record headers</li>
+ * </ul>
+ * The size of the serialized records is reported as the "bytes" secondary result, in bytes per millisecond like
+ * the score, so the bytes per record are the "bytes" result divided by the score.
+ *
+ * @param <S> the schema type
+ * @param <T> the record type
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class AbstractSerdeBenchmark<S, T> {
+
+    protected static final String TOPIC = "orders";
+
+    public static final String CACHE_WARM = "warm";
+    public static final String CACHE_COLD = "cold";
+    public static final String ID_MAGIC_BYTE = "magic-byte";
+    public static final String ID_HEADERS = "headers";
+
+    @Param({ "SMALL", "MEDIUM", "LARGE" })
+    public PayloadSize size;
+
+    @Param({ CACHE_WARM, CACHE_COLD })
+    public String cache;
+
+    @Param({ ID_MAGIC_BYTE, ID_HEADERS })
+    public String idHandling;
+
+    private boolean cold;
+    private boolean headersEnabled;
+
+    private AbstractKafkaSerializer<S, T> serializer;
+    private AbstractKafkaDeserializer<S, T> deserializer;
+
+    private T record;
+    private byte[] serialized;
+    private Headers serializedHeaders;
+
+    @Setup
+    public void setup() {
+        cold = CACHE_COLD.equals(cache);
+        headersEnabled = ID_HEADERS.equals(idHandling);
+
+        RegistryClient client = StubRegistryClient.create();
+        register(client);
+
+        Map<String, Object> config = new HashMap<>();
+        config.put(SerdeConfig.ENABLE_HEADERS, headersEnabled);
+        configure(config);
+
+        serializer = createSerializer(client);
+        serializer.configure(config, false);
+        deserializer = createDeserializer(client);
+        deserializer.configure(config, false);
+
+        record = createRecord(size);
+        serializedHeaders = headersEnabled ? new RecordHeaders() : null;
+        serialized = serializer.serialize(TOPIC, serializedHeaders, record);
+    }
+
+    @Benchmark
+    public Object serialize(RecordBytes recordBytes) {
+        if (cold) {
+            serializer.reset();
+        }
+        byte[] bytes = serializer.serialize(TOPIC, headersEnabled ? new RecordHeaders() : null, record);
+        recordBytes.bytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object deserialize(RecordBytes recordBytes) {
+        if (cold) {
+            deserializer.reset();
+        }
+        recordBytes.bytes += serialized.length;
+        return deserializer.deserialize(TOPIC, serializedHeaders, serialized);
+    }
+
+    /**
+     * Registers the schemas the serializer expects to find in the registry, if any.
+     * @param client
+     */
+    protected void register(RegistryClient client) {
+    }
+
+    /**
+     * Adds the configuration specific to the format.
+     * @param config
+     */
+    protected void configure(Map<String, Object> config) {
+    }
+
+    protected abstract AbstractKafkaSerializer<S, T> createSerializer(RegistryClient client);
+
+    protected abstract AbstractKafkaDeserializer<S, T> createDeserializer(RegistryClient client);
+
+    protected abstract T createRecord(PayloadSize size);
+
+    /**
+     * Counts the bytes of the records serialized or deserialized, reported by JMH next to the score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class RecordBytes {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.apicurio.registry.utils.converter.avro.AvroData;
+
+/**
+ * Converts schemas between Connect and Avro with a single {@link AvroData} instance shared by all the
+ * benchmark threads, the way the Connect tasks of a worker share a converter, with the schemas already
+ * cached.  This measures how the schema caches scale with the number of threads, for:
+ * <ul>
+ * <li>schemas: the number of distinct schemas converted, 1 being the worst case, where every thread reads
+ * the same cache entry</li>
+ * </ul>
+ *
+ * Run with {@link #main(String[])} to repeat the benchmarks with 1 to 32 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvroDataBenchmark {
+
+    public static final String DEFAULT_RESULT = "avro-data-benchmarks.json";
+    public static final int[] THREADS = { 1, 2, 4, 8, 16, 32 };
+
+    @Param({ "1", "100" })
+    public int schemas;
+
+    private AvroData avroData;
+    private Schema[] connectSchemas;
+    private org.apache.avro.Schema[] avroSchemas;
+
+    @Setup
+    public void setup() {
+        avroData = new AvroData(1000);
+        connectSchemas = new Schema[schemas];
+        avroSchemas = new org.apache.avro.Schema[schemas];
+        for (int idx = 0; idx < schemas; idx++) {
+            connectSchemas[idx] = SchemaBuilder.struct()
+                    .name("io.apicurio.registry.serde.benchmarks.Order" + idx)
+                    .field("id", Schema.STRING_SCHEMA)
+                    .field("customer", Schema.STRING_SCHEMA)
+                    .field("quantity", Schema.INT32_SCHEMA)
+                    .field("price", Schema.FLOAT64_SCHEMA)
+                    .field("tags", SchemaBuilder.array(Schema.STRING_SCHEMA).build())
+                    .build();
+            avroSchemas[idx] = avroData.fromConnectSchema(connectSchemas[idx]);
+            avroData.toConnectSchema(avroSchemas[idx]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        int next(int size) {
+            int idx = next;
+            next = idx + 1 == size ? 0 : idx + 1;
+            return idx;
+        }
+    }
+
+    @Benchmark
+    public org.apache.avro.Schema fromConnectSchema(Cursor cursor) {
+        return avroData.fromConnectSchema(connectSchemas[cursor.next(schemas)]);
+    }
+
+    @Benchmark
+    public Schema toConnectSchema(Cursor cursor) {
+        return avroData.toConnectSchema(avroSchemas[cursor.next(schemas)]);
+    }
+
+    /**
+     * Runs the benchmarks once for every number of threads in {@link #THREADS} (or only with the number of
+     * threads given with -t) and writes all the results as JSON (to avro-data-benchmarks.json unless a result
+     * file is given with -rff).
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        int[] threads = commandLine.getThreads().hasValue() ? new int[] { commandLine.getThreads().get() } : THREADS;
+        String result = commandLine.getResult().orElse(DEFAULT_RESULT);
+
+        // Every run writes its own results (the command line may ask for a result file), only keep them all together
+        Path runResult = Files.createTempFile("avro-data-benchmark", ".txt");
+        List<RunResult> results = new ArrayList<>();
+        try {
+            for (int count : threads) {
+                ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine)
+                        .threads(count)
+                        .resultFormat(ResultFormatType.TEXT)
+                        .result(runResult.toString());
+                if (commandLine.getIncludes().isEmpty()) {
+                    options.include(AvroDataBenchmark.class.getName());
+                }
+                results.addAll(new Runner(options.build()).run());
+            }
+        } finally {
+            Files.deleteIfExists(runResult);
+        }
+        ResultFormatFactory.getInstance(commandLine.getResultFormat().orElse(ResultFormatType.JSON), result)
+                .writeOut(results);
+    }
+
+}
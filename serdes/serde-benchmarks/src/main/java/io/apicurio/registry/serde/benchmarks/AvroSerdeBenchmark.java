@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.AbstractKafkaDeserializer;
+import io.apicurio.registry.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.serde.SerdeConfig;
+import io.apicurio.registry.serde.avro.AvroKafkaDeserializer;
+import io.apicurio.registry.serde.avro.AvroKafkaSerializer;
+
+/**
+ * Avro serializer/deserializer, with generic records.  The serializer registers the schema of the records.
+ */
+public class AvroSerdeBenchmark extends AbstractSerdeBenchmark<Schema, GenericRecord> {
+
+    private static final Schema ORDER = new Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Order\","
+            + "\"namespace\":\"io.apicurio.registry.serde.benchmarks.avro\",\"fields\":["
+            + "{\"name\":\"id\",\"type\":\"string\"},"
+            + "{\"name\":\"customer\",\"type\":\"string\"},"
+            + "{\"name\":\"createdOn\",\"type\":\"long\"},"
+            + "{\"name\":\"items\",\"type\":{\"type\":\"array\",\"items\":{\"type\":\"record\",\"name\":\"Item\",\"fields\":["
+            + "{\"name\":\"sku\",\"type\":\"string\"},"
+            + "{\"name\":\"quantity\",\"type\":\"int\"},"
+            + "{\"name\":\"price\",\"type\":\"double\"},"
+            + "{\"name\":\"description\",\"type\":\"string\"}]}}}]}");
+
+    @Override
+    protected void configure(Map<String, Object> config) {
+        config.put(SerdeConfig.AUTO_REGISTER_ARTIFACT, true);
+    }
+
+    @Override
+    protected AbstractKafkaSerializer<Schema, GenericRecord> createSerializer(RegistryClient client) {
+        return new AvroKafkaSerializer<>(client);
+    }
+
+    @Override
+    protected AbstractKafkaDeserializer<Schema, GenericRecord> createDeserializer(RegistryClient client) {
+        return new AvroKafkaDeserializer<>(client);
+    }
+
+    @Override
+    protected GenericRecord createRecord(PayloadSize size) {
+        Schema itemSchema = ORDER.getField("items").schema().getElementType();
+        List<GenericRecord> items = new ArrayList<>(size.items());
+        for (int idx = 0; idx < size.items(); idx++) {
+            GenericRecord item = new GenericData.Record(itemSchema);
+            item.put("sku", PayloadSize.sku(idx));
+            item.put("quantity", PayloadSize.quantity(idx));
+            item.put("price", PayloadSize.price(idx));
+            item.put("description", PayloadSize.DESCRIPTION);
+            items.add(item);
+        }
+        GenericRecord order = new GenericData.Record(ORDER);
+        order.put("id", "order-1");
+        order.put("customer", "customer-1");
+        order.put("createdOn", 1625097600000L);
+        order.put("items", items);
+        return order;
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.worldturner.medeia.schema.validation.SchemaValidator;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.AbstractKafkaDeserializer;
+import io.apicurio.registry.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.serde.SerdeConfig;
+import io.apicurio.registry.serde.benchmarks.json.Item;
+import io.apicurio.registry.serde.benchmarks.json.Order;
+import io.apicurio.registry.serde.jsonschema.JsonSchemaKafkaDeserializer;
+import io.apicurio.registry.serde.jsonschema.JsonSchemaKafkaSerializer;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.IoUtil;
+
+/**
+ * JSON Schema serializer/deserializer, with Java beans and validation enabled (the default).  The schema is
+ * registered before the benchmark, as the serializer does not register JSON schemas.
+ */
+public class JsonSchemaSerdeBenchmark extends AbstractSerdeBenchmark<SchemaValidator, Order> {
+
+    private static final String ORDER_SCHEMA = "{\"$schema\":\"http://json-schema.org/draft-07/schema#\","
+            + "\"title\":\"Order\",\"type\":\"object\",\"properties\":{"
+            + "\"id\":{\"type\":\"string\"},"
+            + "\"customer\":{\"type\":\"string\"},"
+            + "\"createdOn\":{\"type\":\"integer\"},"
+            + "\"items\":{\"type\":\"array\",\"items\":{\"type\":\"object\",\"properties\":{"
+            + "\"sku\":{\"type\":\"string\"},"
+            + "\"quantity\":{\"type\":\"integer\",\"minimum\":1},"
+            + "\"price\":{\"type\":\"number\"},"
+            + "\"description\":{\"type\":\"string\"}},"
+            + "\"required\":[\"sku\",\"quantity\",\"price\"]}}},"
+            + "\"required\":[\"id\",\"customer\",\"items\"]}";
+
+    @Override
+    protected void register(RegistryClient client) {
+        // Where the default (topic) artifact resolver strategy looks for the schema of the record values
+        StubRegistryClient.register(client, null, TOPIC + "-value", ArtifactType.JSON, IoUtil.toBytes(ORDER_SCHEMA));
+    }
+
+    @Override
+    protected void configure(Map<String, Object> config) {
+        config.put(SerdeConfig.DESERIALIZER_SPECIFIC_VALUE_RETURN_CLASS, Order.class);
+    }
+
+    @Override
+    protected AbstractKafkaSerializer<SchemaValidator, Order> createSerializer(RegistryClient client) {
+        return new JsonSchemaKafkaSerializer<>(client);
+    }
+
+    @Override
+    protected AbstractKafkaDeserializer<SchemaValidator, Order> createDeserializer(RegistryClient client) {
+        return new JsonSchemaKafkaDeserializer<>(client);
+    }
+
+    @Override
+    protected Order createRecord(PayloadSize size) {
+        List<Item> items = new ArrayList<>(size.items());
+        for (int idx = 0; idx < size.items(); idx++) {
+            Item item = new Item();
+            item.setSku(PayloadSize.sku(idx));
+            item.setQuantity(PayloadSize.quantity(idx));
+            item.setPrice(PayloadSize.price(idx));
+            item.setDescription(PayloadSize.DESCRIPTION);
+            items.add(item);
+        }
+        Order order = new Order();
+        order.setId("order-1");
+        order.setCustomer("customer-1");
+        order.setCreatedOn(1625097600000L);
+        order.setItems(items);
+        return order;
+    }
+
+}
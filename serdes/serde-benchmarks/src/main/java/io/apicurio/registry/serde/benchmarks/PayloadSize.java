@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.benchmarks;
+
+/**
+ * Sizes of the records used by the benchmarks: an order with 1, 20 or 1000 items, roughly 100 bytes,
+ * 2 KB and 100 KB once serialized.
+ */
+public enum PayloadSize {
+
+    SMALL(1), MEDIUM(20), LARGE(1000);
+
+    static final String DESCRIPTION = "Stainless steel water bottle, 750 ml, keeps drinks cold for 24 hours";
+
+    private final int items;
+
+    PayloadSize(int items) {
+        this.items = items;
+    }
+
+    /**
+     * Returns the number of items of the order.
+     */
+    public int items() {
+        return items;
+    }
+
+    static String sku(int item) {
+        return "SKU-" + (100000 + item);
+    }
+
+    static int quantity(int item) {
+        return item % 10 + 1;
+    }
+
+    static double price(int item) {
+        return 1.25 * (item + 1);
+    }
+
+}
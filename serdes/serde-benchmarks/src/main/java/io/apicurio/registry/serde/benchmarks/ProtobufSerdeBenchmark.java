@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.benchmarks;
+
+import java.util.Map;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.AbstractKafkaDeserializer;
+import io.apicurio.registry.serde.AbstractKafkaSerializer;
+import io.apicurio.registry.serde.SerdeConfig;
+import io.apicurio.registry.serde.benchmarks.proto.OrderProtos.Item;
+import io.apicurio.registry.serde.benchmarks.proto.OrderProtos.Order;
+import io.apicurio.registry.serde.protobuf.ProtobufKafkaDeserializer;
+import io.apicurio.registry.serde.protobuf.ProtobufKafkaSerializer;
+import io.apicurio.registry.utils.protobuf.schema.ProtobufSchema;
+
+/**
+ * Protobuf serializer/deserializer, with generated classes.  The serializer registers the schema of the records.
+ */
+public class ProtobufSerdeBenchmark extends AbstractSerdeBenchmark<ProtobufSchema, Order> {
+
+    @Override
+    protected void configure(Map<String, Object> config) {
+        config.put(SerdeConfig.AUTO_REGISTER_ARTIFACT, true);
+        config.put(SerdeConfig.DESERIALIZER_SPECIFIC_VALUE_RETURN_CLASS, Order.class);
+    }
+
+    @Override
+    protected AbstractKafkaSerializer<ProtobufSchema, Order> createSerializer(RegistryClient client) {
+        return new ProtobufKafkaSerializer<>(client);
+    }
+
+    @Override
+    protected AbstractKafkaDeserializer<ProtobufSchema, Order> createDeserializer(RegistryClient client) {
+        return new ProtobufKafkaDeserializer<>(client);
+    }
+
+    @Override
+    protected Order createRecord(PayloadSize size) {
+        Order.Builder order = Order.newBuilder()
+                .setId("order-1")
+                .setCustomer("customer-1")
+                .setCreatedOn(1625097600000L);
+        for (int idx = 0; idx < size.items(); idx++) {
+            order.addItems(Item.newBuilder()
+                    .setSku(PayloadSize.sku(idx))
+                    .setQuantity(PayloadSize.quantity(idx))
+                    .setPrice(PayloadSize.price(idx))
+                    .setDescription(PayloadSize.DESCRIPTION));
+        }
+        return order.build();
+    }
+
+}
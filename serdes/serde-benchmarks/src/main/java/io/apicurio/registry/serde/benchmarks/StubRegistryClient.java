@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.rest.client.exception.ArtifactNotFoundException;
+import io.apicurio.registry.rest.v2.beans.ArtifactMetaData;
+import io.apicurio.registry.rest.v2.beans.Error;
+import io.apicurio.registry.rest.v2.beans.VersionMetaData;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.utils.IoUtil;
+
+/**
+ * In-process fake of the registry, implementing the {@link RegistryClient} calls made by the schema resolvers.
+ * Every artifact version gets its own globalId and contentId, and versions are numbered from 1.  Lookups are
+ * linear scans, which is fine for the handful of artifacts used by the benchmarks.
+ */
+public class StubRegistryClient implements InvocationHandler {
+
+    private static final String DEFAULT_GROUP = "default";
+
+    private final List<StoredVersion> versions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Returns a new, empty, registry.
+     */
+    public static RegistryClient create() {
+        return (RegistryClient) Proxy.newProxyInstance(StubRegistryClient.class.getClassLoader(),
+                new Class<?>[] { RegistryClient.class }, new StubRegistryClient());
+    }
+
+    /**
+     * Adds a version of the given artifact to the given registry (returned by {@link #create()}).
+     */
+    public static ArtifactMetaData register(RegistryClient client, String groupId, String artifactId, ArtifactType type, byte[] content) {
+        return ((StubRegistryClient) Proxy.getInvocationHandler(client)).createArtifact(groupId, artifactId, type, content);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "createArtifact":
+                if (args.length == 7) {
+                    return createArtifact((String) args[0], (String) args[1], (ArtifactType) args[3], read((InputStream) args[6]));
+                }
+                break;
+            case "getArtifactVersionMetaDataByContent":
+                if (args.length == 4) {
+                    byte[] content = read((InputStream) args[3]);
+                    return toVersionMetaData(find((String) args[0], (String) args[1], v -> Arrays.equals(v.content, content)));
+                }
+                break;
+            case "getArtifactMetaData":
+                return toArtifactMetaData(latest((String) args[0], (String) args[1]));
+            case "getArtifactVersionMetaData":
+                return toVersionMetaData(find((String) args[0], (String) args[1], v -> v.version.equals(args[2])));
+            case "getLatestArtifact":
+                return new ByteArrayInputStream(latest((String) args[0], (String) args[1]).content);
+            case "getContentByGlobalId":
+                return new ByteArrayInputStream(byId(v -> v.globalId == (Long) args[0]).content);
+            case "getContentById":
+                return new ByteArrayInputStream(byId(v -> v.contentId == (Long) args[0]).content);
+            case "close":
+                return null;
+            case "toString":
+                return "StubRegistryClient";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                break;
+        }
+        throw new UnsupportedOperationException("Not implemented by the stub registry: " + method);
+    }
+
+    private synchronized ArtifactMetaData createArtifact(String groupId, String artifactId, ArtifactType type, byte[] content) {
+        String group = groupOf(groupId);
+        StoredVersion latest = null;
+        for (StoredVersion stored : versions) {
+            if (stored.matches(group, artifactId)) {
+                if (Arrays.equals(stored.content, content)) {
+                    return toArtifactMetaData(stored);
+                }
+                latest = stored;
+            }
+        }
+        int version = latest == null ? 1 : Integer.parseInt(latest.version) + 1;
+        long id = versions.size() + 1;
+        StoredVersion created = new StoredVersion(group, artifactId, String.valueOf(version), type, content, id, id);
+        versions.add(created);
+        return toArtifactMetaData(created);
+    }
+
+    private StoredVersion latest(String groupId, String artifactId) {
+        StoredVersion latest = null;
+        for (StoredVersion stored : versions) {
+            if (stored.matches(groupOf(groupId), artifactId)) {
+                latest = stored;
+            }
+        }
+        if (latest == null) {
+            throw notFound(groupId + "/" + artifactId);
+        }
+        return latest;
+    }
+
+    private StoredVersion find(String groupId, String artifactId, Predicate<StoredVersion> filter) {
+        for (StoredVersion stored : versions) {
+            if (stored.matches(groupOf(groupId), artifactId) && filter.test(stored)) {
+                return stored;
+            }
+        }
+        throw notFound(groupId + "/" + artifactId);
+    }
+
+    private StoredVersion byId(Predicate<StoredVersion> filter) {
+        for (StoredVersion stored : versions) {
+            if (filter.test(stored)) {
+                return stored;
+            }
+        }
+        throw notFound("id");
+    }
+
+    private static ArtifactMetaData toArtifactMetaData(StoredVersion stored) {
+        ArtifactMetaData metaData = new ArtifactMetaData();
+        metaData.setGroupId(stored.groupId);
+        metaData.setId(stored.artifactId);
+        metaData.setVersion(stored.version);
+        metaData.setType(stored.type);
+        metaData.setGlobalId(stored.globalId);
+        metaData.setContentId(stored.contentId);
+        return metaData;
+    }
+
+    private static VersionMetaData toVersionMetaData(StoredVersion stored) {
+        VersionMetaData metaData = new VersionMetaData();
+        metaData.setGroupId(stored.groupId);
+        metaData.setId(stored.artifactId);
+        metaData.setVersion(stored.version);
+        metaData.setType(stored.type);
+        metaData.setGlobalId(stored.globalId);
+        metaData.setContentId(stored.contentId);
+        return metaData;
+    }
+
+    private static ArtifactNotFoundException notFound(String artifact) {
+        Error error = new Error();
+        error.setErrorCode(404);
+        error.setMessage("No artifact with ID '" + artifact + "' was found.");
+        error.setName(ArtifactNotFoundException.class.getSimpleName());
+        return new ArtifactNotFoundException(error);
+    }
+
+    private static String groupOf(String groupId) {
+        return groupId == null ? DEFAULT_GROUP : groupId;
+    }
+
+    private static byte[] read(InputStream data) {
+        return IoUtil.toBytes(data);
+    }
+
+    private static class StoredVersion {
+
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private final ArtifactType type;
+        private final byte[] content;
+        private final long globalId;
+        private final long contentId;
+
+        StoredVersion(String groupId, String artifactId, String version, ArtifactType type, byte[] content, long globalId, long contentId) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+            this.type = type;
+            this.content = content;
+            this.globalId = globalId;
+            this.contentId = contentId;
+        }
+
+        boolean matches(String groupId, String artifactId) {
+            return this.groupId.equals(groupId) && Objects.equals(this.artifactId, artifactId);
+        }
+    }
+
+}
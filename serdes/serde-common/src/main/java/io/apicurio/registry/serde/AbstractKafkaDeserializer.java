@@ -92,27 +92,56 @@ public abstract class AbstractKafkaDeserializer<T, U> extends AbstractKafkaSerDe
         if (data == null) {
             return null;
         }
+        if (!metricsEnabled) {
+            return readMagicByteData(topic, data);
+        }
+        long start = System.nanoTime();
+        U deserialized;
+        try {
+            deserialized = readMagicByteData(topic, data);
+        } catch (RuntimeException e) {
+            metrics.recordDeserializationFailure(topic, e);
+            throw e;
+        }
+        metrics.recordDeserialization(topic, System.nanoTime() - start, data.length);
+        return deserialized;
+    }
+
+    @Override
+    public U deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (!metricsEnabled) {
+            return readData(topic, headers, data);
+        }
+        long start = System.nanoTime();
+        U deserialized;
+        try {
+            deserialized = readData(topic, headers, data);
+        } catch (RuntimeException e) {
+            metrics.recordDeserializationFailure(topic, e);
+            throw e;
+        }
+        metrics.recordDeserialization(topic, System.nanoTime() - start, data.length);
+        return deserialized;
+    }
 
-        ByteBuffer buffer = getByteBuffer(data);
-        ArtifactReference artifactReference = getIdHandler().readId(buffer);
+    private U readMagicByteData(String topic, byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        ArtifactReference artifactReference = getIdHandler().readMagicByteAndId(buffer);
 
         SchemaLookupResult<T> schema = resolve(topic, null, data, artifactReference);
 
-        int length = buffer.limit() - 1 - getIdHandler().idSize();
+        int length = buffer.remaining();
         int start = buffer.position() + buffer.arrayOffset();
 
-        ParsedSchema<T> parsedSchema = new ParsedSchemaImpl<T>()
-                .setRawSchema(schema.getRawSchema())
-                .setParsedSchema(schema.getSchema());
+        ParsedSchema<T> parsedSchema = schema.toParsedSchema();
 
         return readData(parsedSchema, buffer, start, length);
     }
 
-    @Override
-    public U deserialize(String topic, Headers headers, byte[] data) {
-        if (data == null) {
-            return null;
-        }
+    private U readData(String topic, Headers headers, byte[] data) {
         ArtifactReference artifactReference = null;
         if (headers != null) {
             artifactReference = headersHandler.readHeaders(headers);
@@ -121,8 +150,8 @@ public abstract class AbstractKafkaDeserializer<T, U> extends AbstractKafkaSerDe
                 return readData(topic, headers, data, artifactReference);
             }
         }
-        if (data[0] == MAGIC_BYTE) {
-            return deserialize(topic, data);
+        if (getIdHandler().isMagicByte(data[0])) {
+            return readMagicByteData(topic, data);
         } else if (headers == null){
             throw new IllegalStateException("Headers cannot be null");
         } else {
@@ -138,9 +167,7 @@ public abstract class AbstractKafkaDeserializer<T, U> extends AbstractKafkaSerDe
         int length = buffer.limit();
         int start = buffer.position();
 
-        ParsedSchema<T> parsedSchema = new ParsedSchemaImpl<T>()
-                .setRawSchema(schema.getRawSchema())
-                .setParsedSchema(schema.getSchema());
+        ParsedSchema<T> parsedSchema = schema.toParsedSchema();
 
         return readData(headers, parsedSchema, buffer, start, length);
     }
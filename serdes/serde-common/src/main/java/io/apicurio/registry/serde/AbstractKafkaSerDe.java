@@ -24,6 +24,8 @@ import org.slf4j.LoggerFactory;
 import io.apicurio.registry.rest.client.RegistryClient;
 import io.apicurio.registry.serde.config.BaseKafkaSerDeConfig;
 import io.apicurio.registry.serde.headers.HeadersHandler;
+import io.apicurio.registry.serde.metrics.NoopSerdeMetrics;
+import io.apicurio.registry.serde.metrics.SerdeMetrics;
 import io.apicurio.registry.serde.utils.Utils;
 
 import java.nio.ByteBuffer;
@@ -45,6 +47,9 @@ public abstract class AbstractKafkaSerDe<T, U> extends SchemaResolverConfigurer<
 
     protected IdHandler idHandler;
     protected HeadersHandler headersHandler;
+    protected SerdeMetrics metrics = NoopSerdeMetrics.INSTANCE;
+    // Cached so that nothing is measured (not even the time) when metrics are disabled
+    protected boolean metricsEnabled;
 
     public AbstractKafkaSerDe() {
         super();
@@ -65,6 +70,12 @@ public abstract class AbstractKafkaSerDe<T, U> extends SchemaResolverConfigurer<
     public abstract void configure(Map<String, ?> configs, boolean isKey);
 
     protected void configure(BaseKafkaSerDeConfig config, boolean isKey) {
+        if (metrics == NoopSerdeMetrics.INSTANCE) {
+            Utils.instantiate(SerdeMetrics.class, config.getMetrics(), this::setMetrics);
+        }
+        metrics.configure(config.originals(), isKey);
+        metricsEnabled = metrics.isEnabled();
+
         super.configure(config.originals(), isKey, schemaParser());
         key = isKey;
         if (idHandler == null) {
@@ -98,6 +109,25 @@ public abstract class AbstractKafkaSerDe<T, U> extends SchemaResolverConfigurer<
         this.headersHandler = headersHandler;
     }
 
+    /**
+     * @see io.apicurio.registry.serde.SchemaResolverConfigurer#getMetrics()
+     */
+    @Override
+    public SerdeMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(SerdeMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Releases what this serializer/deserializer registered with its metrics.
+     */
+    public void close() {
+        metrics.close();
+    }
+
     public void setIdHandler(IdHandler idHandler) {
         this.idHandler = Objects.requireNonNull(idHandler);
     }
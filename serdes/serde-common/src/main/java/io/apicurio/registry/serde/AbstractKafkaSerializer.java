@@ -36,6 +36,11 @@ import java.util.Optional;
  */
 public abstract class AbstractKafkaSerializer<T, U> extends AbstractKafkaSerDe<T, U> implements Serializer<U> {
 
+    // Output buffers larger than this are not kept around for the next record.
+    private static final int MAX_REUSED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ReusableOutputStream> OUTPUT_BUFFER = ThreadLocal.withInitial(ReusableOutputStream::new);
+
     public AbstractKafkaSerializer() {
         super();
     }
@@ -70,6 +75,18 @@ public abstract class AbstractKafkaSerializer<T, U> extends AbstractKafkaSerDe<T
         return null;
     }
 
+    /**
+     * Resolves the schema to use for the given data, using the {@link SchemaResolver}.  Can be overridden
+     * to avoid calling the resolver (and computing the schema from the data) when the result is already known.
+     * @param topic
+     * @param headers
+     * @param data
+     * @param schemaFromData lazily computes the schema from the data
+     */
+    protected SchemaLookupResult<T> resolveSchema(String topic, Headers headers, U data, ParsedSchema<T> schemaFromData) {
+        return getSchemaResolver().resolveSchema(topic, headers, data, schemaFromData);
+    }
+
     protected abstract void serializeData(ParsedSchema<T> schema, U data, OutputStream out) throws IOException;
 
     protected abstract void serializeData(Headers headers, ParsedSchema<T> schema, U data, OutputStream out) throws IOException;
@@ -85,29 +102,87 @@ public abstract class AbstractKafkaSerializer<T, U> extends AbstractKafkaSerDe<T
         if (data == null) {
             return null;
         }
+        if (!metricsEnabled) {
+            return doSerialize(topic, headers, data);
+        }
+        long start = System.nanoTime();
+        byte[] serialized;
         try {
+            serialized = doSerialize(topic, headers, data);
+        } catch (RuntimeException e) {
+            metrics.recordSerializationFailure(topic, e);
+            throw e;
+        }
+        metrics.recordSerialization(topic, System.nanoTime() - start, serialized.length);
+        return serialized;
+    }
 
-            ParsedSchema<T> schemaFromData = new LazyLoadedParsedSchema<T>(() -> Optional.ofNullable(getSchemaFromData(data)));
-
-            SchemaLookupResult<T> schema = getSchemaResolver().resolveSchema(topic, headers, data, schemaFromData);
+    private byte[] doSerialize(String topic, Headers headers, U data) {
+        try {
 
-            ParsedSchema<T> parsedSchema = new ParsedSchemaImpl<T>()
-                    .setRawSchema(schema.getRawSchema())
-                    .setParsedSchema(schema.getSchema());
+            ParsedSchema<T> schemaFromData = new LazyLoadedParsedSchema<T>(() -> Optional.ofNullable(getSchemaFromData(data)));
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            if (headersHandler != null && headers != null) {
-                headersHandler.writeHeaders(headers, schema.toArtifactReference());
-                serializeData(headers, parsedSchema, data, out);
-            } else {
-                out.write(MAGIC_BYTE);
-                getIdHandler().writeId(schema.toArtifactReference(), out);
-                serializeData(parsedSchema, data, out);
+            SchemaLookupResult<T> schema = resolveSchema(topic, headers, data, schemaFromData);
+
+            ParsedSchema<T> parsedSchema = schema.toParsedSchema();
+
+            ReusableOutputStream out = acquireOutputBuffer();
+            try {
+                if (headersHandler != null && headers != null) {
+                    headersHandler.writeHeaders(headers, schema.toArtifactReference());
+                    serializeData(headers, parsedSchema, data, out);
+                } else {
+                    getIdHandler().writeMagicByteAndId(schema.toArtifactReference(), out);
+                    serializeData(parsedSchema, data, out);
+                }
+                return out.toByteArray();
+            } finally {
+                releaseOutputBuffer(out);
             }
-            return out.toByteArray();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * Returns this thread's output buffer, or a new one if it is already in use (e.g. when a serializer
+     * is called while serializing another record).
+     */
+    private static ReusableOutputStream acquireOutputBuffer() {
+        ReusableOutputStream out = OUTPUT_BUFFER.get();
+        if (out.inUse) {
+            return new ReusableOutputStream();
+        }
+        out.inUse = true;
+        return out;
+    }
+
+    private static void releaseOutputBuffer(ReusableOutputStream out) {
+        if (!out.inUse) {
+            return;
+        }
+        out.inUse = false;
+        if (out.capacity() > MAX_REUSED_BUFFER_SIZE) {
+            OUTPUT_BUFFER.remove();
+        } else {
+            out.reset();
+        }
+    }
+
+    /**
+     * Output buffer that is reset and reused for the next record serialized by the same thread.
+     */
+    private static class ReusableOutputStream extends ByteArrayOutputStream {
+
+        private boolean inUse;
+
+        ReusableOutputStream() {
+            super(256);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
 }
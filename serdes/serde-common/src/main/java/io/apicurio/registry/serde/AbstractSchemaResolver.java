@@ -17,11 +17,23 @@
 package io.apicurio.registry.serde;
 
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.apicurio.registry.auth.Auth;
 import io.apicurio.registry.auth.BasicAuth;
@@ -29,12 +41,21 @@ import io.apicurio.registry.auth.KeycloakAuth;
 import io.apicurio.registry.rest.client.RegistryClient;
 import io.apicurio.registry.rest.client.RegistryClientFactory;
 import io.apicurio.registry.rest.v2.beans.ArtifactMetaData;
+import io.apicurio.registry.rest.v2.beans.ArtifactSearchResults;
+import io.apicurio.registry.rest.v2.beans.SearchedArtifact;
 import io.apicurio.registry.rest.v2.beans.VersionMetaData;
+import io.apicurio.registry.serde.cache.DefaultResolverCache;
+import io.apicurio.registry.serde.cache.DiskSchemaCache;
+import io.apicurio.registry.serde.cache.EvictionPolicy;
+import io.apicurio.registry.serde.cache.ResolverCache;
+import io.apicurio.registry.serde.cache.ResolverCacheStats;
 import io.apicurio.registry.serde.config.DefaultSchemaResolverConfig;
+import io.apicurio.registry.serde.metrics.MeteredRegistryClient;
+import io.apicurio.registry.serde.metrics.NoopSerdeMetrics;
+import io.apicurio.registry.serde.metrics.SerdeMetrics;
 import io.apicurio.registry.serde.strategy.ArtifactReference;
 import io.apicurio.registry.serde.strategy.ArtifactResolverStrategy;
 import io.apicurio.registry.serde.utils.Utils;
-import io.apicurio.registry.utils.CheckPeriodCache;
 import io.apicurio.registry.utils.IoUtil;
 
 /**
@@ -44,9 +65,16 @@ import io.apicurio.registry.utils.IoUtil;
  */
 public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S, T>{
 
-    protected final Map<Long, SchemaLookupResult<S>> schemaCacheByGlobalId = new ConcurrentHashMap<>();
-    protected final Map<String, Long> globalIdCacheByContent = new ConcurrentHashMap<>();
-    protected CheckPeriodCache<ArtifactReference, Long> globalIdCacheByArtifactReference = new CheckPeriodCache<>(0);
+    private static final Logger log = LoggerFactory.getLogger(AbstractSchemaResolver.class);
+
+    private static final int WARMUP_GROUP_PAGE_SIZE = 100;
+
+    protected static final String GLOBAL_ID = "globalId";
+    protected static final String CONTENT_ID = "contentId";
+
+    protected ResolverCache<Long, SchemaLookupResult<S>> schemaCacheByGlobalId = new DefaultResolverCache<>();
+    protected ResolverCache<String, Long> globalIdCacheByContent = new DefaultResolverCache<>();
+    protected ResolverCache<ArtifactReference, Long> globalIdCacheByArtifactReference = new DefaultResolverCache<>(0, EvictionPolicy.LRU, 0, -1);
 
     protected SchemaParser<S> schemaParser;
     protected RegistryClient client;
@@ -57,6 +85,21 @@ public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S,
     protected String explicitArtifactId;
     protected String explicitArtifactVersion;
 
+    protected long resolutionTimeoutMs = SerdeConfig.SCHEMA_RESOLUTION_TIMEOUT_MS_DEFAULT;
+    protected DiskSchemaCache diskCache;
+    protected long negativeCacheTtlMs;
+    protected Executor cacheLoaderExecutor;
+    protected RegistryCircuitBreaker circuitBreaker;
+    protected SerdeMetrics metrics = NoopSerdeMetrics.INSTANCE;
+
+    protected List<Long> warmupGlobalIds = Collections.emptyList();
+    protected List<ArtifactReference> warmupArtifacts = Collections.emptyList();
+    protected String warmupGroupId;
+    protected long warmupTimeoutMs = SerdeConfig.WARMUP_TIMEOUT_MS_DEFAULT;
+    protected boolean warmupRequired;
+    private long warmupMaxSize;
+    private volatile WarmupResult warmupResult;
+
     /**
      * @see io.apicurio.registry.serde.SchemaResolver#configure(java.util.Map, boolean, io.apicurio.registry.serde.SchemaParser)
      */
@@ -90,6 +133,17 @@ public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S,
             }
         }
 
+        // Calls rejected by the circuit breaker never reach the registry, so they are not measured
+        if (metrics.isEnabled() && !MeteredRegistryClient.isWrapped(client) && !RegistryCircuitBreaker.isWrapped(client)) {
+            client = MeteredRegistryClient.wrap(client, metrics);
+        }
+
+        int failureThreshold = config.getCircuitBreakerFailureThreshold();
+        if (failureThreshold > 0 && !RegistryCircuitBreaker.isWrapped(client)) {
+            circuitBreaker = new RegistryCircuitBreaker(failureThreshold, config.getCircuitBreakerBackoffMs(), config.getCircuitBreakerMaxBackoffMs());
+            client = circuitBreaker.wrap(client);
+        }
+
         Object ais = config.getArtifactResolverStrategy();
         Utils.instantiate(ArtifactResolverStrategy.class, ais, this::setArtifactResolverStrategy);
 
@@ -111,7 +165,44 @@ public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S,
             }
             checkPeriod = checkPeriodParam;
         }
-        globalIdCacheByArtifactReference = new CheckPeriodCache<>(checkPeriod);
+
+        negativeCacheTtlMs = config.getCacheNegativeTtlMs();
+        cacheLoaderExecutor = DefaultResolverCache.newLoaderExecutor(config.getCacheLoaderThreads());
+
+        // Schemas looked up by id are immutable, so they only expire if explicitly configured
+        long maxSize = config.getCacheMaxSize();
+        EvictionPolicy evictionPolicy = config.getCacheEvictionPolicy();
+        Long ttl = config.getCacheTtlMs();
+        Long refreshAhead = config.getCacheRefreshAheadMs();
+        schemaCacheByGlobalId = createCache(maxSize, evictionPolicy, ttl == null ? -1 : ttl, -1);
+        globalIdCacheByContent = createCache(maxSize, evictionPolicy, ttl == null ? -1 : ttl, -1);
+        globalIdCacheByArtifactReference = createCache(maxSize, evictionPolicy, checkPeriod, refreshAhead == null ? -1 : refreshAhead);
+        metrics.bindCache("schemaByGlobalId", schemaCacheByGlobalId);
+        metrics.bindCache("globalIdByContent", globalIdCacheByContent);
+        metrics.bindCache("globalIdByArtifactReference", globalIdCacheByArtifactReference);
+        if (circuitBreaker != null) {
+            metrics.bindCircuitBreaker(circuitBreaker);
+        }
+        resolutionTimeoutMs = config.getSchemaResolutionTimeoutMs();
+        String diskCacheDirectory = config.getCacheDiskDirectory();
+        diskCache = diskCacheDirectory == null ? null : new DiskSchemaCache(Paths.get(diskCacheDirectory));
+
+        warmupGlobalIds = new ArrayList<>();
+        for (String globalId : config.getWarmupGlobalIds()) {
+            try {
+                warmupGlobalIds.add(Long.parseLong(globalId.trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid globalId in " + SerdeConfig.WARMUP_GLOBAL_IDS + ": " + globalId);
+            }
+        }
+        warmupArtifacts = new ArrayList<>();
+        for (String artifact : config.getWarmupArtifacts()) {
+            warmupArtifacts.add(parseWarmupArtifact(artifact));
+        }
+        warmupGroupId = config.getWarmupGroupId();
+        warmupTimeoutMs = config.getWarmupTimeoutMs();
+        warmupRequired = config.isWarmupRequired();
+        warmupMaxSize = maxSize;
 
         String groupIdOverride = config.getExplicitArtifactGroupId();
         if (groupIdOverride != null) {
@@ -128,6 +219,150 @@ public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S,
 
     }
 
+    /**
+     * Creates one of the caches used by this resolver.  Can be overridden to plug in a different
+     * {@link ResolverCache} implementation.  Failed loads are remembered for the configured negative TTL, and
+     * background loads run on this resolver's bounded loader executor.
+     * @param maxSize the maximum number of entries, or 0 for no limit
+     * @param evictionPolicy
+     * @param expireAfterWriteMs how long entries are valid for, or a negative value for no expiration
+     * @param refreshAfterWriteMs how old entries must be to be refreshed in the background, or a negative value for no refresh
+     */
+    protected <K, V> ResolverCache<K, V> createCache(long maxSize, EvictionPolicy evictionPolicy, long expireAfterWriteMs, long refreshAfterWriteMs) {
+        return new DefaultResolverCache<>(maxSize, evictionPolicy, expireAfterWriteMs, refreshAfterWriteMs, negativeCacheTtlMs, cacheLoaderExecutor);
+    }
+
+    /**
+     * Returns the statistics of each of the caches used by this resolver, by cache name.
+     */
+    public Map<String, ResolverCacheStats> getCacheStats() {
+        Map<String, ResolverCacheStats> stats = new LinkedHashMap<>();
+        stats.put("schemaByGlobalId", schemaCacheByGlobalId.stats());
+        stats.put("globalIdByContent", globalIdCacheByContent.stats());
+        stats.put("globalIdByArtifactReference", globalIdCacheByArtifactReference.stats());
+        return stats;
+    }
+
+    /**
+     * Fetches the schemas configured to be warmed up (by globalId, by artifact coordinates and every artifact of a
+     * group), so that the first records that need them do not wait for the registry.  The schemas are fetched in
+     * parallel, waiting at most the configured warmup timeout.  Must be called once this resolver is configured,
+     * subclasses call it at the end of {@link #configure(Map, boolean, SchemaParser)}.
+     * @return the outcome of the warmup, also available from {@link #getWarmupResult()}
+     * @throws IllegalStateException if warmup is required and some schemas could not be fetched
+     */
+    public WarmupResult warmup() {
+        if (warmupGlobalIds.isEmpty() && warmupArtifacts.isEmpty() && warmupGroupId == null) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, CompletableFuture<SchemaLookupResult<S>>> lookups = new LinkedHashMap<>();
+        Map<String, Throwable> failures = new LinkedHashMap<>();
+
+        for (Long globalId : warmupGlobalIds) {
+            lookups.put("globalId " + globalId, resolveSchemaByGlobalIdAsync(globalId));
+        }
+        List<ArtifactReference> artifacts = new ArrayList<>(warmupArtifacts);
+        if (warmupGroupId != null) {
+            try {
+                artifacts.addAll(listWarmupGroup(warmupGroupId));
+            } catch (RuntimeException e) {
+                failures.put("group " + warmupGroupId, e);
+            }
+        }
+        for (ArtifactReference artifact : artifacts) {
+            String description = "artifact " + artifact.getGroupId() + "/" + artifact.getArtifactId()
+                    + (artifact.getVersion() == null ? "" : "/" + artifact.getVersion());
+            lookups.put(description, resolveSchemaByArtifactReferenceAsync(artifact));
+        }
+
+        int loaded = 0;
+        long deadline = start + warmupTimeoutMs;
+        for (Map.Entry<String, CompletableFuture<SchemaLookupResult<S>>> lookup : lookups.entrySet()) {
+            try {
+                lookup.getValue().get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                loaded++;
+            } catch (ExecutionException e) {
+                failures.put(lookup.getKey(), e.getCause());
+            } catch (TimeoutException e) {
+                failures.put(lookup.getKey(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failures.put(lookup.getKey(), e);
+                break;
+            }
+        }
+
+        int requested = lookups.size();
+        WarmupResult result = new WarmupResult(requested, loaded, failures, System.currentTimeMillis() - start);
+        this.warmupResult = result;
+        if (result.isSuccessful()) {
+            log.info("Schema warmup fetched {} schemas in {}ms", loaded, result.getDurationMs());
+        } else {
+            log.warn("Schema warmup fetched {} of {} schemas, failed for: {}", loaded, requested, failures.keySet());
+            if (warmupRequired) {
+                throw new IllegalStateException("Schema warmup failed for " + failures.keySet(),
+                        failures.values().iterator().next());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the outcome of the last {@link #warmup()}, or null if no schemas are configured to be warmed up.
+     */
+    public WarmupResult getWarmupResult() {
+        return warmupResult;
+    }
+
+    /**
+     * Lists the artifacts of the given group to warm up (their latest versions), no more than fit in the caches.
+     */
+    private List<ArtifactReference> listWarmupGroup(String groupId) {
+        List<ArtifactReference> artifacts = new ArrayList<>();
+        long max = warmupMaxSize > 0 ? warmupMaxSize : Long.MAX_VALUE;
+        int offset = 0;
+        while (artifacts.size() < max) {
+            ArtifactSearchResults results = client.listArtifactsInGroup(groupId, null, null, offset, WARMUP_GROUP_PAGE_SIZE);
+            List<SearchedArtifact> page = results.getArtifacts();
+            for (SearchedArtifact artifact : page) {
+                if (artifacts.size() >= max) {
+                    break;
+                }
+                artifacts.add(ArtifactReference.builder().groupId(groupId).artifactId(artifact.getId()).build());
+            }
+            offset += page.size();
+            if (page.size() < WARMUP_GROUP_PAGE_SIZE || (results.getCount() != null && offset >= results.getCount())) {
+                break;
+            }
+        }
+        return artifacts;
+    }
+
+    /**
+     * Parses an artifact configured to be warmed up: <code>[groupId/]artifactId[/version]</code>.
+     */
+    private static ArtifactReference parseWarmupArtifact(String artifact) {
+        String[] parts = artifact.trim().split("/");
+        if (parts.length == 1 && !parts[0].isEmpty()) {
+            return ArtifactReference.builder().artifactId(parts[0]).build();
+        } else if (parts.length == 2 || parts.length == 3) {
+            return ArtifactReference.builder()
+                    .groupId(parts[0])
+                    .artifactId(parts[1])
+                    .version(parts.length == 3 ? parts[2] : null)
+                    .build();
+        }
+        throw new IllegalArgumentException("Invalid artifact in " + SerdeConfig.WARMUP_ARTIFACTS + ": " + artifact);
+    }
+
+    /**
+     * Returns the circuit breaker around the calls to the registry, or null if it is not enabled.
+     */
+    public RegistryCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     /**
      * @param client the client to set
      */
@@ -136,6 +371,14 @@ public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S,
         this.client = client;
     }
 
+    /**
+     * @see io.apicurio.registry.serde.SchemaResolver#setMetrics(io.apicurio.registry.serde.metrics.SerdeMetrics)
+     */
+    @Override
+    public void setMetrics(SerdeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * @param artifactResolverStrategy the artifactResolverStrategy to set
      */
@@ -177,14 +420,21 @@ public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S,
     }
 
     protected SchemaLookupResult<S> resolveSchemaByGlobalId(long globalId) {
-        return schemaCacheByGlobalId.computeIfAbsent(globalId, k -> {
+        return await(resolveSchemaByGlobalIdAsync(globalId), "globalId " + globalId);
+    }
+
+    /**
+     * Resolves the schema with the given globalId.  If it is not cached, it is fetched from the registry
+     * in the background.  Concurrent lookups of the same globalId share a single request, while lookups of
+     * different globalIds are made in parallel.
+     * @param globalId
+     */
+    protected CompletableFuture<SchemaLookupResult<S>> resolveSchemaByGlobalIdAsync(long globalId) {
+        return schemaCacheByGlobalId.getAsync(globalId, k -> {
             //TODO getContentByGlobalId have to return some minumum metadata (groupId, artifactId and version)
             //TODO or at least add some method to the api to return the version metadata by globalId
 //            ArtifactMetaData artifactMetadata = client.getArtifactMetaData("TODO", artifactId);
-            InputStream rawSchema = client.getContentByGlobalId(globalId);
-
-            byte[] schema = IoUtil.toBytes(rawSchema);
-            S parsed = schemaParser.parseSchema(schema);
+            ParsedSchema<S> schema = fetchSchemaByGlobalId(globalId);
 
             SchemaLookupResult.SchemaLookupResultBuilder<S> result = SchemaLookupResult.builder();
 
@@ -194,12 +444,82 @@ public abstract class AbstractSchemaResolver<S, T> implements SchemaResolver<S,
 //                  .artifactId(null)
 //                  .version(0)
                   .globalId(globalId)
-                  .rawSchema(schema)
-                  .schema(parsed)
+                  .rawSchema(schema.getRawSchema())
+                  .schema(schema.getParsedSchema())
                   .build();
         });
     }
 
+    /**
+     * Returns the schema with the given globalId, from the disk cache (if configured) or from the registry.
+     * @param globalId
+     */
+    protected ParsedSchema<S> fetchSchemaByGlobalId(long globalId) {
+        return fetchSchema(GLOBAL_ID, globalId, () -> client.getContentByGlobalId(globalId));
+    }
+
+    /**
+     * Returns the schema with the given id, from the disk cache (if configured) or else from the registry,
+     * writing it to the disk cache.  A cached schema that cannot be parsed (e.g. a file damaged outside of
+     * this resolver) is removed from the disk cache and fetched from the registry again.
+     * @param idType the kind of id, e.g. {@link #GLOBAL_ID}
+     * @param id
+     * @param fetcher fetches the schema from the registry
+     */
+    protected ParsedSchema<S> fetchSchema(String idType, long id, Supplier<InputStream> fetcher) {
+        if (diskCache != null) {
+            byte[] cached = diskCache.get(idType, id);
+            if (cached != null) {
+                try {
+                    return parse(cached);
+                } catch (RuntimeException e) {
+                    log.warn("Cannot parse cached schema {} {}, fetching it from the registry", idType, id, e);
+                    diskCache.remove(idType, id);
+                }
+            }
+        }
+        byte[] schema = IoUtil.toBytes(fetcher.get());
+        ParsedSchema<S> parsed = parse(schema);
+        if (diskCache != null) {
+            diskCache.put(idType, id, schema);
+        }
+        return parsed;
+    }
+
+    private ParsedSchema<S> parse(byte[] schema) {
+        return new ParsedSchemaImpl<S>()
+                .setRawSchema(schema)
+                .setParsedSchema(schemaParser.parseSchema(schema));
+    }
+
+    /**
+     * Waits (at most the configured schema resolution timeout) for a schema being resolved.  Exceptions
+     * thrown while resolving the schema are re-thrown as is.
+     * @param future
+     * @param description describes what is being resolved, used in error messages
+     */
+    protected <R> R await(CompletableFuture<R> future, String description) {
+        try {
+            if (resolutionTimeoutMs > 0) {
+                return future.get(resolutionTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timed out after " + resolutionTimeoutMs + "ms resolving schema by " + description, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving schema by " + description, e);
+        }
+    }
+
     /**
      * @see io.apicurio.registry.serde.SchemaResolver#reset()
      */
@@ -42,7 +42,9 @@ public class DefaultIdHandler implements IdHandler {
         } else {
             id = reference.getGlobalId();
         }
-        out.write(ByteBuffer.allocate(idSize).putLong(id).array());
+        for (int shift = (idSize - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (id >>> shift));
+        }
     }
 
     /**
@@ -16,15 +16,20 @@
 
 package io.apicurio.registry.serde;
 
-import java.io.InputStream;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
 import org.apache.kafka.common.header.Headers;
 
 import io.apicurio.registry.rest.v2.beans.ArtifactMetaData;
 import io.apicurio.registry.rest.v2.beans.IfExists;
 import io.apicurio.registry.rest.v2.beans.VersionMetaData;
+import io.apicurio.registry.serde.cache.DefaultResolverCache;
+import io.apicurio.registry.serde.cache.ResolverCache;
+import io.apicurio.registry.serde.cache.ResolverCacheStats;
 import io.apicurio.registry.serde.config.DefaultSchemaResolverConfig;
 import io.apicurio.registry.serde.strategy.ArtifactReference;
 import io.apicurio.registry.utils.IoUtil;
@@ -36,11 +41,12 @@ import io.apicurio.registry.utils.IoUtil;
  */
 public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
 
-    protected final Map<Long, SchemaLookupResult<S>> schemaCacheByContentId = new ConcurrentHashMap<>();
+    protected ResolverCache<Long, SchemaLookupResult<S>> schemaCacheByContentId = new DefaultResolverCache<>();
 
     private boolean autoCreateArtifact;
     private IfExists autoCreateBehavior;
     private boolean findLatest;
+    private boolean cacheExpires;
 
     /**
      * @see io.apicurio.registry.serde.AbstractSchemaResolver#reset()
@@ -60,9 +66,36 @@ public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
 
         DefaultSchemaResolverConfig config = new DefaultSchemaResolverConfig(configs);
 
+        Long ttl = config.getCacheTtlMs();
+        this.cacheExpires = ttl != null;
+        this.schemaCacheByContentId = createCache(config.getCacheMaxSize(), config.getCacheEvictionPolicy(), ttl == null ? -1 : ttl, -1);
+        metrics.bindCache("schemaByContentId", schemaCacheByContentId);
+
         this.autoCreateArtifact = config.autoRegisterArtifact();
         this.autoCreateBehavior = IfExists.fromValue(config.autoRegisterArtifactIfExists());
         this.findLatest = config.findLatest();
+
+        warmup();
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.AbstractSchemaResolver#getCacheStats()
+     */
+    @Override
+    public Map<String, ResolverCacheStats> getCacheStats() {
+        Map<String, ResolverCacheStats> stats = super.getCacheStats();
+        stats.put("schemaByContentId", schemaCacheByContentId.stats());
+        return stats;
+    }
+
+    /**
+     * Lookups are cacheable when schemas are resolved by content (or registered), rather than by looking up
+     * the latest or a specific version of an artifact, and cached schemas do not expire.
+     * @see io.apicurio.registry.serde.SchemaResolver#isSchemaLookupCacheable()
+     */
+    @Override
+    public boolean isSchemaLookupCacheable() {
+        return !findLatest && explicitArtifactVersion == null && !cacheExpires;
     }
 
     /**
@@ -117,6 +150,21 @@ public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
         }
     }
 
+    /**
+     * Schemas are fetched from the registry in the background.
+     * @see io.apicurio.registry.serde.SchemaResolver#resolveSchemaByArtifactReferenceAsync(io.apicurio.registry.serde.strategy.ArtifactReference)
+     */
+    @Override
+    public CompletableFuture<SchemaLookupResult<S>> resolveSchemaByArtifactReferenceAsync(ArtifactReference reference) {
+        if (reference.getContentId() != null) {
+            return resolveSchemaByContentIdAsync(reference.getContentId());
+        }
+        if (reference.getGlobalId() != null) {
+            return resolveSchemaByGlobalIdAsync(reference.getGlobalId());
+        }
+        return resolveSchemaByCoordinatesAsync(reference.getGroupId(), reference.getArtifactId(), reference.getVersion());
+    }
+
     private SchemaLookupResult<S> resolveSchemaByCoordinates(String groupId, String artifactId, String version) {
         if (artifactId == null) {
             throw new IllegalStateException("artifactId cannot be null");
@@ -124,53 +172,106 @@ public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
 
         ArtifactReference reference = ArtifactReference.builder().groupId(groupId).artifactId(artifactId).version(version).build();
 
-        Long globalId = globalIdCacheByArtifactReference.compute(reference,
-                artifactReference -> {
-                    SchemaLookupResult.SchemaLookupResultBuilder<S> result = SchemaLookupResult.builder();
-                    //TODO if getArtifactVersion returns the artifact version and globalid in the headers we can reduce this to only one http call
-                    Long gid;
-                    if (version == null) {
-                        ArtifactMetaData metadata = client.getArtifactMetaData(groupId, artifactId);
-                        loadFromArtifactMetaData(metadata, result);
-                        gid = metadata.getGlobalId();
-                    } else {
-                        VersionMetaData metadata = client.getArtifactVersionMetaData(groupId, artifactId, version);
-                        loadFromArtifactMetaData(metadata, result);
-                        gid = metadata.getGlobalId();
-                    }
-
-                    InputStream rawSchema = client.getContentByGlobalId(gid);
-
-                    byte[] schema = IoUtil.toBytes(rawSchema);
-                    S parsed = schemaParser.parseSchema(schema);
-
-                    result
-                        .rawSchema(schema)
-                        .schema(parsed);
-
-                    schemaCacheByGlobalId.put(gid, result.build());
-                    globalIdCacheByContent.put(IoUtil.toString(schema), gid);
-                    return gid;
+        return resolveByGlobalId(globalIdCacheByArtifactReference, reference, () -> loadByCoordinates(groupId, artifactId, version));
+    }
+
+    /**
+     * Asynchronous version of {@link #resolveSchemaByCoordinates(String, String, String)}.
+     */
+    private CompletableFuture<SchemaLookupResult<S>> resolveSchemaByCoordinatesAsync(String groupId, String artifactId, String version) {
+        if (artifactId == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("artifactId cannot be null"));
+        }
+
+        ArtifactReference reference = ArtifactReference.builder().groupId(groupId).artifactId(artifactId).version(version).build();
+
+        AtomicReference<SchemaLookupResult<S>> loaded = new AtomicReference<>();
+        return globalIdCacheByArtifactReference.getAsync(reference, artifactReference -> {
+                    SchemaLookupResult<S> result = loadByCoordinates(groupId, artifactId, version);
+                    loaded.set(result);
+                    return result.getGlobalId();
+                })
+                .thenCompose(globalId -> {
+                    SchemaLookupResult<S> result = loaded.get() != null ? loaded.get() : schemaCacheByGlobalId.get(globalId);
+                    // The schema may have been evicted since its globalId was cached, fetch it again (in the background)
+                    return result != null ? CompletableFuture.completedFuture(result) : resolveSchemaByGlobalIdAsync(globalId);
                 });
+    }
+
+    /**
+     * Returns the schema whose globalId is cached under the given key, loading both with the given loader if the
+     * globalId is not cached.  A schema loaded by this call is returned as is, rather than read back from the schema
+     * cache, where it may already have been evicted.  If the globalId was cached but its schema has been evicted
+     * since, the loader is called once more.
+     */
+    private <K> SchemaLookupResult<S> resolveByGlobalId(ResolverCache<K, Long> cache, K key, Supplier<SchemaLookupResult<S>> loader) {
+        AtomicReference<SchemaLookupResult<S>> loaded = new AtomicReference<>();
+        Long globalId = cache.get(key, k -> {
+            SchemaLookupResult<S> result = loader.get();
+            loaded.set(result);
+            return result.getGlobalId();
+        });
+        SchemaLookupResult<S> result = loaded.get();
+        if (result == null) {
+            result = schemaCacheByGlobalId.get(globalId);
+        }
+        if (result == null) {
+            result = loader.get();
+            cache.put(key, result.getGlobalId());
+        }
+        return result;
+    }
+
+    /**
+     * Fetches the given artifact version (or the latest version if the version is null) and caches its schema.
+     */
+    private SchemaLookupResult<S> loadByCoordinates(String groupId, String artifactId, String version) {
+        SchemaLookupResult.SchemaLookupResultBuilder<S> result = SchemaLookupResult.builder();
+        //TODO if getArtifactVersion returns the artifact version and globalid in the headers we can reduce this to only one http call
+        Long gid;
+        if (version == null) {
+            ArtifactMetaData metadata = client.getArtifactMetaData(groupId, artifactId);
+            loadFromArtifactMetaData(metadata, result);
+            gid = metadata.getGlobalId();
+        } else {
+            VersionMetaData metadata = client.getArtifactVersionMetaData(groupId, artifactId, version);
+            loadFromArtifactMetaData(metadata, result);
+            gid = metadata.getGlobalId();
+        }
 
-        return schemaCacheByGlobalId.get(globalId);
+        ParsedSchema<S> schema = fetchSchemaByGlobalId(gid);
+
+        result
+            .rawSchema(schema.getRawSchema())
+            .schema(schema.getParsedSchema());
+
+        SchemaLookupResult<S> loaded = result.build();
+        schemaCacheByGlobalId.put(gid, loaded);
+        globalIdCacheByContent.put(IoUtil.toString(schema.getRawSchema()), gid);
+        return loaded;
     }
 
     protected SchemaLookupResult<S> resolveSchemaByContentId(long contentId) {
-        return schemaCacheByContentId.computeIfAbsent(contentId, k -> {
+        return await(resolveSchemaByContentIdAsync(contentId), "contentId " + contentId);
+    }
 
-            // it's impossible to retrieve more info about the artifact with only the contentId, and that's ok for this case
-            InputStream rawSchema = client.getContentById(contentId);
+    /**
+     * Resolves the schema with the given contentId.  If it is not cached, it is fetched from the registry
+     * in the background.  Concurrent lookups of the same contentId share a single request.
+     * @param contentId
+     */
+    protected CompletableFuture<SchemaLookupResult<S>> resolveSchemaByContentIdAsync(long contentId) {
+        return schemaCacheByContentId.getAsync(contentId, k -> {
 
-            byte[] schema = IoUtil.toBytes(rawSchema);
-            S parsed = schemaParser.parseSchema(schema);
+            // it's impossible to retrieve more info about the artifact with only the contentId, and that's ok for this case
+            ParsedSchema<S> schema = fetchSchema(CONTENT_ID, contentId, () -> client.getContentById(contentId));
 
             SchemaLookupResult.SchemaLookupResultBuilder<S> result = SchemaLookupResult.builder();
 
             return result
                     .contentId(contentId)
-                    .rawSchema(schema)
-                    .schema(parsed)
+                    .rawSchema(schema.getRawSchema())
+                    .schema(schema.getParsedSchema())
                     .build();
         });
     }
@@ -185,7 +286,7 @@ public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
         byte[] rawSchema = parsedSchema.getRawSchema();
         String rawSchemaString = IoUtil.toString(rawSchema);
 
-        Long globalId = globalIdCacheByContent.computeIfAbsent(rawSchemaString, key -> {
+        return resolveByGlobalId(globalIdCacheByContent, rawSchemaString, () -> {
             VersionMetaData artifactMetadata = client.getArtifactVersionMetaDataByContent(artifactReference.getGroupId(), artifactReference.getArtifactId(), true, IoUtil.toStream(rawSchema));
 
             SchemaLookupResult.SchemaLookupResultBuilder<S> result = SchemaLookupResult.builder();
@@ -196,13 +297,11 @@ public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
             result.rawSchema(rawSchema);
             result.schema(schema);
 
-            Long artifactGlobalId = artifactMetadata.getGlobalId();
-            schemaCacheByGlobalId.put(artifactGlobalId, result.build());
-            globalIdCacheByArtifactReference.put(artifactReference, artifactGlobalId);
-            return artifactGlobalId;
+            SchemaLookupResult<S> loaded = result.build();
+            schemaCacheByGlobalId.put(loaded.getGlobalId(), loaded);
+            globalIdCacheByArtifactReference.put(artifactReference, loaded.getGlobalId());
+            return loaded;
         });
-
-        return schemaCacheByGlobalId.get(globalId);
     }
 
     private SchemaLookupResult<S> handleAutoCreateArtifact(ParsedSchema<S> parsedSchema,
@@ -210,7 +309,7 @@ public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
         byte[] rawSchema = parsedSchema.getRawSchema();
         String rawSchemaString = IoUtil.toString(rawSchema);
 
-        Long globalId = globalIdCacheByContent.computeIfAbsent(rawSchemaString, key -> {
+        return resolveByGlobalId(globalIdCacheByContent, rawSchemaString, () -> {
             ArtifactMetaData artifactMetadata = client.createArtifact(artifactReference.getGroupId(), artifactReference.getArtifactId(), artifactReference.getVersion(), schemaParser.artifactType(), this.autoCreateBehavior, false, IoUtil.toStream(rawSchema));
 
             SchemaLookupResult.SchemaLookupResultBuilder<S> result = SchemaLookupResult.builder();
@@ -221,13 +320,11 @@ public class DefaultSchemaResolver<S, T> extends AbstractSchemaResolver<S, T>{
             result.rawSchema(rawSchema);
             result.schema(schema);
 
-            Long newGlobalId = artifactMetadata.getGlobalId();
-            schemaCacheByGlobalId.put(newGlobalId, result.build());
-            globalIdCacheByArtifactReference.put(artifactReference, newGlobalId);
-            return newGlobalId;
+            SchemaLookupResult<S> created = result.build();
+            schemaCacheByGlobalId.put(created.getGlobalId(), created);
+            globalIdCacheByArtifactReference.put(artifactReference, created.getGlobalId());
+            return created;
         });
-
-        return schemaCacheByGlobalId.get(globalId);
     }
 
 }
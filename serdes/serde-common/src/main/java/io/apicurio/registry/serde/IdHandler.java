@@ -5,6 +5,8 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Map;
 
+import org.apache.kafka.common.errors.SerializationException;
+
 import io.apicurio.registry.serde.strategy.ArtifactReference;
 
 /**
@@ -24,5 +26,48 @@ public interface IdHandler {
 
     ArtifactReference readId(ByteBuffer buffer);
 
+    /**
+     * The number of bytes used to write an id, or the maximum number of bytes if the size depends on the id.
+     */
     int idSize();
+
+    /**
+     * The number of bytes used to write the id of the given reference.
+     */
+    default int idSize(ArtifactReference reference) {
+        return idSize();
+    }
+
+    /**
+     * Returns true if a payload starting with the given byte can be read by {@link #readMagicByteAndId(ByteBuffer)}.
+     */
+    default boolean isMagicByte(byte magicByte) {
+        return magicByte == AbstractKafkaSerDe.MAGIC_BYTE;
+    }
+
+    /**
+     * Writes the magic byte followed by the id.
+     */
+    default void writeMagicByteAndId(ArtifactReference reference, OutputStream out) throws IOException {
+        out.write(AbstractKafkaSerDe.MAGIC_BYTE);
+        writeId(reference, out);
+    }
+
+    /**
+     * Writes the magic byte followed by the id, {@link #idSize(ArtifactReference)} + 1 bytes in total.
+     */
+    default void writeMagicByteAndId(ArtifactReference reference, ByteBuffer buffer) {
+        buffer.put(AbstractKafkaSerDe.MAGIC_BYTE);
+        writeId(reference, buffer);
+    }
+
+    /**
+     * Reads the magic byte and the id, leaving the buffer positioned at the start of the data.
+     */
+    default ArtifactReference readMagicByteAndId(ByteBuffer buffer) {
+        if (buffer.get() != AbstractKafkaSerDe.MAGIC_BYTE) {
+            throw new SerializationException("Unknown magic byte!");
+        }
+        return readId(buffer);
+    }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde;
+
+import java.io.EOFException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.rest.client.exception.RestClientException;
+
+/**
+ * Circuit breaker around the calls made to the registry by the serde classes.  Once the registry has failed
+ * a number of consecutive calls, the breaker opens: calls fail immediately with a
+ * {@link CircuitBreakerOpenException} instead of reaching the registry.  After a backoff period a single
+ * call is let through (half open): if it succeeds the breaker closes, otherwise it opens again for twice
+ * as long, up to a maximum backoff.
+ *
+ * Only failures that indicate the registry is unavailable are counted (I/O and connection errors, 5xx and
+ * 429 responses), not errors such as a missing artifact or a request that could not be serialized.  Only the
+ * client methods that look up or register schemas go through the breaker (see {@link #GATED_METHODS}).
+ */
+public class RegistryCircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistryCircuitBreaker.class);
+
+    /**
+     * The {@link RegistryClient} methods called by the serde classes to look up or register schemas.  Other
+     * methods (e.g. setting request headers) are passed through without being gated or counted.
+     */
+    static final Set<String> GATED_METHODS = new HashSet<>(Arrays.asList(
+            "getLatestArtifact", "getArtifactMetaData", "getArtifactVersion", "getArtifactVersionMetaData",
+            "getArtifactVersionMetaDataByContent", "getContentById", "getContentByGlobalId", "getContentByHash",
+            "listArtifactsInGroup", "createArtifact"));
+
+    /**
+     * Simple names of the I/O exceptions that mean the registry could not be reached.  The REST client reports
+     * them as a {@link RestClientException} without an error code, named after the original exception.
+     */
+    private static final Set<String> UNAVAILABLE_ERRORS = new HashSet<>(Arrays.asList(
+            "IOException", "ConnectException", "NoRouteToHostException", "UnknownHostException", "SocketException",
+            "SocketTimeoutException", "HttpTimeoutException", "HttpConnectTimeoutException", "ClosedChannelException",
+            "EOFException", "NoStackTraceTimeoutException"));
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    private final Object lock = new Object();
+    // Guarded by lock, the state is also read without it
+    private volatile State state = State.CLOSED;
+    private volatile long retryAt;
+    private long backoffMs;
+    private Throwable lastFailure;
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructor.
+     * @param failureThreshold number of consecutive failures that open the breaker
+     * @param initialBackoffMs how long the breaker stays open the first time
+     * @param maxBackoffMs the maximum time the breaker stays open
+     */
+    public RegistryCircuitBreaker(int failureThreshold, long initialBackoffMs, long maxBackoffMs) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.initialBackoffMs = Math.max(1, initialBackoffMs);
+        this.maxBackoffMs = Math.max(this.initialBackoffMs, maxBackoffMs);
+        this.backoffMs = this.initialBackoffMs;
+    }
+
+    /**
+     * Returns a client that makes every call to the given client through this circuit breaker.
+     * @param client
+     */
+    public RegistryClient wrap(RegistryClient client) {
+        return (RegistryClient) Proxy.newProxyInstance(RegistryClient.class.getClassLoader(),
+                new Class<?>[] { RegistryClient.class }, new Handler(client));
+    }
+
+    /**
+     * Returns true if the given client was returned by {@link #wrap(RegistryClient)} (of any breaker).
+     * @param client
+     */
+    public static boolean isWrapped(RegistryClient client) {
+        return Proxy.isProxyClass(client.getClass()) && Proxy.getInvocationHandler(client) instanceof Handler;
+    }
+
+    /**
+     * Called before calling the registry.
+     * @throws CircuitBreakerOpenException if the call must not be made
+     */
+    void beforeCall() {
+        if (state == State.CLOSED) {
+            return;
+        }
+        synchronized (lock) {
+            long now = System.currentTimeMillis();
+            if (state != State.CLOSED && now >= retryAt) {
+                // Let this call through, to find out whether the registry is back.  Should it never complete,
+                // another call is let through after the same backoff.
+                state = State.HALF_OPEN;
+                retryAt = now + backoffMs;
+                return;
+            }
+            if (state != State.CLOSED) {
+                rejected.increment();
+                throw new CircuitBreakerOpenException("Registry calls suspended after " + consecutiveFailures.get()
+                        + " consecutive failures, retrying in " + Math.max(0, retryAt - System.currentTimeMillis()) + "ms", lastFailure);
+            }
+        }
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state == State.CLOSED) {
+            return;
+        }
+        synchronized (lock) {
+            if (state != State.CLOSED) {
+                log.info("Registry calls resumed");
+                state = State.CLOSED;
+                backoffMs = initialBackoffMs;
+                lastFailure = null;
+            }
+        }
+    }
+
+    void onFailure(Throwable error) {
+        if (!isUnavailable(error)) {
+            onSuccess();
+            return;
+        }
+        int failures = consecutiveFailures.incrementAndGet();
+        synchronized (lock) {
+            lastFailure = error;
+            if (state == State.HALF_OPEN) {
+                backoffMs = Math.min(backoffMs * 2, maxBackoffMs);
+                open();
+            } else if (state == State.CLOSED && failures >= failureThreshold) {
+                open();
+            }
+        }
+    }
+
+    // Guarded by lock
+    private void open() {
+        state = State.OPEN;
+        retryAt = System.currentTimeMillis() + backoffMs;
+        opened.increment();
+        log.warn("Suspending registry calls for {}ms after {} consecutive failures: {}", backoffMs,
+                consecutiveFailures.get(), String.valueOf(lastFailure));
+    }
+
+    /**
+     * Returns true if the given error means the registry is unavailable: an I/O or connection error, a 5xx
+     * response or a 429 (too many requests) response.  Other errors, such as not found or bad request
+     * responses or a request that could not be serialized, do not say anything about the registry.
+     */
+    static boolean isUnavailable(Throwable error) {
+        if (error instanceof RestClientException) {
+            RestClientException restError = (RestClientException) error;
+            if (restError.getError() == null) {
+                return false;
+            }
+            Integer code = restError.getError().getErrorCode();
+            if (code != null && code > 0) {
+                return code >= 500 || code == 429;
+            }
+            String name = restError.getError().getName();
+            return name != null && UNAVAILABLE_ERRORS.contains(name);
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException || cause instanceof UnknownHostException
+                    || cause instanceof ClosedChannelException || cause instanceof EOFException || cause instanceof TimeoutException
+                    || UNAVAILABLE_ERRORS.contains(cause.getClass().getSimpleName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the state of the breaker
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of consecutive failed calls
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * @return how many times the breaker opened
+     */
+    public long getOpenedCount() {
+        return opened.sum();
+    }
+
+    /**
+     * @return the number of calls rejected while the breaker was open
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return how long (in milliseconds) until a call is let through again, or 0 if the breaker is closed
+     */
+    public long getRemainingBackoffMs() {
+        return state == State.CLOSED ? 0 : Math.max(0, retryAt - System.currentTimeMillis());
+    }
+
+    private class Handler implements InvocationHandler {
+
+        private final RegistryClient delegate;
+
+        Handler(RegistryClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!GATED_METHODS.contains(method.getName())) {
+                try {
+                    return method.invoke(delegate, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            beforeCall();
+            try {
+                Object result = method.invoke(delegate, args);
+                onSuccess();
+                return result;
+            } catch (InvocationTargetException e) {
+                onFailure(e.getCause());
+                throw e.getCause();
+            }
+        }
+    }
+
+}
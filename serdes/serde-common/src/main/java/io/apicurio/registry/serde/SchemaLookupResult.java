@@ -32,6 +32,10 @@ public class SchemaLookupResult<T> {
     private String artifactId;
     private String version;
 
+    // Derived from the fields above, which never change once the result is built.
+    private volatile ArtifactReference artifactReference;
+    private volatile ParsedSchema<T> parsedSchema;
+
     private SchemaLookupResult() {
         //empty initialize manually
     }
@@ -86,13 +90,32 @@ public class SchemaLookupResult<T> {
     }
 
     public ArtifactReference toArtifactReference() {
-        return ArtifactReference.builder()
-                .globalId(this.getGlobalId())
-                .contentId(this.getContentId())
-                .groupId(this.getGroupId())
-                .artifactId(this.getArtifactId())
-                .version(this.getVersion())
-                .build();
+        ArtifactReference reference = artifactReference;
+        if (reference == null) {
+            reference = ArtifactReference.builder()
+                    .globalId(this.getGlobalId())
+                    .contentId(this.getContentId())
+                    .groupId(this.getGroupId())
+                    .artifactId(this.getArtifactId())
+                    .version(this.getVersion())
+                    .build();
+            artifactReference = reference;
+        }
+        return reference;
+    }
+
+    /**
+     * @return the raw and parsed schema of this result
+     */
+    public ParsedSchema<T> toParsedSchema() {
+        ParsedSchema<T> parsed = parsedSchema;
+        if (parsed == null) {
+            parsed = new ParsedSchemaImpl<T>()
+                    .setRawSchema(this.getRawSchema())
+                    .setParsedSchema(this.getSchema());
+            parsedSchema = parsed;
+        }
+        return parsed;
     }
 
     public static <T> SchemaLookupResultBuilder<T> builder() {
@@ -17,9 +17,12 @@
 package io.apicurio.registry.serde;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.kafka.common.header.Headers;
 
 import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.metrics.SerdeMetrics;
 import io.apicurio.registry.serde.strategy.ArtifactReference;
 import io.apicurio.registry.serde.strategy.ArtifactResolverStrategy;
 
@@ -41,6 +44,14 @@ public interface SchemaResolver<SCHEMA, DATA> {
 
     public void setArtifactResolverStrategy(ArtifactResolverStrategy<SCHEMA> artifactResolverStrategy);
 
+    /**
+     * Sets the metrics this resolver reports its registry calls and caches to.  Called before
+     * {@link #configure(Map, boolean, SchemaParser)}, ignored by default.
+     * @param metrics
+     */
+    default void setMetrics(SerdeMetrics metrics) {
+    }
+
     /**
      * Used by Serializers to lookup the schema for a given kafka record.
      * @param topic
@@ -59,6 +70,32 @@ public interface SchemaResolver<SCHEMA, DATA> {
      */
     public SchemaLookupResult<SCHEMA> resolveSchemaByArtifactReference(ArtifactReference reference);
 
+    /**
+     * Asynchronous version of {@link #resolveSchemaByArtifactReference(ArtifactReference)}.  By default the
+     * schema is resolved synchronously.
+     * @param reference
+     * @return a future SchemaLookupResult
+     */
+    default CompletableFuture<SchemaLookupResult<SCHEMA>> resolveSchemaByArtifactReferenceAsync(ArtifactReference reference) {
+        try {
+            return CompletableFuture.completedFuture(resolveSchemaByArtifactReference(reference));
+        } catch (RuntimeException e) {
+            CompletableFuture<SchemaLookupResult<SCHEMA>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /**
+     * Returns true if the result of {@link #resolveSchema(String, Headers, Object, ParsedSchema)} only depends on
+     * the topic and the schema of the data (not on the data itself or the headers), and never changes once
+     * resolved.  In that case serializers may cache the result, e.g. by schema instance, and skip calling
+     * this resolver altogether.
+     */
+    default boolean isSchemaLookupCacheable() {
+        return false;
+    }
+
     /**
      * Hard reset cache
      */
@@ -20,6 +20,8 @@ import java.util.Map;
 import java.util.Objects;
 
 import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.metrics.NoopSerdeMetrics;
+import io.apicurio.registry.serde.metrics.SerdeMetrics;
 import io.apicurio.registry.serde.utils.Utils;
 
 /**
@@ -72,7 +74,15 @@ public class SchemaResolverConfigurer<T, U> {
                 Utils.instantiate(SchemaResolver.class, sr, this::setSchemaResolver);
             }
         }
+        getSchemaResolver().setMetrics(getMetrics());
         getSchemaResolver().configure(configs, isKey, schemaParser);
     }
 
+    /**
+     * Returns the metrics the schema resolver reports to.
+     */
+    protected SerdeMetrics getMetrics() {
+        return NoopSerdeMetrics.INSTANCE;
+    }
+
 }
\ No newline at end of file
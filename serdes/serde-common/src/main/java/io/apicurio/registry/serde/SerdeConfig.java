@@ -25,6 +25,8 @@ import io.apicurio.registry.serde.fallback.DefaultFallbackArtifactProvider;
 import io.apicurio.registry.serde.fallback.FallbackArtifactProvider;
 import io.apicurio.registry.serde.headers.DefaultHeadersHandler;
 import io.apicurio.registry.serde.headers.HeadersHandler;
+import io.apicurio.registry.serde.metrics.NoopSerdeMetrics;
+import io.apicurio.registry.serde.metrics.SerdeMetrics;
 import io.apicurio.registry.serde.strategy.ArtifactResolverStrategy;
 import io.apicurio.registry.serde.strategy.TopicIdStrategy;
 
@@ -138,12 +140,33 @@ public class SerdeConfig {
     public static final String ID_HANDLER = "apicurio.registry.id-handler";
     public static final String ID_HANDLER_DEFAULT = DefaultIdHandler.class.getName();
 
+    /**
+     * Fully qualified Java classname of a class that implements {@link SerdeMetrics} and receives measurements
+     * of serialization, deserialization, registry calls and the resolver caches.  By default nothing is measured.
+     * Set to {@link io.apicurio.registry.serde.metrics.MicrometerSerdeMetrics} to report to Micrometer.
+     */
+    public static final String METRICS = "apicurio.registry.metrics";
+    public static final String METRICS_DEFAULT = NoopSerdeMetrics.class.getName();
+
+    /**
+     * Optional, the Micrometer {@code MeterRegistry} instance used by
+     * {@link io.apicurio.registry.serde.metrics.MicrometerSerdeMetrics}.  Defaults to the global registry.
+     */
+    public static final String METRICS_MICROMETER_REGISTRY = "apicurio.registry.metrics.micrometer.registry";
+
     /**
      * Shortcut for enabling the Legacy (Confluent compatible) implementation of {@link IdHandler}.  Should
      * not be used with "ID_HANDLER".  The value should be 'true' or 'false'.
      */
     public static final String ENABLE_CONFLUENT_ID_HANDLER = "apicurio.registry.as-confluent";
 
+    /**
+     * The number of bytes (8 or 4) of the fixed-width ids that {@link VarintIdHandler} expects when reading
+     * payloads written by {@link DefaultIdHandler} or {@link Legacy4ByteIdHandler}.
+     */
+    public static final String VARINT_ID_HANDLER_LEGACY_ID_SIZE = "apicurio.registry.id-handler.varint.legacy-id-size";
+    public static final int VARINT_ID_HANDLER_LEGACY_ID_SIZE_DEFAULT = 8;
+
     /**
      * Boolean to indicate whether serde classes should pass Global Id information via message headers
      * instead of in the message payload.
@@ -163,6 +186,117 @@ public class SerdeConfig {
      */
     public static final String CHECK_PERIOD_MS = "apicurio.registry.check-period-ms";
 
+    /**
+     * Maximum number of entries kept in each of the schema resolver caches (e.g. schemas by globalId).  Once a
+     * cache is full, entries are evicted according to {@link SerdeConfig#CACHE_EVICTION_POLICY}.  Use 0 for
+     * unbounded caches.
+     */
+    public static final String CACHE_MAX_SIZE = "apicurio.registry.cache.max-size";
+    public static final long CACHE_MAX_SIZE_DEFAULT = 0;
+
+    /**
+     * Which entries are evicted first once a schema resolver cache is full, one of
+     * {@link io.apicurio.registry.serde.cache.EvictionPolicy} ('LRU' or 'LFU').
+     */
+    public static final String CACHE_EVICTION_POLICY = "apicurio.registry.cache.eviction-policy";
+    public static final String CACHE_EVICTION_POLICY_DEFAULT = "LRU";
+
+    /**
+     * Indicates how long schemas looked up by id (globalId or contentId) are cached.  Schemas are immutable, so
+     * by default they are cached until evicted.
+     */
+    public static final String CACHE_TTL_MS = "apicurio.registry.cache.ttl-ms";
+
+    /**
+     * When set (along with {@link SerdeConfig#CHECK_PERIOD_MS}), artifacts that are looked up by coordinates
+     * (e.g. to find the latest version) and are older than this are re-fetched in the background the next time
+     * they are used, instead of blocking a record once the check period has elapsed.
+     */
+    public static final String CACHE_REFRESH_AHEAD_MS = "apicurio.registry.cache.refresh-ahead-ms";
+
+    /**
+     * How long (in milliseconds) a failed schema lookup is remembered: until then, lookups of the same schema
+     * fail with the same error instead of calling the registry again.  Disabled by default (0).
+     */
+    public static final String CACHE_NEGATIVE_TTL_MS = "apicurio.registry.cache.negative-ttl-ms";
+    public static final long CACHE_NEGATIVE_TTL_MS_DEFAULT = 0;
+
+    /**
+     * Maximum number of schema lookups run at once in the background (e.g. asynchronous lookups and
+     * refresh-ahead), for each serde instance.
+     */
+    public static final String CACHE_LOADER_THREADS = "apicurio.registry.cache.loader-threads";
+    public static final int CACHE_LOADER_THREADS_DEFAULT = 4;
+
+    /**
+     * Number of consecutive failed calls to the registry (connection errors or server errors) after which the
+     * serde classes stop calling it for a while (see {@link SerdeConfig#CIRCUIT_BREAKER_BACKOFF_MS}).
+     * Disabled by default (0).
+     */
+    public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD = "apicurio.registry.circuit-breaker.failure-threshold";
+    public static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD_DEFAULT = 0;
+
+    /**
+     * How long (in milliseconds) the serde classes stop calling the registry once the circuit breaker opens.
+     * Doubles every time the registry still fails once calls are resumed, up to
+     * {@link SerdeConfig#CIRCUIT_BREAKER_MAX_BACKOFF_MS}.
+     */
+    public static final String CIRCUIT_BREAKER_BACKOFF_MS = "apicurio.registry.circuit-breaker.backoff-ms";
+    public static final long CIRCUIT_BREAKER_BACKOFF_MS_DEFAULT = 1000;
+
+    /**
+     * The maximum time (in milliseconds) the serde classes stop calling the registry once the circuit breaker opens.
+     */
+    public static final String CIRCUIT_BREAKER_MAX_BACKOFF_MS = "apicurio.registry.circuit-breaker.max-backoff-ms";
+    public static final long CIRCUIT_BREAKER_MAX_BACKOFF_MS_DEFAULT = 60000;
+
+    /**
+     * Optional, a local directory where schemas looked up by id (globalId or contentId) are cached, so that they
+     * are not fetched from the registry again after a restart, and can still be used while the registry is
+     * unreachable.  The directory can be shared by several serde classes and processes, but not by serde classes
+     * connected to different registries.
+     */
+    public static final String CACHE_DISK_DIRECTORY = "apicurio.registry.cache.disk.directory";
+
+    /**
+     * Maximum time (in milliseconds) a serde class waits for a schema to be fetched from the registry by id
+     * (globalId or contentId).  Concurrent lookups of the same id share a single request to the registry.
+     */
+    public static final String SCHEMA_RESOLUTION_TIMEOUT_MS = "apicurio.registry.schema-resolution.timeout-ms";
+    public static final long SCHEMA_RESOLUTION_TIMEOUT_MS_DEFAULT = 30000;
+
+    /**
+     * Comma separated list of globalIds of the schemas to fetch from the registry when a serde class is
+     * configured, so that the first records do not wait for them.
+     */
+    public static final String WARMUP_GLOBAL_IDS = "apicurio.registry.warmup.global-ids";
+
+    /**
+     * Comma separated list of artifacts to fetch from the registry when a serde class is configured, as
+     * <code>groupId/artifactId</code> (latest version) or <code>groupId/artifactId/version</code>.  The groupId
+     * can be omitted (<code>artifactId</code>) for artifacts in the default group.
+     */
+    public static final String WARMUP_ARTIFACTS = "apicurio.registry.warmup.artifacts";
+
+    /**
+     * GroupId whose artifacts (latest versions, at most {@link SerdeConfig#CACHE_MAX_SIZE} of them if the caches
+     * are bounded) are fetched from the registry when a serde class is configured.
+     */
+    public static final String WARMUP_GROUP_ID = "apicurio.registry.warmup.group-id";
+
+    /**
+     * Maximum time (in milliseconds) spent waiting for the schemas to warm up.
+     */
+    public static final String WARMUP_TIMEOUT_MS = "apicurio.registry.warmup.timeout-ms";
+    public static final long WARMUP_TIMEOUT_MS_DEFAULT = 30000;
+
+    /**
+     * If true, configuring a serde class fails when any of the schemas to warm up cannot be fetched.  Otherwise
+     * failures are logged and those schemas are fetched when first used.
+     */
+    public static final String WARMUP_REQUIRED = "apicurio.registry.warmup.required";
+    public static final boolean WARMUP_REQUIRED_DEFAULT = false;
+
     /**
      * Configures the serdes to use the specified {@link IdOption} as the identifier for the artifacts.
      * Instructs the serializer to write the specified id into the kafka records and
@@ -216,6 +350,13 @@ public class SerdeConfig {
     public static final String VALIDATION_ENABLED = "apicurio.registry.serde.validation-enabled";
     public static final boolean VALIDATION_ENABLED_DEFAULT = true;
 
+    /**
+     * When validation is enabled, only one of every N records is validated.  Not applicable to all serde
+     * classes.  The default (1) validates every record.
+     */
+    public static final String VALIDATION_SAMPLE_RATE = "apicurio.registry.serde.validation-sample-rate";
+    public static final int VALIDATION_SAMPLE_RATE_DEFAULT = 1;
+
     /**
      * Only applicable for deserializers
      * Optional, set explicitly the groupId used as fallback for resolving the artifact used for deserialization.
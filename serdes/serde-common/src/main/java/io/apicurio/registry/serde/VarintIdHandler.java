@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.serde;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.utils.ByteUtils;
+
+import io.apicurio.registry.serde.config.BaseKafkaSerDeConfig;
+import io.apicurio.registry.serde.config.IdOption;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+
+/**
+ * IdHandler that writes the id as a zig-zag encoded varint (1 to 10 bytes, ids below 64 take a single byte),
+ * after the {@link #VARINT_MAGIC_BYTE} so that the format can be told apart from the fixed-width ones.
+ *
+ * Payloads written by {@link DefaultIdHandler} or {@link Legacy4ByteIdHandler} (magic byte 0x0) can still be
+ * read, see {@link SerdeConfig#VARINT_ID_HANDLER_LEGACY_ID_SIZE}.  To migrate, configure this handler on the
+ * consumers first, then on the producers.
+ */
+public class VarintIdHandler implements IdHandler {
+    public static final byte VARINT_MAGIC_BYTE = 0x1;
+    static final int maxIdSize = 10; // longest varint of a long
+
+    private IdOption idOption = IdOption.globalId;
+    private int legacyIdSize = SerdeConfig.VARINT_ID_HANDLER_LEGACY_ID_SIZE_DEFAULT;
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#configure(java.util.Map, boolean)
+     */
+    @Override
+    public void configure(Map<String, Object> configs, boolean isKey) {
+        BaseKafkaSerDeConfig config = new BaseKafkaSerDeConfig(configs);
+        idOption = config.useIdOption();
+        legacyIdSize = config.getVarintIdHandlerLegacyIdSize();
+        if (legacyIdSize != DefaultIdHandler.idSize && legacyIdSize != Legacy4ByteIdHandler.idSize) {
+            throw new ConfigException(SerdeConfig.VARINT_ID_HANDLER_LEGACY_ID_SIZE, legacyIdSize, "Must be 8 or 4");
+        }
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#writeId(io.apicurio.registry.serde.strategy.ArtifactReference, java.io.OutputStream)
+     */
+    @Override
+    public void writeId(ArtifactReference reference, OutputStream out) throws IOException {
+        // Same encoding as ByteUtils.writeVarlong, which only writes to a DataOutput or a ByteBuffer
+        long v = zigZag(getId(reference));
+        while ((v & 0xffffffffffffff80L) != 0L) {
+            out.write(((int) v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#writeId(io.apicurio.registry.serde.strategy.ArtifactReference, java.nio.ByteBuffer)
+     */
+    @Override
+    public void writeId(ArtifactReference reference, ByteBuffer buffer) {
+        ByteUtils.writeVarlong(getId(reference), buffer);
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#readId(java.nio.ByteBuffer)
+     */
+    @Override
+    public ArtifactReference readId(ByteBuffer buffer) {
+        long id;
+        try {
+            id = ByteUtils.readVarlong(buffer);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Invalid varint id", e);
+        }
+        return toReference(id);
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#idSize()
+     */
+    @Override
+    public int idSize() {
+        return maxIdSize;
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#idSize(io.apicurio.registry.serde.strategy.ArtifactReference)
+     */
+    @Override
+    public int idSize(ArtifactReference reference) {
+        return ByteUtils.sizeOfVarlong(getId(reference));
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#isMagicByte(byte)
+     */
+    @Override
+    public boolean isMagicByte(byte magicByte) {
+        return magicByte == VARINT_MAGIC_BYTE || magicByte == AbstractKafkaSerDe.MAGIC_BYTE;
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#writeMagicByteAndId(io.apicurio.registry.serde.strategy.ArtifactReference, java.io.OutputStream)
+     */
+    @Override
+    public void writeMagicByteAndId(ArtifactReference reference, OutputStream out) throws IOException {
+        out.write(VARINT_MAGIC_BYTE);
+        writeId(reference, out);
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#writeMagicByteAndId(io.apicurio.registry.serde.strategy.ArtifactReference, java.nio.ByteBuffer)
+     */
+    @Override
+    public void writeMagicByteAndId(ArtifactReference reference, ByteBuffer buffer) {
+        buffer.put(VARINT_MAGIC_BYTE);
+        writeId(reference, buffer);
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.IdHandler#readMagicByteAndId(java.nio.ByteBuffer)
+     */
+    @Override
+    public ArtifactReference readMagicByteAndId(ByteBuffer buffer) {
+        byte magicByte = buffer.get();
+        if (magicByte == VARINT_MAGIC_BYTE) {
+            return readId(buffer);
+        } else if (magicByte == AbstractKafkaSerDe.MAGIC_BYTE) {
+            return toReference(legacyIdSize == Legacy4ByteIdHandler.idSize ? buffer.getInt() : buffer.getLong());
+        } else {
+            throw new SerializationException("Unknown magic byte!");
+        }
+    }
+
+    private long getId(ArtifactReference reference) {
+        if (idOption == IdOption.contentId) {
+            if (reference.getContentId() == null) {
+                throw new SerializationException("Missing contentId. IdOption is contentId but there is no contentId in the ArtifactReference");
+            }
+            return reference.getContentId();
+        } else {
+            return reference.getGlobalId();
+        }
+    }
+
+    private ArtifactReference toReference(long id) {
+        if (idOption == IdOption.contentId) {
+            return ArtifactReference.builder().contentId(id).build();
+        } else {
+            return ArtifactReference.builder().globalId(id).build();
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of warming up a {@link SchemaResolver}, i.e. of fetching the configured schemas from the registry
+ * before any record needs them.
+ */
+public class WarmupResult {
+
+    private final int requested;
+    private final int loaded;
+    private final Map<String, Throwable> failures;
+    private final long durationMs;
+
+    /**
+     * Constructor.
+     * @param requested number of schemas to warm up
+     * @param loaded number of schemas fetched (or already cached)
+     * @param failures the errors of the schemas (or groups) that could not be fetched, by description
+     * @param durationMs
+     */
+    public WarmupResult(int requested, int loaded, Map<String, Throwable> failures, long durationMs) {
+        this.requested = requested;
+        this.loaded = loaded;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * @return true if every configured schema has been fetched
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the requested
+     */
+    public int getRequested() {
+        return requested;
+    }
+
+    /**
+     * @return the loaded
+     */
+    public int getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return the failures, by description (e.g. "globalId 42" or "group my-group")
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the durationMs
+     */
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "WarmupResult [requested=" + requested + ", loaded=" + loaded + ", failures=" + failures.keySet()
+                + ", durationMs=" + durationMs + "]";
+    }
+
+}
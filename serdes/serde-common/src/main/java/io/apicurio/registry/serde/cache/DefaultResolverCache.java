@@ -0,0 +1,538 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default implementation of {@link ResolverCache}.  Reads are lock free, and missing values are loaded
+ * without holding any lock: concurrent misses for the same key share a single in-flight load, while misses
+ * for different keys are loaded in parallel.  The cache can be configured with:
+ * <ul>
+ * <li>a maximum size - once it is exceeded, the entries to evict are chosen using the {@link EvictionPolicy}.
+ *  Eviction is done in batches (about a tenth of the cache at a time), so its cost is amortized over many
+ *  insertions.  The policies are approximated with a CLOCK sweep, which doesn't need to order the entries:
+ *  each entry has a small use counter, capped at 1 for LRU and at {@link #MAX_FREQUENCY} for LFU.  The sweep
+ *  halves the counter of each entry it passes and evicts the entries it finds at 0, so an entry is only
+ *  evicted if it hasn't been read since the sweep last passed it.  Entries that haven't been read yet are not
+ *  evicted while they are among the last fifth of the entries written, so that they are not the first ones
+ *  to go just because they haven't had the time to be read.</li>
+ * <li>an expiration time - entries older than this are reloaded (or treated as missing).</li>
+ * <li>a negative TTL - when loading a value fails, lookups of the same key fail with the same error, without
+ *  loading it again, for this long.  This keeps a missing artifact or an unavailable registry from being
+ *  queried for every record.</li>
+ * <li>a refresh-ahead time - entries older than this (but not expired yet) that were loaded through
+ *  {@link #get(Object, Function)} are reloaded in the background the next time they are read, while the
+ *  current value keeps being returned.  This way callers never wait for an entry that is in use to be
+ *  reloaded.</li>
+ * </ul>
+ * Asynchronous loads and refreshes run on a bounded executor (see {@link #newLoaderExecutor(int)}): when it
+ * is saturated they fail with a {@link RejectedExecutionException} instead of piling up.
+ */
+public class DefaultResolverCache<K, V> implements ResolverCache<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultResolverCache.class);
+
+    private static final int MIN_FAILURES_PURGE_SIZE = 1000;
+    static final int MAX_FREQUENCY = 15;
+    // An entry read at the maximum frequency is evicted on the 5th pass of the sweep (15 -> 7 -> 3 -> 1 -> 0)
+    private static final int MAX_SWEEPS = 5;
+    // The part of the cache made of the last entries written that aren't evicted until they are read
+    private static final int PROTECTED_FRACTION = 5;
+
+    public static final int DEFAULT_LOADER_THREADS = 4;
+    private static final int LOADER_QUEUE_SIZE = 10000;
+    private static final long LOADER_KEEP_ALIVE_MS = 60000;
+
+    // Used by the caches that are not given an executor
+    private static final Executor DEFAULT_LOADER_EXECUTOR = newLoaderExecutor(DEFAULT_LOADER_THREADS);
+
+    private final Map<K, Entry<K, V>> cache = new ConcurrentHashMap<>();
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final Map<K, Failure> failures = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // The CLOCK hand, guarded by the eviction lock
+    private Iterator<Map.Entry<K, Entry<K, V>>> hand;
+    // The number of entries written so far
+    private final AtomicLong writes = new AtomicLong();
+
+    private final long maxSize;
+    private final EvictionPolicy evictionPolicy;
+    private final int maxFrequency;
+    private final long expireAfterWriteMs;
+    private final long refreshAfterWriteMs;
+    private final long negativeTtlMs;
+    private final Executor loaderExecutor;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+
+    /**
+     * Creates an unbounded cache whose entries never expire.
+     */
+    public DefaultResolverCache() {
+        this(0, EvictionPolicy.LRU, -1, -1);
+    }
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries, or 0 (or less) for no limit
+     * @param evictionPolicy
+     * @param expireAfterWriteMs how long entries are valid for, or a negative value for no expiration
+     * @param refreshAfterWriteMs how old entries must be to be refreshed in the background when they
+     *  are read, or 0 (or less) to disable refreshing
+     */
+    public DefaultResolverCache(long maxSize, EvictionPolicy evictionPolicy, long expireAfterWriteMs, long refreshAfterWriteMs) {
+        this(maxSize, evictionPolicy, expireAfterWriteMs, refreshAfterWriteMs, 0);
+    }
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries, or 0 (or less) for no limit
+     * @param evictionPolicy
+     * @param expireAfterWriteMs how long entries are valid for, or a negative value for no expiration
+     * @param refreshAfterWriteMs how old entries must be to be refreshed in the background when they
+     *  are read, or 0 (or less) to disable refreshing
+     * @param negativeTtlMs how long load failures are remembered, or 0 (or less) to disable negative caching
+     */
+    public DefaultResolverCache(long maxSize, EvictionPolicy evictionPolicy, long expireAfterWriteMs, long refreshAfterWriteMs, long negativeTtlMs) {
+        this(maxSize, evictionPolicy, expireAfterWriteMs, refreshAfterWriteMs, negativeTtlMs, null);
+    }
+
+    /**
+     * Constructor.
+     * @param maxSize the maximum number of entries, or 0 (or less) for no limit
+     * @param evictionPolicy
+     * @param expireAfterWriteMs how long entries are valid for, or a negative value for no expiration
+     * @param refreshAfterWriteMs how old entries must be to be refreshed in the background when they
+     *  are read, or 0 (or less) to disable refreshing
+     * @param negativeTtlMs how long load failures are remembered, or 0 (or less) to disable negative caching
+     * @param loaderExecutor runs the asynchronous loads and the refreshes, or null to use an executor shared
+     *  with the other caches
+     */
+    public DefaultResolverCache(long maxSize, EvictionPolicy evictionPolicy, long expireAfterWriteMs, long refreshAfterWriteMs, long negativeTtlMs,
+            Executor loaderExecutor) {
+        this.maxSize = maxSize;
+        this.evictionPolicy = evictionPolicy == null ? EvictionPolicy.LRU : evictionPolicy;
+        this.maxFrequency = this.evictionPolicy == EvictionPolicy.LFU ? MAX_FREQUENCY : 1;
+        this.expireAfterWriteMs = expireAfterWriteMs;
+        this.refreshAfterWriteMs = refreshAfterWriteMs;
+        this.negativeTtlMs = negativeTtlMs;
+        this.loaderExecutor = loaderExecutor == null ? DEFAULT_LOADER_EXECUTOR : loaderExecutor;
+    }
+
+    /**
+     * Creates an executor suitable to load the values of caches in the background: it runs at most the given
+     * number of loads at once, queues a bounded number of them and rejects the others.  Its threads are
+     * daemon threads that stop once they have been idle for a while, so it doesn't need to be shut down.
+     * @param threads the maximum number of loads run at once
+     */
+    public static Executor newLoaderExecutor(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("The number of cache loader threads must be positive: " + threads);
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, LOADER_KEEP_ALIVE_MS, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(LOADER_QUEUE_SIZE), new LoaderThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#get(java.lang.Object)
+     */
+    @Override
+    public V get(K key) {
+        Entry<K, V> entry = validEntry(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        touch(entry);
+        maybeRefresh(key, entry);
+        return entry.value;
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#get(java.lang.Object, java.util.function.Function)
+     */
+    @Override
+    public V get(K key, Function<K, V> loader) {
+        Entry<K, V> entry = validEntry(key);
+        if (entry != null) {
+            hits.increment();
+            touch(entry);
+            maybeRefresh(key, entry);
+            return entry.value;
+        }
+        Throwable failure = recentFailure(key);
+        if (failure != null) {
+            throw failure instanceof RuntimeException ? (RuntimeException) failure : new CompletionException(failure);
+        }
+        // Load on the calling thread (unless another thread is already loading the value)
+        try {
+            return load(key, loader, Runnable::run).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#getAsync(java.lang.Object, java.util.function.Function)
+     */
+    @Override
+    public CompletableFuture<V> getAsync(K key, Function<K, V> loader) {
+        Entry<K, V> entry = validEntry(key);
+        if (entry != null) {
+            hits.increment();
+            touch(entry);
+            maybeRefresh(key, entry);
+            return CompletableFuture.completedFuture(entry.value);
+        }
+        Throwable failure = recentFailure(key);
+        if (failure != null) {
+            CompletableFuture<V> failed = new CompletableFuture<>();
+            failed.completeExceptionally(failure);
+            return failed;
+        }
+        return load(key, loader, loaderExecutor);
+    }
+
+    /**
+     * Loads the value for the given key using the given executor, unless it is already being loaded.
+     */
+    private CompletableFuture<V> load(K key, Function<K, V> loader, Executor executor) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, future);
+        if (inFlight != null) {
+            return inFlight;
+        }
+
+        // The value may have been loaded between the cache lookup and registering this load
+        Entry<K, V> entry = validEntry(key);
+        if (entry != null) {
+            loading.remove(key, future);
+            touch(entry);
+            future.complete(entry.value);
+            return future;
+        }
+
+        misses.increment();
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = loader.apply(key);
+                    ifStillLoading(key, future, () -> {
+                        cache.put(key, new Entry<>(value, loader, writes.incrementAndGet()));
+                        failures.remove(key);
+                    });
+                    future.complete(value);
+                } catch (Throwable t) {
+                    loadFailures.increment();
+                    ifStillLoading(key, future, () -> rememberFailure(key, t));
+                    future.completeExceptionally(t);
+                } finally {
+                    loading.remove(key, future);
+                }
+                evictIfNeeded();
+            });
+        } catch (RejectedExecutionException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Runs the given action, which caches the outcome of the given load, unless the key was removed (or the
+     * cache cleared) since the load started: the callers waiting for the load still get its outcome, but it
+     * isn't cached.
+     */
+    private void ifStillLoading(K key, CompletableFuture<V> future, Runnable action) {
+        loading.computeIfPresent(key, (k, current) -> {
+            if (current == future) {
+                action.run();
+            }
+            return current;
+        });
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#put(java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public void put(K key, V value) {
+        cache.put(key, new Entry<>(value, null, writes.incrementAndGet()));
+        failures.remove(key);
+        evictIfNeeded();
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#remove(java.lang.Object)
+     */
+    @Override
+    public void remove(K key) {
+        // Removed from the loads first, so that an in-flight load can't put the entry back
+        loading.remove(key);
+        cache.remove(key);
+        failures.remove(key);
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#clear()
+     */
+    @Override
+    public void clear() {
+        loading.clear();
+        cache.clear();
+        failures.clear();
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#size()
+     */
+    @Override
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @see io.apicurio.registry.serde.cache.ResolverCache#stats()
+     */
+    @Override
+    public ResolverCacheStats stats() {
+        return new ResolverCacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(),
+                refreshes.sum(), loadFailures.sum(), negativeHits.sum(), cache.size());
+    }
+
+    /**
+     * Returns the entry for the given key, removing it if it has expired.
+     */
+    private Entry<K, V> validEntry(K key) {
+        Entry<K, V> entry = cache.get(key);
+        if (entry != null && expireAfterWriteMs >= 0 && isExpired(entry, System.currentTimeMillis())) {
+            if (cache.remove(key, entry)) {
+                expirations.increment();
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the error of the last load of the given key, if it failed less than the negative TTL ago.
+     */
+    private Throwable recentFailure(K key) {
+        if (negativeTtlMs <= 0) {
+            return null;
+        }
+        Failure failure = failures.get(key);
+        if (failure == null) {
+            return null;
+        }
+        if (failure.expiresAt <= System.currentTimeMillis()) {
+            failures.remove(key, failure);
+            return null;
+        }
+        negativeHits.increment();
+        return failure.error;
+    }
+
+    private void rememberFailure(K key, Throwable error) {
+        if (negativeTtlMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Failed keys are not bounded by the cache size, so drop the expired ones once there are many of them
+        if (failures.size() >= Math.max(maxSize, MIN_FAILURES_PURGE_SIZE)) {
+            failures.values().removeIf(failure -> failure.expiresAt <= now);
+        }
+        failures.put(key, new Failure(error, now + negativeTtlMs));
+    }
+
+    private void touch(Entry<K, V> entry) {
+        entry.touch(maxFrequency);
+    }
+
+    private boolean isExpired(Entry<K, V> entry, long now) {
+        return expireAfterWriteMs >= 0 && entry.writeTime + expireAfterWriteMs < now;
+    }
+
+    private void maybeRefresh(K key, Entry<K, V> entry) {
+        if (refreshAfterWriteMs <= 0 || entry.loader == null
+                || entry.writeTime + refreshAfterWriteMs > System.currentTimeMillis()
+                || !entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            loaderExecutor.execute(() -> {
+                try {
+                    V value = entry.loader.apply(key);
+                    if (cache.replace(key, entry, new Entry<>(value, entry.loader, entry))) {
+                        refreshes.increment();
+                    }
+                } catch (RuntimeException e) {
+                    loadFailures.increment();
+                    log.debug("Failed to refresh cache entry {}: {}", key, e.getMessage());
+                } finally {
+                    entry.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void evictIfNeeded() {
+        if (maxSize <= 0 || cache.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = (int) (cache.size() - maxSize);
+            if (excess <= 0) {
+                return;
+            }
+            // Evict a little more than needed, so that the next insertions don't all trigger an eviction
+            int toEvict = (int) Math.min(cache.size(), excess + maxSize / 10);
+
+            // Entries written after this one are protected until they are read
+            long protectedAfter = writes.get() - Math.max(1, maxSize / PROTECTED_FRACTION);
+            // Entries may keep being read while the hand sweeps, so after a few sweeps evict whatever it points at
+            long maxSteps = (long) MAX_SWEEPS * cache.size();
+            long steps = 0;
+            int evicted = 0;
+            while (evicted < toEvict && !cache.isEmpty()) {
+                if (hand == null || !hand.hasNext()) {
+                    hand = cache.entrySet().iterator();
+                    continue;
+                }
+                Map.Entry<K, Entry<K, V>> next = hand.next();
+                Entry<K, V> entry = next.getValue();
+                int frequency = entry.frequency;
+                if (steps++ < maxSteps && (frequency > 0 || entry.isProtected(protectedAfter))) {
+                    entry.frequency = frequency >> 1;
+                } else if (cache.remove(next.getKey(), entry)) {
+                    evictions.increment();
+                    evicted++;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static class Entry<K, V> {
+
+        final V value;
+        final Function<K, V> loader;
+        final long writeTime = System.currentTimeMillis();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        // The number of entries written to the cache when this one was
+        final long writeCount;
+        // Only used to choose which entries to evict, so lost updates are acceptable
+        volatile int frequency;
+        volatile boolean read;
+
+        Entry(V value, Function<K, V> loader, long writeCount) {
+            this.value = value;
+            this.loader = loader;
+            this.writeCount = writeCount;
+        }
+
+        /**
+         * Creates the refreshed entry of the given entry, which keeps its eviction state.
+         */
+        Entry(V value, Function<K, V> loader, Entry<K, V> refreshed) {
+            this(value, loader, refreshed.writeCount);
+            this.frequency = refreshed.frequency;
+            this.read = refreshed.read;
+        }
+
+        /**
+         * Whether the entry must not be evicted yet: it hasn't been read, and was written after the given
+         * number of entries.
+         */
+        boolean isProtected(long protectedAfter) {
+            return !read && writeCount > protectedAfter;
+        }
+
+        /**
+         * Records a read of the entry.  Entries can be read by many threads at once, so the entry is only
+         * written to while its frequency is below the maximum.
+         */
+        void touch(int maxFrequency) {
+            if (!read) {
+                read = true;
+            }
+            int current = frequency;
+            if (current < maxFrequency) {
+                frequency = current + 1;
+            }
+        }
+    }
+
+    private static class Failure {
+
+        final Throwable error;
+        final long expiresAt;
+
+        Failure(Throwable error, long expiresAt) {
+            this.error = error;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class LoaderThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "apicurio-registry-cache-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
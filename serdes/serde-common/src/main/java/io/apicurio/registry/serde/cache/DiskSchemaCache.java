@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches schemas on the local disk, by id (globalId or contentId), so that they survive restarts and can
+ * be used while the registry is unreachable.  Schemas looked up by id never change, so cached files are
+ * never updated or expired.
+ *
+ * Each schema is stored in its own file, which is written to a temporary file first and then atomically
+ * moved into place, so several processes can safely share the same directory.  Ids are only unique within
+ * a registry, so a directory must not be shared by serdes connected to different registries.
+ */
+public class DiskSchemaCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskSchemaCache.class);
+
+    private static final String SUFFIX = ".schema";
+
+    private final Path directory;
+
+    /**
+     * Constructor.
+     * @param directory the directory where schemas are stored, created if it does not exist
+     */
+    public DiskSchemaCache(Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create schema cache directory " + directory, e);
+        }
+    }
+
+    /**
+     * Returns the cached schema, or null if it is not cached (or cannot be read).
+     * @param idType the kind of id, e.g. "globalId"
+     * @param id
+     */
+    public byte[] get(String idType, long id) {
+        Path file = file(idType, id);
+        try {
+            return Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Cannot read cached schema {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the given schema.  Failures are logged and otherwise ignored, the schema is simply not cached.
+     * @param idType the kind of id, e.g. "globalId"
+     * @param id
+     * @param schema
+     */
+    public void put(String idType, long id, byte[] schema) {
+        Path file = file(idType, id);
+        if (Files.exists(file)) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(directory, idType + "-" + id + "-", ".tmp");
+            Files.write(tmp, schema);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (FileAlreadyExistsException e) {
+            // Cached concurrently, by another thread or process
+        } catch (IOException e) {
+            log.warn("Cannot cache schema {}", file, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    log.debug("Cannot delete temporary file {}", tmp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the cached schema, if any.  Failures are logged and otherwise ignored.
+     * @param idType the kind of id, e.g. "globalId"
+     * @param id
+     */
+    public void remove(String idType, long id) {
+        Path file = file(idType, id);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot remove cached schema {}", file, e);
+        }
+    }
+
+    /**
+     * @return the directory where schemas are stored
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    private Path file(String idType, long id) {
+        return directory.resolve(idType + "-" + id + SUFFIX);
+    }
+
+}
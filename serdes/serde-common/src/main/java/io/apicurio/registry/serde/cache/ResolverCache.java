@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A cache used by schema resolvers to keep the results of registry lookups.  Implementations must be
+ * thread safe, since a single serde instance may be used by several threads.
+ *
+ * @see DefaultResolverCache
+ */
+public interface ResolverCache<K, V> {
+
+    /**
+     * Returns the cached value for the given key, or null if there is none (or it has expired).
+     * @param key
+     */
+    public V get(K key);
+
+    /**
+     * Returns the cached value for the given key, loading it with the given loader if there is none (or
+     * it has expired).  The loader may also be used to refresh the value in the background.  Concurrent
+     * calls for the same key only load the value once.
+     * @param key
+     * @param loader
+     */
+    public V get(K key, Function<K, V> loader);
+
+    /**
+     * Like {@link #get(Object, Function)}, but loads the value (if needed) asynchronously, so the
+     * caller can choose how long to wait for it.  Concurrent calls for the same key share the same future.
+     * @param key
+     * @param loader
+     */
+    public CompletableFuture<V> getAsync(K key, Function<K, V> loader);
+
+    public void put(K key, V value);
+
+    public void remove(K key);
+
+    public void clear();
+
+    public int size();
+
+    public ResolverCacheStats stats();
+
+}
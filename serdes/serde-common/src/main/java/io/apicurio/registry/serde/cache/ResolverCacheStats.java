@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.cache;
+
+/**
+ * A snapshot of the statistics of a {@link ResolverCache}.
+ */
+public class ResolverCacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long refreshes;
+    private final long loadFailures;
+    private final long negativeHits;
+    private final int size;
+
+    public ResolverCacheStats(long hits, long misses, long evictions, long expirations, long refreshes, long loadFailures, long negativeHits, int size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.refreshes = refreshes;
+        this.loadFailures = loadFailures;
+        this.negativeHits = negativeHits;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of lookups that found a valid entry
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find a valid entry
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of entries removed because the cache was full
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of entries removed because they expired
+     */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * @return the number of entries reloaded in the background before expiring
+     */
+    public long getRefreshes() {
+        return refreshes;
+    }
+
+    /**
+     * @return the number of loads (or background refreshes) that failed
+     */
+    public long getLoadFailures() {
+        return loadFailures;
+    }
+
+    /**
+     * @return the number of lookups that failed because loading the same key had recently failed
+     */
+    public long getNegativeHits() {
+        return negativeHits;
+    }
+
+    /**
+     * @return the number of entries in the cache
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the ratio of lookups that found a valid entry, or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "ResolverCacheStats [hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", expirations="
+                + expirations + ", refreshes=" + refreshes + ", loadFailures=" + loadFailures + ", negativeHits=" + negativeHits + ", size=" + size + "]";
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.cache;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A thread safe cache keyed by object identity, which does not prevent its keys from being garbage
+ * collected.  Lookups never call the keys' own hashCode or equals methods, so they stay cheap for keys
+ * that are expensive to compare (e.g. schemas).
+ *
+ * As with {@link java.util.WeakHashMap}, values must not strongly reference their keys, otherwise
+ * entries are never removed.
+ */
+public class WeakIdentityCache<K, V> {
+
+    private final Map<IdentityKey<K>, V> cache = new ConcurrentHashMap<>();
+    private final ReferenceQueue<K> queue = new ReferenceQueue<>();
+
+    public V get(K key) {
+        expungeStaleEntries();
+        return cache.get(new LookupKey<>(key));
+    }
+
+    /**
+     * Returns the value for the given key, computing it (without holding any lock) if there is none.
+     * If the function returns null, nothing is cached.
+     * @param key
+     * @param mappingFunction
+     */
+    public V computeIfAbsent(K key, Function<K, V> mappingFunction) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = mappingFunction.apply(key);
+        if (value == null) {
+            return null;
+        }
+        V existing = cache.putIfAbsent(new WeakKey<>(key, queue), value);
+        return existing == null ? value : existing;
+    }
+
+    public void put(K key, V value) {
+        expungeStaleEntries();
+        cache.put(new WeakKey<>(key, queue), value);
+    }
+
+    public void remove(K key) {
+        cache.remove(new LookupKey<>(key));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    public int size() {
+        expungeStaleEntries();
+        return cache.size();
+    }
+
+    private void expungeStaleEntries() {
+        Reference<? extends K> ref;
+        while ((ref = queue.poll()) != null) {
+            cache.remove(ref);
+        }
+    }
+
+    private interface IdentityKey<K> {
+        K get();
+    }
+
+    /**
+     * Compares equal to any key with the same referent.
+     */
+    private static boolean sameReferent(IdentityKey<?> key, Object other) {
+        if (key == other) {
+            return true;
+        }
+        if (!(other instanceof IdentityKey)) {
+            return false;
+        }
+        Object referent = key.get();
+        return referent != null && referent == ((IdentityKey<?>) other).get();
+    }
+
+    private static class WeakKey<K> extends WeakReference<K> implements IdentityKey<K> {
+
+        private final int hash;
+
+        WeakKey(K referent, ReferenceQueue<K> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return sameReferent(this, obj);
+        }
+    }
+
+    private static class LookupKey<K> implements IdentityKey<K> {
+
+        private final K referent;
+
+        LookupKey(K referent) {
+            this.referent = referent;
+        }
+
+        @Override
+        public K get() {
+            return referent;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return sameReferent(this, obj);
+        }
+    }
+
+}
@@ -34,9 +34,11 @@ public class BaseKafkaSerDeConfig extends AbstractConfig {
         ConfigDef configDef = new ConfigDef(base)
                 .define(ID_HANDLER, Type.CLASS, ID_HANDLER_DEFAULT, Importance.MEDIUM, "TODO docs")
                 .define(ENABLE_CONFLUENT_ID_HANDLER, Type.BOOLEAN, false, Importance.LOW, "TODO docs")
+                .define(VARINT_ID_HANDLER_LEGACY_ID_SIZE, Type.INT, VARINT_ID_HANDLER_LEGACY_ID_SIZE_DEFAULT, Importance.LOW, "TODO docs")
                 .define(ENABLE_HEADERS, Type.BOOLEAN, ENABLE_HEADERS_DEFAULT, Importance.MEDIUM, "TODO docs")
                 .define(HEADERS_HANDLER, Type.CLASS, HEADERS_HANDLER_DEFAULT, Importance.MEDIUM, "TODO docs")
-                .define(USE_ID, Type.STRING, USE_ID_DEFAULT, Importance.MEDIUM, "TODO docs");
+                .define(USE_ID, Type.STRING, USE_ID_DEFAULT, Importance.MEDIUM, "TODO docs")
+                .define(METRICS, Type.CLASS, METRICS_DEFAULT, Importance.LOW, "TODO docs");
         return configDef;
     }
 
@@ -56,6 +58,10 @@ public class BaseKafkaSerDeConfig extends AbstractConfig {
         return this.getBoolean(ENABLE_CONFLUENT_ID_HANDLER);
     }
 
+    public int getVarintIdHandlerLegacyIdSize() {
+        return this.getInt(VARINT_ID_HANDLER_LEGACY_ID_SIZE);
+    }
+
     public boolean enableHeaders() {
         return this.getBoolean(ENABLE_HEADERS);
     }
@@ -64,6 +70,10 @@ public class BaseKafkaSerDeConfig extends AbstractConfig {
         return this.get(HEADERS_HANDLER);
     }
 
+    public Object getMetrics() {
+        return this.get(METRICS);
+    }
+
     public IdOption useIdOption() {
         return IdOption.valueOf(this.getString(USE_ID));
     }
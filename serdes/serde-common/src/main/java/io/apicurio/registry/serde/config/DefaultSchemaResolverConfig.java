@@ -18,12 +18,16 @@ package io.apicurio.registry.serde.config;
 
 import static io.apicurio.registry.serde.SerdeConfig.*;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigDef.Importance;
 import org.apache.kafka.common.config.ConfigDef.Type;
 
+import io.apicurio.registry.serde.cache.EvictionPolicy;
+
 /**
  * @author Fabian Martinez
  */
@@ -47,6 +51,23 @@ public class DefaultSchemaResolverConfig extends BaseKafkaSerDeConfig {
                 .define(FIND_LATEST_ARTIFACT, Type.BOOLEAN, FIND_LATEST_ARTIFACT_DEFAULT, Importance.HIGH, "TODO docs")
 
                 .define(CHECK_PERIOD_MS, Type.LONG, null, Importance.MEDIUM, "TODO docs")
+                .define(CACHE_MAX_SIZE, Type.LONG, CACHE_MAX_SIZE_DEFAULT, Importance.LOW, "TODO docs")
+                .define(CACHE_EVICTION_POLICY, Type.STRING, CACHE_EVICTION_POLICY_DEFAULT, Importance.LOW, "TODO docs")
+                .define(CACHE_TTL_MS, Type.LONG, null, Importance.LOW, "TODO docs")
+                .define(CACHE_REFRESH_AHEAD_MS, Type.LONG, null, Importance.LOW, "TODO docs")
+                .define(CACHE_DISK_DIRECTORY, Type.STRING, null, Importance.LOW, "TODO docs")
+                .define(CACHE_NEGATIVE_TTL_MS, Type.LONG, CACHE_NEGATIVE_TTL_MS_DEFAULT, Importance.LOW, "TODO docs")
+                .define(CACHE_LOADER_THREADS, Type.INT, CACHE_LOADER_THREADS_DEFAULT, Importance.LOW, "TODO docs")
+                .define(CIRCUIT_BREAKER_FAILURE_THRESHOLD, Type.INT, CIRCUIT_BREAKER_FAILURE_THRESHOLD_DEFAULT, Importance.LOW, "TODO docs")
+                .define(CIRCUIT_BREAKER_BACKOFF_MS, Type.LONG, CIRCUIT_BREAKER_BACKOFF_MS_DEFAULT, Importance.LOW, "TODO docs")
+                .define(CIRCUIT_BREAKER_MAX_BACKOFF_MS, Type.LONG, CIRCUIT_BREAKER_MAX_BACKOFF_MS_DEFAULT, Importance.LOW, "TODO docs")
+                .define(SCHEMA_RESOLUTION_TIMEOUT_MS, Type.LONG, SCHEMA_RESOLUTION_TIMEOUT_MS_DEFAULT, Importance.LOW, "TODO docs")
+
+                .define(WARMUP_GLOBAL_IDS, Type.LIST, Collections.emptyList(), Importance.LOW, "TODO docs")
+                .define(WARMUP_ARTIFACTS, Type.LIST, Collections.emptyList(), Importance.LOW, "TODO docs")
+                .define(WARMUP_GROUP_ID, Type.STRING, null, Importance.LOW, "TODO docs")
+                .define(WARMUP_TIMEOUT_MS, Type.LONG, WARMUP_TIMEOUT_MS_DEFAULT, Importance.LOW, "TODO docs")
+                .define(WARMUP_REQUIRED, Type.BOOLEAN, WARMUP_REQUIRED_DEFAULT, Importance.LOW, "TODO docs")
 
                 .define(EXPLICIT_ARTIFACT_GROUP_ID, Type.STRING, null, Importance.MEDIUM, "TODO docs")
                 .define(EXPLICIT_ARTIFACT_ID, Type.STRING, null, Importance.MEDIUM, "TODO docs");
@@ -106,6 +127,70 @@ public class DefaultSchemaResolverConfig extends BaseKafkaSerDeConfig {
         return this.get(CHECK_PERIOD_MS);
     }
 
+    public long getCacheMaxSize() {
+        return this.getLong(CACHE_MAX_SIZE);
+    }
+
+    public EvictionPolicy getCacheEvictionPolicy() {
+        return EvictionPolicy.valueOf(this.getString(CACHE_EVICTION_POLICY).toUpperCase());
+    }
+
+    public Long getCacheTtlMs() {
+        return this.getLong(CACHE_TTL_MS);
+    }
+
+    public Long getCacheRefreshAheadMs() {
+        return this.getLong(CACHE_REFRESH_AHEAD_MS);
+    }
+
+    public String getCacheDiskDirectory() {
+        return this.getString(CACHE_DISK_DIRECTORY);
+    }
+
+    public long getCacheNegativeTtlMs() {
+        return this.getLong(CACHE_NEGATIVE_TTL_MS);
+    }
+
+    public int getCacheLoaderThreads() {
+        return this.getInt(CACHE_LOADER_THREADS);
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return this.getInt(CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+    }
+
+    public long getCircuitBreakerBackoffMs() {
+        return this.getLong(CIRCUIT_BREAKER_BACKOFF_MS);
+    }
+
+    public long getCircuitBreakerMaxBackoffMs() {
+        return this.getLong(CIRCUIT_BREAKER_MAX_BACKOFF_MS);
+    }
+
+    public long getSchemaResolutionTimeoutMs() {
+        return this.getLong(SCHEMA_RESOLUTION_TIMEOUT_MS);
+    }
+
+    public List<String> getWarmupGlobalIds() {
+        return this.getList(WARMUP_GLOBAL_IDS);
+    }
+
+    public List<String> getWarmupArtifacts() {
+        return this.getList(WARMUP_ARTIFACTS);
+    }
+
+    public String getWarmupGroupId() {
+        return this.getString(WARMUP_GROUP_ID);
+    }
+
+    public long getWarmupTimeoutMs() {
+        return this.getLong(WARMUP_TIMEOUT_MS);
+    }
+
+    public boolean isWarmupRequired() {
+        return this.getBoolean(WARMUP_REQUIRED);
+    }
+
     public String getExplicitArtifactGroupId() {
         return this.getString(EXPLICIT_ARTIFACT_GROUP_ID);
     }
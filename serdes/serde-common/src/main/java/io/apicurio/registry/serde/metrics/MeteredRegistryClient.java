@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+
+/**
+ * Wraps a {@link RegistryClient} so that the duration of every call made to the registry is reported to
+ * {@link SerdeMetrics#recordRegistryCall(String, long, boolean)}.
+ */
+public final class MeteredRegistryClient {
+
+    private MeteredRegistryClient() {
+    }
+
+    /**
+     * Returns a client that reports every call made with the given client to the given metrics.
+     * @param client
+     * @param metrics
+     */
+    public static RegistryClient wrap(RegistryClient client, SerdeMetrics metrics) {
+        return (RegistryClient) Proxy.newProxyInstance(RegistryClient.class.getClassLoader(),
+                new Class<?>[] { RegistryClient.class }, new Handler(client, metrics));
+    }
+
+    /**
+     * Returns true if the given client has been returned by {@link #wrap(RegistryClient, SerdeMetrics)}.
+     */
+    public static boolean isWrapped(RegistryClient client) {
+        return Proxy.isProxyClass(client.getClass()) && Proxy.getInvocationHandler(client) instanceof Handler;
+    }
+
+    private static class Handler implements InvocationHandler {
+
+        private final RegistryClient delegate;
+        private final SerdeMetrics metrics;
+
+        Handler(RegistryClient delegate, SerdeMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(delegate, args);
+            }
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(delegate, args);
+                metrics.recordRegistryCall(method.getName(), System.nanoTime() - start, true);
+                return result;
+            } catch (InvocationTargetException e) {
+                metrics.recordRegistryCall(method.getName(), System.nanoTime() - start, false);
+                throw e.getCause();
+            }
+        }
+    }
+
+}
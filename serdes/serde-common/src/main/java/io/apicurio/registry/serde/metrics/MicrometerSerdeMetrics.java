@@ -0,0 +1,248 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.metrics;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.apicurio.registry.serde.RegistryCircuitBreaker;
+import io.apicurio.registry.serde.SerdeConfig;
+import io.apicurio.registry.serde.cache.ResolverCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link SerdeMetrics} reporting to a Micrometer {@link MeterRegistry}: the one given to the constructor, the
+ * one configured with {@link SerdeConfig#METRICS_MICROMETER_REGISTRY}, or else the global registry.  Every
+ * meter is tagged with whether it measures keys or values and, when Kafka provides it, the client id, so
+ * serde instances of different clients do not share meters.  The meters reporting the state of a cache or of
+ * the circuit breaker are also tagged with an id unique to each instance of this class, since every serde
+ * instance has its own caches and circuit breaker.  Requires micrometer-core on the classpath.
+ *
+ * An instance can be shared by several serializers and deserializers as long as they have the same tags (e.g.
+ * the serializer and deserializer of a Serde), and its meters are removed once all of them are closed.
+ */
+public class MicrometerSerdeMetrics implements SerdeMetrics {
+
+    public static final String PREFIX = "apicurio.serde.";
+
+    private static final String CLIENT_ID = "client.id";
+    private static final String UNKNOWN_TOPIC = "unknown";
+    private static final String INSTANCE = "instance";
+
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final String instanceId = String.valueOf(INSTANCES.incrementAndGet());
+
+    private MeterRegistry registry;
+    private Tags tags = Tags.empty();
+    private int users;
+
+    // Every meter registered by this instance, removed from the registry on close
+    private final Set<Meter> meters = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, RecordMeters> serializationMeters = new ConcurrentHashMap<>();
+    private final Map<String, RecordMeters> deserializationMeters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> successfulCallTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> failedCallTimers = new ConcurrentHashMap<>();
+    private Timer validTimer;
+    private Timer invalidTimer;
+
+    public MicrometerSerdeMetrics() {
+    }
+
+    public MicrometerSerdeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public synchronized void configure(Map<String, ?> configs, boolean isKey) {
+        Tags serdeTags = Tags.of("key", String.valueOf(isKey));
+        Object clientId = configs.get(CLIENT_ID);
+        if (clientId != null) {
+            serdeTags = serdeTags.and(CLIENT_ID, clientId.toString());
+        }
+        if (users > 0 && !serdeTags.equals(tags)) {
+            throw new IllegalStateException("Serde metrics already in use with tags " + tags + ", can not also be used with "
+                    + serdeTags + ": use a separate " + getClass().getSimpleName() + " instance for keys and values");
+        }
+
+        if (registry == null) {
+            Object configured = configs.get(SerdeConfig.METRICS_MICROMETER_REGISTRY);
+            if (configured == null) {
+                registry = Metrics.globalRegistry;
+            } else if (configured instanceof MeterRegistry) {
+                registry = (MeterRegistry) configured;
+            } else {
+                throw new IllegalArgumentException("Invalid " + SerdeConfig.METRICS_MICROMETER_REGISTRY + ", expected a MeterRegistry instance: " + configured);
+            }
+        }
+        tags = serdeTags;
+        users++;
+        validTimer = validationTimer("valid");
+        invalidTimer = validationTimer("invalid");
+    }
+
+    @Override
+    public synchronized void close() {
+        if (users == 0 || --users > 0) {
+            return;
+        }
+        meters.forEach(registry::remove);
+        meters.clear();
+        serializationMeters.clear();
+        deserializationMeters.clear();
+        successfulCallTimers.clear();
+        failedCallTimers.clear();
+    }
+
+    @Override
+    public void recordSerialization(String topic, long durationNanos, int bytes) {
+        serializationMeters.computeIfAbsent(topicTag(topic), t -> new RecordMeters("serialization", t))
+                .record(durationNanos, bytes);
+    }
+
+    @Override
+    public void recordSerializationFailure(String topic, Throwable error) {
+        failureCounter("serialization", topic, error).increment();
+    }
+
+    @Override
+    public void recordDeserialization(String topic, long durationNanos, int bytes) {
+        deserializationMeters.computeIfAbsent(topicTag(topic), t -> new RecordMeters("deserialization", t))
+                .record(durationNanos, bytes);
+    }
+
+    @Override
+    public void recordDeserializationFailure(String topic, Throwable error) {
+        failureCounter("deserialization", topic, error).increment();
+    }
+
+    @Override
+    public void recordRegistryCall(String operation, long durationNanos, boolean success) {
+        Map<String, Timer> timers = success ? successfulCallTimers : failedCallTimers;
+        timers.computeIfAbsent(operation, op -> registryCallTimer(op, success ? "success" : "failure"))
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordValidation(long durationNanos, boolean valid) {
+        (valid ? validTimer : invalidTimer).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void bindCache(String name, ResolverCache<?, ?> cache) {
+        Tags cacheTags = tags.and(INSTANCE, instanceId).and("cache", name);
+        register(FunctionCounter.builder(PREFIX + "cache.hits", cache, c -> c.stats().getHits())
+                .tags(cacheTags).register(registry));
+        register(FunctionCounter.builder(PREFIX + "cache.misses", cache, c -> c.stats().getMisses())
+                .tags(cacheTags).register(registry));
+        register(FunctionCounter.builder(PREFIX + "cache.negative.hits", cache, c -> c.stats().getNegativeHits())
+                .tags(cacheTags).register(registry));
+        register(FunctionCounter.builder(PREFIX + "cache.load.failures", cache, c -> c.stats().getLoadFailures())
+                .tags(cacheTags).register(registry));
+        register(FunctionCounter.builder(PREFIX + "cache.evictions", cache, c -> c.stats().getEvictions())
+                .tags(cacheTags).register(registry));
+        register(Gauge.builder(PREFIX + "cache.size", cache, ResolverCache::size)
+                .tags(cacheTags).register(registry));
+    }
+
+    @Override
+    public void bindCircuitBreaker(RegistryCircuitBreaker circuitBreaker) {
+        Tags breakerTags = tags.and(INSTANCE, instanceId);
+        register(Gauge.builder(PREFIX + "circuit.breaker.state", circuitBreaker, b -> b.getState().ordinal())
+                .description("State of the circuit breaker around the registry: 0 closed, 1 open, 2 half open")
+                .tags(breakerTags).register(registry));
+        register(Gauge.builder(PREFIX + "circuit.breaker.consecutive.failures", circuitBreaker, RegistryCircuitBreaker::getConsecutiveFailures)
+                .tags(breakerTags).register(registry));
+        register(FunctionCounter.builder(PREFIX + "circuit.breaker.opened", circuitBreaker, RegistryCircuitBreaker::getOpenedCount)
+                .tags(breakerTags).register(registry));
+        register(FunctionCounter.builder(PREFIX + "circuit.breaker.rejected", circuitBreaker, RegistryCircuitBreaker::getRejectedCount)
+                .tags(breakerTags).register(registry));
+    }
+
+    private Timer registryCallTimer(String operation, String outcome) {
+        return register(Timer.builder(PREFIX + "registry.requests")
+                .description("Calls made to the registry by the serde classes")
+                .tags(tags)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    private Timer validationTimer(String outcome) {
+        return register(Timer.builder(PREFIX + "validation")
+                .description("Time spent validating records against their schema")
+                .tags(tags)
+                .tag("outcome", outcome)
+                .register(registry));
+    }
+
+    private Counter failureCounter(String operation, String topic, Throwable error) {
+        return register(Counter.builder(PREFIX + operation + ".failures")
+                .tags(tags)
+                .tag("topic", topicTag(topic))
+                .tag("exception", error.getClass().getSimpleName())
+                .register(registry));
+    }
+
+    private <M extends Meter> M register(M meter) {
+        meters.add(meter);
+        return meter;
+    }
+
+    private static String topicTag(String topic) {
+        return topic == null ? UNKNOWN_TOPIC : topic;
+    }
+
+    /**
+     * The meters of the records (de)serialized for a single topic.
+     */
+    private class RecordMeters {
+
+        private final Timer timer;
+        private final DistributionSummary size;
+
+        RecordMeters(String operation, String topic) {
+            this.timer = register(Timer.builder(PREFIX + operation)
+                    .tags(tags)
+                    .tag("topic", topic)
+                    .register(registry));
+            this.size = register(DistributionSummary.builder(PREFIX + operation + ".bytes")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .tag("topic", topic)
+                    .register(registry));
+        }
+
+        void record(long durationNanos, int bytes) {
+            timer.record(durationNanos, TimeUnit.NANOSECONDS);
+            size.record(bytes);
+        }
+    }
+
+}
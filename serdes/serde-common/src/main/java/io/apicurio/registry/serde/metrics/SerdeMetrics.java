@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.serde.metrics;
+
+import java.util.Map;
+
+import io.apicurio.registry.serde.RegistryCircuitBreaker;
+import io.apicurio.registry.serde.cache.ResolverCache;
+
+/**
+ * Receives measurements of the serde hot path: serialization and deserialization time and size, calls made
+ * to the registry, validation time, and the state of the resolver caches and circuit breaker.  Every method
+ * does nothing by default, so implementations only override what they are interested in.
+ *
+ * When {@link #isEnabled()} returns false the serde classes do not take any measurement at all, which is
+ * what the default {@link NoopSerdeMetrics} does.  Implementations must be thread safe.
+ *
+ * @see MicrometerSerdeMetrics
+ */
+public interface SerdeMetrics {
+
+    /**
+     * Called when a serializer or deserializer using this instance is configured.  Every call is matched by a
+     * call to {@link #close()} when that serializer or deserializer is closed.
+     * @param configs
+     * @param isKey
+     */
+    default void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    /**
+     * Called when a serializer or deserializer using this instance is closed.  Implementations release what
+     * they registered for it (e.g. meters) once every serializer and deserializer using them is closed.
+     */
+    default void close() {
+    }
+
+    /**
+     * Returns false if this implementation discards every measurement, in which case the serde classes
+     * skip measuring altogether.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called once a record has been serialized.
+     * @param topic
+     * @param durationNanos time spent serializing the record, including the schema lookup
+     * @param bytes size of the serialized record
+     */
+    default void recordSerialization(String topic, long durationNanos, int bytes) {
+    }
+
+    /**
+     * Called when a record could not be serialized.
+     * @param topic
+     * @param error
+     */
+    default void recordSerializationFailure(String topic, Throwable error) {
+    }
+
+    /**
+     * Called once a record has been deserialized.
+     * @param topic
+     * @param durationNanos time spent deserializing the record, including the schema lookup
+     * @param bytes size of the serialized record
+     */
+    default void recordDeserialization(String topic, long durationNanos, int bytes) {
+    }
+
+    /**
+     * Called when a record could not be deserialized.
+     * @param topic
+     * @param error
+     */
+    default void recordDeserializationFailure(String topic, Throwable error) {
+    }
+
+    /**
+     * Called once a call to the registry has completed (successfully or not).
+     * @param operation the name of the {@link io.apicurio.registry.rest.client.RegistryClient} method
+     * @param durationNanos
+     * @param success
+     */
+    default void recordRegistryCall(String operation, long durationNanos, boolean success) {
+    }
+
+    /**
+     * Called once a record has been validated against its schema.  Validators that work while the record is
+     * written or read (e.g. JSON Schema) report the time spent writing or reading the validated record.
+     * @param durationNanos
+     * @param valid
+     */
+    default void recordValidation(long durationNanos, boolean valid) {
+    }
+
+    /**
+     * Called when a schema resolver is configured, for each of its caches.  Implementations may keep a
+     * reference to the cache to report its {@link ResolverCache#stats() statistics}.
+     * @param name
+     * @param cache
+     */
+    default void bindCache(String name, ResolverCache<?, ?> cache) {
+    }
+
+    /**
+     * Called when a schema resolver is configured with a circuit breaker.  Implementations may keep a
+     * reference to the circuit breaker to report its state.
+     * @param circuitBreaker
+     */
+    default void bindCircuitBreaker(RegistryCircuitBreaker circuitBreaker) {
+    }
+
+}
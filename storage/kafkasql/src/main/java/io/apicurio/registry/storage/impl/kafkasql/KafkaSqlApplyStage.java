@@ -0,0 +1,285 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static io.apicurio.registry.metrics.MetricsConstants.KAFKASQL_APPLY_LAG;
+import static io.apicurio.registry.metrics.MetricsConstants.KAFKASQL_APPLY_LAG_DESCRIPTION;
+import static io.apicurio.registry.metrics.MetricsConstants.KAFKASQL_APPLY_QUEUE_DEPTH;
+import static io.apicurio.registry.metrics.MetricsConstants.KAFKASQL_APPLY_QUEUE_DEPTH_DESCRIPTION;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlSink;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Applies consumed journal records to the local store.  By default records are applied directly on the
+ * KSQL consumer thread.  When apply threads are configured, the consumer thread only dispatches records
+ * to a set of apply threads (each with its own bounded queue) and goes straight back to polling.
+ *
+ * Records are routed to apply threads by their partition key, so all records for the same artifact (or
+ * global rule, etc.) are applied by the same thread, in journal order.  Records that affect data owned by
+ * several partition keys (e.g. content, groups, the id sequences) are "barriers": all previously
+ * dispatched records are applied first, then the barrier is applied on the consumer thread, and only then
+ * are subsequent records dispatched.
+ */
+@ApplicationScoped
+public class KafkaSqlApplyStage {
+
+    private static final long WORKER_POLL_TIMEOUT_MS = 100;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    KafkaSqlConfiguration configuration;
+
+    @Inject
+    KafkaSqlSink kafkaSqlSink;
+
+    @Inject
+    KafkaSqlOffsetTracker offsets;
+
+    @Inject
+    MeterRegistry registry;
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Object idleLock = new Object();
+    private List<ApplyWorker> workers = Collections.emptyList();
+    private Timer lagTimer;
+
+    /**
+     * Starts the apply threads (if any are configured).  Must be called before records are dispatched.
+     */
+    public void start() {
+        Gauge.builder(KAFKASQL_APPLY_QUEUE_DEPTH, pending, AtomicInteger::get)
+            .description(KAFKASQL_APPLY_QUEUE_DEPTH_DESCRIPTION)
+            .register(registry);
+        lagTimer = Timer.builder(KAFKASQL_APPLY_LAG)
+            .description(KAFKASQL_APPLY_LAG_DESCRIPTION)
+            .register(registry);
+
+        int threads = configuration.applyThreads() == null ? 0 : configuration.applyThreads();
+        if (threads <= 0) {
+            log.info("Applying KSQL journal records on the consumer thread.");
+            return;
+        }
+
+        int capacity = Math.max(1, queueSize() / threads);
+        List<ApplyWorker> started = new ArrayList<>(threads);
+        for (int idx = 0; idx < threads; idx++) {
+            ApplyWorker worker = new ApplyWorker(capacity);
+            Thread thread = new Thread(worker);
+            thread.setDaemon(true);
+            thread.setName("KSQL Apply Thread " + idx);
+            thread.start();
+            started.add(worker);
+        }
+        workers = started;
+        log.info("Applying KSQL journal records using {} apply threads (queue size {}).", threads, queueSize());
+    }
+
+    /**
+     * Stops the apply threads.  Records still queued are discarded.
+     */
+    public void stop() {
+        workers.forEach(ApplyWorker::stop);
+    }
+
+    /**
+     * Dispatches the given records (in journal order) to be applied.  Blocks if the queue of the target
+     * apply thread is full.  When no apply threads are configured, the records are applied before this
+     * method returns.
+     * @param records
+     */
+    public void dispatch(List<ConsumerRecord<MessageKey, MessageValue>> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        if (workers.isEmpty()) {
+            apply(records);
+            return;
+        }
+
+        List<ConsumerRecord<MessageKey, MessageValue>> barriers = new ArrayList<>();
+        for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+            if (isBarrier(record)) {
+                barriers.add(record);
+                continue;
+            }
+            applyBarriers(barriers);
+            workerFor(record).enqueue(record);
+        }
+        applyBarriers(barriers);
+    }
+
+    /**
+     * Blocks until every record dispatched so far has been applied.
+     */
+    public void awaitIdle() {
+        synchronized (idleLock) {
+            while (pending.get() > 0) {
+                try {
+                    idleLock.wait(WORKER_POLL_TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if enough records are waiting to be applied that the consumer should stop fetching
+     * more until the apply threads catch up.
+     */
+    public boolean isSaturated() {
+        return !workers.isEmpty() && pending.get() >= queueSize();
+    }
+
+    private int queueSize() {
+        Integer size = configuration.applyQueueSize();
+        return size == null || size < 1 ? 1 : size;
+    }
+
+    private void applyBarriers(List<ConsumerRecord<MessageKey, MessageValue>> barriers) {
+        if (!barriers.isEmpty()) {
+            awaitIdle();
+            apply(barriers);
+            barriers.clear();
+        }
+    }
+
+    private void apply(List<ConsumerRecord<MessageKey, MessageValue>> records) {
+        kafkaSqlSink.processMessages(records);
+        long now = System.currentTimeMillis();
+        for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+            if (record.timestamp() > 0) {
+                lagTimer.record(Math.max(0, now - record.timestamp()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void release(int count) {
+        if (pending.addAndGet(-count) == 0) {
+            synchronized (idleLock) {
+                idleLock.notifyAll();
+            }
+        }
+    }
+
+    private ApplyWorker workerFor(ConsumerRecord<MessageKey, MessageValue> record) {
+        byte[] partitionKey = record.key().getPartitionKey().getBytes(StandardCharsets.UTF_8);
+        return workers.get(Utils.toPositive(Utils.murmur2(partitionKey)) % workers.size());
+    }
+
+    /**
+     * Returns true if the given record must not be applied concurrently with any other record.
+     */
+    private static boolean isBarrier(ConsumerRecord<MessageKey, MessageValue> record) {
+        switch (record.key().getType()) {
+            case Artifact:
+            case ArtifactRule:
+            case ArtifactVersion:
+            case GlobalRule:
+            case LogConfig:
+            case RoleMapping:
+                return false;
+            default:
+                // Content is shared by artifacts, group operations span many artifacts, and the id sequences
+                // are shared by every tenant (so ids must be handed out in journal order on every node).
+                return true;
+        }
+    }
+
+    /**
+     * Applies the records routed to a single apply thread, in the order they were dispatched.
+     */
+    private class ApplyWorker implements Runnable {
+
+        private final BlockingQueue<ConsumerRecord<MessageKey, MessageValue>> queue;
+        private volatile boolean running = true;
+
+        ApplyWorker(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void enqueue(ConsumerRecord<MessageKey, MessageValue> record) {
+            pending.incrementAndGet();
+            try {
+                queue.put(record);
+            } catch (InterruptedException e) {
+                release(1);
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while dispatching a KSQL journal record.", e);
+            }
+        }
+
+        void stop() {
+            running = false;
+        }
+
+        @Override
+        public void run() {
+            int maxBatch = Math.max(1, configuration.applyBatchSize() == null ? 1 : configuration.applyBatchSize());
+            List<ConsumerRecord<MessageKey, MessageValue>> batch = new ArrayList<>(maxBatch);
+            while (running) {
+                ConsumerRecord<MessageKey, MessageValue> first;
+                try {
+                    first = queue.poll(WORKER_POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (first == null) {
+                    continue;
+                }
+
+                batch.clear();
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                try {
+                    apply(batch);
+                } catch (Throwable t) {
+                    log.error("Failed to apply {} KSQL journal records.", batch.size(), t);
+                    // Don't hold back the records that depend on these forever.
+                    batch.forEach(offsets::applied);
+                } finally {
+                    release(batch.size());
+                }
+            }
+        }
+    }
+
+}
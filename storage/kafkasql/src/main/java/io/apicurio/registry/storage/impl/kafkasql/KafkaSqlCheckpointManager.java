@@ -0,0 +1,184 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+
+import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlStore;
+
+/**
+ * Keeps track of the journal records applied to a persistent local {@link KafkaSqlStore} (e.g. a file
+ * based H2 database), so that after a restart only the journal records that have not been applied yet
+ * are consumed, instead of rebuilding the store from the beginning of the journal.  Enabled by setting
+ * <code>registry.kafkasql.store.persistent</code>, along with a persistent datasource URL (e.g.
+ * <code>REGISTRY_DATASOURCE_URL=jdbc:h2:file:/var/lib/registry/db</code>).
+ *
+ * Every applied record is recorded in the store, in the same transaction that applies it.  Since
+ * records may be applied out of order (by several apply threads), the consumer thread periodically
+ * replaces the records recorded so far with a single offset per partition, below which every record has
+ * been applied.  At startup the consumer seeks to those offsets and skips the records beyond them that
+ * were already applied.
+ */
+@ApplicationScoped
+public class KafkaSqlCheckpointManager {
+
+    private static final long CHECKPOINT_INTERVAL_MS = 1000;
+
+    @Inject
+    Logger log;
+
+    @Inject
+    KafkaSqlConfiguration configuration;
+
+    @Inject
+    KafkaSqlStore sqlStore;
+
+    @Inject
+    KafkaSqlOffsetTracker offsets;
+
+    // Only accessed by the consumer thread
+    private final Map<Integer, Set<Long>> appliedRecords = new HashMap<>();
+    private final Map<Integer, Long> checkpointOffsets = new HashMap<>();
+    private long lastCheckpointTime;
+
+    /**
+     * Returns true if the local store is persistent.
+     */
+    public boolean isEnabled() {
+        return configuration.isStorePersistent();
+    }
+
+    /**
+     * Reads the journal offsets up to which the local store has been applied.  Returns the offsets
+     * from which consumption must resume, or an empty map if the whole journal must be consumed.  If the
+     * store is ahead of the journal (e.g. if the topic was re-created), the store is cleared.
+     * @param consumer
+     */
+    public Map<TopicPartition, Long> restore(Consumer<?, ?> consumer) {
+        lastCheckpointTime = System.currentTimeMillis();
+        if (configuration.isSnapshotEnabled()) {
+            log.warn("KafkaSQL snapshots are not used when the local store is persistent, ignoring.");
+        }
+        sqlStore.initializeJournalTables();
+
+        String topic = configuration.topic();
+        Map<Integer, Long> storedOffsets = sqlStore.getJournalOffsets(topic);
+        Map<Integer, Set<Long>> storedRecords = sqlStore.getAppliedJournalRecords(topic);
+        Set<Integer> partitions = new HashSet<>(storedOffsets.keySet());
+        partitions.addAll(storedRecords.keySet());
+        if (partitions.isEmpty()) {
+            log.info("Local KafkaSQL store is empty, consuming the entire journal.");
+            return Collections.emptyMap();
+        }
+
+        Map<TopicPartition, Long> resumeOffsets = new HashMap<>();
+        partitions.forEach(partition -> resumeOffsets.put(new TopicPartition(topic, partition), storedOffsets.getOrDefault(partition, 0L)));
+
+        // The store must not be ahead of the journal (e.g. if the topic was re-created).
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(resumeOffsets.keySet());
+        for (Map.Entry<TopicPartition, Long> entry : resumeOffsets.entrySet()) {
+            long highest = entry.getValue();
+            for (Long offset : storedRecords.getOrDefault(entry.getKey().partition(), Collections.emptySet())) {
+                highest = Math.max(highest, offset + 1);
+            }
+            Long endOffset = endOffsets.get(entry.getKey());
+            if (endOffset == null || highest > endOffset) {
+                log.warn("Local KafkaSQL store is ahead of the journal ({} > {}), clearing it.", highest, endOffset);
+                sqlStore.resetStore();
+                sqlStore.initializeJournalTables();
+                return Collections.emptyMap();
+            }
+        }
+
+        appliedRecords.putAll(storedRecords);
+        checkpointOffsets.putAll(storedOffsets);
+        log.info("Resuming KafkaSQL journal consumption into the local store from offsets {}", resumeOffsets);
+        return resumeOffsets;
+    }
+
+    /**
+     * Returns true if the given record was already applied to the local store before it was restarted,
+     * in which case it must not be applied again.  Must only be called from the consumer thread.
+     * @param record
+     */
+    public boolean isApplied(ConsumerRecord<?, ?> record) {
+        if (appliedRecords.isEmpty()) {
+            return false;
+        }
+        Set<Long> applied = appliedRecords.get(record.partition());
+        if (applied == null || !applied.remove(record.offset())) {
+            return false;
+        }
+        if (applied.isEmpty()) {
+            appliedRecords.remove(record.partition());
+        }
+        return true;
+    }
+
+    /**
+     * Records that the given record has been applied.  Must be called in the transaction that applies
+     * the record.
+     * @param record
+     */
+    public void recordApplied(ConsumerRecord<?, ?> record) {
+        if (isEnabled()) {
+            sqlStore.markJournalRecordApplied(record.topic(), record.partition(), record.offset());
+        }
+    }
+
+    /**
+     * Stores the offsets below which every record has been applied, if the checkpoint interval has
+     * elapsed.  Must only be called from the consumer thread.
+     */
+    public void maybeCheckpoint() {
+        long now = System.currentTimeMillis();
+        if (!isEnabled() || now - lastCheckpointTime < CHECKPOINT_INTERVAL_MS) {
+            return;
+        }
+        lastCheckpointTime = now;
+
+        offsets.appliedOffsets(configuration.topic()).forEach((tp, offset) -> {
+            if (offset.equals(checkpointOffsets.get(tp.partition()))) {
+                return;
+            }
+            try {
+                sqlStore.updateJournalOffset(tp.topic(), tp.partition(), offset);
+                checkpointOffsets.put(tp.partition(), offset);
+                Set<Long> applied = appliedRecords.get(tp.partition());
+                if (applied != null) {
+                    applied.removeIf(appliedOffset -> appliedOffset < offset);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to store the KafkaSQL journal offset of partition {}.", tp, e);
+            }
+        });
+    }
+
+}
@@ -29,7 +29,16 @@ public interface KafkaSqlConfiguration {
     public boolean isTopicAutoCreate();
     public Integer startupLag();
     public Integer pollTimeout();
+    public Integer applyBatchSize();
+    public Integer applyThreads();
+    public Integer applyQueueSize();
     public Integer responseTimeout();
+    public Integer idBlockSize();
+    public boolean isArtifactWithContentEnabled();
+    public boolean isSnapshotEnabled();
+    public String snapshotLocation();
+    public Long snapshotInterval();
+    public boolean isStorePersistent();
     public Properties producerProperties();
     public Properties consumerProperties();
     public Properties adminProperties();
@@ -18,20 +18,29 @@ package io.apicurio.registry.storage.impl.kafkasql;
 
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
+import io.apicurio.registry.storage.RegistryStorageException;
 import io.apicurio.registry.types.RegistryException;
+import io.apicurio.registry.utils.ConcurrentUtil;
 
 /**
  * Coordinates "write" responses across threads in the Kafka-SQL artifactStore implementation.  Basically this is used
  * to communicate between the Kafka consumer thread and the waiting HTTP/API thread, where the HTTP thread is
  * waiting for an operation to be completed by the Kafka consumer thread.
  *
+ * Each operation gets a {@link CompletableFuture} which is completed when the operation's journal record has been
+ * applied, or completed exceptionally when the configured response timeout elapses first.  The record is often
+ * applied before the waiting thread asks for the response, so a completed future is kept until its response is
+ * collected (or, if nobody collects it, for the response timeout).  Messages nobody waits for (e.g. tombstones)
+ * are sent without a UUID, see {@link KafkaSqlSubmitter}.
+ *
  * @author eric.wittmann@gmail.com
  */
 @ApplicationScoped
@@ -40,48 +49,69 @@ public class KafkaSqlCoordinator {
     @Inject
     KafkaSqlConfiguration configuration;
 
-    private static final Object NULL = new Object();
-    private Map<UUID, CountDownLatch> latches = new ConcurrentHashMap<>();
-    private Map<UUID, Object> returnValues = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<Object>> responses = new ConcurrentHashMap<>();
 
     /**
-     * Creates a UUID for a single operation.
+     * Creates a UUID for a single operation.  The response to the operation must be collected (using
+     * {@link #responseFor(UUID)} or {@link #waitForResponse(UUID)}) before the response timeout elapses.
      */
     public UUID createUUID() {
         UUID uuid = UUID.randomUUID();
-        latches.put(uuid, new CountDownLatch(1));
+        long timeout = configuration.responseTimeout();
+        CompletableFuture<Object> response = new CompletableFuture<>();
+        responses.put(uuid, response);
+        response.orTimeout(timeout, TimeUnit.MILLISECONDS)
+                .whenComplete((rval, error) -> {
+                    if (error instanceof TimeoutException) {
+                        responses.remove(uuid, response);
+                    } else if (responses.get(uuid) == response) {
+                        // Not collected yet, give the waiting thread the response timeout to collect it
+                        CompletableFuture.delayedExecutor(timeout, TimeUnit.MILLISECONDS)
+                                .execute(() -> responses.remove(uuid, response));
+                    }
+                });
         return uuid;
     }
 
     /**
-     * Waits for a response to the operation with the given UUID. There is a countdown latch for each operation.  The
-     * caller waiting for the response will wait for the countdown to happen and then proceed.  We also remove
-     * the latch from the Map here since it's not needed anymore.
-     *
+     * Returns a future that completes with the response to the operation with the given UUID, without
+     * blocking.  If the operation failed with a {@link RegistryException}, the future completes exceptionally
+     * with it.  The response can only be collected once.  Note that the future may be completed on the KSQL
+     * consumer (or apply) thread, so dependent actions must not block.
      * @param uuid
-     * @throws InterruptedException
      */
-    public Object waitForResponse(UUID uuid) {
-        try {
-            latches.get(uuid).await(configuration.responseTimeout(), TimeUnit.MILLISECONDS);
-
-            Object rval = returnValues.remove(uuid);
-            if (rval == NULL) {
-                return null;
-            } else if (rval instanceof RegistryException) {
-                throw (RegistryException) rval;
-            }
-            return rval;
-        } catch (InterruptedException e) {
-          throw new RegistryException("[KafkaSqlCoordinator] Thread interrupted waiting for a Kafka Sql response.", e);
-        } finally {
-            latches.remove(uuid);
+    public CompletableFuture<Object> responseFor(UUID uuid) {
+        CompletableFuture<Object> response = responses.get(uuid);
+        if (response == null) {
+            return CompletableFuture.failedFuture(new RegistryStorageException(
+                    "[KafkaSqlCoordinator] No pending Kafka Sql operation " + uuid + " (it may have timed out)."));
         }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        response.whenComplete((rval, error) -> {
+            responses.remove(uuid, response);
+            if (error instanceof TimeoutException) {
+                result.completeExceptionally(new RegistryStorageException(
+                        "[KafkaSqlCoordinator] Timed out after " + configuration.responseTimeout() + "ms waiting for a Kafka Sql response."));
+            } else if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(rval);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Waits for a response to the operation with the given UUID.
+     * @param uuid
+     */
+    public Object waitForResponse(UUID uuid) {
+        return ConcurrentUtil.get(responseFor(uuid));
     }
 
     /**
-     * Countdown the latch for the given UUID.  This will wake up the thread waiting for the response
-     * so that it can proceed.
+     * Completes the future for the given UUID.  This will wake up the thread waiting for the response
+     * (or run the actions depending on it) so that it can proceed.
      * @param uuid
      * @param returnValue
      */
@@ -91,22 +121,21 @@ public class KafkaSqlCoordinator {
             return;
         }
 
-        // If there is no countdown latch, then there is no HTTP thread waiting for
-        // a response.  This means one of two possible things:
+        // If there is no future, then there is no HTTP thread waiting for a response.  This means
+        // one of three possible things:
         //  1) We're in a cluster and the HTTP thread is on another node
         //  2) We're starting up and consuming all the old journal entries
-        if (!latches.containsKey(uuid)) {
+        //  3) The operation has already timed out
+        CompletableFuture<Object> response = responses.get(uuid);
+        if (response == null) {
             return;
         }
 
-        // Otherwise, put the return value in the Map and countdown the latch.  The latch
-        // countdown will notify the HTTP thread that the operation is complete and there is
-        // a return value waiting for it.
-        if (returnValue == null) {
-            returnValue = NULL;
+        if (returnValue instanceof RegistryException) {
+            response.completeExceptionally((RegistryException) returnValue);
+        } else {
+            response.complete(returnValue);
         }
-        returnValues.put(uuid, returnValue);
-        latches.get(uuid).countDown();
     }
 
 }
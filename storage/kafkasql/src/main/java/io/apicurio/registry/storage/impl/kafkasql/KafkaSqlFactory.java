@@ -16,6 +16,8 @@
 
 package io.apicurio.registry.storage.impl.kafkasql;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 
@@ -30,6 +32,7 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
 import io.apicurio.registry.storage.impl.kafkasql.serde.KafkaSqlKeyDeserializer;
+import io.apicurio.registry.storage.impl.kafkasql.serde.KafkaSqlBinaryFormat;
 import io.apicurio.registry.storage.impl.kafkasql.serde.KafkaSqlKeySerializer;
 import io.apicurio.registry.storage.impl.kafkasql.serde.KafkaSqlPartitioner;
 import io.apicurio.registry.storage.impl.kafkasql.serde.KafkaSqlValueDeserializer;
@@ -69,10 +72,54 @@ public class KafkaSqlFactory {
     @ConfigProperty(name = "registry.kafkasql.consumer.poll.timeout", defaultValue = "1000")
     Integer pollTimeout;
 
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.consumer.apply.batch-size", defaultValue = "1")
+    Integer applyBatchSize;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.partition-by", defaultValue = KafkaSqlPartitioner.PARTITION_BY_TENANT)
+    String partitionBy;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.serde.format", defaultValue = KafkaSqlBinaryFormat.FORMAT_JSON)
+    String serdeFormat;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.consumer.apply.threads", defaultValue = "0")
+    Integer applyThreads;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.consumer.apply.queue-size", defaultValue = "1000")
+    Integer applyQueueSize;
+
     @Inject
     @ConfigProperty(name = "registry.kafkasql.coordinator.response-timeout", defaultValue = "30000")
     Integer responseTimeout;
 
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.id-reservation.block-size", defaultValue = "1")
+    Integer idBlockSize;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.artifact-with-content.enabled", defaultValue = "false")
+    Boolean artifactWithContentEnabled;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.snapshot.enabled", defaultValue = "false")
+    Boolean snapshotEnabled;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.snapshot.location", defaultValue = "kafkasql-snapshots")
+    String snapshotLocation;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.snapshot.interval", defaultValue = "300000")
+    Long snapshotInterval;
+
+    @Inject
+    @ConfigProperty(name = "registry.kafkasql.store.persistent", defaultValue = "false")
+    Boolean storePersistent;
+
     @Inject
     @RegistryProperties(
             value = {"registry.kafka.common", "registry.kafkasql.producer"},
@@ -123,10 +170,46 @@ public class KafkaSqlFactory {
                 return pollTimeout;
             }
             @Override
+            public Integer applyBatchSize() {
+                return applyBatchSize;
+            }
+            @Override
+            public Integer applyThreads() {
+                return applyThreads;
+            }
+            @Override
+            public Integer applyQueueSize() {
+                return applyQueueSize;
+            }
+            @Override
             public Integer responseTimeout() {
                 return responseTimeout;
             }
             @Override
+            public Integer idBlockSize() {
+                return idBlockSize;
+            }
+            @Override
+            public boolean isArtifactWithContentEnabled() {
+                return artifactWithContentEnabled;
+            }
+            @Override
+            public boolean isSnapshotEnabled() {
+                return snapshotEnabled;
+            }
+            @Override
+            public String snapshotLocation() {
+                return snapshotLocation;
+            }
+            @Override
+            public Long snapshotInterval() {
+                return snapshotInterval;
+            }
+            @Override
+            public boolean isStorePersistent() {
+                return storePersistent;
+            }
+            @Override
             public Properties producerProperties() {
                 return producerProperties;
             }
@@ -157,10 +240,15 @@ public class KafkaSqlFactory {
         props.putIfAbsent(ProducerConfig.ACKS_CONFIG, "all");
         props.putIfAbsent(ProducerConfig.LINGER_MS_CONFIG, 10);
         props.putIfAbsent(ProducerConfig.PARTITIONER_CLASS_CONFIG, KafkaSqlPartitioner.class);
+        props.putIfAbsent(KafkaSqlPartitioner.PARTITION_BY_CONFIG, partitionBy);
 
-        // Create the Kafka producer
+        // Create the Kafka producer (messages of any format can be consumed, but older versions can only
+        // consume the JSON format - so it must be used until all nodes have been upgraded)
+        Map<String, Object> serdeConfig = Collections.singletonMap(KafkaSqlBinaryFormat.FORMAT_CONFIG, serdeFormat);
         KafkaSqlKeySerializer keySerializer = new KafkaSqlKeySerializer();
+        keySerializer.configure(serdeConfig, true);
         KafkaSqlValueSerializer valueSerializer = new KafkaSqlValueSerializer();
+        valueSerializer.configure(serdeConfig, false);
         return new AsyncProducer<MessageKey, MessageValue>(props, keySerializer, valueSerializer);
     }
 
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.utils.ConcurrentUtil;
+
+/**
+ * Generates cluster-wide unique globalIds and contentIds.  An id must be generated by sending a message
+ * to Kafka so that all nodes in the cluster agree on the state of the id sequences.  When the configured
+ * block size is greater than 1, a single message reserves a whole range of ids for this node, and the
+ * ids in that range are then handed out locally without another round trip through Kafka.
+ *
+ * Ids from a reserved range that are never handed out (e.g. because the node is restarted) are simply
+ * skipped, so there may be gaps in the sequence but never duplicates.
+ */
+@ApplicationScoped
+public class KafkaSqlIdAllocator {
+
+    @Inject
+    KafkaSqlConfiguration configuration;
+
+    @Inject
+    KafkaSqlCoordinator coordinator;
+
+    @Inject
+    KafkaSqlSubmitter submitter;
+
+    private final IdBlock globalIds = new IdBlock(blockSize -> submitter.submitGlobalId(ActionType.Create, blockSize));
+    private final IdBlock contentIds = new IdBlock(blockSize -> submitter.submitContentId(ActionType.Create, blockSize));
+
+    /**
+     * Returns the next globalId available to this node.
+     */
+    public long nextGlobalId() {
+        return globalIds.next();
+    }
+
+    /**
+     * Returns the next contentId available to this node.
+     */
+    public long nextContentId() {
+        return contentIds.next();
+    }
+
+    /**
+     * Called when the globalId sequence is reset (e.g. after an import).  Any ids remaining in the
+     * locally reserved block may now collide with imported data, so the block is discarded.
+     */
+    public void invalidateGlobalIds() {
+        globalIds.invalidate();
+    }
+
+    /**
+     * Called when the contentId sequence is reset (e.g. after an import).  Any ids remaining in the
+     * locally reserved block may now collide with imported data, so the block is discarded.
+     */
+    public void invalidateContentIds() {
+        contentIds.invalidate();
+    }
+
+    private int blockSize() {
+        Integer size = configuration.idBlockSize();
+        return size == null || size < 1 ? 1 : size;
+    }
+
+    /**
+     * A range of reserved ids for a single sequence.
+     */
+    private class IdBlock {
+
+        private final Function<Integer, CompletableFuture<UUID>> reserver;
+
+        private long next;
+        private long end;
+        // Not guarded by the monitor - it is set from the consumer thread, which must never block
+        // on a thread that is itself waiting for the consumer thread to process its reservation.
+        private volatile boolean stale;
+
+        IdBlock(Function<Integer, CompletableFuture<UUID>> reserver) {
+            this.reserver = reserver;
+        }
+
+        synchronized long next() {
+            int blockSize = blockSize();
+            if (blockSize == 1) {
+                return reserve(null);
+            }
+
+            while (stale || next >= end) {
+                stale = false;
+                long first = reserve(blockSize);
+                // If the sequence was reset while we were waiting, the reservation may predate the
+                // reset, so it cannot be trusted.  Reserve again.
+                if (!stale) {
+                    next = first;
+                    end = first + blockSize;
+                }
+            }
+            return next++;
+        }
+
+        void invalidate() {
+            stale = true;
+        }
+
+        private long reserve(Integer blockSize) {
+            UUID uuid = ConcurrentUtil.get(reserver.apply(blockSize));
+            return (long) coordinator.waitForResponse(uuid);
+        }
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+
+/**
+ * Tracks, per partition of the journal topic, how far this node has applied (and produced) journal
+ * records.  This is what keeps the journal consistent when it has more than one partition: Kafka only
+ * orders records within a partition, so every record is sent with a header listing, for every
+ * partition, the offset up to which the sending node had already applied or produced records.  Any
+ * node consuming the record must apply everything below those offsets before applying the record
+ * itself, which guarantees that an operation is never applied before an operation it may depend on
+ * (e.g. an artifact before its content, or an id sequence reset before the imported data).
+ *
+ * With a single partition the header is not sent, since Kafka already orders everything.
+ */
+@ApplicationScoped
+public class KafkaSqlOffsetTracker {
+
+    public static final String DEPENDENCIES_HEADER = "deps";
+
+    private final Map<Integer, PartitionOffsets> partitions = new ConcurrentHashMap<>();
+    private volatile int partitionCount = 1;
+
+    private final Object appliedLock = new Object();
+    // Guarded by appliedLock, read without it so that applying records is cheap when nobody is waiting.
+    private volatile int waiters;
+
+    /**
+     * Called by the KSQL consumer thread once, before consuming any records.
+     * @param partitionCount number of partitions of the journal topic
+     * @param startOffsets offsets from which consumption starts (e.g. those covered by a restored snapshot)
+     */
+    public void start(int partitionCount, Map<TopicPartition, Long> startOffsets) {
+        this.partitionCount = partitionCount;
+        startOffsets.forEach((tp, offset) -> {
+            PartitionOffsets offsets = partition(tp.partition());
+            offsets.advance(offset);
+            offsets.maxApplied.accumulateAndGet(offset, Math::max);
+        });
+    }
+
+    /**
+     * Returns the number of partitions of the journal topic.
+     */
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Called by the KSQL consumer thread when a record is handed over to be applied.
+     * @param record
+     */
+    public void dispatched(ConsumerRecord<?, ?> record) {
+        PartitionOffsets offsets = partition(record.partition());
+        offsets.pending.add(record.offset());
+        offsets.advance(record.offset() + 1);
+    }
+
+    /**
+     * Called by the KSQL consumer thread for records that are consumed but not applied (e.g. tombstones).
+     * @param record
+     */
+    public void skipped(ConsumerRecord<?, ?> record) {
+        partition(record.partition()).advance(record.offset() + 1);
+        notifyWaiters();
+    }
+
+    /**
+     * Called by the KSQL consumer thread once every record of the given partition below the given
+     * position has been consumed (dispatched or skipped).  Offsets may be missing from the journal
+     * (e.g. removed by log compaction), so this is what lets the tracker move past them.
+     * @param partition
+     * @param position
+     */
+    public void consumedUpTo(int partition, long position) {
+        partition(partition).advance(position);
+        notifyWaiters();
+    }
+
+    /**
+     * Called once a record has been applied to the local store, before anyone waiting for it is notified.
+     * @param record
+     */
+    public void applied(ConsumerRecord<?, ?> record) {
+        PartitionOffsets offsets = partition(record.partition());
+        offsets.pending.remove(record.offset());
+        offsets.maxApplied.accumulateAndGet(record.offset() + 1, Math::max);
+        notifyWaiters();
+    }
+
+    /**
+     * Called when a record sent by this node has been acknowledged by Kafka.
+     * @param metadata
+     */
+    public void produced(RecordMetadata metadata) {
+        if (metadata.hasOffset()) {
+            partition(metadata.partition()).maxProduced.accumulateAndGet(metadata.offset() + 1, Math::max);
+        }
+    }
+
+    /**
+     * Returns the value of the {@link #DEPENDENCIES_HEADER} for a record about to be sent, or null if no
+     * header is needed.
+     */
+    public byte[] encodeDependencies() {
+        if (partitionCount <= 1) {
+            return null;
+        }
+        String offsets = encodeOffsets();
+        return offsets == null ? null : offsets.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns, as a string, the offset (for every partition) below which this node has applied or produced
+     * records, or null if it has not applied or produced anything yet.  Used both as the value of the
+     * {@link #DEPENDENCIES_HEADER} and as a consistency token.
+     */
+    public String encodeOffsets() {
+        StringBuilder builder = new StringBuilder();
+        partitions.forEach((partition, offsets) -> {
+            long offset = Math.max(offsets.maxApplied.get(), offsets.maxProduced.get());
+            if (offset > 0) {
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(partition).append(':').append(offset);
+            }
+        });
+        return builder.length() == 0 ? null : builder.toString();
+    }
+
+    /**
+     * Parses offsets encoded by {@link #encodeOffsets()} (partition -> offset).
+     * @param offsets
+     * @throws IllegalArgumentException if the offsets are malformed
+     */
+    public static Map<Integer, Long> decodeOffsets(String offsets) {
+        Map<Integer, Long> decoded = new HashMap<>();
+        for (String entry : offsets.split(",")) {
+            int idx = entry.indexOf(':');
+            if (idx < 1) {
+                throw new IllegalArgumentException("Malformed KafkaSQL offsets: " + offsets);
+            }
+            decoded.put(Integer.parseInt(entry.substring(0, idx).trim()), Long.parseLong(entry.substring(idx + 1).trim()));
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns the dependencies of the given record (partition -> offset), ignoring the record's own
+     * partition, which is already ordered by Kafka.
+     * @param record
+     */
+    public static Map<Integer, Long> dependenciesOf(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(DEPENDENCIES_HEADER);
+        if (header == null || header.value() == null) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, Long> dependencies = decodeOffsets(new String(header.value(), StandardCharsets.UTF_8));
+        dependencies.remove(record.partition());
+        return dependencies;
+    }
+
+    /**
+     * Waits until every record below the given offsets has been applied to the local store, or until the
+     * timeout elapses.  Returns true if the records have been applied.
+     * @param offsets
+     * @param timeoutMs
+     */
+    public boolean awaitApplied(Map<Integer, Long> offsets, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (appliedLock) {
+            waiters++;
+            try {
+                while (!isApplied(offsets)) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    appliedLock.wait(remaining);
+                }
+                return true;
+            } finally {
+                waiters--;
+            }
+        }
+    }
+
+    /**
+     * Returns true if every record below the given offsets has been applied to the local store.
+     * @param dependencies
+     */
+    public boolean isApplied(Map<Integer, Long> dependencies) {
+        return dependencies.entrySet().stream()
+                .allMatch(dep -> partition(dep.getKey()).appliedBelow() >= dep.getValue());
+    }
+
+    /**
+     * Returns true if every record below the given offsets has at least been dispatched, i.e. the
+     * dependencies will be satisfied without consuming any more records.
+     * @param dependencies
+     */
+    public boolean isDispatched(Map<Integer, Long> dependencies) {
+        return dependencies.entrySet().stream()
+                .allMatch(dep -> partition(dep.getKey()).dispatched >= dep.getValue());
+    }
+
+    /**
+     * Returns the next offset to be dispatched, for each partition consumed so far.
+     * @param topic
+     */
+    public Map<TopicPartition, Long> dispatchedOffsets(String topic) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        partitions.forEach((partition, state) -> {
+            if (state.dispatched > 0) {
+                offsets.put(new TopicPartition(topic, partition), state.dispatched);
+            }
+        });
+        return offsets;
+    }
+
+    /**
+     * Returns the offset below which every record has been applied, for each partition consumed so far.
+     * @param topic
+     */
+    public Map<TopicPartition, Long> appliedOffsets(String topic) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        partitions.forEach((partition, state) -> {
+            long applied = state.appliedBelow();
+            if (applied > 0) {
+                offsets.put(new TopicPartition(topic, partition), applied);
+            }
+        });
+        return offsets;
+    }
+
+    private void notifyWaiters() {
+        if (waiters > 0) {
+            synchronized (appliedLock) {
+                appliedLock.notifyAll();
+            }
+        }
+    }
+
+    private PartitionOffsets partition(int partition) {
+        return partitions.computeIfAbsent(partition, p -> new PartitionOffsets());
+    }
+
+    private static class PartitionOffsets {
+
+        // Only written by the consumer thread
+        private volatile long dispatched;
+        private final NavigableSet<Long> pending = new ConcurrentSkipListSet<>();
+        private final AtomicLong maxApplied = new AtomicLong();
+        private final AtomicLong maxProduced = new AtomicLong();
+
+        void advance(long offset) {
+            if (offset > dispatched) {
+                dispatched = offset;
+            }
+        }
+
+        /**
+         * Every record below the returned offset has been applied.
+         */
+        long appliedBelow() {
+            Long firstPending = pending.ceiling(Long.MIN_VALUE);
+            long next = dispatched;
+            return firstPending == null ? next : Math.min(firstPending, next);
+        }
+    }
+
+}
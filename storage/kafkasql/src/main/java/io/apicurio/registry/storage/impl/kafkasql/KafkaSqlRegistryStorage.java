@@ -54,7 +54,6 @@ import io.apicurio.registry.storage.impexp.EntityInputStream;
 import io.apicurio.registry.storage.impl.AbstractRegistryStorage;
 import io.apicurio.registry.storage.impl.kafkasql.keys.BootstrapKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
-import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlSink;
 import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlStore;
 import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
 import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
@@ -76,8 +75,11 @@ import io.quarkus.runtime.StartupEvent;
 import io.quarkus.security.identity.SecurityIdentity;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.kafka.clients.CommonClientConfigs;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.config.TopicConfig;
 import org.apache.kafka.common.errors.TopicExistsException;
 import org.slf4j.Logger;
@@ -88,11 +90,16 @@ import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -100,6 +107,11 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
@@ -117,6 +129,8 @@ import java.util.function.Function;
 @SuppressWarnings("unchecked")
 public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
 
+    private static final int SUBMIT_THREADS = 4;
+
     @Inject
     Logger log;
 
@@ -126,9 +140,6 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
     @Inject
     KafkaSqlCoordinator coordinator;
 
-    @Inject
-    KafkaSqlSink kafkaSqlSink;
-
     @Inject
     KafkaSqlStore sqlStore;
 
@@ -139,11 +150,26 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
     TenantContext tenantContext;
 
     @Inject
-    KafkaConsumer<MessageKey, MessageValue> consumer;
+    Consumer<MessageKey, MessageValue> consumer;
 
     @Inject
     KafkaSqlSubmitter submitter;
 
+    @Inject
+    KafkaSqlIdAllocator idAllocator;
+
+    @Inject
+    KafkaSqlSnapshotManager snapshots;
+
+    @Inject
+    KafkaSqlCheckpointManager checkpoints;
+
+    @Inject
+    KafkaSqlApplyStage applyStage;
+
+    @Inject
+    KafkaSqlOffsetTracker offsets;
+
     @Inject
     SecurityIdentity securityIdentity;
 
@@ -152,6 +178,8 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
 
     private boolean bootstrapped = false;
     private boolean stopped = true;
+    // Sends the messages that follow another one being applied, so that the KSQL consumer/apply threads never do
+    private ExecutorService submitExecutor;
 
     void onConstruct(@Observes StartupEvent ev) {
         log.info("Using Kafka-SQL artifactStore.");
@@ -161,10 +189,29 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
             autoCreateTopics();
         }
 
+        submitExecutor = createSubmitExecutor();
+
         // Start the Kafka Consumer thread
         startConsumerThread(consumer);
     }
 
+    /**
+     * Creates the executor that sends the messages that depend on the response to a previous message.  Those
+     * responses are completed by the KSQL consumer (or apply) threads, which must not wait for the producer.
+     */
+    private static ExecutorService createSubmitExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(SUBMIT_THREADS, SUBMIT_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    thread.setName("KSQL Submit Thread " + count.getAndIncrement());
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * @see io.apicurio.registry.storage.RegistryStorage#storageName()
      */
@@ -197,9 +244,42 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
         return bootstrapped && !stopped;
     }
 
+    /**
+     * The consistency token is the journal offset (per partition) below which this node has applied (or
+     * produced) every record.
+     * @see io.apicurio.registry.storage.RegistryStorage#consistencyToken()
+     */
+    @Override
+    public String consistencyToken() {
+        return offsets.encodeOffsets();
+    }
+
+    /**
+     * @see io.apicurio.registry.storage.RegistryStorage#awaitConsistency(java.lang.String, long)
+     */
+    @Override
+    public boolean awaitConsistency(String token, long timeoutMs) {
+        Map<Integer, Long> tokenOffsets;
+        try {
+            tokenOffsets = KafkaSqlOffsetTracker.decodeOffsets(token);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring invalid consistency token: {}", token);
+            return true;
+        }
+        try {
+            return offsets.awaitApplied(tokenOffsets, timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
     @PreDestroy
     void onDestroy() {
         stopped = true;
+        if (submitExecutor != null) {
+            submitExecutor.shutdown();
+        }
     }
 
     /**
@@ -224,15 +304,20 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
     /**
      * Start the KSQL Kafka consumer thread which is responsible for subscribing to the kafka topic,
      * consuming JournalRecord entries found on that topic, and applying those journal entries to
-     * the internal data model.
+     * the internal data model.  If the local store is persistent, consumption resumes from where it
+     * stopped.  Otherwise, if snapshots are enabled, the latest snapshot is restored first and only
+     * the journal entries after it are consumed.
+     *
+     * When the topic has several partitions, a record that depends on records of other partitions
+     * (see {@link KafkaSqlOffsetTracker}) is held back, and its partition paused, until those records
+     * have been applied.
      * @param consumer
      */
-    private void startConsumerThread(final KafkaConsumer<MessageKey, MessageValue> consumer) {
+    private void startConsumerThread(final Consumer<MessageKey, MessageValue> consumer) {
         log.info("Starting KSQL consumer thread on topic: {}", configuration.topic());
         log.info("Bootstrap servers: " + configuration.bootstrapServers());
 
         final String bootstrapId = UUID.randomUUID().toString();
-        submitter.submitBootstrap(bootstrapId);
         final long bootstrapStart = System.currentTimeMillis();
 
         Runnable runner = () -> {
@@ -242,48 +327,90 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
                 // Startup lag
                 try { Thread.sleep(configuration.startupLag()); } catch (InterruptedException e) { }
 
+                // The consumer has caught up once it has seen the bootstrap message on every partition
+                final int partitionCount = consumer.partitionsFor(configuration.topic()).size();
+                log.info("Journal topic {} has {} partition(s).", configuration.topic(), partitionCount);
+                submitter.submitBootstrap(bootstrapId, partitionCount);
+                final JournalState journal = new JournalState(bootstrapId, partitionCount, bootstrapStart);
+
+                // Resume from the records already applied to a persistent store, or restore the latest snapshot
+                // (if any), so that only the journal records after it are consumed
+                final Map<TopicPartition, Long> startOffsets = new HashMap<>(checkpoints.isEnabled()
+                        ? checkpoints.restore(consumer) : snapshots.restore(consumer));
+                offsets.start(partitionCount, startOffsets);
+
                 log.info("Subscribing to {}", configuration.topic());
 
                 // Subscribe to the journal topic
                 Collection<String> topics = Collections.singleton(configuration.topic());
-                consumer.subscribe(topics);
+                consumer.subscribe(topics, new ConsumerRebalanceListener() {
+                    @Override
+                    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    }
+
+                    @Override
+                    public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                        // Skip the part of the journal already applied (only the first time the partition is assigned)
+                        partitions.forEach(tp -> {
+                            Long offset = startOffsets.remove(tp);
+                            if (offset != null) {
+                                consumer.seek(tp, offset);
+                            }
+                        });
+                    }
+                });
+
+                applyStage.start();
 
                 // Main consumer loop
                 while (!stopped) {
+                    // Stop fetching while the apply threads are behind, but keep polling so the consumer stays in the group.
+                    // Partitions with held back records stay paused until those records can be applied.
+                    if (applyStage.isSaturated()) {
+                        consumer.pause(consumer.assignment());
+                    } else {
+                        Set<TopicPartition> resumable = new HashSet<>(consumer.paused());
+                        resumable.removeAll(journal.held.keySet());
+                        if (!resumable.isEmpty()) {
+                            consumer.resume(resumable);
+                        }
+                    }
+
                     final ConsumerRecords<MessageKey, MessageValue> records = consumer.poll(Duration.ofMillis(configuration.pollTimeout()));
                     if (records != null && !records.isEmpty()) {
                         log.debug("Consuming {} journal records.", records.count());
-                        records.forEach(record -> {
-
-                            // If the key is null, we couldn't deserialize the message
-                            if (record.key() == null) {
-                                log.info("Discarded an unreadable/unrecognized message.");
-                                return;
-                            }
-
-                            // If the key is a Bootstrap key, then we have processed all messages and can set boostrapped to 'true'
-                            if (record.key().getType() == MessageType.Bootstrap) {
-                                BootstrapKey bkey = (BootstrapKey) record.key();
-                                if (bkey.getBootstrapId().equals(bootstrapId)) {
-                                    this.bootstrapped = true;
-                                    log.info("KafkaSQL storage bootstrapped in " + (System.currentTimeMillis() - bootstrapStart) + "ms.");
-                                }
-                                return;
-                            }
-
-                            // If the value is null, then this is a tombstone (or unrecognized) message and should not
-                            // be processed.
-                            if (record.value() == null) {
-                                log.info("Discarded a (presumed) tombstone message with key: {}", record.key());
-                                return;
+                        for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+                            TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+                            Deque<ConsumerRecord<MessageKey, MessageValue>> held = journal.held.get(tp);
+                            if (held != null) {
+                                held.add(record);
+                            } else if (isReady(journal, record)) {
+                                consumeRecord(journal, record);
+                            } else {
+                                log.debug("Holding back journal record {}-{} until its dependencies are applied.", tp, record.offset());
+                                journal.held.computeIfAbsent(tp, k -> new ArrayDeque<>()).add(record);
+                                consumer.pause(Collections.singleton(tp));
                             }
+                        }
+                    }
+                    releaseHeldRecords(journal);
+                    journal.flush();
+                    for (TopicPartition tp : consumer.assignment()) {
+                        if (!journal.held.containsKey(tp)) {
+                            offsets.consumedUpTo(tp.partition(), consumer.position(tp));
+                        }
+                    }
 
-                            // TODO instead of processing the journal record directly on the consumer thread, instead queue them and have *another* thread process the queue
-                            kafkaSqlSink.processMessage(record);
-                        });
+                    // A snapshot must only include records that have actually been applied
+                    Map<TopicPartition, Long> dispatchedOffsets = offsets.dispatchedOffsets(configuration.topic());
+                    if (snapshots.isSnapshotDue(dispatchedOffsets)) {
+                        applyStage.awaitIdle();
+                        snapshots.maybeSnapshot(dispatchedOffsets);
                     }
+                    checkpoints.maybeCheckpoint();
                 }
             } finally {
+                applyStage.stop();
                 consumer.close();
             }
         };
@@ -294,57 +421,133 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
         thread.start();
     }
 
+    /**
+     * Returns true if every record the given record depends on has been applied, flushing the current
+     * batch (and waiting for it to be applied) if that is enough to satisfy the dependencies.
+     * @param journal
+     * @param record
+     */
+    private boolean isReady(JournalState journal, ConsumerRecord<MessageKey, MessageValue> record) {
+        Map<Integer, Long> dependencies = KafkaSqlOffsetTracker.dependenciesOf(record);
+        if (dependencies.isEmpty() || offsets.isApplied(dependencies)) {
+            return true;
+        }
+        if (!offsets.isDispatched(dependencies)) {
+            return false;
+        }
+        journal.flush();
+        applyStage.awaitIdle();
+        return true;
+    }
+
+    /**
+     * Consumes the held back records (in order, per partition) whose dependencies are now satisfied.
+     * @param journal
+     */
+    private void releaseHeldRecords(JournalState journal) {
+        Iterator<Deque<ConsumerRecord<MessageKey, MessageValue>>> iterator = journal.held.values().iterator();
+        while (iterator.hasNext()) {
+            Deque<ConsumerRecord<MessageKey, MessageValue>> held = iterator.next();
+            while (!held.isEmpty() && isReady(journal, held.peek())) {
+                consumeRecord(journal, held.poll());
+            }
+            if (held.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Consumes a single journal record, whose dependencies have been applied.
+     * @param journal
+     * @param record
+     */
+    private void consumeRecord(JournalState journal, ConsumerRecord<MessageKey, MessageValue> record) {
+        // If the key is null, we couldn't deserialize the message
+        if (record.key() == null) {
+            log.info("Discarded an unreadable/unrecognized message.");
+            offsets.skipped(record);
+            return;
+        }
+
+        // Records applied to a persistent store before it was restarted must not be applied again
+        if (checkpoints.isApplied(record)) {
+            offsets.skipped(record);
+            return;
+        }
+
+        // If the key is a Bootstrap key, then we have processed all messages (of that partition)
+        if (record.key().getType() == MessageType.Bootstrap) {
+            offsets.skipped(record);
+            BootstrapKey bkey = (BootstrapKey) record.key();
+            if (bkey.getBootstrapId().equals(journal.bootstrapId) && journal.bootstrapPartitions.add(record.partition())
+                    && journal.bootstrapPartitions.size() == journal.partitionCount) {
+                // Everything before the bootstrap messages must be applied first
+                journal.flush();
+                applyStage.awaitIdle();
+                this.bootstrapped = true;
+                log.info("KafkaSQL storage bootstrapped in " + (System.currentTimeMillis() - journal.bootstrapStart) + "ms.");
+            }
+            return;
+        }
+
+        // If the value is null, then this is a tombstone (or unrecognized) message and should not
+        // be processed.
+        if (record.value() == null) {
+            log.info("Discarded a (presumed) tombstone message with key: {}", record.key());
+            offsets.skipped(record);
+            return;
+        }
+
+        offsets.dispatched(record);
+        journal.batch.add(record);
+    }
+
     /**
      * Generate a new globalId.  This must be done by sending a message to Kafka so that all nodes in the cluster are
-     * guaranteed to generate the same globalId.
-     *
-     * TODO we can improve performance of this by reserving batches of globalIds instead of doing it one at a time.  Not yet done
-     *      due to a desire to avoid premature optimization.
+     * guaranteed to generate the same globalId.  Depending on configuration, the id may come from a block of ids
+     * previously reserved by this node (see {@link KafkaSqlIdAllocator}).
      */
     private long nextClusterGlobalId() {
-        UUID uuid = ConcurrentUtil.get(submitter.submitGlobalId(ActionType.Create));
-        return (long) coordinator.waitForResponse(uuid);
+        return idAllocator.nextGlobalId();
     }
 
     /**
      * Generate a new contentId.  This must be done by sending a message to Kafka so that all nodes in the cluster are
-     * guaranteed to generate the same contentId.
-     *
-     * TODO we can improve performance of this by reserving batches of contentIds instead of doing it one at a time.  Not yet done
-     *      due to a desire to avoid premature optimization.
+     * guaranteed to generate the same contentId.  Depending on configuration, the id may come from a block of ids
+     * previously reserved by this node (see {@link KafkaSqlIdAllocator}).
      */
     private long nextClusterContentId() {
-        UUID uuid = ConcurrentUtil.get(submitter.submitContentId(ActionType.Create));
-        return (long) coordinator.waitForResponse(uuid);
+        return idAllocator.nextContentId();
     }
 
     /**
      * Ensures that the given content exists in the database.  If it's already in the DB, then this just
      * returns the content hash.  If the content does not yet exist in the DB, then it is added (by sending
-     * the appropriate message to the Kafka topic and awaiting the response).
+     * the appropriate message to the Kafka topic) and the returned future completes once it has been applied.
      *
      * @param content
      * @param groupId
      * @param artifactId
      * @param artifactType
      */
-    private String ensureContent(ContentHandle content, String groupId, String artifactId, ArtifactType artifactType) {
+    private CompletableFuture<String> ensureContent(ContentHandle content, String groupId, String artifactId, ArtifactType artifactType) {
         byte[] contentBytes = content.bytes();
         String contentHash = DigestUtils.sha256Hex(contentBytes);
 
-        if (!sqlStore.isContentExists(contentHash)) {
-            long contentId = nextClusterContentId();
+        if (sqlStore.isContentExists(contentHash)) {
+            return CompletableFuture.completedFuture(contentHash);
+        }
 
-            ContentHandle canonicalContent = this.canonicalizeContent(artifactType, content);
-            byte[] canonicalContentBytes = canonicalContent.bytes();
-            String canonicalContentHash = DigestUtils.sha256Hex(canonicalContentBytes);
+        long contentId = nextClusterContentId();
 
-            CompletableFuture<UUID> future = submitter.submitContent(contentId, contentHash, ActionType.Create, canonicalContentHash, content);
-            UUID uuid = ConcurrentUtil.get(future);
-            coordinator.waitForResponse(uuid);
-        }
+        ContentHandle canonicalContent = this.canonicalizeContent(artifactType, content);
+        byte[] canonicalContentBytes = canonicalContent.bytes();
+        String canonicalContentHash = DigestUtils.sha256Hex(canonicalContentBytes);
 
-        return contentHash;
+        return submitter.submitContent(contentId, contentHash, ActionType.Create, canonicalContentHash, content)
+                .thenCompose(coordinator::responseFor)
+                .thenApply(rval -> contentHash);
     }
 
     /**
@@ -365,21 +568,48 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
         if (sqlStore.isArtifactExists(groupId, artifactId)) {
             throw new ArtifactAlreadyExistsException(groupId, artifactId);
         }
+        return ConcurrentUtil.result(submitArtifactWithContent(groupId, artifactId, version, ActionType.Create, artifactType, content, metaData));
+    }
 
-        String contentHash = ensureContent(content, groupId, artifactId, artifactType);
+    /**
+     * Sends the artifact create/update message to the Kafka topic, along with the content if it is not stored yet.
+     * Everything that depends on the request context (tenant, principal) or that may block (id allocation) happens
+     * on the calling thread.  The response to the content message is completed by the KSQL consumer (or apply)
+     * thread, so the artifact message is then sent from the submit executor.
+     *
+     * When enabled (older nodes cannot apply it) and the journal has a single partition, a single message carries
+     * the content and the artifact, and the ids are assigned when it is applied.  Otherwise the ids must be
+     * allocated up front and the content is sent first, on the partition of its content hash (see the
+     * KafkaSqlPartitioner), since nodes may interleave the partitions differently.
+     */
+    private CompletableFuture<ArtifactMetaDataDto> submitArtifactWithContent(String groupId, String artifactId, String version,
+            ActionType action, ArtifactType artifactType, ContentHandle content, EditableArtifactMetaDataDto metaData) {
+        String tenantId = tenantContext.tenantId();
         String createdBy = securityIdentity.getPrincipal().getName();
         Date createdOn = new Date();
-
-        if (metaData == null) {
-            metaData = extractMetaData(artifactType, content);
+        EditableArtifactMetaDataDto artifactMetaData = metaData == null ? extractMetaData(artifactType, content) : metaData;
+
+        if (configuration.isArtifactWithContentEnabled() && offsets.partitionCount() == 1) {
+            String contentHash = DigestUtils.sha256Hex(content.bytes());
+            String canonicalContentHash = null;
+            ContentHandle newContent = null;
+            if (!sqlStore.isContentExists(contentHash)) {
+                canonicalContentHash = DigestUtils.sha256Hex(this.canonicalizeContent(artifactType, content).bytes());
+                newContent = content;
+            }
+            return submitter.submitArtifactWithContent(tenantId, groupId, artifactId, version, action, artifactType,
+                        contentHash, canonicalContentHash, newContent, createdBy, createdOn, artifactMetaData)
+                    .thenCompose(coordinator::responseFor)
+                    .thenApply(rval -> (ArtifactMetaDataDto) rval);
         }
 
         long globalId = nextClusterGlobalId();
 
-        UUID uuid = ConcurrentUtil.get(
-                submitter.submitArtifact(tenantContext.tenantId(), groupId, artifactId, version, ActionType.Create,
-                        globalId, artifactType, contentHash, createdBy, createdOn, metaData));
-        return (ArtifactMetaDataDto) coordinator.waitForResponse(uuid);
+        return ensureContent(content, groupId, artifactId, artifactType)
+                .thenComposeAsync(contentHash -> submitter.submitArtifact(tenantId, groupId, artifactId, version, action,
+                        globalId, artifactType, contentHash, createdBy, createdOn, artifactMetaData), submitExecutor)
+                .thenCompose(coordinator::responseFor)
+                .thenApply(rval -> (ArtifactMetaDataDto) rval);
     }
 
     /**
@@ -461,21 +691,7 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
         if (!sqlStore.isArtifactExists(groupId, artifactId)) {
             throw new ArtifactNotFoundException(groupId, artifactId);
         }
-
-        String contentHash = ensureContent(content, groupId, artifactId, artifactType);
-        String createdBy = securityIdentity.getPrincipal().getName();
-        Date createdOn = new Date();
-
-        if (metaData == null) {
-            metaData = extractMetaData(artifactType, content);
-        }
-
-        long globalId = nextClusterGlobalId();
-
-        UUID reqId = ConcurrentUtil.get(
-                submitter.submitArtifact(tenantContext.tenantId(), groupId, artifactId, version, ActionType.Update,
-                        globalId, artifactType, contentHash, createdBy, createdOn, metaData));
-        return (ArtifactMetaDataDto) coordinator.waitForResponse(reqId);
+        return ConcurrentUtil.result(submitArtifactWithContent(groupId, artifactId, version, ActionType.Update, artifactType, content, metaData));
     }
 
     /**
@@ -939,18 +1155,21 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
     @Override
     public void importData(EntityInputStream entities) throws RegistryStorageException {
         try {
+            List<CompletableFuture<UUID>> imported = new ArrayList<>();
             Entity entity = null;
             while ( (entity = entities.nextEntity()) != null ) {
                 if (entity != null) {
-                    importEntity(entity);
+                    CompletableFuture<UUID> submitted = importEntity(entity);
+                    if (submitted != null) {
+                        imported.add(submitted);
+                    }
                 }
             }
 
-            // Because importing just pushes a bunch of Kafka messages, we may need to
-            // wait for a few seconds before we send the reset messages.  Due to partitioning,
-            // we can't guarantee ordering of these next two messages, and we NEED them to
-            // be consumed after all the import messages.
-            try { Thread.sleep(2000); } catch (Exception e) {}
+            // The reset messages below NEED to be consumed after all the import messages.  Waiting
+            // until every import message has been acknowledged ensures that the reset messages carry
+            // a dependency on all of them, even when the journal topic has several partitions.
+            ConcurrentUtil.get(CompletableFuture.allOf(imported.toArray(new CompletableFuture[0])));
 
             // Make sure the contentId sequence is set high enough
             resetContentId();
@@ -1045,23 +1264,18 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
         coordinator.waitForResponse(reqId);
     }
 
-    protected void importEntity(Entity entity) throws RegistryStorageException {
+    protected CompletableFuture<UUID> importEntity(Entity entity) throws RegistryStorageException {
         switch (entity.getEntityType()) {
             case ArtifactRule:
-                importArtifactRule((ArtifactRuleEntity) entity);
-                break;
+                return importArtifactRule((ArtifactRuleEntity) entity);
             case ArtifactVersion:
-                importArtifactVersion((ArtifactVersionEntity) entity);
-                break;
+                return importArtifactVersion((ArtifactVersionEntity) entity);
             case Content:
-                importContent((ContentEntity) entity);
-                break;
+                return importContent((ContentEntity) entity);
             case GlobalRule:
-                importGlobalRule((GlobalRuleEntity) entity);
-                break;
+                return importGlobalRule((GlobalRuleEntity) entity);
             case Group:
-                importGroup((GroupEntity) entity);
-                break;
+                return importGroup((GroupEntity) entity);
             case Manifest:
                 ManifestEntity manifest = (ManifestEntity) entity;
                 log.info("---------- Import Info ----------");
@@ -1071,34 +1285,34 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
                 log.info("Data exported on {} by user {}", manifest.exportedOn, manifest.exportedBy);
                 log.info("---------- ----------- ----------");
                 // Ignore the manifest for now.
-                break;
+                return null;
             default:
                 throw new RegistryStorageException("Unhandled entity type during import: " + entity.getEntityType());
         }
     }
-    protected void importArtifactRule(ArtifactRuleEntity entity) {
+    protected CompletableFuture<UUID> importArtifactRule(ArtifactRuleEntity entity) {
         RuleConfigurationDto config = new RuleConfigurationDto(entity.configuration);
-        submitter.submitArtifactRule(tenantContext.tenantId(), entity.groupId, entity.artifactId, entity.type, ActionType.Import, config);
+        return submitter.submitArtifactRule(tenantContext.tenantId(), entity.groupId, entity.artifactId, entity.type, ActionType.Import, config);
     }
-    protected void importArtifactVersion(ArtifactVersionEntity entity) {
+    protected CompletableFuture<UUID> importArtifactVersion(ArtifactVersionEntity entity) {
         EditableArtifactMetaDataDto metaData = EditableArtifactMetaDataDto.builder()
                 .name(entity.name)
                 .description(entity.description)
                 .labels(entity.labels)
                 .properties(entity.properties)
                 .build();
-        submitter.submitArtifact(tenantContext.tenantId(), entity.groupId, entity.artifactId, entity.version, ActionType.Import,
+        return submitter.submitArtifact(tenantContext.tenantId(), entity.groupId, entity.artifactId, entity.version, ActionType.Import,
                 entity.globalId, entity.artifactType, null, entity.createdBy, new Date(entity.createdOn), metaData, entity.versionId,
                 entity.state, entity.contentId, entity.isLatest);
     }
-    protected void importContent(ContentEntity entity) {
-        submitter.submitContent(entity.contentId, entity.contentHash, ActionType.Import, entity.canonicalHash, ContentHandle.create(entity.contentBytes));
+    protected CompletableFuture<UUID> importContent(ContentEntity entity) {
+        return submitter.submitContent(entity.contentId, entity.contentHash, ActionType.Import, entity.canonicalHash, ContentHandle.create(entity.contentBytes));
     }
-    protected void importGlobalRule(GlobalRuleEntity entity) {
+    protected CompletableFuture<UUID> importGlobalRule(GlobalRuleEntity entity) {
         RuleConfigurationDto config = new RuleConfigurationDto(entity.configuration);
-        submitter.submitGlobalRule(tenantContext.tenantId(), entity.ruleType, ActionType.Import, config);
+        return submitter.submitGlobalRule(tenantContext.tenantId(), entity.ruleType, ActionType.Import, config);
     }
-    protected void importGroup(GroupEntity entity) {
+    protected CompletableFuture<UUID> importGroup(GroupEntity entity) {
         GroupEntity e = entity;
         GroupMetaDataDto group = new GroupMetaDataDto();
         group.setArtifactsType(e.artifactsType);
@@ -1109,7 +1323,7 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
         group.setModifiedBy(e.modifiedBy);
         group.setModifiedOn(e.modifiedOn);
         group.setProperties(e.properties);
-        submitter.submitGroup(tenantContext.tenantId(), ActionType.Import, group);
+        return submitter.submitGroup(tenantContext.tenantId(), ActionType.Import, group);
     }
     private void resetContentId() {
         UUID reqId = ConcurrentUtil.get(submitter.submitGlobalId(ActionType.Reset));
@@ -1136,4 +1350,32 @@ public class KafkaSqlRegistryStorage extends AbstractRegistryStorage {
             return content;
         }
     }
+
+    /**
+     * State of the KSQL consumer thread.
+     */
+    private class JournalState {
+
+        final String bootstrapId;
+        final int partitionCount;
+        final long bootstrapStart;
+        final Set<Integer> bootstrapPartitions = new HashSet<>();
+        final List<ConsumerRecord<MessageKey, MessageValue>> batch = new ArrayList<>();
+        final Map<TopicPartition, Deque<ConsumerRecord<MessageKey, MessageValue>>> held = new HashMap<>();
+
+        JournalState(String bootstrapId, int partitionCount, long bootstrapStart) {
+            this.bootstrapId = bootstrapId;
+            this.partitionCount = partitionCount;
+            this.bootstrapStart = bootstrapStart;
+        }
+
+        /**
+         * Dispatches the records consumed so far to be applied.
+         */
+        void flush() {
+            applyStage.dispatch(batch);
+            batch.clear();
+        }
+    }
+
 }
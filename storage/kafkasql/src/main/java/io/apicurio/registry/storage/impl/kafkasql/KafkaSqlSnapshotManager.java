@@ -0,0 +1,266 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+
+import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlStore;
+
+/**
+ * Manages periodic snapshots of the local {@link KafkaSqlStore}.  Each snapshot is a directory containing
+ * a dump of the database along with the journal offsets (per partition) that the dump covers.  At startup
+ * the most recent snapshot is restored, so that only the tail of the journal (after those offsets) needs
+ * to be consumed.
+ *
+ * Snapshots are always taken on the KSQL consumer thread, between two polls and once all dispatched
+ * records have been applied, so the state of the store corresponds exactly to the recorded offsets.
+ */
+@ApplicationScoped
+public class KafkaSqlSnapshotManager {
+
+    private static final String SNAPSHOT_DIR_PREFIX = "snapshot-";
+    private static final String TMP_DIR_PREFIX = ".tmp-";
+    private static final String DATA_FILE = "data.zip";
+    private static final String META_FILE = "snapshot.properties";
+    private static final String TOPIC_PROPERTY = "topic";
+    private static final String OFFSET_PROPERTY_PREFIX = "offset.";
+
+    @Inject
+    Logger log;
+
+    @Inject
+    KafkaSqlConfiguration configuration;
+
+    @Inject
+    KafkaSqlStore sqlStore;
+
+    private long lastSnapshotTime = System.currentTimeMillis();
+    private Map<TopicPartition, Long> lastSnapshotOffsets = Collections.emptyMap();
+
+    /**
+     * Returns true if snapshots are enabled and supported by the local store.  Snapshots are not needed
+     * when the local store is persistent (see {@link KafkaSqlCheckpointManager}).
+     */
+    public boolean isEnabled() {
+        return configuration.isSnapshotEnabled() && !configuration.isStorePersistent() && sqlStore.isSnapshotSupported();
+    }
+
+    /**
+     * Restores the most recent snapshot (if any) into the local store.  Returns the journal offsets
+     * covered by the restored snapshot, or an empty map if nothing was restored (in which case the
+     * whole journal must be consumed).
+     * @param consumer
+     */
+    public Map<TopicPartition, Long> restore(Consumer<?, ?> consumer) {
+        lastSnapshotTime = System.currentTimeMillis();
+        if (!isEnabled()) {
+            if (configuration.isSnapshotEnabled()) {
+                log.warn("KafkaSQL snapshots are enabled but not supported by the local database, ignoring.");
+            }
+            return Collections.emptyMap();
+        }
+
+        Path snapshotDir = findLatestSnapshot();
+        if (snapshotDir == null) {
+            log.info("No KafkaSQL snapshot found in {}, consuming the entire journal.", configuration.snapshotLocation());
+            return Collections.emptyMap();
+        }
+
+        Map<TopicPartition, Long> offsets;
+        try {
+            offsets = readOffsets(snapshotDir);
+        } catch (IOException e) {
+            log.warn("Failed to read KafkaSQL snapshot metadata from {}, ignoring the snapshot.", snapshotDir, e);
+            return Collections.emptyMap();
+        }
+        if (offsets == null) {
+            log.info("KafkaSQL snapshot {} was taken from a different topic, ignoring it.", snapshotDir);
+            return Collections.emptyMap();
+        }
+
+        // The snapshot must not be ahead of the journal (e.g. if the topic was re-created).
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(offsets.keySet());
+        for (Map.Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+            Long endOffset = endOffsets.get(entry.getKey());
+            if (endOffset == null || entry.getValue() > endOffset) {
+                log.warn("KafkaSQL snapshot {} is ahead of the journal ({} > {}), ignoring it.", snapshotDir, entry.getValue(), endOffset);
+                return Collections.emptyMap();
+            }
+        }
+
+        log.info("Restoring KafkaSQL snapshot {} covering offsets {}", snapshotDir, offsets);
+        long start = System.currentTimeMillis();
+        try {
+            sqlStore.restoreSnapshot(snapshotDir.resolve(DATA_FILE).toAbsolutePath().toString());
+        } catch (RuntimeException e) {
+            // The store is now in an unknown state - remove the snapshot so the next startup replays
+            // the whole journal instead of failing on the same snapshot again.
+            log.error("Failed to restore KafkaSQL snapshot {}, deleting it.", snapshotDir, e);
+            FileUtils.deleteQuietly(snapshotDir.toFile());
+            throw e;
+        }
+        log.info("KafkaSQL snapshot restored in {}ms.", System.currentTimeMillis() - start);
+
+        lastSnapshotTime = System.currentTimeMillis();
+        lastSnapshotOffsets = offsets;
+        return offsets;
+    }
+
+    /**
+     * Returns true if a new snapshot should be written, i.e. the snapshot interval has elapsed and the
+     * store has changed since the previous snapshot.
+     * @param appliedOffsets the next offset to be consumed, for each partition
+     */
+    public boolean isSnapshotDue(Map<TopicPartition, Long> appliedOffsets) {
+        return isEnabled() && !appliedOffsets.isEmpty() && !appliedOffsets.equals(lastSnapshotOffsets)
+                && System.currentTimeMillis() - lastSnapshotTime >= configuration.snapshotInterval();
+    }
+
+    /**
+     * Writes a new snapshot if the snapshot interval has elapsed and the store has changed since the
+     * previous snapshot.  Must only be called from the consumer thread, when all records up to the given
+     * offsets have been applied to the store.
+     * @param appliedOffsets the next offset to be consumed, for each partition
+     */
+    public void maybeSnapshot(Map<TopicPartition, Long> appliedOffsets) {
+        if (!isSnapshotDue(appliedOffsets)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Even if this snapshot fails, wait another full interval before trying again.
+        lastSnapshotTime = now;
+
+        Path root = Paths.get(configuration.snapshotLocation());
+        Path tmpDir = null;
+        try {
+            Files.createDirectories(root);
+            tmpDir = Files.createTempDirectory(root, TMP_DIR_PREFIX);
+
+            sqlStore.writeSnapshot(tmpDir.resolve(DATA_FILE).toAbsolutePath().toString());
+            writeOffsets(tmpDir, appliedOffsets);
+
+            Path snapshotDir = root.resolve(SNAPSHOT_DIR_PREFIX + now);
+            Files.move(tmpDir, snapshotDir, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshotOffsets = new HashMap<>(appliedOffsets);
+            log.info("KafkaSQL snapshot {} written in {}ms, covering offsets {}", snapshotDir,
+                    System.currentTimeMillis() - now, appliedOffsets);
+
+            deleteOtherSnapshots(root, snapshotDir);
+        } catch (Exception e) {
+            log.error("Failed to write KafkaSQL snapshot.", e);
+            if (tmpDir != null) {
+                FileUtils.deleteQuietly(tmpDir.toFile());
+            }
+        }
+    }
+
+    /**
+     * Finds the most recent complete snapshot in the snapshot location.
+     */
+    private Path findLatestSnapshot() {
+        Path root = Paths.get(configuration.snapshotLocation());
+        if (!Files.isDirectory(root)) {
+            return null;
+        }
+        Path latest = null;
+        long latestTime = -1;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, SNAPSHOT_DIR_PREFIX + "*")) {
+            for (Path dir : dirs) {
+                if (!Files.isRegularFile(dir.resolve(DATA_FILE)) || !Files.isRegularFile(dir.resolve(META_FILE))) {
+                    continue;
+                }
+                try {
+                    long time = Long.parseLong(dir.getFileName().toString().substring(SNAPSHOT_DIR_PREFIX.length()));
+                    if (time > latestTime) {
+                        latestTime = time;
+                        latest = dir;
+                    }
+                } catch (NumberFormatException e) {
+                    // Not one of ours.
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list KafkaSQL snapshots in {}", root, e);
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes all snapshots (and abandoned temporary directories) except the given one.
+     */
+    private void deleteOtherSnapshots(Path root, Path keep) throws IOException {
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root)) {
+            for (Path dir : dirs) {
+                String name = dir.getFileName().toString();
+                if (!dir.equals(keep) && (name.startsWith(SNAPSHOT_DIR_PREFIX) || name.startsWith(TMP_DIR_PREFIX))) {
+                    FileUtils.deleteQuietly(dir.toFile());
+                }
+            }
+        }
+    }
+
+    private void writeOffsets(Path dir, Map<TopicPartition, Long> offsets) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty(TOPIC_PROPERTY, configuration.topic());
+        offsets.forEach((tp, offset) -> meta.setProperty(OFFSET_PROPERTY_PREFIX + tp.partition(), String.valueOf(offset)));
+        try (OutputStream out = Files.newOutputStream(dir.resolve(META_FILE))) {
+            meta.store(out, "KafkaSQL snapshot");
+        }
+    }
+
+    /**
+     * Reads the offsets covered by the given snapshot.  Returns null if the snapshot was taken
+     * from a different topic.
+     */
+    private Map<TopicPartition, Long> readOffsets(Path dir) throws IOException {
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(dir.resolve(META_FILE))) {
+            meta.load(in);
+        }
+        if (!configuration.topic().equals(meta.getProperty(TOPIC_PROPERTY))) {
+            return null;
+        }
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (String name : meta.stringPropertyNames()) {
+            if (name.startsWith(OFFSET_PROPERTY_PREFIX)) {
+                int partition = Integer.parseInt(name.substring(OFFSET_PROPERTY_PREFIX.length()));
+                offsets.put(new TopicPartition(configuration.topic(), partition), Long.parseLong(meta.getProperty(name)));
+            }
+        }
+        return offsets;
+    }
+
+}
@@ -16,8 +16,9 @@
 
 package io.apicurio.registry.storage.impl.kafkasql;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -25,6 +26,7 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.internals.RecordHeader;
 
 import io.apicurio.registry.content.ContentHandle;
@@ -36,6 +38,7 @@ import io.apicurio.registry.storage.dto.RuleConfigurationDto;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactRuleKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactVersionKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactWithContentKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.BootstrapKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ContentKey;
@@ -49,6 +52,7 @@ import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
 import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactRuleValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactVersionValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ContentIdValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
@@ -78,6 +82,9 @@ public class KafkaSqlSubmitter {
     @Inject
     ProducerActions<MessageKey, MessageValue> producer;
 
+    @Inject
+    KafkaSqlOffsetTracker offsets;
+
     /**
      * Constructor.
      */
@@ -90,10 +97,45 @@ public class KafkaSqlSubmitter {
      * @param value
      */
     public CompletableFuture<UUID> send(MessageKey key, MessageValue value) {
-        UUID requestId = coordinator.createUUID();
-        RecordHeader header = new RecordHeader("req", requestId.toString().getBytes());
-        ProducerRecord<MessageKey, MessageValue> record = new ProducerRecord<>(configuration.topic(), 0, key, value, Collections.singletonList(header));
-        return producer.apply(record).thenApply(rm -> requestId);
+        return send(key, value, null);
+    }
+
+    /**
+     * Sends a message to the given partition of the Kafka topic, or to the partition chosen by the
+     * KafkaSqlPartitioner if no partition is given.
+     * @param key
+     * @param value
+     * @param partition
+     */
+    private CompletableFuture<UUID> send(MessageKey key, MessageValue value, Integer partition) {
+        return send(key, value, partition, coordinator.createUUID());
+    }
+
+    /**
+     * Sends a message nobody waits for (e.g. a tombstone): it carries no request UUID, so the coordinator
+     * does not track a response for it.
+     * @param key
+     * @param value
+     * @param partition
+     */
+    private CompletableFuture<UUID> sendUntracked(MessageKey key, MessageValue value, Integer partition) {
+        return send(key, value, partition, null);
+    }
+
+    private CompletableFuture<UUID> send(MessageKey key, MessageValue value, Integer partition, UUID requestId) {
+        List<Header> headers = new ArrayList<>(2);
+        if (requestId != null) {
+            headers.add(new RecordHeader("req", requestId.toString().getBytes()));
+        }
+        byte[] dependencies = offsets.encodeDependencies();
+        if (dependencies != null) {
+            headers.add(new RecordHeader(KafkaSqlOffsetTracker.DEPENDENCIES_HEADER, dependencies));
+        }
+        ProducerRecord<MessageKey, MessageValue> record = new ProducerRecord<>(configuration.topic(), partition, key, value, headers);
+        return producer.apply(record).thenApply(rm -> {
+            offsets.produced(rm);
+            return requestId;
+        });
     }
 
 
@@ -144,6 +186,16 @@ public class KafkaSqlSubmitter {
     }
 
 
+    public CompletableFuture<UUID> submitArtifactWithContent(String tenantId, String groupId, String artifactId, String version,
+            ActionType action, ArtifactType artifactType, String contentHash, String canonicalHash, ContentHandle content,
+            String createdBy, Date createdOn, EditableArtifactMetaDataDto metaData) {
+        ArtifactWithContentKey key = ArtifactWithContentKey.create(tenantId, groupId, artifactId);
+        ArtifactWithContentValue value = ArtifactWithContentValue.create(action, version, artifactType, contentHash, canonicalHash,
+                content, createdBy, createdOn, metaData);
+        return send(key, value);
+    }
+
+
     /* ******************************************************************************************
      * Version
      * ****************************************************************************************** */
@@ -214,21 +266,27 @@ public class KafkaSqlSubmitter {
     /* ******************************************************************************************
      * Global ID
      * ****************************************************************************************** */
-    public CompletableFuture<UUID> submitGlobalId(ActionType action) {
+    public CompletableFuture<UUID> submitGlobalId(ActionType action, Integer blockSize) {
         GlobalIdKey key = GlobalIdKey.create();
-        GlobalIdValue value = GlobalIdValue.create(action);
+        GlobalIdValue value = GlobalIdValue.create(action, blockSize);
         return send(key, value);
     }
+    public CompletableFuture<UUID> submitGlobalId(ActionType action) {
+        return submitGlobalId(action, null);
+    }
 
 
     /* ******************************************************************************************
      * Content ID
      * ****************************************************************************************** */
-    public CompletableFuture<UUID> submitContentId(ActionType action) {
+    public CompletableFuture<UUID> submitContentId(ActionType action, Integer blockSize) {
         ContentIdKey key = ContentIdKey.create();
-        ContentIdValue value = ContentIdValue.create(action);
+        ContentIdValue value = ContentIdValue.create(action, blockSize);
         return send(key, value);
     }
+    public CompletableFuture<UUID> submitContentId(ActionType action) {
+        return submitContentId(action, null);
+    }
 
 
 
@@ -237,15 +295,23 @@ public class KafkaSqlSubmitter {
      * ****************************************************************************************** */
     public void submitArtifactVersionTombstone(String tenantId, String groupId, String artifactId, String version) {
         ArtifactVersionKey key = ArtifactVersionKey.create(tenantId, groupId, artifactId, version);
-        send(key, null);
+        sendUntracked(key, null, null);
     }
     public void submitArtifactRuleTombstone(String tenantId, String groupId, String artifactId, RuleType rule) {
         ArtifactRuleKey key = ArtifactRuleKey.create(tenantId, groupId, artifactId, rule);
-        send(key, null);
+        sendUntracked(key, null, null);
     }
-    public void submitBootstrap(String bootstrapId) {
+    /**
+     * Sends the bootstrap message to every partition, so that the consumer can tell when it has caught
+     * up with all of them.
+     * @param bootstrapId
+     * @param partitions number of partitions of the journal topic
+     */
+    public void submitBootstrap(String bootstrapId, int partitions) {
         BootstrapKey key = BootstrapKey.create(bootstrapId);
-        send(key, null);
+        for (int partition = 0; partition < partitions; partition++) {
+            sendUntracked(key, null, partition);
+        }
     }
 
 }
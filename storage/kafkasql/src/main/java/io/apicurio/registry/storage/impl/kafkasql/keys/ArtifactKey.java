@@ -29,7 +29,7 @@ public class ArtifactKey extends AbstractMessageKey {
 
     private String groupId;
     private String artifactId;
-    private final String uuid = UUID.randomUUID().toString();
+    private String uuid = UUID.randomUUID().toString();
 
     /**
      * Creator method.
@@ -68,6 +68,13 @@ public class ArtifactKey extends AbstractMessageKey {
         return uuid;
     }
 
+    /**
+     * @param uuid the uuid to set
+     */
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
     /**
      * @return the groupId
      */
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.keys;
+
+import java.util.UUID;
+
+import io.apicurio.registry.storage.impl.kafkasql.MessageType;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Key of a message that creates (or updates) an artifact along with its content, in a single step.
+ * It is partitioned exactly like an {@link ArtifactKey}.
+ */
+@RegisterForReflection
+public class ArtifactWithContentKey extends AbstractMessageKey {
+
+    private String groupId;
+    private String artifactId;
+    private String uuid = UUID.randomUUID().toString();
+
+    /**
+     * Creator method.
+     * @param tenantId
+     * @param groupId
+     * @param artifactId
+     */
+    public static final ArtifactWithContentKey create(String tenantId, String groupId, String artifactId) {
+        ArtifactWithContentKey key = new ArtifactWithContentKey();
+        key.setTenantId(tenantId);
+        key.setGroupId(groupId);
+        key.setArtifactId(artifactId);
+        return key;
+    }
+
+    /**
+     * @see io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey#getType()
+     */
+    @Override
+    public MessageType getType() {
+        return MessageType.ArtifactWithContent;
+    }
+
+    /**
+     * @see io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey#getPartitionKey()
+     */
+    @Override
+    public String getPartitionKey() {
+        return getTenantId() + "/" + groupId + "/" + artifactId;
+    }
+
+    /**
+     * @return the uuid
+     */
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @param uuid the uuid to set
+     */
+    public void setUuid(String uuid) {
+        this.uuid = uuid;
+    }
+
+    /**
+     * @return the groupId
+     */
+    public String getGroupId() {
+        return groupId;
+    }
+
+    /**
+     * @param groupId the groupId to set
+     */
+    public void setGroupId(String groupId) {
+        this.groupId = groupId;
+    }
+
+    /**
+     * @return the artifactId
+     */
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    /**
+     * @param artifactId the artifactId to set
+     */
+    public void setArtifactId(String artifactId) {
+        this.artifactId = artifactId;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "ArtifactWithContentKey [groupId=" + groupId + ", artifactId=" + artifactId + "]";
+    }
+
+}
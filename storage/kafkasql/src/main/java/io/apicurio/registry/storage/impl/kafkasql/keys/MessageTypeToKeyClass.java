@@ -65,6 +65,9 @@ public class MessageTypeToKeyClass {
                 case RoleMapping:
                     index.put(type, RoleMappingKey.class);
                     break;
+                case ArtifactWithContent:
+                    index.put(type, ArtifactWithContentKey.class);
+                    break;
                 default:
                     throw new RuntimeException("[MessageTypeToKeyClass] Type not mapped: " + type);
             }
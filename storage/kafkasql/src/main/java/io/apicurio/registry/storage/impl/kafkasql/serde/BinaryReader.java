@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.serde;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the primitives of the compact binary KSQL message format (see {@link BinaryWriter}).
+ */
+public class BinaryReader {
+
+    private final byte[] data;
+    private int position;
+
+    /**
+     * Constructor.
+     * @param data
+     * @param offset
+     */
+    public BinaryReader(byte[] data, int offset) {
+        this.data = data;
+        this.position = offset;
+    }
+
+    public byte readByte() {
+        if (position >= data.length) {
+            throw new IllegalStateException("Unexpected end of KSQL message.");
+        }
+        return data[position++];
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public long readVarLong() {
+        long v = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed varint in KSQL message.");
+            }
+            b = readByte();
+            v |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    public int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    public Long readNullableLong() {
+        return readBoolean() ? readVarLong() : null;
+    }
+
+    public Integer readNullableInt() {
+        return readBoolean() ? readVarInt() : null;
+    }
+
+    public Boolean readNullableBoolean() {
+        byte b = readByte();
+        return b == 0 ? null : b == 2;
+    }
+
+    public Date readDate() {
+        Long time = readNullableLong();
+        return time == null ? null : new Date(time);
+    }
+
+    public byte[] readBytes() {
+        int length = readLength();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    public String readString() {
+        int length = readLength();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    public <E extends Enum<E>> E readEnum(Class<E> type) {
+        String name = readString();
+        return name == null ? null : Enum.valueOf(type, name);
+    }
+
+    public List<String> readStringList() {
+        int size = readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<String> value = new ArrayList<>(size);
+        for (int idx = 0; idx < size; idx++) {
+            value.add(readString());
+        }
+        return value;
+    }
+
+    public Map<String, String> readStringMap() {
+        int size = readVarInt() - 1;
+        if (size < 0) {
+            return null;
+        }
+        Map<String, String> value = new LinkedHashMap<>();
+        for (int idx = 0; idx < size; idx++) {
+            value.put(readString(), readString());
+        }
+        return value;
+    }
+
+    /**
+     * Reads the length prefix of a string or byte array, returning -1 for null.
+     */
+    private int readLength() {
+        int length = readVarInt() - 1;
+        if (length > data.length - position) {
+            throw new IllegalStateException("Malformed length in KSQL message.");
+        }
+        return length;
+    }
+
+}
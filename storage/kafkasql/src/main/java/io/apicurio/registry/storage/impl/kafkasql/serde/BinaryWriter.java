@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.serde;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the primitives of the compact binary KSQL message format.  Integers are written as
+ * (zig-zag) varints.  Nullable values are prefixed with a presence marker: strings, byte arrays and
+ * collections encode null as a length of 0 and otherwise store their length + 1.
+ */
+public class BinaryWriter {
+
+    private byte[] buffer;
+    private int position;
+
+    /**
+     * Constructor.
+     * @param initialCapacity
+     */
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public BinaryWriter writeByte(byte value) {
+        ensureCapacity(1);
+        buffer[position++] = value;
+        return this;
+    }
+
+    public BinaryWriter writeBoolean(boolean value) {
+        return writeByte(value ? (byte) 1 : (byte) 0);
+    }
+
+    public BinaryWriter writeVarLong(long value) {
+        ensureCapacity(10);
+        long v = (value << 1) ^ (value >> 63);
+        while ((v & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[position++] = (byte) v;
+        return this;
+    }
+
+    public BinaryWriter writeVarInt(int value) {
+        return writeVarLong(value);
+    }
+
+    public BinaryWriter writeNullableLong(Long value) {
+        writeBoolean(value != null);
+        return value != null ? writeVarLong(value) : this;
+    }
+
+    public BinaryWriter writeNullableInt(Integer value) {
+        writeBoolean(value != null);
+        return value != null ? writeVarInt(value) : this;
+    }
+
+    public BinaryWriter writeNullableBoolean(Boolean value) {
+        return writeByte(value == null ? (byte) 0 : value ? (byte) 2 : (byte) 1);
+    }
+
+    public BinaryWriter writeDate(Date value) {
+        return writeNullableLong(value == null ? null : value.getTime());
+    }
+
+    public BinaryWriter writeBytes(byte[] value) {
+        if (value == null) {
+            return writeVarInt(0);
+        }
+        writeVarInt(value.length + 1);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+        return this;
+    }
+
+    public BinaryWriter writeString(String value) {
+        return writeBytes(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public BinaryWriter writeEnum(Enum<?> value) {
+        return writeString(value == null ? null : value.name());
+    }
+
+    public BinaryWriter writeStringList(List<String> value) {
+        if (value == null) {
+            return writeVarInt(0);
+        }
+        writeVarInt(value.size() + 1);
+        value.forEach(this::writeString);
+        return this;
+    }
+
+    public BinaryWriter writeStringMap(Map<String, String> value) {
+        if (value == null) {
+            return writeVarInt(0);
+        }
+        writeVarInt(value.size() + 1);
+        value.forEach((k, v) -> {
+            writeString(k);
+            writeString(v);
+        });
+        return this;
+    }
+
+    /**
+     * Returns a copy of the bytes written so far.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int count) {
+        if (position + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + count));
+        }
+    }
+
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.serde;
+
+import io.apicurio.registry.content.ContentHandle;
+import io.apicurio.registry.storage.dto.EditableArtifactMetaDataDto;
+import io.apicurio.registry.storage.dto.LogConfigurationDto;
+import io.apicurio.registry.storage.dto.RuleConfigurationDto;
+import io.apicurio.registry.storage.impl.kafkasql.MessageType;
+import io.apicurio.registry.storage.impl.kafkasql.keys.AbstractMessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactVersionKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactWithContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.BootstrapKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GroupKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.LogConfigKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.RoleMappingKey;
+import io.apicurio.registry.storage.impl.kafkasql.values.AbstractMessageValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactVersionValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GroupValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.LogConfigValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.RoleMappingValue;
+import io.apicurio.registry.types.ArtifactState;
+import io.apicurio.registry.types.LogLevel;
+import io.apicurio.registry.types.RuleType;
+
+/**
+ * The compact binary format of KSQL message keys and values.  Every message in this format starts
+ * with a format byte, followed by the message type ordinal and then the fields of the key or value,
+ * in a fixed order, using the primitives of {@link BinaryWriter}.
+ *
+ * Messages in the original (JSON) format start directly with the message type ordinal, which is
+ * always lower than any format byte, so both formats can be read from the same topic.  If the
+ * fields of a message ever change, a new format byte must be introduced (and the old one still
+ * supported when reading).
+ */
+public class KafkaSqlBinaryFormat {
+
+    /**
+     * Configuration property (of the serializers) selecting the format used to write messages:
+     * "json" (the default) or "binary".  Messages in either format can always be read, but only by
+     * nodes that know the binary format, so it must only be enabled once every node has been upgraded.
+     */
+    public static final String FORMAT_CONFIG = "apicurio.kafkasql.serde.format";
+    public static final String FORMAT_BINARY = "binary";
+    public static final String FORMAT_JSON = "json";
+
+    /**
+     * Format byte of version 1 of the binary format.
+     */
+    public static final byte BINARY_V1 = (byte) 0x81;
+
+    /**
+     * Returns true if the given (serialized) message is in the binary format.
+     * @param data
+     */
+    public static boolean isBinary(byte[] data) {
+        return data.length > 0 && data[0] == BINARY_V1;
+    }
+
+    /**
+     * Returns true if messages should be written in the binary format, according to the given
+     * serializer configuration value.
+     * @param format
+     */
+    public static boolean isBinaryConfigured(Object format) {
+        return format != null && FORMAT_BINARY.equals(format.toString());
+    }
+
+    /* ******************************************************************************************
+     * Keys
+     * ****************************************************************************************** */
+
+    public static byte[] writeKey(MessageKey key) {
+        BinaryWriter out = new BinaryWriter(64);
+        out.writeByte(BINARY_V1);
+        out.writeByte(key.getType().getOrd());
+        out.writeString(key.getTenantId());
+        switch (key.getType()) {
+            case Bootstrap:
+                out.writeString(((BootstrapKey) key).getBootstrapId());
+                break;
+            case Group:
+                out.writeString(((GroupKey) key).getGroupId());
+                break;
+            case Artifact: {
+                ArtifactKey k = (ArtifactKey) key;
+                out.writeString(k.getGroupId()).writeString(k.getArtifactId()).writeString(k.getUuid());
+                break;
+            }
+            case ArtifactWithContent: {
+                ArtifactWithContentKey k = (ArtifactWithContentKey) key;
+                out.writeString(k.getGroupId()).writeString(k.getArtifactId()).writeString(k.getUuid());
+                break;
+            }
+            case ArtifactRule: {
+                ArtifactRuleKey k = (ArtifactRuleKey) key;
+                out.writeString(k.getGroupId()).writeString(k.getArtifactId()).writeEnum(k.getRuleType());
+                break;
+            }
+            case ArtifactVersion: {
+                ArtifactVersionKey k = (ArtifactVersionKey) key;
+                out.writeString(k.getGroupId()).writeString(k.getArtifactId()).writeString(k.getVersion());
+                break;
+            }
+            case Content: {
+                ContentKey k = (ContentKey) key;
+                out.writeVarLong(k.getContentId()).writeString(k.getContentHash());
+                break;
+            }
+            case GlobalRule:
+                out.writeEnum(((GlobalRuleKey) key).getRuleType());
+                break;
+            case RoleMapping:
+                out.writeString(((RoleMappingKey) key).getPrincipalId());
+                break;
+            case LogConfig:
+            case GlobalId:
+            case ContentId:
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported message key type: " + key.getType());
+        }
+        return out.toByteArray();
+    }
+
+    public static MessageKey readKey(byte[] data) {
+        BinaryReader in = new BinaryReader(data, 1);
+        MessageType type = MessageType.fromOrd(in.readByte());
+        String tenantId = in.readString();
+        switch (type) {
+            case Bootstrap:
+                return BootstrapKey.create(in.readString());
+            case Group:
+                return withTenant(GroupKey.create(tenantId, in.readString()), tenantId);
+            case Artifact: {
+                ArtifactKey key = ArtifactKey.create(tenantId, in.readString(), in.readString());
+                key.setUuid(in.readString());
+                return key;
+            }
+            case ArtifactWithContent: {
+                ArtifactWithContentKey key = ArtifactWithContentKey.create(tenantId, in.readString(), in.readString());
+                key.setUuid(in.readString());
+                return key;
+            }
+            case ArtifactRule:
+                return ArtifactRuleKey.create(tenantId, in.readString(), in.readString(), in.readEnum(RuleType.class));
+            case ArtifactVersion:
+                return ArtifactVersionKey.create(tenantId, in.readString(), in.readString(), in.readString());
+            case Content:
+                return withTenant(ContentKey.create(in.readVarLong(), in.readString()), tenantId);
+            case GlobalRule:
+                return GlobalRuleKey.create(tenantId, in.readEnum(RuleType.class));
+            case RoleMapping:
+                return RoleMappingKey.create(tenantId, in.readString());
+            case LogConfig:
+                return LogConfigKey.create(tenantId);
+            case GlobalId:
+                return withTenant(GlobalIdKey.create(), tenantId);
+            case ContentId:
+                return withTenant(ContentIdKey.create(), tenantId);
+            default:
+                throw new IllegalArgumentException("Unsupported message key type: " + type);
+        }
+    }
+
+    private static MessageKey withTenant(AbstractMessageKey key, String tenantId) {
+        key.setTenantId(tenantId);
+        return key;
+    }
+
+    /* ******************************************************************************************
+     * Values
+     * ****************************************************************************************** */
+
+    public static byte[] writeValue(MessageValue value) {
+        AbstractMessageValue v = (AbstractMessageValue) value;
+        BinaryWriter out = new BinaryWriter(value.getType() == MessageType.Content || value.getType() == MessageType.ArtifactWithContent ? 1024 : 128);
+        out.writeByte(BINARY_V1);
+        out.writeByte(value.getType().getOrd());
+        out.writeByte(v.getAction() == null ? 0 : v.getAction().getOrd());
+        switch (value.getType()) {
+            case Group: {
+                GroupValue g = (GroupValue) value;
+                out.writeString(g.getDescription())
+                    .writeByte(ArtifactTypeOrdUtil.artifactTypeToOrd(g.getArtifactsType()))
+                    .writeString(g.getCreatedBy())
+                    .writeVarLong(g.getCreatedOn())
+                    .writeString(g.getModifiedBy())
+                    .writeVarLong(g.getModifiedOn())
+                    .writeStringMap(g.getProperties())
+                    .writeBoolean(g.isOnlyArtifacts());
+                break;
+            }
+            case ArtifactWithContent: {
+                ArtifactWithContentValue a = (ArtifactWithContentValue) value;
+                writeArtifact(out, a);
+                out.writeString(a.getCanonicalHash());
+                out.writeBytes(a.getContent() == null ? null : a.getContent().bytes());
+                break;
+            }
+            case Artifact:
+                writeArtifact(out, (ArtifactValue) value);
+                break;
+            case ArtifactVersion:
+                writeArtifactVersion(out, (ArtifactVersionValue) value);
+                break;
+            case Content: {
+                ContentValue c = (ContentValue) value;
+                out.writeString(c.getCanonicalHash());
+                out.writeBytes(c.getContent() == null ? null : c.getContent().bytes());
+                break;
+            }
+            case ArtifactRule:
+                writeRuleConfig(out, ((ArtifactRuleValue) value).getConfig());
+                break;
+            case GlobalRule:
+                writeRuleConfig(out, ((GlobalRuleValue) value).getConfig());
+                break;
+            case LogConfig: {
+                LogConfigurationDto config = ((LogConfigValue) value).getConfig();
+                out.writeBoolean(config != null);
+                if (config != null) {
+                    out.writeString(config.getLogger()).writeEnum(config.getLogLevel());
+                }
+                break;
+            }
+            case GlobalId:
+                out.writeNullableInt(((GlobalIdValue) value).getBlockSize());
+                break;
+            case ContentId:
+                out.writeNullableInt(((ContentIdValue) value).getBlockSize());
+                break;
+            case RoleMapping:
+                out.writeString(((RoleMappingValue) value).getRole());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported message value type: " + value.getType());
+        }
+        return out.toByteArray();
+    }
+
+    public static MessageValue readValue(byte[] data) {
+        BinaryReader in = new BinaryReader(data, 1);
+        MessageType type = MessageType.fromOrd(in.readByte());
+        byte actionOrd = in.readByte();
+        ActionType action = actionOrd == 0 ? null : ActionType.fromOrd(actionOrd);
+        switch (type) {
+            case Group: {
+                GroupValue g = GroupValue.create(action, false);
+                g.setDescription(in.readString());
+                g.setArtifactsType(ArtifactTypeOrdUtil.ordToArtifactType(in.readByte()));
+                g.setCreatedBy(in.readString());
+                g.setCreatedOn(in.readVarLong());
+                g.setModifiedBy(in.readString());
+                g.setModifiedOn(in.readVarLong());
+                g.setProperties(in.readStringMap());
+                g.setOnlyArtifacts(in.readBoolean());
+                return g;
+            }
+            case ArtifactWithContent: {
+                ArtifactWithContentValue a = new ArtifactWithContentValue();
+                a.setAction(action);
+                readArtifact(in, a);
+                a.setCanonicalHash(in.readString());
+                byte[] content = in.readBytes();
+                a.setContent(content == null ? null : ContentHandle.create(content));
+                return a;
+            }
+            case Artifact: {
+                ArtifactValue a = new ArtifactValue();
+                a.setAction(action);
+                readArtifact(in, a);
+                return a;
+            }
+            case ArtifactVersion: {
+                ArtifactVersionValue v = new ArtifactVersionValue();
+                v.setAction(action);
+                readArtifactVersion(in, v);
+                return v;
+            }
+            case Content: {
+                String canonicalHash = in.readString();
+                byte[] content = in.readBytes();
+                return ContentValue.create(action, canonicalHash, content == null ? null : ContentHandle.create(content));
+            }
+            case ArtifactRule:
+                return ArtifactRuleValue.create(action, readRuleConfig(in));
+            case GlobalRule:
+                return GlobalRuleValue.create(action, readRuleConfig(in));
+            case LogConfig:
+                return LogConfigValue.create(action, in.readBoolean() ? new LogConfigurationDto(in.readString(), in.readEnum(LogLevel.class)) : null);
+            case GlobalId:
+                return GlobalIdValue.create(action, in.readNullableInt());
+            case ContentId:
+                return ContentIdValue.create(action, in.readNullableInt());
+            case RoleMapping:
+                return RoleMappingValue.create(action, in.readString());
+            default:
+                throw new IllegalArgumentException("Unsupported message value type: " + type);
+        }
+    }
+
+    private static void writeArtifactVersion(BinaryWriter out, ArtifactVersionValue value) {
+        out.writeEnum(value.getState());
+        EditableArtifactMetaDataDto metaData = value.getMetaData();
+        out.writeBoolean(metaData != null);
+        if (metaData != null) {
+            out.writeString(metaData.getName())
+                .writeString(metaData.getDescription())
+                .writeStringList(metaData.getLabels())
+                .writeStringMap(metaData.getProperties());
+        }
+    }
+
+    private static void readArtifactVersion(BinaryReader in, ArtifactVersionValue value) {
+        value.setState(in.readEnum(ArtifactState.class));
+        if (in.readBoolean()) {
+            value.setMetaData(EditableArtifactMetaDataDto.builder()
+                    .name(in.readString())
+                    .description(in.readString())
+                    .labels(in.readStringList())
+                    .properties(in.readStringMap())
+                    .build());
+        }
+    }
+
+    private static void writeArtifact(BinaryWriter out, ArtifactValue value) {
+        writeArtifactVersion(out, value);
+        out.writeNullableLong(value.getGlobalId())
+            .writeString(value.getVersion())
+            .writeByte(ArtifactTypeOrdUtil.artifactTypeToOrd(value.getArtifactType()))
+            .writeString(value.getContentHash())
+            .writeString(value.getCreatedBy())
+            .writeDate(value.getCreatedOn())
+            .writeNullableInt(value.getVersionId())
+            .writeNullableLong(value.getContentId())
+            .writeNullableBoolean(value.getLatest());
+    }
+
+    private static void readArtifact(BinaryReader in, ArtifactValue value) {
+        readArtifactVersion(in, value);
+        value.setGlobalId(in.readNullableLong());
+        value.setVersion(in.readString());
+        value.setArtifactType(ArtifactTypeOrdUtil.ordToArtifactType(in.readByte()));
+        value.setContentHash(in.readString());
+        value.setCreatedBy(in.readString());
+        value.setCreatedOn(in.readDate());
+        value.setVersionId(in.readNullableInt());
+        value.setContentId(in.readNullableLong());
+        value.setLatest(in.readNullableBoolean());
+    }
+
+    private static void writeRuleConfig(BinaryWriter out, RuleConfigurationDto config) {
+        out.writeBoolean(config != null);
+        if (config != null) {
+            out.writeString(config.getConfiguration());
+        }
+    }
+
+    private static RuleConfigurationDto readRuleConfig(BinaryReader in) {
+        return in.readBoolean() ? new RuleConfigurationDto(in.readString()) : null;
+    }
+
+}
@@ -19,6 +19,7 @@ package io.apicurio.registry.storage.impl.kafkasql.serde;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.Map;
 
 import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.kafka.common.serialization.Serializer;
@@ -39,11 +40,24 @@ public class KafkaSqlKeySerializer implements Serializer<MessageKey> {
         mapper.setSerializationInclusion(Include.NON_NULL);
     }
 
+    private boolean binary;
+
+    /**
+     * @see org.apache.kafka.common.serialization.Serializer#configure(java.util.Map, boolean)
+     */
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        binary = KafkaSqlBinaryFormat.isBinaryConfigured(configs.get(KafkaSqlBinaryFormat.FORMAT_CONFIG));
+    }
+
     /**
      * @see org.apache.kafka.common.serialization.Serializer#serialize(java.lang.String, java.lang.Object)
      */
     @Override
     public byte[] serialize(String topic, MessageKey messageKey) {
+        if (binary) {
+            return KafkaSqlBinaryFormat.writeKey(messageKey);
+        }
         try {
             UnsynchronizedByteArrayOutputStream out = new UnsynchronizedByteArrayOutputStream();
             out.write(ByteBuffer.allocate(1).put((byte) messageKey.getType().getOrd()).array());
@@ -34,17 +34,38 @@ import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
  * unique string is used instead, which ensures that those messages are all put on the same
  * partition.
  *
+ * When configured to partition by tenant (the default), all messages of a tenant are put on the
+ * same partition instead, so they are totally ordered.  In both cases, the globalId/contentId
+ * sequence messages are always put on partition 0 (the sequences are shared by all tenants, so
+ * they must be ordered with respect to each other), and content messages are partitioned by
+ * content hash (content is also shared by all tenants).
+ *
  * @author eric.wittmann@gmail.com
  */
 public class KafkaSqlPartitioner implements Partitioner {
 
+    /**
+     * Producer configuration property selecting how messages are partitioned: "tenant" or "artifact".
+     */
+    public static final String PARTITION_BY_CONFIG = "apicurio.kafkasql.partition-by";
+    public static final String PARTITION_BY_TENANT = "tenant";
+    public static final String PARTITION_BY_ARTIFACT = "artifact";
+
+    private static final int SEQUENCE_PARTITION = 0;
+
     private final StickyPartitionCache stickyPartitionCache = new StickyPartitionCache();
+    private boolean partitionByTenant = true;
 
-    public void configure(Map<String, ?> configs) {}
+    public void configure(Map<String, ?> configs) {
+        Object partitionBy = configs.get(PARTITION_BY_CONFIG);
+        if (partitionBy != null) {
+            partitionByTenant = !PARTITION_BY_ARTIFACT.equals(partitionBy.toString());
+        }
+    }
 
     /**
-     * Compute the partition for the given record.  Do this by extracting the ArtifactId from the
-     * key object.
+     * Compute the partition for the given record.  Do this by extracting the ArtifactId (or the
+     * tenant) from the key object.
      *
      * @param topic The topic name
      * @param key The key to partition on (or null if no key)
@@ -61,9 +82,21 @@ public class KafkaSqlPartitioner implements Partitioner {
         List<PartitionInfo> partitions = cluster.partitionsForTopic(topic);
         int numPartitions = partitions.size();
         
-        // hash the partition key to choose a partition
         MessageKey msgKey = (MessageKey) key;
-        String partitionKey = msgKey.getPartitionKey();
+        String partitionKey;
+        switch (msgKey.getType()) {
+            case GlobalId:
+            case ContentId:
+                return SEQUENCE_PARTITION;
+            case Content:
+                partitionKey = msgKey.getPartitionKey();
+                break;
+            default:
+                partitionKey = partitionByTenant ? String.valueOf(msgKey.getTenantId()) : msgKey.getPartitionKey();
+                break;
+        }
+
+        // hash the partition key to choose a partition
         return Utils.toPositive(Utils.murmur2(partitionKey.getBytes())) % numPartitions;
     }
 
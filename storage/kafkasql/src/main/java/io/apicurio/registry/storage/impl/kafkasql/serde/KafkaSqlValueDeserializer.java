@@ -16,6 +16,7 @@
 
 package io.apicurio.registry.storage.impl.kafkasql.serde;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import org.apache.commons.io.input.UnsynchronizedByteArrayInputStream;
@@ -29,6 +30,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import io.apicurio.registry.content.ContentHandle;
 import io.apicurio.registry.storage.impl.kafkasql.MessageType;
 import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.MessageTypeToValueClass;
 import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
@@ -58,10 +60,16 @@ public class KafkaSqlValueDeserializer implements Deserializer<MessageValue> {
         }
 
         try {
+            if (KafkaSqlBinaryFormat.isBinary(data)) {
+                return KafkaSqlBinaryFormat.readValue(data);
+            }
             byte msgTypeOrdinal = data[0];
             if (msgTypeOrdinal == MessageType.Content.getOrd()) {
                 return this.deserializeContent(topic, data);
             }
+            if (msgTypeOrdinal == MessageType.ArtifactWithContent.getOrd()) {
+                return this.deserializeArtifactWithContent(topic, data);
+            }
             Class<? extends MessageValue> keyClass = MessageTypeToValueClass.ordToValue(msgTypeOrdinal);
             UnsynchronizedByteArrayInputStream in = new UnsynchronizedByteArrayInputStream(data, 1);
             MessageValue key = mapper.readValue(in, keyClass);
@@ -106,4 +114,29 @@ public class KafkaSqlValueDeserializer implements Deserializer<MessageValue> {
         return ContentValue.create(action, canonicalHash, contentHandle);
     }
 
+    /**
+     * Special case deserialize of a {@link ArtifactWithContentValue} value.
+     * @param topic
+     * @param data
+     */
+    private ArtifactWithContentValue deserializeArtifactWithContent(String topic, byte[] data) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        byteBuffer.get(); // the first byte is the message type ordinal, skip that
+
+        // Artifact (length of JSON + JSON bytes)
+        int jsonLen = byteBuffer.getInt();
+        ArtifactWithContentValue value = mapper.readValue(data, byteBuffer.position(), jsonLen, ArtifactWithContentValue.class);
+        byteBuffer.position(byteBuffer.position() + jsonLen);
+
+        // Content (length of content + content bytes), if any
+        int numContentBytes = byteBuffer.getInt();
+        if (numContentBytes >= 0) {
+            byte[] contentBytes = new byte[numContentBytes];
+            byteBuffer.get(contentBytes);
+            value.setContent(ContentHandle.create(contentBytes));
+        }
+
+        return value;
+    }
+
 }
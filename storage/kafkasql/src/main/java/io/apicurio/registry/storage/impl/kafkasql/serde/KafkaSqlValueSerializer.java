@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 import org.apache.commons.io.output.UnsynchronizedByteArrayOutputStream;
 import org.apache.kafka.common.serialization.Serializer;
@@ -28,6 +29,7 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import io.apicurio.registry.storage.impl.kafkasql.MessageType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
 
@@ -42,6 +44,16 @@ public class KafkaSqlValueSerializer implements Serializer<MessageValue> {
         mapper.setSerializationInclusion(Include.NON_NULL);
     }
 
+    private boolean binary;
+
+    /**
+     * @see org.apache.kafka.common.serialization.Serializer#configure(java.util.Map, boolean)
+     */
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        binary = KafkaSqlBinaryFormat.isBinaryConfigured(configs.get(KafkaSqlBinaryFormat.FORMAT_CONFIG));
+    }
+
     /**
      * @see org.apache.kafka.common.serialization.Serializer#serialize(java.lang.String, java.lang.Object)
      */
@@ -51,9 +63,16 @@ public class KafkaSqlValueSerializer implements Serializer<MessageValue> {
             return null;
         }
 
+        if (binary) {
+            return KafkaSqlBinaryFormat.writeValue(messageValue);
+        }
+
         if (messageValue.getType() == MessageType.Content) {
             return this.serializeContent(topic, (ContentValue) messageValue);
         }
+        if (messageValue.getType() == MessageType.ArtifactWithContent) {
+            return this.serializeArtifactWithContent(topic, (ArtifactWithContentValue) messageValue);
+        }
         try (UnsynchronizedByteArrayOutputStream out = new UnsynchronizedByteArrayOutputStream()) {
             out.write(ByteBuffer.allocate(1).put(messageValue.getType().getOrd()).array());
             mapper.writeValue(out, messageValue);
@@ -95,4 +114,33 @@ public class KafkaSqlValueSerializer implements Serializer<MessageValue> {
         }
     }
 
+    /**
+     * Special case for serializing a {@link ArtifactWithContentValue}.  The artifact part is serialized
+     * as JSON (length of JSON + JSON bytes), followed by the raw content (length of content + content bytes,
+     * or -1 if there is no content).
+     * @param topic
+     * @param value
+     */
+    private byte[] serializeArtifactWithContent(String topic, ArtifactWithContentValue value) {
+        try (UnsynchronizedByteArrayOutputStream out = new UnsynchronizedByteArrayOutputStream()) {
+            out.write(ByteBuffer.allocate(1).put(value.getType().getOrd()).array());
+
+            byte[] json = mapper.writeValueAsBytes(value);
+            out.write(ByteBuffer.allocate(4).putInt(json.length).array());
+            out.write(json);
+
+            if (value.getContent() != null) {
+                byte[] contentBytes = value.getContent().bytes();
+                out.write(ByteBuffer.allocate(4).putInt(contentBytes.length).array());
+                out.write(contentBytes);
+            } else {
+                out.write(ByteBuffer.allocate(4).putInt(-1).array());
+            }
+
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
@@ -1,5 +1,7 @@
 package io.apicurio.registry.storage.impl.kafkasql.sql;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Supplier;
@@ -18,14 +20,18 @@ import io.apicurio.registry.storage.ArtifactAlreadyExistsException;
 import io.apicurio.registry.storage.ArtifactNotFoundException;
 import io.apicurio.registry.storage.RegistryStorageException;
 import io.apicurio.registry.storage.dto.GroupMetaDataDto;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCheckpointManager;
 import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlConfiguration;
 import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCoordinator;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlIdAllocator;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlOffsetTracker;
 import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlRegistryStorage;
 import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlSubmitter;
 import io.apicurio.registry.storage.impl.kafkasql.MessageType;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactRuleKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactVersionKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactWithContentKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.ContentKey;
 import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
@@ -37,6 +43,7 @@ import io.apicurio.registry.storage.impl.kafkasql.keys.RoleMappingKey;
 import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactRuleValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactVersionValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ContentIdValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.ContentValue;
 import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
@@ -75,6 +82,15 @@ public class KafkaSqlSink {
     @Inject
     KafkaSqlSubmitter submitter;
 
+    @Inject
+    KafkaSqlIdAllocator idAllocator;
+
+    @Inject
+    KafkaSqlOffsetTracker offsets;
+
+    @Inject
+    KafkaSqlCheckpointManager checkpoints;
+
     @Inject
     TenantContext tenantContext;
 
@@ -87,25 +103,206 @@ public class KafkaSqlSink {
      * to <code>doProcessMessage()</code>, and handles any exceptions that might occur. Finally
      * it will report the result to any local threads that may be waiting (via the coordinator).
      *
+     * When the local store is persistent, the message is recorded as applied in the same transaction
+     * that applies it (or on its own, if it fails).
+     *
      * @param record
      */
     public void processMessage(ConsumerRecord<MessageKey, MessageValue> record) {
         UUID requestId = extractUuid(record);
-        log.debug("Processing Kafka message with UUID: {}", requestId.toString());
+        log.debug("Processing Kafka message with UUID: {}", requestId);
 
         try {
-            Object result = doProcessMessage(record);
+            Object result = checkpoints.isEnabled() ? sqlStore.executeInTransaction(() -> {
+                Object rval = doProcessMessage(record);
+                checkpoints.recordApplied(record);
+                return rval;
+            }) : doProcessMessage(record);
             log.debug("Kafka message successfully processed. Notifying listeners of response.");
-            coordinator.notifyResponse(requestId, result);
+            notifyResponse(record, requestId, result);
         } catch (RegistryException e) {
             log.debug("Registry exception detected: {}", e.getMessage());
-            coordinator.notifyResponse(requestId, e);
+            recordFailed(record);
+            sendTombstone(record, e);
+            notifyResponse(record, requestId, e);
         } catch (Throwable e) {
             log.debug("Unexpected exception detected: {}", e.getMessage());
-            coordinator.notifyResponse(requestId, new RegistryException(e));
+            recordFailed(record);
+            notifyResponse(record, requestId, new RegistryException(e));
+        }
+    }
+
+    /**
+     * Records a message that failed to be applied as applied anyway, so that it is not applied again
+     * after a restart of a persistent local store.
+     * @param record
+     */
+    private void recordFailed(ConsumerRecord<MessageKey, MessageValue> record) {
+        try {
+            checkpoints.recordApplied(record);
+        } catch (RuntimeException e) {
+            log.debug("Failed to record the journal record as applied: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sends a tombstone for an artifact message that failed because the artifact already exists (or does
+     * not exist), to clean up the unique Kafka message that caused this failure.  We may be able to do this
+     * for other errors, but these two are definitely safe.  This is only done once the message has been
+     * processed on its own, never for a message that failed within a chunk that is then applied again.
+     * @param record
+     * @param error
+     */
+    private void sendTombstone(ConsumerRecord<MessageKey, MessageValue> record, RegistryException error) {
+        MessageType type = record.key() == null ? null : record.key().getType();
+        if ((type == MessageType.Artifact || type == MessageType.ArtifactWithContent)
+                && (error instanceof ArtifactNotFoundException || error instanceof ArtifactAlreadyExistsException)) {
+            submitter.send(record.key(), null);
+        }
+    }
+
+    /**
+     * Called by the {@link KafkaSqlRegistryStorage} main Kafka consumer loop to process a list of
+     * messages (typically the result of a single poll).  When the configured apply batch size is
+     * greater than 1, the messages are applied in chunks of that size, each chunk in a single database
+     * transaction.  Otherwise each message is processed individually via <code>processMessage()</code>.
+     *
+     * If a message in a chunk fails, the chunk is rolled back and re-applied without that message,
+     * which is then processed individually so that its failure is reported on its own.  Local threads
+     * waiting for a response (via the coordinator) are only notified once the chunk has been committed.
+     *
+     * Messages that use the id sequences are never part of a chunk, see {@link #isAppliedAlone(ConsumerRecord)}.
+     *
+     * @param records
+     */
+    public void processMessages(List<ConsumerRecord<MessageKey, MessageValue>> records) {
+        Integer batchSize = configuration.applyBatchSize();
+        if (batchSize == null || batchSize <= 1) {
+            records.forEach(this::processMessage);
+            return;
+        }
+
+        List<ConsumerRecord<MessageKey, MessageValue>> chunk = new ArrayList<>(batchSize);
+        for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+            if (isAppliedAlone(record)) {
+                if (!chunk.isEmpty()) {
+                    processBatch(chunk);
+                    chunk = new ArrayList<>(batchSize);
+                }
+                processMessage(record);
+            } else {
+                chunk.add(record);
+                if (chunk.size() == batchSize) {
+                    processBatch(chunk);
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            processBatch(chunk);
         }
     }
 
+    /**
+     * Returns true if the message must be applied on its own rather than as part of a chunk.  A chunk that
+     * fails is rolled back and applied again, but the id sequences (<code>nextval</code> and restarting them)
+     * are not transactional, nor is invalidating the id allocator: a message using them would consume its
+     * ids twice.  Since chunk boundaries depend on how each node happens to poll, the nodes' sequences would
+     * then diverge and hand out duplicate ids.  This covers the globalId and contentId messages, and the
+     * artifact-with-content messages that assign both.
+     * @param record
+     */
+    private static boolean isAppliedAlone(ConsumerRecord<MessageKey, MessageValue> record) {
+        if (record.key() == null) {
+            return false;
+        }
+        MessageType type = record.key().getType();
+        return type == MessageType.GlobalId || type == MessageType.ContentId || type == MessageType.ArtifactWithContent;
+    }
+
+    /**
+     * Applies the given batch of messages in as few transactions as possible, isolating any message that
+     * fails.
+     * @param batch
+     */
+    private void processBatch(List<ConsumerRecord<MessageKey, MessageValue>> batch) {
+        int start = 0;
+        while (start < batch.size()) {
+            List<ConsumerRecord<MessageKey, MessageValue>> remaining = batch.subList(start, batch.size());
+            try {
+                List<Object> results = sqlStore.executeInTransaction(() -> applyBatch(remaining));
+                notifyResponses(remaining, results);
+                return;
+            } catch (BatchApplyException e) {
+                int failedIdx = e.getIndex();
+                log.debug("Message {} of a batch of {} failed, isolating it: {}", failedIdx, remaining.size(), e.getCause().getMessage());
+
+                // Everything before the failed message is still good - apply it again (it was rolled back).
+                if (failedIdx > 0) {
+                    List<ConsumerRecord<MessageKey, MessageValue>> good = remaining.subList(0, failedIdx);
+                    try {
+                        List<Object> results = sqlStore.executeInTransaction(() -> applyBatch(good));
+                        notifyResponses(good, results);
+                    } catch (RuntimeException re) {
+                        log.debug("Re-applying batch failed, processing messages individually: {}", re.getMessage());
+                        good.forEach(this::processMessage);
+                    }
+                }
+
+                // Process the failed message on its own, so that the failure is reported to any waiting thread.
+                processMessage(remaining.get(failedIdx));
+                start += failedIdx + 1;
+            } catch (RuntimeException e) {
+                // E.g. the commit itself failed - fall back to processing the messages individually.
+                log.debug("Failed to apply batch, processing messages individually: {}", e.getMessage());
+                remaining.forEach(this::processMessage);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Applies each message in the list, in order.  Must be called within a transaction.  If any message
+     * fails, a {@link BatchApplyException} is thrown (rolling back the transaction) that indicates which.
+     * @param records
+     */
+    private List<Object> applyBatch(List<ConsumerRecord<MessageKey, MessageValue>> records) {
+        List<Object> results = new ArrayList<>(records.size());
+        for (int idx = 0; idx < records.size(); idx++) {
+            try {
+                results.add(doProcessMessage(records.get(idx)));
+                checkpoints.recordApplied(records.get(idx));
+            } catch (Throwable e) {
+                throw new BatchApplyException(idx, e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reports the results of a committed batch to any local threads that may be waiting (via the coordinator).
+     * @param records
+     * @param results
+     */
+    private void notifyResponses(List<ConsumerRecord<MessageKey, MessageValue>> records, List<Object> results) {
+        for (int idx = 0; idx < records.size(); idx++) {
+            notifyResponse(records.get(idx), extractUuid(records.get(idx)), results.get(idx));
+        }
+    }
+
+    /**
+     * Records that the message has been applied and reports its result to any local thread that may be
+     * waiting.  The message must be recorded as applied first, since the waiting thread may immediately
+     * send another message that depends on it.
+     * @param record
+     * @param requestId
+     * @param result
+     */
+    private void notifyResponse(ConsumerRecord<MessageKey, MessageValue> record, UUID requestId, Object result) {
+        offsets.applied(record);
+        coordinator.notifyResponse(requestId, result);
+    }
+
     /**
      * Extracts the UUID from the message.  The UUID should be found in a message header.
      * @param record
@@ -142,6 +339,8 @@ public class KafkaSqlSink {
                     return processGroupMessage((GroupKey) key, (GroupValue) value);
                 case Artifact:
                     return processArtifactMessage((ArtifactKey) key, (ArtifactValue) value);
+                case ArtifactWithContent:
+                    return processArtifactWithContentMessage((ArtifactWithContentKey) key, (ArtifactWithContentValue) value);
                 case ArtifactRule:
                     return processArtifactRuleMessage((ArtifactRuleKey) key, (ArtifactRuleValue) value);
                 case ArtifactVersion:
@@ -223,52 +422,82 @@ public class KafkaSqlSink {
      * @param value
      */
     private Object processArtifactMessage(ArtifactKey key, ArtifactValue value) throws RegistryStorageException {
-        try {
-            GlobalIdGenerator globalIdGenerator = new GlobalIdGenerator() {
-                @Override
-                public Long generate() {
-                    return value.getGlobalId();
-                }
-            };
-            switch (value.getAction()) {
-                case Create:
-                    return sqlStore.createArtifactWithMetadata(key.getGroupId(), key.getArtifactId(), value.getVersion(), value.getArtifactType(),
-                            value.getContentHash(), value.getCreatedBy(), value.getCreatedOn(),
+        GlobalIdGenerator globalIdGenerator = new GlobalIdGenerator() {
+            @Override
+            public Long generate() {
+                return value.getGlobalId();
+            }
+        };
+        switch (value.getAction()) {
+            case Create:
+                return sqlStore.createArtifactWithMetadata(key.getGroupId(), key.getArtifactId(), value.getVersion(), value.getArtifactType(),
+                        value.getContentHash(), value.getCreatedBy(), value.getCreatedOn(),
+                        value.getMetaData(), globalIdGenerator);
+            case Update:
+                return sqlStore.updateArtifactWithMetadata(key.getGroupId(), key.getArtifactId(), value.getVersion(), value.getArtifactType(),
+                        value.getContentHash(), value.getCreatedBy(), value.getCreatedOn(),
+                        value.getMetaData(), globalIdGenerator);
+            case Delete:
+                return sqlStore.deleteArtifact(key.getGroupId(), key.getArtifactId());
+            case Import:
+                ArtifactVersionEntity entity = new ArtifactVersionEntity();
+                entity.globalId = value.getGlobalId();
+                entity.groupId = key.getGroupId();
+                entity.artifactId = key.getArtifactId();
+                entity.version = value.getVersion();
+                entity.versionId = value.getVersionId();
+                entity.artifactType = value.getArtifactType();
+                entity.state = value.getState();
+                entity.name = value.getMetaData().getName();
+                entity.description = value.getMetaData().getDescription();
+                entity.createdBy = value.getCreatedBy();
+                entity.createdOn = value.getCreatedOn().getTime();
+                entity.labels = value.getMetaData().getLabels();
+                entity.properties = value.getMetaData().getProperties();
+                entity.isLatest = value.getLatest();
+                entity.contentId = value.getContentId();
+                sqlStore.importArtifactVersion(entity);
+                return null;
+            default:
+                log.warn("Unsupported artifact message action: %s", key.getType().name());
+                throw new RegistryStorageException("Unsupported artifact message action: " + value.getAction());
+        }
+    }
+
+    /**
+     * Process a Kafka message of type "artifact with content".  This creates (or updates) an artifact and
+     * stores its content (if not already stored) in a single transaction, so no other thread or node can
+     * observe the content without the artifact.  The contentId and globalId are assigned here, which is
+     * only consistent across the cluster because these messages are applied in journal order (they are
+     * never applied concurrently with other messages).
+     * @param key
+     * @param value
+     */
+    private Object processArtifactWithContentMessage(ArtifactWithContentKey key, ArtifactWithContentValue value) throws RegistryStorageException {
+        GlobalIdGenerator globalIdGenerator = new GlobalIdGenerator() {
+            @Override
+            public Long generate() {
+                return sqlStore.nextGlobalId();
+            }
+        };
+        switch (value.getAction()) {
+            case Create:
+                return sqlStore.executeInTransaction(() -> {
+                    sqlStore.ensureContent(value.getContentHash(), value.getCanonicalHash(), value.getContent());
+                    return sqlStore.createArtifactWithMetadata(key.getGroupId(), key.getArtifactId(), value.getVersion(),
+                            value.getArtifactType(), value.getContentHash(), value.getCreatedBy(), value.getCreatedOn(),
                             value.getMetaData(), globalIdGenerator);
-                case Update:
-                    return sqlStore.updateArtifactWithMetadata(key.getGroupId(), key.getArtifactId(), value.getVersion(), value.getArtifactType(),
-                            value.getContentHash(), value.getCreatedBy(), value.getCreatedOn(),
+                });
+            case Update:
+                return sqlStore.executeInTransaction(() -> {
+                    sqlStore.ensureContent(value.getContentHash(), value.getCanonicalHash(), value.getContent());
+                    return sqlStore.updateArtifactWithMetadata(key.getGroupId(), key.getArtifactId(), value.getVersion(),
+                            value.getArtifactType(), value.getContentHash(), value.getCreatedBy(), value.getCreatedOn(),
                             value.getMetaData(), globalIdGenerator);
-                case Delete:
-                    return sqlStore.deleteArtifact(key.getGroupId(), key.getArtifactId());
-                case Import:
-                    ArtifactVersionEntity entity = new ArtifactVersionEntity();
-                    entity.globalId = value.getGlobalId();
-                    entity.groupId = key.getGroupId();
-                    entity.artifactId = key.getArtifactId();
-                    entity.version = value.getVersion();
-                    entity.versionId = value.getVersionId();
-                    entity.artifactType = value.getArtifactType();
-                    entity.state = value.getState();
-                    entity.name = value.getMetaData().getName();
-                    entity.description = value.getMetaData().getDescription();
-                    entity.createdBy = value.getCreatedBy();
-                    entity.createdOn = value.getCreatedOn().getTime();
-                    entity.labels = value.getMetaData().getLabels();
-                    entity.properties = value.getMetaData().getProperties();
-                    entity.isLatest = value.getLatest();
-                    entity.contentId = value.getContentId();
-                    sqlStore.importArtifactVersion(entity);
-                    return null;
-                default:
-                    log.warn("Unsupported artifact message action: %s", key.getType().name());
-                    throw new RegistryStorageException("Unsupported artifact message action: " + value.getAction());
-            }
-        } catch (ArtifactNotFoundException | ArtifactAlreadyExistsException e) {
-            // Send a tombstone message to clean up the unique Kafka message that caused this failure.  We may be
-            // able to do this for other errors, but these two are definitely safe.
-            submitter.send(key, null);
-            throw e;
+                });
+            default:
+                log.warn("Unsupported artifact-with-content message action: %s", key.getType().name());
+                throw new RegistryStorageException("Unsupported artifact-with-content message action: " + value.getAction());
         }
     }
 
@@ -423,17 +652,21 @@ public class KafkaSqlSink {
     }
 
     /**
-     * Process a Kafka message of type "global id".  This is typically used to generate a new globalId that
-     * is unique and consistent across the cluster.
+     * Process a Kafka message of type "global id".  This is typically used to generate a new globalId (or
+     * reserve a block of globalIds) that is unique and consistent across the cluster.
      * @param key
      * @param value
      */
     private Object processGlobalId(GlobalIdKey key, GlobalIdValue value) {
         switch (value.getAction()) {
             case Create:
+                if (value.getBlockSize() != null && value.getBlockSize() > 1) {
+                    return sqlStore.reserveGlobalIds(value.getBlockSize());
+                }
                 return sqlStore.nextGlobalId();
             case Reset:
                 sqlStore.resetGlobalId();
+                idAllocator.invalidateGlobalIds();
                 return null;
             default:
                 log.warn("Unsupported global id message action: %s", key.getType().name());
@@ -442,17 +675,21 @@ public class KafkaSqlSink {
     }
 
     /**
-     * Process a Kafka message of type "content id".  This is typically used to generate a new contentId that
-     * is unique and consistent across the cluster.
+     * Process a Kafka message of type "content id".  This is typically used to generate a new contentId (or
+     * reserve a block of contentIds) that is unique and consistent across the cluster.
      * @param key
      * @param value
      */
     private Object processContentId(ContentIdKey key, ContentIdValue value) {
         switch (value.getAction()) {
             case Create:
+                if (value.getBlockSize() != null && value.getBlockSize() > 1) {
+                    return sqlStore.reserveContentIds(value.getBlockSize());
+                }
                 return sqlStore.nextContentId();
             case Reset:
                 sqlStore.resetContentId();
+                idAllocator.invalidateContentIds();
                 return null;
             default:
                 log.warn("Unsupported content id message action: %s", key.getType().name());
@@ -480,4 +717,26 @@ public class KafkaSqlSink {
         }
     }
 
+    /**
+     * Thrown when a message in a batch fails to apply, causing the batch's transaction to roll back.
+     */
+    private static class BatchApplyException extends RuntimeException {
+
+        private static final long serialVersionUID = -2651408162405286539L;
+
+        private final int index;
+
+        BatchApplyException(int index, Throwable cause) {
+            super(cause);
+            this.index = index;
+        }
+
+        /**
+         * @return the index (within the batch) of the message that failed
+         */
+        int getIndex() {
+            return index;
+        }
+    }
+
 }
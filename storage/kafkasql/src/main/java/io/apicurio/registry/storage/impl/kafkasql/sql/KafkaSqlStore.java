@@ -2,7 +2,13 @@ package io.apicurio.registry.storage.impl.kafkasql.sql;
 
 import static io.apicurio.registry.storage.impl.sql.SqlUtil.normalizeGroupId;
 
+import java.util.AbstractMap.SimpleEntry;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -12,12 +18,14 @@ import javax.transaction.Transactional;
 import io.apicurio.registry.content.ContentHandle;
 import io.apicurio.registry.logging.Logged;
 import io.apicurio.registry.storage.ArtifactNotFoundException;
+import io.apicurio.registry.storage.ContentNotFoundException;
 import io.apicurio.registry.storage.RegistryStorageException;
 import io.apicurio.registry.storage.dto.ArtifactMetaDataDto;
 import io.apicurio.registry.storage.dto.EditableArtifactMetaDataDto;
 import io.apicurio.registry.storage.impl.sql.AbstractSqlRegistryStorage;
 import io.apicurio.registry.storage.impl.sql.GlobalIdGenerator;
 import io.apicurio.registry.storage.impl.sql.HandleFactory;
+import io.apicurio.registry.storage.impl.sql.jdb.Handle;
 import io.apicurio.registry.types.ArtifactState;
 import io.apicurio.registry.types.ArtifactType;
 import io.apicurio.registry.types.RuleType;
@@ -42,6 +50,11 @@ import io.apicurio.registry.utils.impexp.GroupEntity;
 @Logged
 public class KafkaSqlStore extends AbstractSqlRegistryStorage {
 
+    private static final String CREATE_JOURNAL_OFFSETS_TABLE = "CREATE TABLE IF NOT EXISTS kafkasql_offsets "
+            + "(topic VARCHAR(512) NOT NULL, partitionId INT NOT NULL, nextOffset BIGINT NOT NULL, PRIMARY KEY (topic, partitionId))";
+    private static final String CREATE_JOURNAL_APPLIED_TABLE = "CREATE TABLE IF NOT EXISTS kafkasql_applied "
+            + "(topic VARCHAR(512) NOT NULL, partitionId INT NOT NULL, recordOffset BIGINT NOT NULL, PRIMARY KEY (topic, partitionId, recordOffset))";
+
     @Inject
     HandleFactory handles;
 
@@ -59,6 +72,201 @@ public class KafkaSqlStore extends AbstractSqlRegistryStorage {
         });
     }
 
+    /**
+     * Reserves a contiguous block of globalIds and returns the first id in the block.  The
+     * sequence is advanced past the end of the block so that no other reservation overlaps it.
+     * @param blockSize
+     */
+    @Transactional
+    public long reserveGlobalIds(int blockSize) {
+        return handles.withHandleNoException( handle -> {
+            long first = nextGlobalId(handle);
+            advanceSequence(handle, "globalidsequence", first + blockSize);
+            return first;
+        });
+    }
+
+    /**
+     * Reserves a contiguous block of contentIds and returns the first id in the block.  The
+     * sequence is advanced past the end of the block so that no other reservation overlaps it.
+     * @param blockSize
+     */
+    @Transactional
+    public long reserveContentIds(int blockSize) {
+        return handles.withHandleNoException( handle -> {
+            long first = nextContentId(handle);
+            advanceSequence(handle, "contentidsequence", first + blockSize);
+            return first;
+        });
+    }
+
+    private void advanceSequence(Handle handle, String sequence, long nextValue) {
+        String sql = sqlStatements().resetSequence(sequence);
+        handle.createUpdate(sql)
+            .bind(0, nextValue)
+            .executeNoUpdate();
+    }
+
+    /**
+     * Executes the given operation in a single transaction.  Any transactional operations of this
+     * store invoked by the operation join that transaction, so they are all committed (or rolled
+     * back) together.
+     * @param operation
+     */
+    @Transactional
+    public <T> T executeInTransaction(Supplier<T> operation) {
+        return operation.get();
+    }
+
+    /**
+     * Returns true if the underlying database supports writing and restoring snapshots.  Only
+     * H2 is supported, since snapshots are created using H2's SCRIPT command.
+     */
+    public boolean isSnapshotSupported() {
+        return "h2".equals(sqlStatements().dbType());
+    }
+
+    /**
+     * Writes the complete state of the database to the given file (as a compressed SQL script).
+     * @param file
+     */
+    public void writeSnapshot(String file) throws RegistryStorageException {
+        handles.withHandleNoException( handle -> {
+            handle.createUpdate("SCRIPT DROP TO ? COMPRESSION ZIP")
+                .bind(0, file)
+                .executeNoUpdate();
+            return null;
+        });
+    }
+
+    /**
+     * Replaces the complete state of the database with the contents of the given snapshot
+     * file (previously created by {@link #writeSnapshot(String)}).  If the snapshot was created
+     * by an older version of the registry, the database is then upgraded.
+     * @param file
+     */
+    @Transactional
+    public void restoreSnapshot(String file) throws RegistryStorageException {
+        handles.withHandleNoException( handle -> {
+            handle.createUpdate("RUNSCRIPT FROM ? COMPRESSION ZIP")
+                .bind(0, file)
+                .executeNoUpdate();
+            return null;
+        });
+        initialize();
+    }
+
+    /**
+     * Deletes all data from the database and re-creates the (empty) registry tables.  Only H2 is
+     * supported.
+     */
+    @Transactional
+    public void resetStore() throws RegistryStorageException {
+        if (!"h2".equals(sqlStatements().dbType())) {
+            throw new RegistryStorageException("The local KafkaSQL database cannot be reset automatically, it must be cleared manually.");
+        }
+        handles.withHandleNoException( handle -> {
+            handle.createUpdate("DROP ALL OBJECTS").executeNoUpdate();
+            return null;
+        });
+        initialize();
+    }
+
+    /**
+     * Creates the tables used to keep track of the journal records applied to the database, if they
+     * do not exist yet.  These are only used when the database is persistent (see
+     * {@link io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCheckpointManager}).
+     */
+    @Transactional
+    public void initializeJournalTables() throws RegistryStorageException {
+        handles.withHandleNoException( handle -> {
+            handle.createUpdate(CREATE_JOURNAL_OFFSETS_TABLE).executeNoUpdate();
+            handle.createUpdate(CREATE_JOURNAL_APPLIED_TABLE).executeNoUpdate();
+            return null;
+        });
+    }
+
+    /**
+     * Returns, for each partition of the given journal topic, the offset below which every record has
+     * been applied to the database (partition -> offset).
+     * @param topic
+     */
+    public Map<Integer, Long> getJournalOffsets(String topic) throws RegistryStorageException {
+        return handles.withHandleNoException( handle -> {
+            Map<Integer, Long> offsets = new HashMap<>();
+            handle.createQuery("SELECT partitionId, nextOffset FROM kafkasql_offsets WHERE topic = ?")
+                .bind(0, topic)
+                .map(rs -> new SimpleEntry<>(rs.getInt(1), rs.getLong(2)))
+                .list()
+                .forEach(entry -> offsets.put(entry.getKey(), entry.getValue()));
+            return offsets;
+        });
+    }
+
+    /**
+     * Returns, for each partition of the given journal topic, the offsets of the records that have been
+     * applied to the database beyond the offset returned by {@link #getJournalOffsets(String)}.
+     * @param topic
+     */
+    public Map<Integer, Set<Long>> getAppliedJournalRecords(String topic) throws RegistryStorageException {
+        return handles.withHandleNoException( handle -> {
+            Map<Integer, Set<Long>> applied = new HashMap<>();
+            handle.createQuery("SELECT partitionId, recordOffset FROM kafkasql_applied WHERE topic = ?")
+                .bind(0, topic)
+                .map(rs -> new SimpleEntry<>(rs.getInt(1), rs.getLong(2)))
+                .list()
+                .forEach(entry -> applied.computeIfAbsent(entry.getKey(), p -> new HashSet<>()).add(entry.getValue()));
+            return applied;
+        });
+    }
+
+    /**
+     * Records that the given journal record has been applied.  Must be called in the same transaction
+     * that applies the record, so that the two are committed (or rolled back) together.
+     * @param topic
+     * @param partition
+     * @param offset
+     */
+    @Transactional
+    public void markJournalRecordApplied(String topic, int partition, long offset) throws RegistryStorageException {
+        handles.withHandleNoException( handle -> {
+            handle.createUpdate("INSERT INTO kafkasql_applied (topic, partitionId, recordOffset) VALUES (?, ?, ?)")
+                .bind(0, topic)
+                .bind(1, partition)
+                .bind(2, offset)
+                .execute();
+            return null;
+        });
+    }
+
+    /**
+     * Records that every record of the given journal topic partition below the given offset has been
+     * applied, replacing the individual records previously recorded as applied.
+     * @param topic
+     * @param partition
+     * @param offset
+     */
+    @Transactional
+    public void updateJournalOffset(String topic, int partition, long offset) throws RegistryStorageException {
+        handles.withHandleNoException( handle -> {
+            handle.createUpdate("DELETE FROM kafkasql_offsets WHERE topic = ? AND partitionId = ?")
+                .bind(0, topic)
+                .bind(1, partition)
+                .execute();
+            handle.createUpdate("INSERT INTO kafkasql_offsets (topic, partitionId, nextOffset) VALUES (?, ?, ?)")
+                .bind(0, topic)
+                .bind(1, partition)
+                .bind(2, offset)
+                .execute();
+            handle.createUpdate("DELETE FROM kafkasql_applied WHERE topic = ? AND partitionId = ? AND recordOffset < ?")
+                .bind(0, topic)
+                .bind(1, partition)
+                .bind(2, offset)
+                .execute();
+            return null;
+        });
+    }
+
     public boolean isContentExists(String contentHash) throws RegistryStorageException {
         return handles.withHandleNoException( handle -> {
             String sql = sqlStatements().selectContentCountByHash();
@@ -123,6 +331,23 @@ public class KafkaSqlStore extends AbstractSqlRegistryStorage {
         });
     }
 
+    /**
+     * Stores the given content, assigning it the next contentId, unless content with the same hash is
+     * already stored.
+     * @param contentHash
+     * @param canonicalHash
+     * @param content
+     */
+    @Transactional
+    public void ensureContent(String contentHash, String canonicalHash, ContentHandle content) throws RegistryStorageException {
+        if (!isContentExists(contentHash)) {
+            if (content == null) {
+                throw new ContentNotFoundException(contentHash);
+            }
+            storeContent(nextContentId(), contentHash, canonicalHash, content);
+        }
+    }
+
     @Transactional
     public ArtifactMetaDataDto createArtifactWithMetadata(String groupId, String artifactId, String version,
             ArtifactType artifactType, String contentHash, String createdBy,
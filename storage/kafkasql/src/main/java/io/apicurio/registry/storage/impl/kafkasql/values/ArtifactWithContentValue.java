@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.values;
+
+import java.util.Date;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.apicurio.registry.content.ContentHandle;
+import io.apicurio.registry.storage.dto.EditableArtifactMetaDataDto;
+import io.apicurio.registry.storage.impl.kafkasql.MessageType;
+import io.apicurio.registry.types.ArtifactType;
+import io.quarkus.runtime.annotations.RegisterForReflection;
+
+/**
+ * Value of a message that creates (or updates) an artifact along with its content.  The content is
+ * only included if it was not already stored when the message was sent.  The globalId and contentId
+ * are not included - they are assigned when the message is applied.
+ *
+ * The content is not part of the JSON representation of this value, see the KafkaSqlValueSerializer.
+ */
+@RegisterForReflection
+public class ArtifactWithContentValue extends ArtifactValue {
+
+    private String canonicalHash;
+    private ContentHandle content;
+
+    /**
+     * Creator method.
+     */
+    public static final ArtifactWithContentValue create(ActionType action, String version, ArtifactType artifactType,
+            String contentHash, String canonicalHash, ContentHandle content, String createdBy, Date createdOn,
+            EditableArtifactMetaDataDto metaData) {
+        ArtifactWithContentValue value = new ArtifactWithContentValue();
+        value.setAction(action);
+        value.setVersion(version);
+        value.setArtifactType(artifactType);
+        value.setContentHash(contentHash);
+        value.setCanonicalHash(canonicalHash);
+        value.setContent(content);
+        value.setCreatedBy(createdBy);
+        value.setCreatedOn(createdOn);
+        value.setMetaData(metaData);
+        return value;
+    }
+
+    /**
+     * @see io.apicurio.registry.storage.impl.kafkasql.values.MessageValue#getType()
+     */
+    @Override
+    public MessageType getType() {
+        return MessageType.ArtifactWithContent;
+    }
+
+    /**
+     * @return the canonicalHash
+     */
+    public String getCanonicalHash() {
+        return canonicalHash;
+    }
+
+    /**
+     * @param canonicalHash the canonicalHash to set
+     */
+    public void setCanonicalHash(String canonicalHash) {
+        this.canonicalHash = canonicalHash;
+    }
+
+    /**
+     * @return the content
+     */
+    @JsonIgnore
+    public ContentHandle getContent() {
+        return content;
+    }
+
+    /**
+     * @param content the content to set
+     */
+    @JsonIgnore
+    public void setContent(ContentHandle content) {
+        this.content = content;
+    }
+
+}
@@ -25,13 +25,25 @@ import io.quarkus.runtime.annotations.RegisterForReflection;
 @RegisterForReflection
 public class ContentIdValue extends AbstractMessageValue {
 
+    private Integer blockSize;
+
     /**
      * Creator method.
      * @param action
      */
     public static final ContentIdValue create(ActionType action) {
+        return create(action, null);
+    }
+
+    /**
+     * Creator method.
+     * @param action
+     * @param blockSize
+     */
+    public static final ContentIdValue create(ActionType action, Integer blockSize) {
         ContentIdValue value = new ContentIdValue();
         value.setAction(action);
+        value.setBlockSize(blockSize);
         return value;
     }
 
@@ -43,4 +55,18 @@ public class ContentIdValue extends AbstractMessageValue {
         return MessageType.ContentId;
     }
 
+    /**
+     * @return the number of ids to reserve (null means a single id)
+     */
+    public Integer getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @param blockSize the blockSize to set
+     */
+    public void setBlockSize(Integer blockSize) {
+        this.blockSize = blockSize;
+    }
+
 }
@@ -64,6 +64,9 @@ public class MessageTypeToValueClass {
                 case RoleMapping:
                     index.put(type, RoleMappingValue.class);
                     break;
+                case ArtifactWithContent:
+                    index.put(type, ArtifactWithContentValue.class);
+                    break;
                 default:
                     throw new RuntimeException("[MessageTypeToValueClass] Type not mapped: " + type);
             }
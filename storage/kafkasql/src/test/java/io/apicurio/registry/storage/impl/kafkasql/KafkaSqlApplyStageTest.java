@@ -0,0 +1,295 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlSink;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests how {@link KafkaSqlApplyStage} spreads journal records over its apply threads: records with the
+ * same partition key are applied in journal order, barriers are applied alone, and the consumer is told
+ * to back off while the apply threads catch up.
+ */
+public class KafkaSqlApplyStageTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private TestKafkaSqlConfiguration configuration;
+    private KafkaSqlOffsetTracker offsets;
+    private RecordingSink sink;
+    private KafkaSqlApplyStage stage;
+    private long offset;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new TestKafkaSqlConfiguration();
+        configuration.applyThreads = 3;
+        offsets = new KafkaSqlOffsetTracker();
+        offsets.start(1, Collections.emptyMap());
+        sink = new RecordingSink();
+
+        stage = new KafkaSqlApplyStage();
+        stage.log = LoggerFactory.getLogger(KafkaSqlApplyStage.class);
+        stage.configuration = configuration;
+        stage.kafkaSqlSink = sink;
+        stage.offsets = offsets;
+        stage.registry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sink.open();
+        stage.stop();
+    }
+
+    private ConsumerRecord<MessageKey, MessageValue> artifact(String tenantId, String artifactId) {
+        return record(ArtifactKey.create(tenantId, "group", artifactId), null);
+    }
+
+    private ConsumerRecord<MessageKey, MessageValue> record(MessageKey key, MessageValue value) {
+        ConsumerRecord<MessageKey, MessageValue> record = new ConsumerRecord<>(configuration.topic, 0, offset++, key, value);
+        offsets.dispatched(record);
+        return record;
+    }
+
+    /**
+     * Dispatches the records from another thread (which may block), returning when that thread is done.
+     */
+    private CompletableFuture<Void> dispatchAsync(List<ConsumerRecord<MessageKey, MessageValue>> records) {
+        return CompletableFuture.runAsync(() -> stage.dispatch(records));
+    }
+
+    @Test
+    public void testAppliedOnConsumerThreadByDefault() {
+        configuration.applyThreads = 0;
+        stage.start();
+
+        List<ConsumerRecord<MessageKey, MessageValue>> records = Arrays.asList(artifact(null, "a"), artifact(null, "b"));
+        stage.dispatch(records);
+
+        assertEquals(records, sink.applied());
+        assertEquals(Collections.singleton(Thread.currentThread().getName()), new HashSet<>(sink.threads.values()));
+        assertFalse(stage.isSaturated());
+    }
+
+    @Test
+    public void testOrderedPerPartitionKey() {
+        configuration.applyBatchSize = 4;
+        stage.start();
+
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        for (int idx = 0; idx < 500; idx++) {
+            records.add(artifact("tenant" + (idx % 2), "artifact" + (idx % 7)));
+        }
+        stage.dispatch(records);
+        stage.awaitIdle();
+
+        assertEquals(records.size(), sink.applied().size());
+        Map<String, Long> lastOffsets = new HashMap<>();
+        Map<String, String> threads = new HashMap<>();
+        for (ConsumerRecord<MessageKey, MessageValue> record : sink.applied()) {
+            String partitionKey = record.key().getPartitionKey();
+            Long previous = lastOffsets.put(partitionKey, record.offset());
+            assertTrue(previous == null || previous < record.offset(), "Out of order: " + partitionKey);
+            String thread = threads.putIfAbsent(partitionKey, sink.threads.get(record));
+            assertTrue(thread == null || thread.equals(sink.threads.get(record)), "Several threads applied " + partitionKey);
+        }
+        assertTrue(offsets.isApplied(Collections.singletonMap(0, offset)));
+    }
+
+    @Test
+    public void testBarrierWaitsForDispatchedRecords() throws Exception {
+        stage.start();
+        sink.close();
+
+        ConsumerRecord<MessageKey, MessageValue> before = artifact(null, "a");
+        ConsumerRecord<MessageKey, MessageValue> barrier = record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create));
+        ConsumerRecord<MessageKey, MessageValue> after = artifact(null, "b");
+        CompletableFuture<Void> dispatched = dispatchAsync(Arrays.asList(before, barrier, after));
+
+        sink.awaitBlocked();
+        Thread.sleep(100);
+        assertFalse(dispatched.isDone(), "Barrier did not wait for the records dispatched before it");
+        assertEquals(Collections.emptyList(), sink.applied());
+
+        sink.open();
+        dispatched.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        stage.awaitIdle();
+        assertEquals(Arrays.asList(before, barrier, after), sink.applied());
+    }
+
+    @Test
+    public void testIdMessagesAreBarriers() {
+        stage.start();
+
+        // The id sequences are shared by all tenants, so these must not be spread over the apply threads
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        for (int idx = 0; idx < 20; idx++) {
+            GlobalIdKey globalIdKey = GlobalIdKey.create();
+            globalIdKey.setTenantId("tenant" + idx);
+            records.add(record(globalIdKey, GlobalIdValue.create(ActionType.Create)));
+            ContentIdKey contentIdKey = ContentIdKey.create();
+            contentIdKey.setTenantId("tenant" + idx);
+            records.add(record(contentIdKey, ContentIdValue.create(ActionType.Create)));
+        }
+        stage.dispatch(records);
+
+        assertEquals(records, sink.applied());
+        for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+            assertEquals(Thread.currentThread().getName(), sink.threads.get(record));
+        }
+    }
+
+    @Test
+    public void testSaturated() throws Exception {
+        configuration.applyThreads = 1;
+        configuration.applyQueueSize = 2;
+        stage.start();
+        sink.close();
+
+        stage.dispatch(Collections.singletonList(artifact(null, "a")));
+        sink.awaitBlocked();
+        assertFalse(stage.isSaturated());
+
+        stage.dispatch(Collections.singletonList(artifact(null, "b")));
+        assertTrue(stage.isSaturated());
+
+        // The queue of the apply thread is full, so dispatching more blocks until it catches up
+        CompletableFuture<Void> dispatched = dispatchAsync(Arrays.asList(artifact(null, "c"), artifact(null, "d")));
+        Thread.sleep(100);
+        assertFalse(dispatched.isDone());
+
+        sink.open();
+        dispatched.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        stage.awaitIdle();
+        assertFalse(stage.isSaturated());
+        assertEquals(4, sink.applied().size());
+    }
+
+    @Test
+    public void testAwaitIdle() throws Exception {
+        stage.start();
+        sink.close();
+
+        stage.dispatch(Arrays.asList(artifact(null, "a"), artifact(null, "b"), artifact(null, "c")));
+        sink.awaitBlocked();
+        CompletableFuture<Void> idle = CompletableFuture.runAsync(stage::awaitIdle);
+        Thread.sleep(100);
+        assertFalse(idle.isDone());
+
+        sink.open();
+        idle.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertEquals(3, sink.applied().size());
+    }
+
+    @Test
+    public void testFailedRecordsMarkedApplied() {
+        configuration.applyThreads = 1;
+        stage.start();
+
+        ConsumerRecord<MessageKey, MessageValue> failing = artifact(null, "a");
+        ConsumerRecord<MessageKey, MessageValue> next = artifact(null, "a");
+        sink.failing = failing;
+        stage.dispatch(Arrays.asList(failing, next));
+        stage.awaitIdle();
+
+        // Records depending on the failed one must not wait for it forever
+        assertEquals(Collections.singletonList(next), sink.applied());
+        assertTrue(offsets.isApplied(Collections.singletonMap(0, offset)));
+        assertFalse(stage.isSaturated());
+    }
+
+    /**
+     * Records what was applied (and by which thread) instead of applying it.  Can be closed, which blocks the
+     * apply threads until it is opened again.
+     */
+    private class RecordingSink extends KafkaSqlSink {
+
+        private final List<ConsumerRecord<MessageKey, MessageValue>> applied = new ArrayList<>();
+        final Map<ConsumerRecord<MessageKey, MessageValue>, String> threads = Collections.synchronizedMap(new HashMap<>());
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        volatile ConsumerRecord<MessageKey, MessageValue> failing;
+
+        void close() {
+            gate = new CountDownLatch(1);
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        void awaitBlocked() throws InterruptedException {
+            assertTrue(blocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS), "No records reached the sink");
+        }
+
+        synchronized List<ConsumerRecord<MessageKey, MessageValue>> applied() {
+            return new ArrayList<>(applied);
+        }
+
+        @Override
+        public void processMessages(List<ConsumerRecord<MessageKey, MessageValue>> records) {
+            blocked.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (records.contains(failing)) {
+                throw new IllegalStateException("Failed to apply record " + failing.offset());
+            }
+            synchronized (this) {
+                for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+                    applied.add(record);
+                    threads.put(record, Thread.currentThread().getName());
+                    offsets.applied(record);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.storage.RegistryStorageException;
+import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlStore;
+
+/**
+ * Tests resuming a persistent local store with {@link KafkaSqlCheckpointManager}, in particular that
+ * journal records applied before a restart are not applied again.
+ */
+public class KafkaSqlCheckpointManagerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("kafkasql-journal", 0);
+
+    private TestKafkaSqlConfiguration configuration;
+    private JournalStore store;
+    private KafkaSqlOffsetTracker offsets;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new TestKafkaSqlConfiguration();
+        configuration.storePersistent = true;
+        store = new JournalStore();
+        offsets = new KafkaSqlOffsetTracker();
+    }
+
+    private KafkaSqlCheckpointManager createManager() {
+        KafkaSqlCheckpointManager manager = new KafkaSqlCheckpointManager();
+        manager.log = LoggerFactory.getLogger(KafkaSqlCheckpointManager.class);
+        manager.configuration = configuration;
+        manager.sqlStore = store;
+        manager.offsets = offsets;
+        return manager;
+    }
+
+    private static MockConsumer<?, ?> journal(long endOffset) {
+        MockConsumer<?, ?> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updateEndOffsets(Collections.singletonMap(P0, endOffset));
+        return consumer;
+    }
+
+    private static ConsumerRecord<String, String> record(long offset) {
+        return new ConsumerRecord<>(P0.topic(), P0.partition(), offset, "key", "value");
+    }
+
+    @Test
+    public void testEmptyStore() {
+        assertEquals(Collections.emptyMap(), createManager().restore(journal(10)));
+        assertFalse(store.reset);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() {
+        // Records 0-9 were checkpointed, 10 and 12 were applied after the checkpoint (11 was still being applied)
+        store.offsets.put(0, 10L);
+        store.markJournalRecordApplied(P0.topic(), 0, 10);
+        store.markJournalRecordApplied(P0.topic(), 0, 12);
+
+        KafkaSqlCheckpointManager manager = createManager();
+        assertEquals(Collections.singletonMap(P0, 10L), manager.restore(journal(20)));
+
+        // The consumer resumes at the checkpoint, skipping the records applied after it
+        assertTrue(manager.isApplied(record(10)));
+        assertFalse(manager.isApplied(record(11)));
+        assertTrue(manager.isApplied(record(12)));
+        assertFalse(manager.isApplied(record(13)));
+        // Each record is only skipped once, e.g. if the topic is consumed again after a rebalance
+        assertFalse(manager.isApplied(record(10)));
+    }
+
+    @Test
+    public void testStoreAheadOfJournal() {
+        // E.g. the journal topic was re-created
+        store.offsets.put(0, 10L);
+        store.markJournalRecordApplied(P0.topic(), 0, 15);
+
+        KafkaSqlCheckpointManager manager = createManager();
+        assertEquals(Collections.emptyMap(), manager.restore(journal(15)));
+        assertTrue(store.reset);
+        assertFalse(manager.isApplied(record(15)));
+    }
+
+    @Test
+    public void testRecordApplied() {
+        KafkaSqlCheckpointManager manager = createManager();
+        manager.recordApplied(record(3));
+        assertEquals(Collections.singleton(3L), store.applied.get(0));
+
+        configuration.storePersistent = false;
+        manager.recordApplied(record(4));
+        assertEquals(Collections.singleton(3L), store.applied.get(0));
+    }
+
+    @Test
+    public void testCheckpoint() throws Exception {
+        store.offsets.put(0, 10L);
+        store.markJournalRecordApplied(P0.topic(), 0, 10);
+        store.markJournalRecordApplied(P0.topic(), 0, 12);
+        KafkaSqlCheckpointManager manager = createManager();
+        Map<TopicPartition, Long> resumeOffsets = manager.restore(journal(20));
+        offsets.start(1, resumeOffsets);
+
+        // Records 10 and 12 are skipped, 11 and 13 are applied
+        offsets.skipped(record(10));
+        offsets.dispatched(record(11));
+        offsets.applied(record(11));
+        offsets.skipped(record(12));
+        offsets.dispatched(record(13));
+        offsets.applied(record(13));
+
+        // Not yet due
+        manager.maybeCheckpoint();
+        assertEquals(10L, store.offsets.get(0));
+
+        Thread.sleep(1100);
+        manager.maybeCheckpoint();
+        assertEquals(14L, store.offsets.get(0));
+        assertTrue(store.applied.get(0).isEmpty());
+    }
+
+    /**
+     * A store holding only the journal tables.
+     */
+    private static class JournalStore extends KafkaSqlStore {
+
+        final Map<Integer, Long> offsets = new HashMap<>();
+        final Map<Integer, Set<Long>> applied = new HashMap<>();
+        boolean reset;
+
+        @Override
+        public void initializeJournalTables() throws RegistryStorageException {
+        }
+
+        @Override
+        public Map<Integer, Long> getJournalOffsets(String topic) throws RegistryStorageException {
+            return new HashMap<>(offsets);
+        }
+
+        @Override
+        public Map<Integer, Set<Long>> getAppliedJournalRecords(String topic) throws RegistryStorageException {
+            Map<Integer, Set<Long>> records = new HashMap<>();
+            applied.forEach((partition, recordOffsets) -> records.put(partition, new HashSet<>(recordOffsets)));
+            return records;
+        }
+
+        @Override
+        public void markJournalRecordApplied(String topic, int partition, long offset) throws RegistryStorageException {
+            applied.computeIfAbsent(partition, p -> new HashSet<>()).add(offset);
+        }
+
+        @Override
+        public void updateJournalOffset(String topic, int partition, long offset) throws RegistryStorageException {
+            offsets.put(partition, offset);
+            Set<Long> records = applied.get(partition);
+            if (records != null) {
+                records.removeIf(recordOffset -> recordOffset < offset);
+            }
+        }
+
+        @Override
+        public void resetStore() throws RegistryStorageException {
+            reset = true;
+            offsets.clear();
+            applied.clear();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.storage.ArtifactNotFoundException;
+import io.apicurio.registry.storage.RegistryStorageException;
+
+/**
+ * Tests that {@link KafkaSqlCoordinator} hands each response to the thread waiting for it, in particular when the
+ * journal record is applied before that thread asks for the response.
+ */
+public class KafkaSqlCoordinatorTest {
+
+    private TestKafkaSqlConfiguration configuration;
+    private KafkaSqlCoordinator coordinator;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new TestKafkaSqlConfiguration();
+        coordinator = new KafkaSqlCoordinator();
+        coordinator.configuration = configuration;
+    }
+
+    @Test
+    public void testResponseBeforeWaiting() {
+        UUID uuid = coordinator.createUUID();
+        coordinator.notifyResponse(uuid, 42L);
+
+        assertEquals(42L, coordinator.waitForResponse(uuid));
+    }
+
+    @Test
+    public void testResponseBeforeAsking() throws Exception {
+        UUID uuid = coordinator.createUUID();
+        coordinator.notifyResponse(uuid, "applied");
+
+        CompletableFuture<Object> response = coordinator.responseFor(uuid);
+        assertTrue(response.isDone());
+        assertEquals("applied", response.get());
+    }
+
+    @Test
+    public void testResponseWhileWaiting() throws Exception {
+        UUID uuid = coordinator.createUUID();
+        CompletableFuture<Object> response = coordinator.responseFor(uuid);
+        assertFalse(response.isDone());
+
+        Thread applier = new Thread(() -> coordinator.notifyResponse(uuid, 7L));
+        applier.start();
+        assertEquals(7L, response.get(5, TimeUnit.SECONDS));
+        applier.join();
+    }
+
+    @Test
+    public void testErrorResponse() {
+        ArtifactNotFoundException error = new ArtifactNotFoundException("group", "artifact");
+        UUID uuid = coordinator.createUUID();
+        coordinator.notifyResponse(uuid, error);
+
+        assertSame(error, assertThrows(ArtifactNotFoundException.class, () -> coordinator.waitForResponse(uuid)));
+    }
+
+    @Test
+    public void testCollectedOnce() {
+        UUID uuid = coordinator.createUUID();
+        coordinator.notifyResponse(uuid, 1L);
+
+        assertEquals(1L, coordinator.waitForResponse(uuid));
+        assertThrows(RegistryStorageException.class, () -> coordinator.waitForResponse(uuid));
+    }
+
+    @Test
+    public void testTimeoutWhileWaiting() {
+        configuration.responseTimeout = 100;
+        UUID uuid = coordinator.createUUID();
+
+        RegistryStorageException e = assertThrows(RegistryStorageException.class, () -> coordinator.waitForResponse(uuid));
+        assertTrue(e.getMessage().contains("Timed out"), e.getMessage());
+
+        // A late response is ignored
+        coordinator.notifyResponse(uuid, 1L);
+        assertThrows(RegistryStorageException.class, () -> coordinator.waitForResponse(uuid));
+    }
+
+    @Test
+    public void testTimeoutBeforeAsking() throws Exception {
+        configuration.responseTimeout = 100;
+        UUID uuid = coordinator.createUUID();
+        Thread.sleep(300);
+
+        RegistryStorageException e = assertThrows(RegistryStorageException.class, () -> coordinator.waitForResponse(uuid));
+        assertTrue(e.getMessage().contains("No pending"), e.getMessage());
+    }
+
+    @Test
+    public void testUncollectedResponseForgotten() throws Exception {
+        configuration.responseTimeout = 100;
+        UUID uuid = coordinator.createUUID();
+        coordinator.notifyResponse(uuid, 1L);
+
+        // Still there well after it was applied, as long as the response timeout has not elapsed since
+        Thread.sleep(50);
+        assertEquals(1L, coordinator.waitForResponse(uuid));
+
+        UUID forgotten = coordinator.createUUID();
+        coordinator.notifyResponse(forgotten, 2L);
+        Thread.sleep(300);
+        assertThrows(RegistryStorageException.class, () -> coordinator.waitForResponse(forgotten));
+    }
+
+    @Test
+    public void testUntrackedResponses() {
+        coordinator.notifyResponse(null, 1L);
+        coordinator.notifyResponse(UUID.randomUUID(), 1L);
+    }
+}
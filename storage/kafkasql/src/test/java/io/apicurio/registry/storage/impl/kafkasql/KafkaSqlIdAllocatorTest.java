@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+
+/**
+ * Tests the globalId block reservation of {@link KafkaSqlIdAllocator}, in particular that a reserved
+ * block is discarded when the sequence is reset by an import.
+ */
+public class KafkaSqlIdAllocatorTest {
+
+    private TestKafkaSqlConfiguration configuration;
+    private KafkaSqlIdAllocator allocator;
+
+    // The globalId sequence of the journal (i.e. of every node's local store)
+    private long sequence = 1;
+    private final List<Integer> reservations = new ArrayList<>();
+    private Runnable onReserve;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new TestKafkaSqlConfiguration();
+        configuration.idBlockSize = 10;
+
+        Map<UUID, Long> responses = new ConcurrentHashMap<>();
+        allocator = new KafkaSqlIdAllocator();
+        allocator.configuration = configuration;
+        allocator.submitter = new KafkaSqlSubmitter() {
+            @Override
+            public CompletableFuture<UUID> send(MessageKey key, MessageValue value) {
+                UUID uuid = UUID.randomUUID();
+                responses.put(uuid, reserve(((GlobalIdValue) value).getBlockSize()));
+                return CompletableFuture.completedFuture(uuid);
+            }
+        };
+        allocator.coordinator = new KafkaSqlCoordinator() {
+            @Override
+            public Object waitForResponse(UUID uuid) {
+                if (onReserve != null) {
+                    Runnable action = onReserve;
+                    onReserve = null;
+                    action.run();
+                }
+                return responses.remove(uuid);
+            }
+        };
+    }
+
+    /**
+     * Applies a globalId reservation the way the local store does, returning the first reserved id.
+     */
+    private long reserve(Integer blockSize) {
+        int size = blockSize == null ? 1 : blockSize;
+        reservations.add(size);
+        long first = sequence;
+        sequence += size;
+        return first;
+    }
+
+    /**
+     * Resets the sequence past the imported globalIds, the way an import does on every node.
+     */
+    private void importUpTo(long maxGlobalId) {
+        sequence = maxGlobalId + 1;
+        allocator.invalidateGlobalIds();
+    }
+
+    @Test
+    public void testIdsHandedOutFromReservedBlock() {
+        for (long expected = 1; expected <= 25; expected++) {
+            assertEquals(expected, allocator.nextGlobalId());
+        }
+        assertEquals(List.of(10, 10, 10), reservations);
+    }
+
+    @Test
+    public void testBlockSizeOne() {
+        configuration.idBlockSize = 1;
+        assertEquals(1, allocator.nextGlobalId());
+        assertEquals(2, allocator.nextGlobalId());
+        assertEquals(List.of(1, 1), reservations);
+    }
+
+    @Test
+    public void testBlockDiscardedAfterImportReset() {
+        assertEquals(1, allocator.nextGlobalId());
+        assertEquals(2, allocator.nextGlobalId());
+
+        // Ids 3-10 are still reserved locally, but may now collide with the imported data
+        importUpTo(100);
+
+        assertEquals(101, allocator.nextGlobalId());
+        assertEquals(102, allocator.nextGlobalId());
+        assertEquals(List.of(10, 10), reservations);
+    }
+
+    @Test
+    public void testResetDuringReservation() {
+        // The import reset is applied while the first reservation is still in flight, so the
+        // reserved block predates it and must not be used.
+        onReserve = () -> importUpTo(100);
+
+        assertEquals(101, allocator.nextGlobalId());
+        assertEquals(102, allocator.nextGlobalId());
+        assertEquals(List.of(10, 10), reservations);
+    }
+
+}
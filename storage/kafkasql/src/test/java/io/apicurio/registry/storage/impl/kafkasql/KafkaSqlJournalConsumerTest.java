@@ -0,0 +1,256 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.BootstrapKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlSink;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.apicurio.registry.types.RuleType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests how the KSQL consumer thread of {@link KafkaSqlRegistryStorage} consumes a journal topic with
+ * several partitions: the storage is bootstrapped once it has seen its bootstrap message on every
+ * partition, and a record is held back (and its partition paused) until the records of other partitions
+ * it depends on have been applied.
+ */
+public class KafkaSqlJournalConsumerTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private final TestKafkaSqlConfiguration configuration = new TestKafkaSqlConfiguration();
+    private final TopicPartition p0 = new TopicPartition(configuration.topic, 0);
+    private final TopicPartition p1 = new TopicPartition(configuration.topic, 1);
+    private final CompletableFuture<String> bootstrapId = new CompletableFuture<>();
+    private final Map<TopicPartition, Long> nextOffsets = new HashMap<>();
+
+    private KafkaSqlOffsetTracker offsets;
+    private RecordingSink sink;
+    private MockConsumer<MessageKey, MessageValue> consumer;
+    private KafkaSqlRegistryStorage storage;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        offsets = new KafkaSqlOffsetTracker();
+        sink = new RecordingSink();
+
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updatePartitions(configuration.topic, Arrays.asList(
+                new PartitionInfo(configuration.topic, 0, null, null, null),
+                new PartitionInfo(configuration.topic, 1, null, null, null)));
+        Map<TopicPartition, Long> beginningOffsets = new HashMap<>();
+        beginningOffsets.put(p0, 0L);
+        beginningOffsets.put(p1, 0L);
+        consumer.updateBeginningOffsets(beginningOffsets);
+        consumer.schedulePollTask(() -> consumer.rebalance(Arrays.asList(p0, p1)));
+
+        KafkaSqlApplyStage applyStage = new KafkaSqlApplyStage();
+        applyStage.log = LoggerFactory.getLogger(KafkaSqlApplyStage.class);
+        applyStage.configuration = configuration;
+        applyStage.kafkaSqlSink = sink;
+        applyStage.offsets = offsets;
+        applyStage.registry = new SimpleMeterRegistry();
+
+        KafkaSqlSnapshotManager snapshots = new KafkaSqlSnapshotManager();
+        snapshots.log = LoggerFactory.getLogger(KafkaSqlSnapshotManager.class);
+        snapshots.configuration = configuration;
+
+        KafkaSqlCheckpointManager checkpoints = new KafkaSqlCheckpointManager();
+        checkpoints.log = LoggerFactory.getLogger(KafkaSqlCheckpointManager.class);
+        checkpoints.configuration = configuration;
+        checkpoints.offsets = offsets;
+
+        storage = new KafkaSqlRegistryStorage();
+        storage.log = LoggerFactory.getLogger(KafkaSqlRegistryStorage.class);
+        storage.configuration = configuration;
+        storage.consumer = consumer;
+        storage.submitter = new KafkaSqlSubmitter() {
+            @Override
+            public void submitBootstrap(String id, int partitions) {
+                assertEquals(2, partitions);
+                bootstrapId.complete(id);
+            }
+        };
+        storage.offsets = offsets;
+        storage.applyStage = applyStage;
+        storage.snapshots = snapshots;
+        storage.checkpoints = checkpoints;
+        storage.onConstruct(null);
+
+        bootstrapId.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        await(() -> consumer.assignment().size() == 2, "The partitions were not assigned");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.onDestroy();
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Appends a record to the given partition of the journal.
+     * @param dependencies the offsets (per partition) of the records it depends on, e.g. "0:1"
+     */
+    private ConsumerRecord<MessageKey, MessageValue> record(TopicPartition tp, MessageKey key, MessageValue value, String dependencies) {
+        long offset = nextOffsets.merge(tp, 1L, Long::sum) - 1;
+        ConsumerRecord<MessageKey, MessageValue> record = new ConsumerRecord<>(tp.topic(), tp.partition(), offset, key, value);
+        if (dependencies != null) {
+            record.headers().add(KafkaSqlOffsetTracker.DEPENDENCIES_HEADER, dependencies.getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    private ConsumerRecord<MessageKey, MessageValue> rule(TopicPartition tp, String artifactId, String dependencies) {
+        return record(tp, ArtifactRuleKey.create(null, "group", artifactId, RuleType.VALIDITY),
+                ArtifactRuleValue.create(ActionType.Delete, null), dependencies);
+    }
+
+    private ConsumerRecord<MessageKey, MessageValue> bootstrap(TopicPartition tp, String id) {
+        return record(tp, BootstrapKey.create(id), null, null);
+    }
+
+    private long position(TopicPartition tp) {
+        return consumer.position(tp);
+    }
+
+    @Test
+    public void testBootstrappedOnEveryPartition() throws Exception {
+        ConsumerRecord<MessageKey, MessageValue> before = rule(p1, "a", null);
+        consumer.addRecord(before);
+        consumer.addRecord(bootstrap(p0, bootstrapId.get()));
+        // Left over by another node, or by a previous run of this one
+        consumer.addRecord(bootstrap(p1, "other"));
+        await(() -> position(p0) == 1 && position(p1) == 2, "The records were not consumed");
+        Thread.sleep(100);
+        assertFalse(storage.isReady());
+
+        consumer.addRecord(bootstrap(p1, bootstrapId.get()));
+        await(storage::isReady, "Not bootstrapped");
+        // Everything before the bootstrap messages is applied first
+        assertEquals(Collections.singletonList(before), sink.applied());
+        assertTrue(storage.isAlive());
+    }
+
+    @Test
+    public void testHeldBackWhileOtherPartitionsAreConsumed() throws Exception {
+        // Depends on the first two records of partition 0, which have not been consumed yet
+        ConsumerRecord<MessageKey, MessageValue> dependent = rule(p1, "b", "0:2");
+        ConsumerRecord<MessageKey, MessageValue> next = rule(p1, "c", null);
+        consumer.addRecord(dependent);
+        consumer.addRecord(next);
+        await(() -> consumer.paused().contains(p1), "Partition 1 was not paused");
+        Thread.sleep(100);
+        assertEquals(Collections.emptyList(), sink.applied());
+        assertTrue(consumer.paused().contains(p1));
+
+        // Partition 0 is still consumed while partition 1 is paused
+        ConsumerRecord<MessageKey, MessageValue> first = rule(p0, "a", null);
+        consumer.addRecord(first);
+        await(() -> sink.applied().size() == 1, "Partition 0 was not consumed");
+        Thread.sleep(100);
+        assertEquals(Collections.singletonList(first), sink.applied());
+        assertTrue(consumer.paused().contains(p1));
+
+        ConsumerRecord<MessageKey, MessageValue> second = rule(p0, "a", null);
+        consumer.addRecord(second);
+        await(() -> sink.applied().size() == 4, "The held back records were not applied");
+        assertEquals(Arrays.asList(first, second, dependent, next), sink.applied());
+        await(() -> consumer.paused().isEmpty(), "Partition 1 was not resumed");
+    }
+
+    @Test
+    public void testCausalOrderWithinPoll() throws Exception {
+        ConsumerRecord<MessageKey, MessageValue> dependent = rule(p1, "b", "0:1");
+        ConsumerRecord<MessageKey, MessageValue> dependency = rule(p0, "a", null);
+        // Both are returned by the same poll, in whichever order
+        consumer.schedulePollTask(() -> {
+            consumer.addRecord(dependent);
+            consumer.addRecord(dependency);
+        });
+        await(() -> sink.applied().size() == 2, "The records were not applied");
+        assertEquals(Arrays.asList(dependency, dependent), sink.applied());
+        assertTrue(offsets.isApplied(Collections.singletonMap(1, 1L)));
+    }
+
+    @Test
+    public void testRecordsWithoutDependenciesAreNotHeldBack() throws Exception {
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        for (int idx = 0; idx < 10; idx++) {
+            records.add(rule(idx % 2 == 0 ? p0 : p1, "artifact" + idx, null));
+        }
+        records.forEach(consumer::addRecord);
+        await(() -> sink.applied().size() == records.size(), "The records were not applied");
+        assertTrue(consumer.paused().isEmpty());
+    }
+
+    /**
+     * Records what was applied instead of applying it.
+     */
+    private class RecordingSink extends KafkaSqlSink {
+
+        private final List<ConsumerRecord<MessageKey, MessageValue>> applied = new ArrayList<>();
+
+        synchronized List<ConsumerRecord<MessageKey, MessageValue>> applied() {
+            return new ArrayList<>(applied);
+        }
+
+        @Override
+        public synchronized void processMessages(List<ConsumerRecord<MessageKey, MessageValue>> records) {
+            for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+                applied.add(record);
+                offsets.applied(record);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the offset tracking behind KafkaSQL consistency tokens, in particular that waiting for a token
+ * blocks until every record below it has been applied.
+ */
+public class KafkaSqlOffsetTrackerTest {
+
+    private static final String TOPIC = "kafkasql-journal";
+
+    private KafkaSqlOffsetTracker tracker;
+
+    @BeforeEach
+    public void setUp() {
+        tracker = new KafkaSqlOffsetTracker();
+        tracker.start(2, Collections.emptyMap());
+    }
+
+    private static ConsumerRecord<String, String> record(int partition, long offset) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, "key", "value");
+    }
+
+    private static Map<Integer, Long> token(int partition, long offset) {
+        return Collections.singletonMap(partition, offset);
+    }
+
+    private CompletableFuture<Boolean> awaitAsync(Map<Integer, Long> token) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return tracker.awaitApplied(token, 10000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testAwaitBlocksUntilApplied() throws Exception {
+        ConsumerRecord<String, String> r0 = record(0, 0);
+        ConsumerRecord<String, String> r1 = record(0, 1);
+        tracker.dispatched(r0);
+        tracker.dispatched(r1);
+
+        CompletableFuture<Boolean> waiting = awaitAsync(token(0, 2));
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        // Applied out of order - record 0 is still pending
+        tracker.applied(r1);
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        tracker.applied(r0);
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitTimesOut() throws Exception {
+        tracker.dispatched(record(0, 0));
+        long start = System.currentTimeMillis();
+        assertFalse(tracker.awaitApplied(token(0, 1), 200));
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void testAwaitNotYetConsumed() throws Exception {
+        CompletableFuture<Boolean> waiting = awaitAsync(token(1, 3));
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+
+        // Offsets 0-2 were removed by log compaction
+        tracker.consumedUpTo(1, 3);
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSkippedRecordsDoNotBlock() throws Exception {
+        tracker.dispatched(record(0, 0));
+        tracker.skipped(record(0, 1));
+        assertFalse(tracker.isApplied(token(0, 2)));
+
+        tracker.applied(record(0, 0));
+        assertTrue(tracker.awaitApplied(token(0, 2), 0));
+    }
+
+    @Test
+    public void testStartOffsetsAreApplied() throws Exception {
+        tracker.start(2, Collections.singletonMap(new TopicPartition(TOPIC, 0), 42L));
+        assertTrue(tracker.awaitApplied(token(0, 42), 0));
+        assertFalse(tracker.isApplied(token(0, 43)));
+        assertEquals("0:42", tracker.encodeOffsets());
+    }
+
+    @Test
+    public void testTokenCoversProducedRecords() {
+        assertNull(tracker.encodeOffsets());
+
+        tracker.dispatched(record(0, 0));
+        tracker.applied(record(0, 0));
+        tracker.produced(new RecordMetadata(new TopicPartition(TOPIC, 1), 6, 0, 0, null, 0, 0));
+
+        Map<Integer, Long> expected = new HashMap<>();
+        expected.put(0, 1L);
+        expected.put(1, 7L);
+        assertEquals(expected, KafkaSqlOffsetTracker.decodeOffsets(tracker.encodeOffsets()));
+        // Another node that has not consumed the produced record yet is not consistent with this one
+        KafkaSqlOffsetTracker other = new KafkaSqlOffsetTracker();
+        other.start(2, Collections.emptyMap());
+        assertFalse(other.isApplied(expected));
+    }
+
+    @Test
+    public void testDecodeMalformedOffsets() {
+        assertThrows(IllegalArgumentException.class, () -> KafkaSqlOffsetTracker.decodeOffsets("garbage"));
+        assertThrows(IllegalArgumentException.class, () -> KafkaSqlOffsetTracker.decodeOffsets("0:x"));
+        assertEquals(token(0, 5), KafkaSqlOffsetTracker.decodeOffsets(" 0 : 5 "));
+    }
+
+    @Test
+    public void testDependencies() {
+        tracker.dispatched(record(0, 0));
+        tracker.applied(record(0, 0));
+        tracker.produced(new RecordMetadata(new TopicPartition(TOPIC, 1), 2, 0, 0, null, 0, 0));
+        byte[] header = tracker.encodeDependencies();
+
+        ConsumerRecord<String, String> dependent = record(1, 3);
+        dependent.headers().add(KafkaSqlOffsetTracker.DEPENDENCIES_HEADER, header);
+        // The record's own partition is already ordered by Kafka
+        assertEquals(token(0, 1), KafkaSqlOffsetTracker.dependenciesOf(dependent));
+        assertEquals(Collections.emptyMap(), KafkaSqlOffsetTracker.dependenciesOf(record(1, 4)));
+
+        tracker.start(1, Collections.emptyMap());
+        assertNull(tracker.encodeDependencies());
+        Map<Integer, Long> expected = new HashMap<>();
+        expected.put(0, 1L);
+        expected.put(1, 3L);
+        assertEquals(expected, KafkaSqlOffsetTracker.decodeOffsets(new String(header, StandardCharsets.UTF_8)));
+    }
+
+}
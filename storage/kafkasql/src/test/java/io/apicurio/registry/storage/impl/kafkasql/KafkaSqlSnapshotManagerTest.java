@@ -0,0 +1,246 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.storage.RegistryStorageException;
+import io.apicurio.registry.storage.impl.kafkasql.sql.KafkaSqlStore;
+
+/**
+ * Tests writing and restoring KafkaSQL snapshots with {@link KafkaSqlSnapshotManager}, and that the
+ * journal records covered by a restored snapshot are not applied again.
+ */
+public class KafkaSqlSnapshotManagerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("kafkasql-journal", 0);
+    private static final TopicPartition P1 = new TopicPartition("kafkasql-journal", 1);
+
+    private Path snapshotLocation;
+    private TestKafkaSqlConfiguration configuration;
+    private SnapshotStore store;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        snapshotLocation = Files.createTempDirectory("kafkasql-snapshots");
+        configuration = new TestKafkaSqlConfiguration();
+        configuration.snapshotEnabled = true;
+        configuration.snapshotLocation = snapshotLocation.toString();
+        store = new SnapshotStore();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        FileUtils.deleteQuietly(snapshotLocation.toFile());
+    }
+
+    private KafkaSqlSnapshotManager createManager() {
+        KafkaSqlSnapshotManager manager = new KafkaSqlSnapshotManager();
+        manager.log = LoggerFactory.getLogger(KafkaSqlSnapshotManager.class);
+        manager.configuration = configuration;
+        manager.sqlStore = store;
+        return manager;
+    }
+
+    private static MockConsumer<?, ?> journal(long endOffset0, long endOffset1) {
+        MockConsumer<?, ?> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        Map<TopicPartition, Long> endOffsets = new HashMap<>();
+        endOffsets.put(P0, endOffset0);
+        endOffsets.put(P1, endOffset1);
+        consumer.updateEndOffsets(endOffsets);
+        return consumer;
+    }
+
+    private static Map<TopicPartition, Long> offsets(long offset0, long offset1) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        offsets.put(P0, offset0);
+        offsets.put(P1, offset1);
+        return offsets;
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> dirs = Files.list(snapshotLocation)) {
+            return dirs.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testRestoreLatestSnapshot() throws Exception {
+        KafkaSqlSnapshotManager manager = createManager();
+        store.state = "first";
+        manager.maybeSnapshot(offsets(42, 7));
+        // Snapshots are named after the time they were taken
+        Thread.sleep(5);
+        store.state = "second";
+        manager.maybeSnapshot(offsets(50, 7));
+        assertEquals(1, snapshots().size());
+
+        // Restart
+        store = new SnapshotStore();
+        Map<TopicPartition, Long> restored = createManager().restore(journal(60, 10));
+        assertEquals(offsets(50, 7), restored);
+        assertEquals("second", store.state);
+
+        // The consumer resumes after the snapshot, so the records it covers are never applied again
+        KafkaSqlOffsetTracker tracker = new KafkaSqlOffsetTracker();
+        tracker.start(2, restored);
+        assertEquals(offsets(50, 7), tracker.dispatchedOffsets(P0.topic()));
+        Map<Integer, Long> covered = new HashMap<>();
+        covered.put(0, 50L);
+        covered.put(1, 7L);
+        assertTrue(tracker.isApplied(covered));
+        assertTrue(tracker.isDispatched(covered));
+    }
+
+    @Test
+    public void testNoSnapshot() {
+        assertEquals(Collections.emptyMap(), createManager().restore(journal(60, 10)));
+        assertNull(store.state);
+    }
+
+    @Test
+    public void testSnapshotNotDueUntilStoreChanges() {
+        KafkaSqlSnapshotManager manager = createManager();
+        assertTrue(manager.isSnapshotDue(offsets(42, 7)));
+        manager.maybeSnapshot(offsets(42, 7));
+        assertFalse(manager.isSnapshotDue(offsets(42, 7)));
+        assertTrue(manager.isSnapshotDue(offsets(43, 7)));
+
+        configuration.snapshotInterval = 60000L;
+        assertFalse(manager.isSnapshotDue(offsets(43, 7)));
+    }
+
+    @Test
+    public void testSnapshotAheadOfJournalIgnored() {
+        store.state = "snapshot";
+        createManager().maybeSnapshot(offsets(42, 7));
+
+        // E.g. the journal topic was re-created
+        store = new SnapshotStore();
+        assertEquals(Collections.emptyMap(), createManager().restore(journal(10, 10)));
+        assertNull(store.state);
+    }
+
+    @Test
+    public void testSnapshotOfOtherTopicIgnored() {
+        store.state = "snapshot";
+        createManager().maybeSnapshot(offsets(42, 7));
+
+        store = new SnapshotStore();
+        configuration.topic = "other-journal";
+        assertEquals(Collections.emptyMap(), createManager().restore(journal(60, 10)));
+        assertNull(store.state);
+    }
+
+    @Test
+    public void testIncompleteSnapshotIgnored() throws Exception {
+        store.state = "snapshot";
+        createManager().maybeSnapshot(offsets(42, 7));
+        // E.g. the node was killed while writing it
+        Files.delete(snapshots().get(0).resolve("snapshot.properties"));
+
+        store = new SnapshotStore();
+        assertEquals(Collections.emptyMap(), createManager().restore(journal(60, 10)));
+        assertNull(store.state);
+    }
+
+    @Test
+    public void testFailedRestoreDeletesSnapshot() throws Exception {
+        store.state = "snapshot";
+        createManager().maybeSnapshot(offsets(42, 7));
+
+        store = new SnapshotStore();
+        store.failRestore = true;
+        KafkaSqlSnapshotManager manager = createManager();
+        assertThrows(RegistryStorageException.class, () -> manager.restore(journal(60, 10)));
+        assertTrue(snapshots().isEmpty());
+    }
+
+    @Test
+    public void testFailedSnapshotLeavesNothingBehind() throws Exception {
+        store.failWrite = true;
+        createManager().maybeSnapshot(offsets(42, 7));
+        assertTrue(snapshots().isEmpty());
+    }
+
+    /**
+     * A store whose whole state is a string, written to and read from the snapshot data file.
+     */
+    private static class SnapshotStore extends KafkaSqlStore {
+
+        String state;
+        boolean failWrite;
+        boolean failRestore;
+
+        @Override
+        public boolean isSnapshotSupported() {
+            return true;
+        }
+
+        @Override
+        public void writeSnapshot(String file) throws RegistryStorageException {
+            if (failWrite) {
+                throw new RegistryStorageException("Snapshot failed");
+            }
+            try {
+                Files.write(Paths.get(file), String.valueOf(state).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void restoreSnapshot(String file) throws RegistryStorageException {
+            if (failRestore) {
+                throw new RegistryStorageException("Restore failed");
+            }
+            try {
+                state = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.storage.impl.kafkasql;
+
+import java.util.Properties;
+
+/**
+ * A {@link KafkaSqlConfiguration} for unit tests, with settable values.
+ */
+public class TestKafkaSqlConfiguration implements KafkaSqlConfiguration {
+
+    public String topic = "kafkasql-journal";
+    public Integer applyBatchSize = 1;
+    public Integer applyThreads = 0;
+    public Integer applyQueueSize = 1000;
+    public Integer responseTimeout = 5000;
+    public Integer idBlockSize = 1;
+    public boolean artifactWithContentEnabled;
+    public boolean snapshotEnabled;
+    public String snapshotLocation;
+    public Long snapshotInterval = 0L;
+    public boolean storePersistent;
+
+    @Override
+    public String bootstrapServers() {
+        return "localhost:9092";
+    }
+
+    @Override
+    public String topic() {
+        return topic;
+    }
+
+    @Override
+    public Properties topicProperties() {
+        return new Properties();
+    }
+
+    @Override
+    public boolean isTopicAutoCreate() {
+        return false;
+    }
+
+    @Override
+    public Integer startupLag() {
+        return 0;
+    }
+
+    @Override
+    public Integer pollTimeout() {
+        return 100;
+    }
+
+    @Override
+    public Integer applyBatchSize() {
+        return applyBatchSize;
+    }
+
+    @Override
+    public Integer applyThreads() {
+        return applyThreads;
+    }
+
+    @Override
+    public Integer applyQueueSize() {
+        return applyQueueSize;
+    }
+
+    @Override
+    public Integer responseTimeout() {
+        return responseTimeout;
+    }
+
+    @Override
+    public Integer idBlockSize() {
+        return idBlockSize;
+    }
+
+    @Override
+    public boolean isArtifactWithContentEnabled() {
+        return artifactWithContentEnabled;
+    }
+
+    @Override
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    @Override
+    public String snapshotLocation() {
+        return snapshotLocation;
+    }
+
+    @Override
+    public Long snapshotInterval() {
+        return snapshotInterval;
+    }
+
+    @Override
+    public boolean isStorePersistent() {
+        return storePersistent;
+    }
+
+    @Override
+    public Properties producerProperties() {
+        return new Properties();
+    }
+
+    @Override
+    public Properties consumerProperties() {
+        return new Properties();
+    }
+
+    @Override
+    public Properties adminProperties() {
+        return new Properties();
+    }
+
+}
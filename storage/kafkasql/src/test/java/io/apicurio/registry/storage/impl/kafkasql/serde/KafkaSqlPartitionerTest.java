@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+
+/**
+ * Tests how {@link KafkaSqlPartitioner} spreads the journal messages over the partitions of the topic.
+ */
+public class KafkaSqlPartitionerTest {
+
+    private static final String TOPIC = "kafkasql-journal";
+    private static final int PARTITIONS = 8;
+    private static final byte[] KEY_BYTES = new byte[] { 1 };
+
+    private final Cluster cluster = cluster();
+
+    private static Cluster cluster() {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            partitions.add(new PartitionInfo(TOPIC, partition, node, new Node[] { node }, new Node[] { node }));
+        }
+        return new Cluster("cluster", Collections.singletonList(node), partitions, Collections.emptySet(), Collections.emptySet());
+    }
+
+    private static KafkaSqlPartitioner partitioner(String partitionBy) {
+        KafkaSqlPartitioner partitioner = new KafkaSqlPartitioner();
+        if (partitionBy != null) {
+            partitioner.configure(Collections.singletonMap(KafkaSqlPartitioner.PARTITION_BY_CONFIG, partitionBy));
+        } else {
+            partitioner.configure(Collections.emptyMap());
+        }
+        return partitioner;
+    }
+
+    private int partition(KafkaSqlPartitioner partitioner, MessageKey key) {
+        return partitioner.partition(TOPIC, key, KEY_BYTES, null, null, cluster);
+    }
+
+    @Test
+    public void testPartitionByTenant() {
+        KafkaSqlPartitioner partitioner = partitioner(null);
+
+        Set<Integer> tenantPartitions = new HashSet<>();
+        for (int tenant = 0; tenant < 50; tenant++) {
+            String tenantId = "tenant" + tenant;
+            int partition = partition(partitioner, ArtifactKey.create(tenantId, "group", "artifact0"));
+            // All the messages of a tenant are on the same partition
+            for (int artifact = 1; artifact < 20; artifact++) {
+                assertEquals(partition, partition(partitioner, ArtifactKey.create(tenantId, "group" + artifact, "artifact" + artifact)));
+            }
+            tenantPartitions.add(partition);
+        }
+        assertTrue(tenantPartitions.size() > 1, "The tenants are all on partition " + tenantPartitions);
+
+        assertEquals(partition(partitioner(KafkaSqlPartitioner.PARTITION_BY_TENANT), ArtifactKey.create("tenant", "group", "artifact")),
+                partition(partitioner, ArtifactKey.create("tenant", "other", "other")));
+    }
+
+    @Test
+    public void testPartitionByArtifact() {
+        KafkaSqlPartitioner partitioner = partitioner(KafkaSqlPartitioner.PARTITION_BY_ARTIFACT);
+
+        Set<Integer> artifactPartitions = new HashSet<>();
+        for (int artifact = 0; artifact < 50; artifact++) {
+            MessageKey key = ArtifactKey.create("tenant", "group", "artifact" + artifact);
+            int partition = partition(partitioner, key);
+            assertEquals(partition, partition(partitioner, ArtifactKey.create("tenant", "group", "artifact" + artifact)));
+            artifactPartitions.add(partition);
+        }
+        // The artifacts of a single tenant are spread over the partitions
+        assertTrue(artifactPartitions.size() > 1, "The artifacts are all on partition " + artifactPartitions);
+    }
+
+    @Test
+    public void testSequencesOnFirstPartition() {
+        for (KafkaSqlPartitioner partitioner : new KafkaSqlPartitioner[] { partitioner(null), partitioner(KafkaSqlPartitioner.PARTITION_BY_ARTIFACT) }) {
+            for (int tenant = 0; tenant < 20; tenant++) {
+                GlobalIdKey globalIdKey = GlobalIdKey.create();
+                globalIdKey.setTenantId("tenant" + tenant);
+                assertEquals(0, partition(partitioner, globalIdKey));
+                ContentIdKey contentIdKey = ContentIdKey.create();
+                contentIdKey.setTenantId("tenant" + tenant);
+                assertEquals(0, partition(partitioner, contentIdKey));
+            }
+        }
+    }
+
+    @Test
+    public void testContentByHash() {
+        KafkaSqlPartitioner byTenant = partitioner(null);
+        KafkaSqlPartitioner byArtifact = partitioner(KafkaSqlPartitioner.PARTITION_BY_ARTIFACT);
+
+        Set<Integer> contentPartitions = new HashSet<>();
+        for (int content = 0; content < 50; content++) {
+            String hash = "hash" + content;
+            int partition = partition(byTenant, contentKey("tenant0", hash));
+            // Content is shared by all the tenants
+            assertEquals(partition, partition(byTenant, contentKey("tenant1", hash)));
+            assertEquals(partition, partition(byArtifact, contentKey("tenant1", hash)));
+            contentPartitions.add(partition);
+        }
+        assertTrue(contentPartitions.size() > 1, "The content is all on partition " + contentPartitions);
+    }
+
+    private static ContentKey contentKey(String tenantId, String contentHash) {
+        ContentKey key = ContentKey.create(1, contentHash);
+        key.setTenantId(tenantId);
+        return key;
+    }
+
+}
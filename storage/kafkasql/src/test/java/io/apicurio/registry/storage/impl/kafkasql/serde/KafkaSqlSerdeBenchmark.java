@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.serde;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.apicurio.registry.content.ContentHandle;
+import io.apicurio.registry.storage.dto.EditableArtifactMetaDataDto;
+import io.apicurio.registry.storage.dto.LogConfigurationDto;
+import io.apicurio.registry.storage.dto.RuleConfigurationDto;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactVersionKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactWithContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GroupKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.LogConfigKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.RoleMappingKey;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactVersionValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GroupValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.LogConfigValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.RoleMappingValue;
+import io.apicurio.registry.types.ArtifactState;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.types.LogLevel;
+import io.apicurio.registry.types.RuleType;
+
+/**
+ * Compares the JSON and binary formats of the KSQL messages: encode/decode throughput, and the number of
+ * bytes encoded (the "bytes" counter of the encode benchmark, divided by its score, is the size of one
+ * operation).  Every operation encodes (or decodes) the key and value of
+ * one message of each type.
+ *
+ * Run with the main method, from the IDE or from the test classpath.  The results are written as JSON (to
+ * kafkasql-serde-benchmark.json unless a result file is given with -rff).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaSqlSerdeBenchmark {
+
+    private static final String TOPIC = "kafkasql-journal";
+
+    public static final String DEFAULT_RESULT = "kafkasql-serde-benchmark.json";
+
+    @Param({ KafkaSqlBinaryFormat.FORMAT_JSON, KafkaSqlBinaryFormat.FORMAT_BINARY })
+    public String format;
+
+    private final KafkaSqlKeySerializer keySerializer = new KafkaSqlKeySerializer();
+    private final KafkaSqlValueSerializer valueSerializer = new KafkaSqlValueSerializer();
+    private final KafkaSqlKeyDeserializer keyDeserializer = new KafkaSqlKeyDeserializer();
+    private final KafkaSqlValueDeserializer valueDeserializer = new KafkaSqlValueDeserializer();
+
+    private List<MessageKey> keys;
+    private List<MessageValue> values;
+    private List<byte[]> keyBytes;
+    private List<byte[]> valueBytes;
+
+    @Setup
+    public void setup() {
+        Map<String, Object> config = Collections.singletonMap(KafkaSqlBinaryFormat.FORMAT_CONFIG, format);
+        keySerializer.configure(config, true);
+        valueSerializer.configure(config, false);
+
+        EditableArtifactMetaDataDto metaData = EditableArtifactMetaDataDto.builder()
+                .name("Order placed")
+                .description("Emitted when a customer places an order.")
+                .labels(Arrays.asList("orders", "events"))
+                .properties(Collections.singletonMap("owner", "team-orders"))
+                .build();
+        ContentHandle content = ContentHandle.create("{\"type\":\"record\",\"name\":\"OrderPlaced\",\"namespace\":\"com.example.orders\","
+                + "\"fields\":[{\"name\":\"orderId\",\"type\":\"string\"},{\"name\":\"customerId\",\"type\":\"string\"},"
+                + "{\"name\":\"total\",\"type\":\"double\"},{\"name\":\"placedOn\",\"type\":\"long\"}]}");
+        String hash = "3b0c2a6f1fb1d6b95b0a7c6f8f1a0f7c4f6b9de0a17a0b2f8e7d61f1d1c0e6a2";
+
+        keys = new ArrayList<>();
+        values = new ArrayList<>();
+        add(ArtifactKey.create("tenant", "com.example.orders", "OrderPlaced"),
+                ArtifactValue.create(ActionType.Create, 1021L, "3", ArtifactType.AVRO, hash, "alice", new Date(), metaData,
+                        3, ArtifactState.ENABLED, 77L, true));
+        add(ArtifactWithContentKey.create("tenant", "com.example.orders", "OrderPlaced"),
+                ArtifactWithContentValue.create(ActionType.Create, null, ArtifactType.AVRO, hash, hash, content, "alice",
+                        new Date(), metaData));
+        add(ArtifactVersionKey.create("tenant", "com.example.orders", "OrderPlaced", "3"),
+                ArtifactVersionValue.create(ActionType.Update, ArtifactState.DEPRECATED, metaData));
+        add(ArtifactRuleKey.create("tenant", "com.example.orders", "OrderPlaced", RuleType.COMPATIBILITY),
+                ArtifactRuleValue.create(ActionType.Create, new RuleConfigurationDto("BACKWARD")));
+        add(ContentKey.create(77L, hash), ContentValue.create(ActionType.Create, hash, content));
+        add(GlobalRuleKey.create("tenant", RuleType.VALIDITY), GlobalRuleValue.create(ActionType.Update, new RuleConfigurationDto("FULL")));
+        add(GroupKey.create("tenant", "com.example.orders"), GroupValue.create(ActionType.Delete, true));
+        add(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create, 100));
+        add(ContentIdKey.create(), ContentIdValue.create(ActionType.Create, 100));
+        add(LogConfigKey.create("tenant"), LogConfigValue.create(ActionType.Update, new LogConfigurationDto("io.apicurio", LogLevel.DEBUG)));
+        add(RoleMappingKey.create("tenant", "alice"), RoleMappingValue.create(ActionType.Create, "DEVELOPER"));
+
+        keyBytes = new ArrayList<>();
+        valueBytes = new ArrayList<>();
+        for (int idx = 0; idx < keys.size(); idx++) {
+            keyBytes.add(keySerializer.serialize(TOPIC, keys.get(idx)));
+            valueBytes.add(valueSerializer.serialize(TOPIC, values.get(idx)));
+        }
+    }
+
+    private void add(MessageKey key, MessageValue value) {
+        keys.add(key);
+        values.add(value);
+    }
+
+    @Benchmark
+    public void encode(Blackhole bh, EncodedBytes encoded) {
+        for (int idx = 0; idx < keys.size(); idx++) {
+            byte[] key = keySerializer.serialize(TOPIC, keys.get(idx));
+            byte[] value = valueSerializer.serialize(TOPIC, values.get(idx));
+            encoded.bytes += key.length + value.length;
+            bh.consume(key);
+            bh.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        for (int idx = 0; idx < keyBytes.size(); idx++) {
+            bh.consume(keyDeserializer.deserialize(TOPIC, keyBytes.get(idx)));
+            bh.consume(valueDeserializer.deserialize(TOPIC, valueBytes.get(idx)));
+        }
+    }
+
+    /**
+     * Counts the bytes written by the encode benchmark, reported by JMH next to its score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class EncodedBytes {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(KafkaSqlSerdeBenchmark.class.getSimpleName());
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT);
+        }
+        new Runner(options.build()).run();
+    }
+
+}
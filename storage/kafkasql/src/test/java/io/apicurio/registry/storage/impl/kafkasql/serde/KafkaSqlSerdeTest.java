@@ -0,0 +1,312 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.storage.impl.kafkasql.serde;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.apicurio.registry.content.ContentHandle;
+import io.apicurio.registry.storage.dto.EditableArtifactMetaDataDto;
+import io.apicurio.registry.storage.dto.LogConfigurationDto;
+import io.apicurio.registry.storage.dto.RuleConfigurationDto;
+import io.apicurio.registry.storage.impl.kafkasql.MessageType;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactVersionKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactWithContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.BootstrapKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GroupKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.LogConfigKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.RoleMappingKey;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactVersionValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GroupValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.LogConfigValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.RoleMappingValue;
+import io.apicurio.registry.types.ArtifactState;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.types.LogLevel;
+import io.apicurio.registry.types.RuleType;
+
+/**
+ * Round-trips every KSQL message key and value through the serializers and deserializers, in both the JSON
+ * and binary formats, and checks that records written by older versions (JSON only) can still be read.
+ */
+public class KafkaSqlSerdeTest {
+
+    private static final String TOPIC = "kafkasql-journal";
+    private static final String HASH = "3b0c2a6f1fb1d6b95b0a7c6f8f1a0f7c4f6b9de0a17a0b2f8e7d61f1d1c0e6a2";
+
+    // Describes keys and values by their properties, since they don't implement equals()
+    private static final ObjectMapper describer = new ObjectMapper();
+    static {
+        SimpleModule module = new SimpleModule();
+        module.addSerializer(ContentHandle.class, new JsonSerializer<ContentHandle>() {
+            @Override
+            public void serialize(ContentHandle value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                gen.writeBinary(value.bytes());
+            }
+        });
+        describer.registerModule(module);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        testRoundTrip(KafkaSqlBinaryFormat.FORMAT_BINARY);
+    }
+
+    @Test
+    public void testJsonRoundTrip() {
+        testRoundTrip(KafkaSqlBinaryFormat.FORMAT_JSON);
+    }
+
+    @Test
+    public void testTombstones() {
+        KafkaSqlValueSerializer valueSerializer = new KafkaSqlValueSerializer();
+        valueSerializer.configure(Collections.emptyMap(), false);
+        assertNull(valueSerializer.serialize(TOPIC, null));
+        assertNull(new KafkaSqlValueDeserializer().deserialize(TOPIC, null));
+    }
+
+    @Test
+    public void testLegacyJsonRecords() {
+        KafkaSqlKeyDeserializer keyDeserializer = new KafkaSqlKeyDeserializer();
+        KafkaSqlValueDeserializer valueDeserializer = new KafkaSqlValueDeserializer();
+
+        ArtifactKey artifactKey = (ArtifactKey) keyDeserializer.deserialize(TOPIC, legacyJson(MessageType.Artifact,
+                "{\"tenantId\":\"tenant\",\"groupId\":\"com.example\",\"artifactId\":\"OrderPlaced\",\"uuid\":\"03166c19-c51f-4887-9d7a-65eeb62e2762\"}"));
+        assertEquals("tenant", artifactKey.getTenantId());
+        assertEquals("com.example", artifactKey.getGroupId());
+        assertEquals("OrderPlaced", artifactKey.getArtifactId());
+        assertEquals("03166c19-c51f-4887-9d7a-65eeb62e2762", artifactKey.getUuid());
+
+        GlobalRuleKey ruleKey = (GlobalRuleKey) keyDeserializer.deserialize(TOPIC, legacyJson(MessageType.GlobalRule,
+                "{\"tenantId\":\"tenant\",\"ruleType\":\"VALIDITY\"}"));
+        assertEquals(RuleType.VALIDITY, ruleKey.getRuleType());
+
+        ContentKey contentKey = (ContentKey) keyDeserializer.deserialize(TOPIC, legacyJson(MessageType.Content,
+                "{\"contentHash\":\"abc\",\"contentId\":77}"));
+        assertEquals(77L, contentKey.getContentId());
+        assertEquals("abc", contentKey.getContentHash());
+
+        BootstrapKey bootstrapKey = (BootstrapKey) keyDeserializer.deserialize(TOPIC, legacyJson(MessageType.Bootstrap,
+                "{\"bootstrapId\":\"boot\"}"));
+        assertEquals("boot", bootstrapKey.getBootstrapId());
+
+        // Written before the versionId, state, contentId and latest fields existed
+        ArtifactValue artifactValue = (ArtifactValue) valueDeserializer.deserialize(TOPIC, legacyJson(MessageType.Artifact,
+                "{\"action\":\"Create\",\"metaData\":{\"name\":\"n\",\"labels\":[\"x\"]},\"globalId\":1021,\"version\":\"3\","
+                + "\"artifactType\":\"AVRO\",\"contentHash\":\"abc\",\"createdBy\":\"alice\",\"createdOn\":1600000000000}"));
+        assertEquals(ActionType.Create, artifactValue.getAction());
+        assertEquals(1021L, artifactValue.getGlobalId());
+        assertEquals("3", artifactValue.getVersion());
+        assertEquals(ArtifactType.AVRO, artifactValue.getArtifactType());
+        assertEquals("abc", artifactValue.getContentHash());
+        assertEquals("alice", artifactValue.getCreatedBy());
+        assertEquals(new Date(1600000000000L), artifactValue.getCreatedOn());
+        assertEquals("n", artifactValue.getMetaData().getName());
+        assertEquals(Collections.singletonList("x"), artifactValue.getMetaData().getLabels());
+        assertNull(artifactValue.getVersionId());
+        assertNull(artifactValue.getContentId());
+
+        GlobalRuleValue ruleValue = (GlobalRuleValue) valueDeserializer.deserialize(TOPIC, legacyJson(MessageType.GlobalRule,
+                "{\"action\":\"Update\",\"config\":{\"configuration\":\"FULL\"}}"));
+        assertEquals(ActionType.Update, ruleValue.getAction());
+        assertEquals("FULL", ruleValue.getConfig().getConfiguration());
+
+        // Written before id blocks could be reserved
+        GlobalIdValue globalIdValue = (GlobalIdValue) valueDeserializer.deserialize(TOPIC, legacyJson(MessageType.GlobalId,
+                "{\"action\":\"Create\"}"));
+        assertEquals(ActionType.Create, globalIdValue.getAction());
+        assertNull(globalIdValue.getBlockSize());
+
+        // Content: type, action, length-prefixed canonical hash, length-prefixed content
+        byte[] canonicalHash = "abc".getBytes(StandardCharsets.UTF_8);
+        byte[] content = "{}".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer legacyContent = ByteBuffer.allocate(2 + 4 + canonicalHash.length + 4 + content.length)
+                .put(MessageType.Content.getOrd())
+                .put(ActionType.Create.getOrd())
+                .putInt(canonicalHash.length).put(canonicalHash)
+                .putInt(content.length).put(content);
+        ContentValue contentValue = (ContentValue) valueDeserializer.deserialize(TOPIC, legacyContent.array());
+        assertEquals(ActionType.Create, contentValue.getAction());
+        assertEquals("abc", contentValue.getCanonicalHash());
+        assertEquals("{}", contentValue.getContent().content());
+    }
+
+    private void testRoundTrip(String format) {
+        Map<String, Object> config = Collections.singletonMap(KafkaSqlBinaryFormat.FORMAT_CONFIG, format);
+        KafkaSqlKeySerializer keySerializer = new KafkaSqlKeySerializer();
+        keySerializer.configure(config, true);
+        KafkaSqlValueSerializer valueSerializer = new KafkaSqlValueSerializer();
+        valueSerializer.configure(config, false);
+        KafkaSqlKeyDeserializer keyDeserializer = new KafkaSqlKeyDeserializer();
+        KafkaSqlValueDeserializer valueDeserializer = new KafkaSqlValueDeserializer();
+        boolean binary = KafkaSqlBinaryFormat.FORMAT_BINARY.equals(format);
+
+        Set<MessageType> keyTypes = EnumSet.noneOf(MessageType.class);
+        Set<MessageType> valueTypes = EnumSet.noneOf(MessageType.class);
+        for (Map.Entry<MessageKey, List<MessageValue>> message : messages().entrySet()) {
+            MessageKey key = message.getKey();
+            byte[] keyBytes = keySerializer.serialize(TOPIC, key);
+            assertEquals(binary, KafkaSqlBinaryFormat.isBinary(keyBytes), key.getType().name());
+            assertEquals(describe(key), describe(keyDeserializer.deserialize(TOPIC, keyBytes)));
+            keyTypes.add(key.getType());
+
+            for (MessageValue value : message.getValue()) {
+                byte[] valueBytes = valueSerializer.serialize(TOPIC, value);
+                assertEquals(binary, KafkaSqlBinaryFormat.isBinary(valueBytes), value.getType().name());
+                assertEquals(describe(value), describe(valueDeserializer.deserialize(TOPIC, valueBytes)));
+                valueTypes.add(value.getType());
+            }
+        }
+
+        assertEquals(EnumSet.allOf(MessageType.class), keyTypes);
+        // Bootstrap messages have no value
+        assertEquals(EnumSet.complementOf(EnumSet.of(MessageType.Bootstrap)), valueTypes);
+    }
+
+    /**
+     * One key of each message type, each with values with all their fields set and with as few as possible.
+     */
+    private static Map<MessageKey, List<MessageValue>> messages() {
+        EditableArtifactMetaDataDto metaData = EditableArtifactMetaDataDto.builder()
+                .name("Order placed")
+                .description("Emitted when a customer places an order.")
+                .labels(Arrays.asList("orders", "events"))
+                .properties(Collections.singletonMap("owner", "team-orders"))
+                .build();
+        ContentHandle content = ContentHandle.create("{\"type\":\"record\",\"name\":\"OrderPlaced\",\"fields\":[]}");
+        Date createdOn = new Date(1600000000000L);
+
+        GroupValue group = GroupValue.create(ActionType.Create, false);
+        group.setDescription("Orders");
+        group.setArtifactsType(ArtifactType.AVRO);
+        group.setCreatedBy("alice");
+        group.setCreatedOn(1600000000000L);
+        group.setModifiedBy("bob");
+        group.setModifiedOn(1600000001000L);
+        group.setProperties(Collections.singletonMap("owner", "team-orders"));
+
+        ArtifactKey artifactKey = ArtifactKey.create("tenant", "com.example.orders", "OrderPlaced");
+        ArtifactWithContentKey artifactWithContentKey = ArtifactWithContentKey.create("tenant", "com.example.orders", "OrderPlaced");
+        ContentKey contentKey = ContentKey.create(77L, HASH);
+        contentKey.setTenantId("tenant");
+
+        Map<MessageKey, List<MessageValue>> messages = new LinkedHashMap<>();
+        messages.put(BootstrapKey.create("bootstrap-1"), Collections.emptyList());
+        messages.put(GlobalRuleKey.create("tenant", RuleType.VALIDITY), list(
+                GlobalRuleValue.create(ActionType.Update, new RuleConfigurationDto("FULL")),
+                GlobalRuleValue.create(ActionType.Delete, null)));
+        messages.put(contentKey, list(
+                ContentValue.create(ActionType.Create, HASH, content),
+                ContentValue.create(ActionType.Create, null, null)));
+        messages.put(artifactKey, list(
+                ArtifactValue.create(ActionType.Create, 1021L, "3", ArtifactType.AVRO, HASH, "alice", createdOn, metaData,
+                        3, ArtifactState.ENABLED, 77L, true),
+                ArtifactValue.create(ActionType.Delete, null, null, null, null, null, null, null, null, null, null, null)));
+        messages.put(ArtifactRuleKey.create("tenant", "com.example.orders", "OrderPlaced", RuleType.COMPATIBILITY), list(
+                ArtifactRuleValue.create(ActionType.Create, new RuleConfigurationDto("BACKWARD")),
+                ArtifactRuleValue.create(ActionType.Delete, null)));
+        messages.put(ArtifactVersionKey.create("tenant", "com.example.orders", "OrderPlaced", "3"), list(
+                ArtifactVersionValue.create(ActionType.Update, ArtifactState.DEPRECATED, metaData),
+                ArtifactVersionValue.create(ActionType.Delete, null, null)));
+        messages.put(GroupKey.create("tenant", "com.example.orders"), list(
+                group,
+                GroupValue.create(ActionType.Delete, true)));
+        messages.put(LogConfigKey.create("tenant"), list(
+                LogConfigValue.create(ActionType.Update, new LogConfigurationDto("io.apicurio", LogLevel.DEBUG)),
+                LogConfigValue.create(ActionType.Clear, null)));
+        messages.put(GlobalIdKey.create(), list(
+                GlobalIdValue.create(ActionType.Create, 100),
+                GlobalIdValue.create(ActionType.Create, null)));
+        messages.put(ContentIdKey.create(), list(
+                ContentIdValue.create(ActionType.Create, 100),
+                ContentIdValue.create(ActionType.Create, null)));
+        messages.put(RoleMappingKey.create("tenant", "alice"), list(
+                RoleMappingValue.create(ActionType.Create, "DEVELOPER"),
+                RoleMappingValue.create(ActionType.Delete, null)));
+        messages.put(artifactWithContentKey, list(
+                ArtifactWithContentValue.create(ActionType.Create, "3", ArtifactType.AVRO, HASH, HASH, content, "alice",
+                        createdOn, metaData),
+                ArtifactWithContentValue.create(ActionType.Update, null, ArtifactType.JSON, HASH, null, null, "alice",
+                        createdOn, null)));
+        return messages;
+    }
+
+    private static List<MessageValue> list(MessageValue... values) {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+
+    private static byte[] legacyJson(MessageType type, String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[bytes.length + 1];
+        data[0] = type.getOrd();
+        System.arraycopy(bytes, 0, data, 1, bytes.length);
+        return data;
+    }
+
+    private static JsonNode describe(Object message) {
+        JsonNode description = describer.valueToTree(message);
+        assertFalse(description.isNull(), "Message could not be deserialized");
+        // The content of an ArtifactWithContentValue is not one of its JSON properties
+        if (message instanceof ArtifactWithContentValue && ((ArtifactWithContentValue) message).getContent() != null) {
+            ((ObjectNode) description).put("content", ((ArtifactWithContentValue) message).getContent().bytes());
+        }
+        return description;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.sql;
+
+import java.util.function.Supplier;
+
+import io.apicurio.registry.mt.RegistryTenantContext;
+import io.apicurio.registry.mt.TenantContext;
+import io.apicurio.registry.mt.limits.TenantLimitsConfiguration;
+import io.apicurio.registry.storage.impl.sql.TestH2Database;
+
+/**
+ * A KSQL store on an H2 database, whose transactions are managed by the database rather than by CDI.  Always
+ * uses the default tenant.
+ */
+class H2KafkaSqlStore extends KafkaSqlStore {
+
+    private final TestH2Database database;
+    private final TenantContext tenantContext = new DefaultTenantContext();
+
+    H2KafkaSqlStore(TestH2Database database) {
+        this.database = database;
+        this.handles = database.handles();
+        database.initialize(this, tenantContext);
+    }
+
+    @Override
+    public TenantContext tenantContext() {
+        return tenantContext;
+    }
+
+    @Override
+    public <T> T executeInTransaction(Supplier<T> operation) {
+        return database.executeInTransaction(operation);
+    }
+
+    private static class DefaultTenantContext implements TenantContext {
+
+        @Override
+        public String tenantId() {
+            return DEFAULT_TENANT_ID;
+        }
+
+        @Override
+        public String tenantOwner() {
+            return null;
+        }
+
+        @Override
+        public TenantLimitsConfiguration limitsConfig() {
+            return null;
+        }
+
+        @Override
+        public void setContext(RegistryTenantContext ctx) {
+        }
+
+        @Override
+        public void clearContext() {
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.content.ContentHandle;
+import io.apicurio.registry.storage.ArtifactAlreadyExistsException;
+import io.apicurio.registry.storage.ArtifactNotFoundException;
+import io.apicurio.registry.storage.ContentNotFoundException;
+import io.apicurio.registry.storage.dto.ArtifactMetaDataDto;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCheckpointManager;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCoordinator;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlIdAllocator;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlOffsetTracker;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlSubmitter;
+import io.apicurio.registry.storage.impl.kafkasql.TestKafkaSqlConfiguration;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactWithContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.apicurio.registry.storage.impl.sql.TestH2Database;
+import io.apicurio.registry.types.ArtifactType;
+
+/**
+ * Tests how {@link KafkaSqlSink} applies "artifact with content" messages to a real (H2) store: the ids are
+ * assigned when the message is applied, and a message that fails leaves neither its content nor its
+ * artifact behind.
+ */
+public class KafkaSqlSinkArtifactWithContentTest {
+
+    private static final String GROUP_ID = "group";
+    private static final String ARTIFACT_ID = "artifact";
+
+    private TestH2Database database;
+    private H2KafkaSqlStore store;
+    private TestKafkaSqlConfiguration configuration;
+    private KafkaSqlOffsetTracker offsets;
+    private KafkaSqlSink sink;
+
+    private final Map<UUID, Object> responses = new HashMap<>();
+    private final List<MessageKey> tombstones = new ArrayList<>();
+    private long offset;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        database = new TestH2Database();
+        store = new H2KafkaSqlStore(database);
+        configuration = new TestKafkaSqlConfiguration();
+        offsets = new KafkaSqlOffsetTracker();
+        offsets.start(1, Collections.emptyMap());
+
+        sink = new KafkaSqlSink();
+        sink.log = LoggerFactory.getLogger(KafkaSqlSink.class);
+        sink.configuration = configuration;
+        sink.sqlStore = store;
+        sink.offsets = offsets;
+        sink.tenantContext = store.tenantContext();
+        sink.idAllocator = new KafkaSqlIdAllocator();
+        sink.coordinator = new KafkaSqlCoordinator() {
+            @Override
+            public void notifyResponse(UUID uuid, Object returnValue) {
+                responses.put(uuid, returnValue);
+            }
+        };
+        sink.checkpoints = new KafkaSqlCheckpointManager() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public void recordApplied(ConsumerRecord<?, ?> record) {
+            }
+        };
+        sink.submitter = new KafkaSqlSubmitter() {
+            @Override
+            public CompletableFuture<UUID> send(MessageKey key, MessageValue value) {
+                assertNull(value);
+                tombstones.add(key);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        database.close();
+    }
+
+    /**
+     * Creates a record for the test artifact with the given content, which is only sent along when it is new.
+     */
+    private ConsumerRecord<MessageKey, MessageValue> record(ActionType action, String content, boolean newContent) {
+        ArtifactWithContentValue value = ArtifactWithContentValue.create(action, null, ArtifactType.JSON, content + "-hash",
+                newContent ? content + "-canonical" : null, newContent ? ContentHandle.create(content) : null, "user",
+                new Date(), null);
+        ConsumerRecord<MessageKey, MessageValue> record = new ConsumerRecord<>(configuration.topic, 0, offset++,
+                ArtifactWithContentKey.create(null, GROUP_ID, ARTIFACT_ID), value);
+        record.headers().add("req", UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        offsets.dispatched(record);
+        return record;
+    }
+
+    private Object apply(ConsumerRecord<MessageKey, MessageValue> record) {
+        sink.processMessages(Collections.singletonList(record));
+        assertTrue(offsets.isApplied(Collections.singletonMap(0, offset)));
+        UUID uuid = UUID.fromString(new String(record.headers().lastHeader("req").value(), StandardCharsets.UTF_8));
+        assertTrue(responses.containsKey(uuid), "No response for record " + record.offset());
+        return responses.get(uuid);
+    }
+
+    @Test
+    public void testIdsAssignedWhenApplied() {
+        ArtifactMetaDataDto created = (ArtifactMetaDataDto) apply(record(ActionType.Create, "first", true));
+        assertEquals(1, created.getGlobalId());
+        assertEquals(1, created.getContentId());
+        assertEquals("1", created.getVersion());
+
+        // Content that is already stored is referenced by its hash only
+        ArtifactMetaDataDto updated = (ArtifactMetaDataDto) apply(record(ActionType.Update, "first", false));
+        assertEquals(2, updated.getGlobalId());
+        assertEquals(1, updated.getContentId());
+        assertEquals("2", updated.getVersion());
+
+        ArtifactMetaDataDto changed = (ArtifactMetaDataDto) apply(record(ActionType.Update, "second", true));
+        assertEquals(3, changed.getGlobalId());
+        assertEquals(2, changed.getContentId());
+        assertEquals(3, store.getArtifactMetaData(GROUP_ID, ARTIFACT_ID).getGlobalId());
+        assertEquals(Collections.emptyList(), tombstones);
+    }
+
+    @Test
+    public void testMissingContent() {
+        // The content was expected to be stored already, but it is not (e.g. the journal was compacted)
+        Object response = apply(record(ActionType.Create, "first", false));
+
+        assertTrue(response instanceof ContentNotFoundException, String.valueOf(response));
+        assertFalse(store.isArtifactExists(GROUP_ID, ARTIFACT_ID));
+        assertEquals(Collections.emptyList(), tombstones);
+    }
+
+    @Test
+    public void testArtifactAlreadyExists() {
+        ArtifactMetaDataDto created = (ArtifactMetaDataDto) apply(record(ActionType.Create, "first", true));
+
+        ConsumerRecord<MessageKey, MessageValue> duplicate = record(ActionType.Create, "second", true);
+        Object response = apply(duplicate);
+
+        assertTrue(response instanceof ArtifactAlreadyExistsException, String.valueOf(response));
+        assertFalse(store.isContentExists("second-hash"), "Content of the failed message was not rolled back");
+        assertEquals(created.getGlobalId(), store.getArtifactMetaData(GROUP_ID, ARTIFACT_ID).getGlobalId());
+        assertEquals(Collections.singletonList(duplicate.key()), tombstones);
+    }
+
+    @Test
+    public void testArtifactNotFound() {
+        ConsumerRecord<MessageKey, MessageValue> update = record(ActionType.Update, "first", true);
+        Object response = apply(update);
+
+        assertTrue(response instanceof ArtifactNotFoundException, String.valueOf(response));
+        assertFalse(store.isContentExists("first-hash"), "Content of the failed message was not rolled back");
+        assertFalse(store.isArtifactExists(GROUP_ID, ARTIFACT_ID));
+        assertEquals(Collections.singletonList(update.key()), tombstones);
+    }
+
+    @Test
+    public void testAppliedAloneWithinBatch() {
+        configuration.applyBatchSize = 10;
+        ConsumerRecord<MessageKey, MessageValue> create = record(ActionType.Create, "first", true);
+        ConsumerRecord<MessageKey, MessageValue> duplicate = record(ActionType.Create, "second", true);
+        ConsumerRecord<MessageKey, MessageValue> update = record(ActionType.Update, "third", true);
+        sink.processMessages(Arrays.asList(create, duplicate, update));
+
+        // The failed message is reported (and its tombstone sent) once, without affecting the others
+        assertEquals(Collections.singletonList(duplicate.key()), tombstones);
+        assertEquals(2, store.getArtifactMetaData(GROUP_ID, ARTIFACT_ID).getVersionId());
+        assertTrue(offsets.isApplied(Collections.singletonMap(0, offset)));
+    }
+
+}
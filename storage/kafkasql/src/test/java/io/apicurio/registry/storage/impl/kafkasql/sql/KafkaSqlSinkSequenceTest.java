@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.content.ContentHandle;
+import io.apicurio.registry.storage.dto.ArtifactMetaDataDto;
+import io.apicurio.registry.storage.dto.RuleConfigurationDto;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCheckpointManager;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCoordinator;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlIdAllocator;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlOffsetTracker;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlSubmitter;
+import io.apicurio.registry.storage.impl.kafkasql.TestKafkaSqlConfiguration;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactWithContentKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ContentIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactWithContentValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.ContentIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.apicurio.registry.storage.impl.sql.TestH2Database;
+import io.apicurio.registry.types.ArtifactType;
+import io.apicurio.registry.types.RuleType;
+
+/**
+ * Tests that applying the journal with {@link KafkaSqlSink} hands out the same globalIds and contentIds, and
+ * leaves the id sequences in the same state, however the records are split into polls and batches.  Nodes poll
+ * the journal independently, so anything else would make them hand out duplicate ids.  Uses a real (H2) store,
+ * since the id sequences are not rolled back with the rest of a failed batch.
+ */
+public class KafkaSqlSinkSequenceTest {
+
+    @Test
+    public void testIdsIndependentOfBatches() throws Exception {
+        List<String> expected = apply(1, 100);
+        assertEquals(Arrays.asList(
+                "null",
+                "1",
+                "RuleNotFoundException",
+                "1",
+                "2",
+                "RuleAlreadyExistsException",
+                "2",
+                "7",
+                "globalId 8, contentId 5",
+                "null",
+                "RegistryStorageException",
+                // Its content was stored (and took contentId 6) before the artifact was found to exist
+                "ArtifactAlreadyExistsException",
+                "globalId 9, contentId 7",
+                "10",
+                "11",
+                "8"), expected);
+
+        for (int batchSize : new int[] { 2, 3, 5, 100 }) {
+            for (int pollSize : new int[] { 1, 2, 4, 7, 100 }) {
+                assertEquals(expected, apply(batchSize, pollSize), "Batch size " + batchSize + ", poll size " + pollSize);
+            }
+        }
+    }
+
+    /**
+     * Applies the same journal to a new store, in polls and batches of the given sizes, and returns the response
+     * to every record followed by the next globalId and contentId of the store.
+     */
+    private List<String> apply(int batchSize, int pollSize) throws Exception {
+        try (TestH2Database database = new TestH2Database()) {
+            Journal journal = new Journal(database, batchSize);
+            List<ConsumerRecord<MessageKey, MessageValue>> records = journal.records();
+            for (int from = 0; from < records.size(); from += pollSize) {
+                journal.sink.processMessages(records.subList(from, Math.min(from + pollSize, records.size())));
+            }
+
+            List<String> results = new ArrayList<>();
+            for (ConsumerRecord<MessageKey, MessageValue> record : records) {
+                results.add(journal.responseTo(record));
+            }
+            results.add(String.valueOf(journal.store.nextGlobalId()));
+            results.add(String.valueOf(journal.store.nextContentId()));
+            return results;
+        }
+    }
+
+    /**
+     * A sink applying records to a store on the given database.
+     */
+    private static class Journal {
+
+        final TestKafkaSqlConfiguration configuration = new TestKafkaSqlConfiguration();
+        final KafkaSqlOffsetTracker offsets = new KafkaSqlOffsetTracker();
+        final KafkaSqlSink sink = new KafkaSqlSink();
+        final H2KafkaSqlStore store;
+        final Map<UUID, Object> responses = new HashMap<>();
+        long offset;
+
+        Journal(TestH2Database database, int batchSize) {
+            configuration.applyBatchSize = batchSize;
+            offsets.start(1, Collections.emptyMap());
+            store = new H2KafkaSqlStore(database);
+
+            sink.log = LoggerFactory.getLogger(KafkaSqlSink.class);
+            sink.configuration = configuration;
+            sink.sqlStore = store;
+            sink.offsets = offsets;
+            sink.tenantContext = store.tenantContext();
+            sink.coordinator = new KafkaSqlCoordinator() {
+                @Override
+                public void notifyResponse(UUID uuid, Object returnValue) {
+                    responses.put(uuid, returnValue);
+                }
+            };
+            sink.checkpoints = new KafkaSqlCheckpointManager() {
+                @Override
+                public boolean isEnabled() {
+                    return false;
+                }
+
+                @Override
+                public void recordApplied(ConsumerRecord<?, ?> record) {
+                }
+            };
+            sink.submitter = new KafkaSqlSubmitter() {
+                @Override
+                public CompletableFuture<UUID> send(MessageKey key, MessageValue value) {
+                    return CompletableFuture.completedFuture(null);
+                }
+            };
+            sink.idAllocator = new KafkaSqlIdAllocator();
+        }
+
+        List<ConsumerRecord<MessageKey, MessageValue>> records() {
+            List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+            records.add(rule(ActionType.Create, RuleType.VALIDITY));
+            records.add(record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create)));
+            // Routinely sent (and failing) when deleting all global rules
+            records.add(rule(ActionType.Delete, RuleType.COMPATIBILITY));
+            records.add(record(ContentIdKey.create(), ContentIdValue.create(ActionType.Create)));
+            records.add(record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create, 5)));
+            records.add(rule(ActionType.Create, RuleType.VALIDITY));
+            records.add(record(ContentIdKey.create(), ContentIdValue.create(ActionType.Create, 3)));
+            records.add(record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create)));
+            records.add(artifact(ActionType.Create, "first"));
+            records.add(rule(ActionType.Update, RuleType.VALIDITY));
+            // Not supported for globalIds, so it fails
+            records.add(record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Update)));
+            records.add(artifact(ActionType.Create, "second"));
+            records.add(artifact(ActionType.Update, "third"));
+            records.add(record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create)));
+            return records;
+        }
+
+        private ConsumerRecord<MessageKey, MessageValue> rule(ActionType action, RuleType rule) {
+            return record(GlobalRuleKey.create(null, rule), GlobalRuleValue.create(action, new RuleConfigurationDto("config")));
+        }
+
+        private ConsumerRecord<MessageKey, MessageValue> artifact(ActionType action, String content) {
+            return record(ArtifactWithContentKey.create(null, "group", "artifact"),
+                    ArtifactWithContentValue.create(action, null, ArtifactType.JSON, content + "-hash", content + "-canonical",
+                            ContentHandle.create(content), "user", new Date(), null));
+        }
+
+        private ConsumerRecord<MessageKey, MessageValue> record(MessageKey key, MessageValue value) {
+            ConsumerRecord<MessageKey, MessageValue> record = new ConsumerRecord<>(configuration.topic, 0, offset++, key, value);
+            record.headers().add("req", UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+            offsets.dispatched(record);
+            return record;
+        }
+
+        String responseTo(ConsumerRecord<MessageKey, MessageValue> record) {
+            Object response = responses.get(UUID.fromString(new String(record.headers().lastHeader("req").value(), StandardCharsets.UTF_8)));
+            if (response instanceof Exception) {
+                return response.getClass().getSimpleName();
+            }
+            if (response instanceof ArtifactMetaDataDto) {
+                ArtifactMetaDataDto metaData = (ArtifactMetaDataDto) response;
+                return "globalId " + metaData.getGlobalId() + ", contentId " + metaData.getContentId();
+            }
+            return String.valueOf(response);
+        }
+    }
+
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.kafkasql.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import io.apicurio.registry.mt.RegistryTenantContext;
+import io.apicurio.registry.mt.TenantContext;
+import io.apicurio.registry.mt.limits.TenantLimitsConfiguration;
+import io.apicurio.registry.storage.ArtifactNotFoundException;
+import io.apicurio.registry.storage.RegistryStorageException;
+import io.apicurio.registry.storage.RuleAlreadyExistsException;
+import io.apicurio.registry.storage.RuleNotFoundException;
+import io.apicurio.registry.storage.dto.RuleConfigurationDto;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCheckpointManager;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlCoordinator;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlOffsetTracker;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlSubmitter;
+import io.apicurio.registry.storage.impl.kafkasql.TestKafkaSqlConfiguration;
+import io.apicurio.registry.storage.impl.kafkasql.keys.ArtifactKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalIdKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.GlobalRuleKey;
+import io.apicurio.registry.storage.impl.kafkasql.keys.MessageKey;
+import io.apicurio.registry.storage.impl.kafkasql.values.ActionType;
+import io.apicurio.registry.storage.impl.kafkasql.values.ArtifactValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalIdValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.GlobalRuleValue;
+import io.apicurio.registry.storage.impl.kafkasql.values.MessageValue;
+import io.apicurio.registry.types.RuleType;
+
+/**
+ * Tests how {@link KafkaSqlSink} applies batches of journal records, in particular that a failing
+ * record does not prevent the rest of its batch from being committed and reported.
+ */
+public class KafkaSqlSinkTest {
+
+    private TestKafkaSqlConfiguration configuration;
+    private RuleStore store;
+    private KafkaSqlOffsetTracker offsets;
+    private KafkaSqlSink sink;
+
+    private final Map<UUID, Object> responses = new LinkedHashMap<>();
+    private final List<MessageKey> tombstones = new ArrayList<>();
+    private long offset;
+
+    @BeforeEach
+    public void setUp() {
+        configuration = new TestKafkaSqlConfiguration();
+        configuration.applyBatchSize = 10;
+        store = new RuleStore();
+        offsets = new KafkaSqlOffsetTracker();
+        offsets.start(1, Collections.emptyMap());
+
+        sink = new KafkaSqlSink();
+        sink.log = LoggerFactory.getLogger(KafkaSqlSink.class);
+        sink.configuration = configuration;
+        sink.sqlStore = store;
+        sink.offsets = offsets;
+        sink.coordinator = new KafkaSqlCoordinator() {
+            @Override
+            public void notifyResponse(UUID uuid, Object returnValue) {
+                // Waiting threads must only see committed results
+                assertFalse(store.inTransaction, "Notified before the batch was committed");
+                responses.put(uuid, returnValue);
+            }
+        };
+        sink.checkpoints = new KafkaSqlCheckpointManager() {
+            @Override
+            public boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            public void recordApplied(ConsumerRecord<?, ?> record) {
+            }
+        };
+        sink.submitter = new KafkaSqlSubmitter() {
+            @Override
+            public CompletableFuture<UUID> send(MessageKey key, MessageValue value) {
+                assertNull(value);
+                tombstones.add(key);
+                return CompletableFuture.completedFuture(null);
+            }
+        };
+        sink.tenantContext = new NoTenantContext();
+    }
+
+    private ConsumerRecord<MessageKey, MessageValue> record(ActionType action, RuleType rule) {
+        return record(GlobalRuleKey.create(null, rule), GlobalRuleValue.create(action, new RuleConfigurationDto("config")));
+    }
+
+    private ConsumerRecord<MessageKey, MessageValue> record(MessageKey key, MessageValue value) {
+        ConsumerRecord<MessageKey, MessageValue> record = new ConsumerRecord<>(configuration.topic, 0, offset++, key, value);
+        record.headers().add("req", UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        offsets.dispatched(record);
+        return record;
+    }
+
+    private Object responseTo(ConsumerRecord<MessageKey, MessageValue> record) {
+        UUID uuid = UUID.fromString(new String(record.headers().lastHeader("req").value(), StandardCharsets.UTF_8));
+        assertTrue(responses.containsKey(uuid), "No response for record " + record.offset());
+        return responses.get(uuid);
+    }
+
+    private void assertAllApplied() {
+        assertTrue(offsets.isApplied(Collections.singletonMap(0, offset)));
+    }
+
+    @Test
+    public void testBatchAppliedInOneTransaction() {
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        records.add(record(ActionType.Update, RuleType.VALIDITY));
+        records.add(record(ActionType.Create, RuleType.COMPATIBILITY));
+        records.add(record(ActionType.Update, RuleType.COMPATIBILITY));
+        records.add(record(ActionType.Delete, RuleType.VALIDITY));
+
+        sink.processMessages(records);
+
+        assertEquals(1, store.commits);
+        assertEquals(5, responses.size());
+        assertEquals(Collections.singleton(RuleType.COMPATIBILITY), store.rules.keySet());
+        assertAllApplied();
+    }
+
+    @Test
+    public void testBatchSplitByBatchSize() {
+        configuration.applyBatchSize = 2;
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        records.add(record(ActionType.Update, RuleType.VALIDITY));
+        records.add(record(ActionType.Create, RuleType.COMPATIBILITY));
+        records.add(record(ActionType.Update, RuleType.COMPATIBILITY));
+        records.add(record(ActionType.Delete, RuleType.VALIDITY));
+
+        sink.processMessages(records);
+
+        assertEquals(3, store.commits);
+        assertEquals(5, responses.size());
+        assertAllApplied();
+    }
+
+    @Test
+    public void testFailedMessageIsolated() {
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        records.add(record(ActionType.Update, RuleType.VALIDITY));
+        // No such rule, so it fails
+        records.add(record(ActionType.Delete, RuleType.COMPATIBILITY));
+        records.add(record(ActionType.Create, RuleType.COMPATIBILITY));
+        records.add(record(ActionType.Update, RuleType.COMPATIBILITY));
+
+        sink.processMessages(records);
+
+        assertNull(responseTo(records.get(0)));
+        assertNull(responseTo(records.get(1)));
+        assertTrue(responseTo(records.get(2)) instanceof RuleNotFoundException);
+        assertNull(responseTo(records.get(3)));
+        assertNull(responseTo(records.get(4)));
+        assertEquals(2, store.rules.size());
+        assertEquals(1, store.rollbacks);
+
+        // Responses are reported in journal order
+        List<UUID> order = new ArrayList<>(responses.keySet());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(order.get(i), UUID.fromString(new String(records.get(i).headers().lastHeader("req").value(), StandardCharsets.UTF_8)));
+        }
+        assertAllApplied();
+    }
+
+    @Test
+    public void testFailedFirstMessage() {
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Update, RuleType.VALIDITY));
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+
+        sink.processMessages(records);
+
+        assertTrue(responseTo(records.get(0)) instanceof RuleNotFoundException);
+        assertNull(responseTo(records.get(1)));
+        assertEquals(Collections.singleton(RuleType.VALIDITY), store.rules.keySet());
+        assertAllApplied();
+    }
+
+    @Test
+    public void testFailedCommitFallsBackToSingleMessages() {
+        store.failCommits = 1;
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        records.add(record(ActionType.Create, RuleType.COMPATIBILITY));
+        records.add(record(ActionType.Update, RuleType.VALIDITY));
+
+        sink.processMessages(records);
+
+        for (int i = 0; i < 3; i++) {
+            assertNull(responseTo(records.get(i)));
+        }
+        assertEquals(2, store.rules.size());
+        assertAllApplied();
+    }
+
+    @Test
+    public void testSingleMessages() {
+        configuration.applyBatchSize = 1;
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        records.add(record(ActionType.Create, RuleType.COMPATIBILITY));
+
+        sink.processMessages(records);
+
+        assertEquals(0, store.commits);
+        assertNull(responseTo(records.get(0)));
+        assertTrue(responseTo(records.get(1)) instanceof RuleAlreadyExistsException);
+        assertNull(responseTo(records.get(2)));
+        assertAllApplied();
+    }
+
+    @Test
+    public void testIdMessagesAppliedAlone() {
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        records.add(record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create)));
+        records.add(record(GlobalIdKey.create(), GlobalIdValue.create(ActionType.Create, 10)));
+        records.add(record(ActionType.Create, RuleType.COMPATIBILITY));
+        // Fails, which must not hand out the ids above again
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+
+        sink.processMessages(records);
+
+        assertEquals(1L, responseTo(records.get(1)));
+        assertEquals(2L, responseTo(records.get(2)));
+        assertTrue(responseTo(records.get(4)) instanceof RuleAlreadyExistsException);
+        assertEquals(12L, store.sequence);
+        assertAllApplied();
+    }
+
+    @Test
+    public void testTombstoneSentOnce() {
+        List<ConsumerRecord<MessageKey, MessageValue>> records = new ArrayList<>();
+        records.add(record(ActionType.Create, RuleType.VALIDITY));
+        ArtifactKey missing = ArtifactKey.create(null, "group", "missing");
+        records.add(record(missing, ArtifactValue.create(ActionType.Delete, null, null, null, null, null, null, null, null, null, null, null)));
+        records.add(record(ActionType.Create, RuleType.COMPATIBILITY));
+
+        sink.processMessages(records);
+
+        assertTrue(responseTo(records.get(1)) instanceof ArtifactNotFoundException);
+        assertEquals(Collections.singletonList(missing), tombstones);
+        assertAllApplied();
+    }
+
+    /**
+     * A store holding only the global rules, with transactions that roll them back on failure, and the
+     * globalId sequence, which (like a database sequence) is not rolled back.
+     */
+    private static class RuleStore extends KafkaSqlStore {
+
+        final Map<RuleType, RuleConfigurationDto> rules = new EnumMap<>(RuleType.class);
+        long sequence = 1;
+        boolean inTransaction;
+        int commits;
+        int rollbacks;
+        int failCommits;
+
+        @Override
+        public void createGlobalRule(RuleType rule, RuleConfigurationDto config) {
+            if (rules.containsKey(rule)) {
+                throw new RuleAlreadyExistsException(rule);
+            }
+            rules.put(rule, config);
+        }
+
+        @Override
+        public void updateGlobalRule(RuleType rule, RuleConfigurationDto config) {
+            if (!rules.containsKey(rule)) {
+                throw new RuleNotFoundException(rule);
+            }
+            rules.put(rule, config);
+        }
+
+        @Override
+        public void deleteGlobalRule(RuleType rule) {
+            if (rules.remove(rule) == null) {
+                throw new RuleNotFoundException(rule);
+            }
+        }
+
+        @Override
+        public List<String> deleteArtifact(String groupId, String artifactId) {
+            throw new ArtifactNotFoundException(groupId, artifactId);
+        }
+
+        @Override
+        public long nextGlobalId() {
+            assertFalse(inTransaction, "Id sequence used within a batch");
+            return sequence++;
+        }
+
+        @Override
+        public long reserveGlobalIds(int blockSize) {
+            assertFalse(inTransaction, "Id sequence used within a batch");
+            long first = sequence;
+            sequence += blockSize;
+            return first;
+        }
+
+        @Override
+        public <T> T executeInTransaction(Supplier<T> operation) {
+            Map<RuleType, RuleConfigurationDto> rollbackTo = new EnumMap<>(rules);
+            inTransaction = true;
+            try {
+                T result = operation.get();
+                if (failCommits > 0) {
+                    failCommits--;
+                    throw new RegistryStorageException("Commit failed");
+                }
+                commits++;
+                return result;
+            } catch (RuntimeException e) {
+                rules.clear();
+                rules.putAll(rollbackTo);
+                rollbacks++;
+                throw e;
+            } finally {
+                inTransaction = false;
+            }
+        }
+    }
+
+    private static class NoTenantContext implements TenantContext {
+
+        @Override
+        public String tenantId() {
+            return DEFAULT_TENANT_ID;
+        }
+
+        @Override
+        public String tenantOwner() {
+            return null;
+        }
+
+        @Override
+        public TenantLimitsConfiguration limitsConfig() {
+            return null;
+        }
+
+        @Override
+        public void setContext(RegistryTenantContext ctx) {
+        }
+
+        @Override
+        public void clearContext() {
+        }
+
+        @Override
+        public boolean isLoaded() {
+            return false;
+        }
+    }
+
+}
@@ -18,9 +18,15 @@ package io.apicurio.registry.storage.impl.sql;
 
 import javax.inject.Inject;
 
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.apicurio.registry.content.ContentHandle;
 import io.apicurio.registry.storage.AbstractRegistryStorageTest;
 import io.apicurio.registry.storage.RegistryStorage;
+import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlOffsetTracker;
 import io.apicurio.registry.storage.impl.kafkasql.KafkaSqlRegistryStorage;
+import io.apicurio.registry.types.ArtifactType;
 import io.quarkus.test.junit.QuarkusTest;
 
 /**
@@ -39,5 +45,25 @@ public class KafkaSqlRegistryStorageTest extends AbstractRegistryStorageTest {
     protected RegistryStorage storage() {
         return storage;
     }
-    
+
+    @Test
+    public void testConsistencyToken() throws Exception {
+        storage().createArtifact("KafkaSqlRegistryStorageTest", "testConsistencyToken", null, ArtifactType.OPENAPI,
+                ContentHandle.create(OPENAPI_CONTENT));
+
+        // The token covers the write above, which this node has already applied
+        String token = storage().consistencyToken();
+        Assertions.assertNotNull(token);
+        Assertions.assertTrue(storage().awaitConsistency(token, 5000));
+
+        // A token from a node that is ahead of this one blocks until the timeout elapses
+        Long offset = KafkaSqlOffsetTracker.decodeOffsets(token).get(0);
+        long start = System.currentTimeMillis();
+        Assertions.assertFalse(storage().awaitConsistency("0:" + (offset + 1000), 200));
+        Assertions.assertTrue(System.currentTimeMillis() - start >= 200);
+
+        // Invalid tokens are ignored
+        Assertions.assertTrue(storage().awaitConsistency("garbage", 5000));
+    }
+
 }
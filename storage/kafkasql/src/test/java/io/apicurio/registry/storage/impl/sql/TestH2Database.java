@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apicurio.registry.storage.impl.sql;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.LoggerFactory;
+
+import io.agroal.api.AgroalDataSource;
+import io.apicurio.registry.mt.TenantContext;
+import io.apicurio.registry.storage.RegistryStorageException;
+
+/**
+ * An in-memory H2 database for unit tests that use a real SQL storage outside of Quarkus.  Every handle uses the
+ * same connection, so {@link #executeInTransaction(Supplier)} can make a series of storage operations a single
+ * transaction (that is rolled back if the operation fails), much like <code>@Transactional</code> does.
+ */
+public class TestH2Database implements AutoCloseable {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final String url = "jdbc:h2:mem:test-" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1";
+    private final Connection connection;
+    private final HandleFactory handles = new HandleFactory();
+    private int transactionDepth;
+
+    public TestH2Database() throws SQLException {
+        connection = DriverManager.getConnection(url);
+        // Closing a handle must not close the shared connection
+        Connection unclosable = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> "close".equals(method.getName()) ? null : invoke(method, connection, args));
+        handles.dataSource = (AgroalDataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { AgroalDataSource.class },
+                (proxy, method, args) -> {
+                    if ("getConnection".equals(method.getName())) {
+                        return unclosable;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * @return the handles to set on a storage using this database
+     */
+    public HandleFactory handles() {
+        return handles;
+    }
+
+    /**
+     * Injects this database (and the given tenant context) into the given storage and creates its tables.
+     * @param storage
+     * @param tenantContext
+     */
+    public void initialize(AbstractSqlRegistryStorage storage, TenantContext tenantContext) {
+        storage.log = LoggerFactory.getLogger(storage.getClass());
+        storage.tenantContext = tenantContext;
+        storage.sqlStatements = new H2SqlStatements();
+        storage.handles = handles;
+        storage.initDB = true;
+        storage.jdbcUrl = url;
+        storage.initialize();
+    }
+
+    /**
+     * Runs the given operation in a transaction, joining the current transaction if there is one.
+     * @param operation
+     */
+    public <T> T executeInTransaction(Supplier<T> operation) {
+        try {
+            if (transactionDepth++ == 0) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                T result = operation.get();
+                if (transactionDepth == 1) {
+                    connection.commit();
+                }
+                return result;
+            } catch (RuntimeException | Error e) {
+                if (transactionDepth == 1) {
+                    connection.rollback();
+                }
+                throw e;
+            } finally {
+                if (--transactionDepth == 0) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RegistryStorageException(e);
+        }
+    }
+
+    /**
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            connection.createStatement().execute("SHUTDOWN");
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -25,9 +25,12 @@ import io.apicurio.registry.serde.ParsedSchemaImpl;
 import io.apicurio.registry.serde.SchemaLookupResult;
 import io.apicurio.registry.serde.SchemaParser;
 import io.apicurio.registry.serde.SchemaResolverConfigurer;
+import io.apicurio.registry.serde.cache.WeakIdentityCache;
 import io.apicurio.registry.serde.strategy.ArtifactReference;
+import io.apicurio.registry.serde.utils.Utils;
 import io.apicurio.registry.types.ArtifactType;
 import io.apicurio.registry.utils.IoUtil;
+import io.apicurio.registry.utils.converter.json.CompactFormatStrategy;
 import io.apicurio.registry.utils.converter.json.FormatStrategy;
 import io.apicurio.registry.utils.converter.json.PrettyFormatStrategy;
 
@@ -43,15 +46,30 @@ import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Ales Justin
  * @author Fabian Martinez
  */
 public class ExtJsonConverter extends SchemaResolverConfigurer<JsonNode, Object> implements Converter, SchemaParser<JsonNode>, AutoCloseable {
+
+    /**
+     * Fully qualified Java classname of the {@link FormatStrategy} used to combine the schema's global id
+     * and the JSON payload, {@link PrettyFormatStrategy} by default.  Set to {@link CompactFormatStrategy}
+     * to write them like the serializers do (magic byte, id and payload), which is smaller and cheaper.
+     */
+    public static final String REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM = "apicurio.registry.converter.format-strategy";
+    public static final String REGISTRY_CONVERTER_FORMAT_STRATEGY_DEFAULT = PrettyFormatStrategy.class.getName();
+
     private final JsonConverter jsonConverter;
     private final ObjectMapper mapper;
     private FormatStrategy formatStrategy;
+    // Whether the format strategy was set explicitly, rather than from the configuration
+    private boolean formatStrategySet;
+
+    // Global ids by Connect schema instance and topic, see resolveGlobalId
+    private final WeakIdentityCache<Schema, Map<String, Long>> globalIdCache = new WeakIdentityCache<>();
 
 
     public ExtJsonConverter() {
@@ -67,6 +85,7 @@ public class ExtJsonConverter extends SchemaResolverConfigurer<JsonNode, Object>
 
     public ExtJsonConverter setFormatStrategy(FormatStrategy formatStrategy) {
         this.formatStrategy = Objects.requireNonNull(formatStrategy);
+        this.formatStrategySet = true;
         return this;
     }
 
@@ -76,6 +95,12 @@ public class ExtJsonConverter extends SchemaResolverConfigurer<JsonNode, Object>
         Map<String, Object> wrapper = new HashMap<>(configs);
         wrapper.put(JsonConverterConfig.SCHEMAS_ENABLE_CONFIG, false);
         jsonConverter.configure(wrapper, isKey);
+
+        Object fs = configs.get(REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM);
+        if (fs != null && !formatStrategySet) {
+            Utils.instantiate(FormatStrategy.class, fs, strategy -> this.formatStrategy = strategy);
+        }
+        formatStrategy.configure(configs, isKey);
     }
 
     @Override
@@ -88,18 +113,39 @@ public class ExtJsonConverter extends SchemaResolverConfigurer<JsonNode, Object>
         if (schema == null && value == null) {
             return null;
         }
+        long globalId = resolveGlobalId(topic, headers, schema, value);
+
+        byte[] payload = jsonConverter.fromConnectData(topic, schema, value);
+
+        return formatStrategy.fromConnectData(globalId, payload);
+
+    }
+
+    /**
+     * Avoids rendering the JSON schema of the Connect schema (to look it up by content) for every record, by
+     * caching the global ids by schema instance, when the schema resolver allows it.
+     */
+    private long resolveGlobalId(String topic, Headers headers, Schema schema, Object value) {
+        if (schema == null || topic == null || !getSchemaResolver().isSchemaLookupCacheable()) {
+            return resolveSchema(topic, headers, schema, value).getGlobalId();
+        }
+        Map<String, Long> byTopic = globalIdCache.computeIfAbsent(schema, k -> new ConcurrentHashMap<>());
+        Long globalId = byTopic.get(topic);
+        if (globalId == null) {
+            globalId = resolveSchema(topic, headers, schema, value).getGlobalId();
+            byTopic.put(topic, globalId);
+        }
+        return globalId;
+    }
+
+    private SchemaLookupResult<JsonNode> resolveSchema(String topic, Headers headers, Schema schema, Object value) {
         JsonNode jsonSchema = jsonConverter.asJsonSchema(schema);
         String schemaString = jsonSchema != null ? jsonSchema.toString() : null;
         ParsedSchema<JsonNode> parsedSchema = new ParsedSchemaImpl<JsonNode>()
                 .setParsedSchema(jsonSchema)
                 .setRawSchema(IoUtil.toBytes(schemaString));
 
-        SchemaLookupResult<JsonNode> schemaLookupResult = getSchemaResolver().resolveSchema(topic, headers, value, parsedSchema);
-
-        byte[] payload = jsonConverter.fromConnectData(topic, schema, value);
-
-        return formatStrategy.fromConnectData(schemaLookupResult.getGlobalId(), payload);
-
+        return getSchemaResolver().resolveSchema(topic, headers, value, parsedSchema);
     }
 
     @Override
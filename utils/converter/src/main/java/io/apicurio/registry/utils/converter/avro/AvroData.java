@@ -24,6 +24,9 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import io.apicurio.registry.serde.avro.NonRecordContainer;
+import io.apicurio.registry.serde.cache.DefaultResolverCache;
+import io.apicurio.registry.serde.cache.EvictionPolicy;
+import io.apicurio.registry.serde.cache.ResolverCache;
 
 import org.apache.avro.JsonProperties;
 import org.apache.avro.generic.GenericData;
@@ -32,9 +35,6 @@ import org.apache.avro.generic.GenericFixed;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.generic.GenericRecordBuilder;
 import org.apache.avro.generic.IndexedRecord;
-import org.apache.kafka.common.cache.Cache;
-import org.apache.kafka.common.cache.LRUCache;
-import org.apache.kafka.common.cache.SynchronizedCache;
 import org.apache.kafka.connect.data.ConnectSchema;
 import org.apache.kafka.connect.data.Date;
 import org.apache.kafka.connect.data.Decimal;
@@ -302,8 +302,9 @@ public class AvroData {
         });
     }
 
-    private Cache<Schema, org.apache.avro.Schema> fromConnectSchemaCache;
-    private Cache<AvroSchemaAndVersion, Schema> toConnectSchemaCache;
+    // Shared by all the tasks (threads) using the converter, so reads must not contend on a lock
+    private ResolverCache<Schema, org.apache.avro.Schema> fromConnectSchemaCache;
+    private ResolverCache<AvroSchemaAndVersion, Schema> toConnectSchemaCache;
     private boolean connectMetaData;
     private boolean enhancedSchemaSupport;
 
@@ -350,16 +351,17 @@ public class AvroData {
     }
 
     public AvroData(AvroDataConfig avroDataConfig) {
-        fromConnectSchemaCache =
-            new SynchronizedCache<>(new LRUCache<>(
-                avroDataConfig.getSchemasCacheSize()));
-        toConnectSchemaCache =
-            new SynchronizedCache<>(new LRUCache<>(
-                avroDataConfig.getSchemasCacheSize()));
+        fromConnectSchemaCache = newSchemaCache(avroDataConfig.getSchemasCacheSize());
+        toConnectSchemaCache = newSchemaCache(avroDataConfig.getSchemasCacheSize());
         this.connectMetaData = avroDataConfig.isConnectMetaData();
         this.enhancedSchemaSupport = avroDataConfig.isEnhancedAvroSchemaSupport();
     }
 
+    private static <K, V> ResolverCache<K, V> newSchemaCache(int cacheSize) {
+        // Bounded LRU cache with lock free reads, entries never expire
+        return new DefaultResolverCache<>(cacheSize, EvictionPolicy.LRU, -1, -1);
+    }
+
     /**
      * Convert this object, in Connect data format, into an Avro object.
      */
@@ -17,22 +17,33 @@
 package io.apicurio.registry.utils.converter.json;
 
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
-import io.apicurio.registry.serde.AbstractKafkaSerDe;
 import io.apicurio.registry.serde.DefaultIdHandler;
 import io.apicurio.registry.serde.IdHandler;
+import io.apicurio.registry.serde.Legacy4ByteIdHandler;
+import io.apicurio.registry.serde.SerdeConfig;
+import io.apicurio.registry.serde.config.BaseKafkaSerDeConfig;
+import io.apicurio.registry.serde.config.IdOption;
 import io.apicurio.registry.serde.strategy.ArtifactReference;
+import io.apicurio.registry.serde.utils.Utils;
 
 /**
+ * Writes the magic byte and the id (using an {@link IdHandler}) followed by the payload, like the serializers
+ * do when headers are not used.
+ *
  * @author Ales Justin
  */
 public class CompactFormatStrategy implements FormatStrategy {
 
     private IdHandler idHandler;
+    // Only configured from the converter's configuration when not given explicitly
+    private boolean idHandlerSet;
 
     public CompactFormatStrategy() {
-        this(new DefaultIdHandler());
+        this.idHandler = new DefaultIdHandler();
     }
 
     public CompactFormatStrategy(IdHandler idHandler) {
@@ -41,23 +52,45 @@ public class CompactFormatStrategy implements FormatStrategy {
 
     public void setIdHandler(IdHandler idHandler) {
         this.idHandler = Objects.requireNonNull(idHandler);
+        this.idHandlerSet = true;
+    }
+
+    /**
+     * Uses the {@link SerdeConfig#ID_HANDLER} or {@link SerdeConfig#ENABLE_CONFLUENT_ID_HANDLER} (unless an id
+     * handler was given explicitly).  The converter always identifies schemas by their global id, so
+     * {@link SerdeConfig#USE_ID} is ignored.
+     * @see io.apicurio.registry.utils.converter.json.FormatStrategy#configure(java.util.Map, boolean)
+     */
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        if (!idHandlerSet) {
+            BaseKafkaSerDeConfig config = new BaseKafkaSerDeConfig(configs);
+            if (config.enableConfluentIdHandler()) {
+                idHandler = new Legacy4ByteIdHandler();
+            } else {
+                Utils.instantiate(IdHandler.class, config.getIdHandler(), handler -> this.idHandler = handler);
+            }
+        }
+        Map<String, Object> idHandlerConfigs = new HashMap<>(configs);
+        idHandlerConfigs.put(SerdeConfig.USE_ID, IdOption.globalId.name());
+        idHandler.configure(idHandlerConfigs, isKey);
     }
 
     @Override
     public byte[] fromConnectData(long globalId, byte[] bytes) {
-        ByteBuffer buffer = ByteBuffer.allocate(1 + idHandler.idSize() + bytes.length);
-        buffer.put(AbstractKafkaSerDe.MAGIC_BYTE);
-        idHandler.writeId(ArtifactReference.fromGlobalId(globalId), buffer);
+        ArtifactReference reference = ArtifactReference.fromGlobalId(globalId);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + idHandler.idSize(reference) + bytes.length);
+        idHandler.writeMagicByteAndId(reference, buffer);
         buffer.put(bytes);
         return buffer.array();
     }
 
     @Override
     public IdPayload toConnectData(byte[] bytes) {
-        ByteBuffer buffer = AbstractKafkaSerDe.getByteBuffer(bytes);
-        ArtifactReference reference = idHandler.readId(buffer);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ArtifactReference reference = idHandler.readMagicByteAndId(buffer);
         long globalId = reference.getGlobalId();
-        byte[] payload = new byte[bytes.length - idHandler.idSize() - 1];
+        byte[] payload = new byte[buffer.remaining()];
         buffer.get(payload);
         return new IdPayload(globalId, payload);
     }
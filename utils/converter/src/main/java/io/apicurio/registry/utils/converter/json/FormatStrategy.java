@@ -16,10 +16,16 @@
 
 package io.apicurio.registry.utils.converter.json;
 
+import java.util.Map;
+
 /**
  * @author Ales Justin
  */
 public interface FormatStrategy {
+
+    default void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
     byte[] fromConnectData(long globalId, byte[] payload);
     IdPayload toConnectData(byte[] bytes);
 
@@ -16,17 +16,18 @@
 
 package io.apicurio.registry.utils.converter.json;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.util.RawValue;
 import io.apicurio.registry.utils.IoUtil;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 
 /**
+ * Writes the id and the payload as the fields of a JSON object, e.g. <code>{"schemaId":1,"payload":{...}}</code>.
+ *
  * @author Ales Justin
  */
 public class PrettyFormatStrategy implements FormatStrategy {
@@ -35,27 +36,42 @@ public class PrettyFormatStrategy implements FormatStrategy {
     private String idName = "schemaId";
     private String payloadName = "payload";
 
+    private static final byte[] NULL_PAYLOAD = "null".getBytes(StandardCharsets.US_ASCII);
+
+    // The JSON around the id and the payload, rendered once rather than for every record
+    private byte[] idPrefix = fieldPrefix('{', idName);
+    private byte[] payloadPrefix = fieldPrefix(',', payloadName);
+
     public PrettyFormatStrategy setIdName(String idName) {
         this.idName = idName;
+        this.idPrefix = fieldPrefix('{', idName);
         return this;
     }
 
     public PrettyFormatStrategy setPayloadName(String payloadName) {
         this.payloadName = payloadName;
+        this.payloadPrefix = fieldPrefix(',', payloadName);
         return this;
     }
 
     @Override
     public byte[] fromConnectData(long globalId, byte[] bytes) {
-        String payload = IoUtil.toString(bytes);
-        ObjectNode root = JsonNodeFactory.instance.objectNode();
-        root.put(idName, globalId);
-        root.putRawValue(payloadName, new RawValue(payload));
-        try {
-            return mapper.writeValueAsBytes(root);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        // The payload is already JSON, so it is copied as is, straight into the result
+        if (bytes == null) {
+            bytes = NULL_PAYLOAD;
         }
+        byte[] id = Long.toString(globalId).getBytes(StandardCharsets.US_ASCII);
+        byte[] result = new byte[idPrefix.length + id.length + payloadPrefix.length + bytes.length + 1];
+        int position = 0;
+        System.arraycopy(idPrefix, 0, result, position, idPrefix.length);
+        position += idPrefix.length;
+        System.arraycopy(id, 0, result, position, id.length);
+        position += id.length;
+        System.arraycopy(payloadPrefix, 0, result, position, payloadPrefix.length);
+        position += payloadPrefix.length;
+        System.arraycopy(bytes, 0, result, position, bytes.length);
+        result[result.length - 1] = '}';
+        return result;
     }
 
     @Override
@@ -70,4 +86,12 @@ public class PrettyFormatStrategy implements FormatStrategy {
             throw new UncheckedIOException(e);
         }
     }
+
+    private byte[] fieldPrefix(char separator, String name) {
+        try {
+            return (separator + mapper.writeValueAsString(name) + ":").getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.utils.converter;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.apicurio.registry.rest.client.RegistryClient;
+import io.apicurio.registry.serde.AbstractKafkaSerDe;
+import io.apicurio.registry.serde.ParsedSchema;
+import io.apicurio.registry.serde.SchemaLookupResult;
+import io.apicurio.registry.serde.SchemaResolver;
+import io.apicurio.registry.serde.SerdeConfig;
+import io.apicurio.registry.serde.VarintIdHandler;
+import io.apicurio.registry.serde.strategy.ArtifactReference;
+import io.apicurio.registry.serde.strategy.ArtifactResolverStrategy;
+import io.apicurio.registry.utils.converter.json.CompactFormatStrategy;
+import io.apicurio.registry.utils.converter.json.FormatStrategy;
+import io.apicurio.registry.utils.converter.json.PrettyFormatStrategy;
+
+/**
+ * Checks that the format strategy and its id handler are taken from the configuration of the
+ * {@link ExtJsonConverter}.
+ *
+ * @author Ales Justin
+ */
+public class ExtJsonConverterTest {
+
+    private static final long GLOBAL_ID = 42L;
+
+    private static final Schema SCHEMA = SchemaBuilder.struct()
+            .field("name", Schema.STRING_SCHEMA)
+            .field("count", Schema.INT32_SCHEMA)
+            .build();
+
+    private static final byte[] PAYLOAD = "{\"name\":\"apicurio\",\"count\":3}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testPrettyByDefault() {
+        byte[] bytes = roundTrip(new HashMap<>());
+        assertEquals("{\"schemaId\":42,\"payload\":{\"name\":\"apicurio\",\"count\":3}}", new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCompactFromConfig() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ExtJsonConverter.REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM, CompactFormatStrategy.class.getName());
+        byte[] bytes = roundTrip(configs);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertEquals(AbstractKafkaSerDe.MAGIC_BYTE, buffer.get());
+        assertEquals(GLOBAL_ID, buffer.getLong());
+        assertPayload(buffer);
+    }
+
+    @Test
+    public void testCompactFromConfigAsConfluent() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ExtJsonConverter.REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM, CompactFormatStrategy.class);
+        configs.put(SerdeConfig.ENABLE_CONFLUENT_ID_HANDLER, "true");
+        byte[] bytes = roundTrip(configs);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertEquals(AbstractKafkaSerDe.MAGIC_BYTE, buffer.get());
+        assertEquals(GLOBAL_ID, buffer.getInt());
+        assertPayload(buffer);
+    }
+
+    @Test
+    public void testCompactFromConfigWithVarintIdHandler() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ExtJsonConverter.REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM, CompactFormatStrategy.class.getName());
+        configs.put(SerdeConfig.ID_HANDLER, VarintIdHandler.class.getName());
+        // The converter always writes global ids, even when the serdes are configured to use content ids
+        configs.put(SerdeConfig.USE_ID, "contentId");
+        byte[] bytes = roundTrip(configs);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        assertEquals(VarintIdHandler.VARINT_MAGIC_BYTE, buffer.get());
+        // Zig-zag encoded, so 42 is written as 84 in a single byte
+        assertEquals(84, buffer.get());
+        assertPayload(buffer);
+    }
+
+    @Test
+    public void testConfiguredStrategyCanChange() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ExtJsonConverter.REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM, CompactFormatStrategy.class.getName());
+        try (ExtJsonConverter converter = new ExtJsonConverter()) {
+            converter.setSchemaResolver(new StaticSchemaResolver());
+            converter.configure(configs, false);
+            assertEquals(0, converter.fromConnectData("topic", SCHEMA, value())[0]);
+
+            configs.put(ExtJsonConverter.REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM, PrettyFormatStrategy.class.getName());
+            converter.configure(configs, false);
+            assertEquals('{', converter.fromConnectData("topic", SCHEMA, value())[0]);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testExplicitStrategyWinsOverConfig() {
+        PrettyFormatStrategy strategy = new PrettyFormatStrategy().setIdName("id").setPayloadName("data");
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(ExtJsonConverter.REGISTRY_CONVERTER_FORMAT_STRATEGY_PARAM, CompactFormatStrategy.class.getName());
+        try (ExtJsonConverter converter = new ExtJsonConverter()) {
+            converter.setSchemaResolver(new StaticSchemaResolver());
+            converter.setFormatStrategy(strategy);
+            converter.configure(configs, false);
+
+            byte[] bytes = converter.fromConnectData("topic", SCHEMA, value());
+            assertEquals("{\"id\":42,\"data\":{\"name\":\"apicurio\",\"count\":3}}", new String(bytes, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testExplicitIdHandlerWinsOverConfig() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SerdeConfig.ENABLE_CONFLUENT_ID_HANDLER, "true");
+        CompactFormatStrategy strategy = new CompactFormatStrategy(new VarintIdHandler());
+        strategy.configure(configs, false);
+
+        byte[] bytes = strategy.fromConnectData(GLOBAL_ID, PAYLOAD);
+        assertEquals(VarintIdHandler.VARINT_MAGIC_BYTE, bytes[0]);
+        FormatStrategy.IdPayload ip = strategy.toConnectData(bytes);
+        assertEquals(GLOBAL_ID, ip.getGlobalId());
+        assertArrayEquals(PAYLOAD, ip.getPayload());
+    }
+
+    /**
+     * Converts a record with a converter configured with the given configuration, checks that it is converted
+     * back and returns the converted bytes.
+     */
+    private static byte[] roundTrip(Map<String, Object> configs) {
+        try (ExtJsonConverter converter = new ExtJsonConverter()) {
+            converter.setSchemaResolver(new StaticSchemaResolver());
+            converter.configure(configs, false);
+
+            byte[] bytes = converter.fromConnectData("topic", SCHEMA, value());
+
+            SchemaAndValue sav = converter.toConnectData("topic", bytes);
+            assertEquals(SCHEMA.fields().size(), sav.schema().fields().size());
+            Map<?, ?> value = (Map<?, ?>) sav.value();
+            assertEquals("apicurio", value.get("name"));
+            assertEquals(3L, ((Number) value.get("count")).longValue());
+            return bytes;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertPayload(ByteBuffer buffer) {
+        byte[] payload = Arrays.copyOfRange(buffer.array(), buffer.position(), buffer.limit());
+        assertArrayEquals(PAYLOAD, payload);
+    }
+
+    private static Struct value() {
+        return new Struct(SCHEMA).put("name", "apicurio").put("count", 3);
+    }
+
+    /**
+     * Resolves every schema to the same global id, remembering the last one resolved.
+     */
+    private static class StaticSchemaResolver implements SchemaResolver<JsonNode, Object> {
+
+        private volatile SchemaLookupResult<JsonNode> result;
+
+        @Override
+        public void setClient(RegistryClient client) {
+        }
+
+        @Override
+        public void setArtifactResolverStrategy(ArtifactResolverStrategy<JsonNode> artifactResolverStrategy) {
+        }
+
+        @Override
+        public SchemaLookupResult<JsonNode> resolveSchema(String topic, Headers headers, Object data, ParsedSchema<JsonNode> parsedSchema) {
+            result = SchemaLookupResult.<JsonNode>builder()
+                    .globalId(GLOBAL_ID)
+                    .schema(parsedSchema.getParsedSchema())
+                    .rawSchema(parsedSchema.getRawSchema())
+                    .build();
+            return result;
+        }
+
+        @Override
+        public SchemaLookupResult<JsonNode> resolveSchemaByArtifactReference(ArtifactReference reference) {
+            assertEquals(GLOBAL_ID, reference.getGlobalId());
+            return result;
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.utils.converter.avro;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the caches of the schemas converted by {@link AvroData}.
+ *
+ * @author Ales Justin
+ */
+public class AvroDataTest {
+
+    private static Schema connectSchema(int i) {
+        return SchemaBuilder.struct()
+                .name("io.apicurio.Order" + i)
+                .field("id", Schema.INT64_SCHEMA)
+                .field("item", Schema.OPTIONAL_STRING_SCHEMA)
+                .build();
+    }
+
+    private static org.apache.avro.Schema avroSchema(int i) {
+        return new org.apache.avro.Schema.Parser().parse("{\"type\":\"record\",\"name\":\"Order" + i + "\",\"namespace\":\"io.apicurio\","
+                + "\"fields\":[{\"name\":\"id\",\"type\":\"long\"},{\"name\":\"item\",\"type\":[\"null\",\"string\"],\"default\":null}]}");
+    }
+
+    @Test
+    public void testFromConnectSchemaCached() {
+        AvroData avroData = new AvroData(10);
+        org.apache.avro.Schema converted = avroData.fromConnectSchema(connectSchema(1));
+        // Connect schemas are compared by value, so an equal schema built again is found too
+        assertSame(converted, avroData.fromConnectSchema(connectSchema(1)));
+        assertNotSame(converted, avroData.fromConnectSchema(connectSchema(2)));
+    }
+
+    @Test
+    public void testToConnectSchemaCached() {
+        AvroData avroData = new AvroData(10);
+        Schema converted = avroData.toConnectSchema(avroSchema(1));
+        assertSame(converted, avroData.toConnectSchema(avroSchema(1)));
+        assertNotSame(converted, avroData.toConnectSchema(avroSchema(2)));
+    }
+
+    @Test
+    public void testCacheBounded() {
+        AvroData avroData = new AvroData(2);
+        org.apache.avro.Schema first = avroData.fromConnectSchema(connectSchema(0));
+        Schema firstConnect = avroData.toConnectSchema(avroSchema(0));
+        for (int i = 1; i <= 50; i++) {
+            avroData.fromConnectSchema(connectSchema(i));
+            avroData.toConnectSchema(avroSchema(i));
+        }
+
+        // Evicted, so converted again
+        org.apache.avro.Schema again = avroData.fromConnectSchema(connectSchema(0));
+        assertNotSame(first, again);
+        assertEquals(first, again);
+        Schema againConnect = avroData.toConnectSchema(avroSchema(0));
+        assertNotSame(firstConnect, againConnect);
+        assertEquals(firstConnect, againConnect);
+    }
+
+    @Test
+    public void testConcurrentConversions() throws Exception {
+        int schemas = 20;
+        AvroData expected = new AvroData(schemas);
+        List<org.apache.avro.Schema> expectedAvro = new ArrayList<>();
+        List<Schema> expectedConnect = new ArrayList<>();
+        for (int i = 0; i < schemas; i++) {
+            expectedAvro.add(expected.fromConnectSchema(connectSchema(i)));
+            expectedConnect.add(expected.toConnectSchema(avroSchema(i)));
+        }
+
+        // Shared by all the threads, and smaller than the number of schemas so that entries keep being evicted
+        AvroData avroData = new AvroData(schemas / 2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 500; n++) {
+                        int i = (thread + n) % schemas;
+                        assertEquals(expectedAvro.get(i), avroData.fromConnectSchema(connectSchema(i)));
+                        assertEquals(expectedConnect.get(i), avroData.toConnectSchema(avroSchema(i)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
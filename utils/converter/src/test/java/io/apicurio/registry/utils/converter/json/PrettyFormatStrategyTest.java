@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Red Hat
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.apicurio.registry.utils.converter.json;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import io.apicurio.registry.utils.IoUtil;
+
+/**
+ * Checks that {@link PrettyFormatStrategy} writes exactly the bytes it used to write when it built a JSON tree
+ * with the payload as a raw value.
+ *
+ * @author Ales Justin
+ */
+public class PrettyFormatStrategyTest {
+
+    private static final String[] PAYLOADS = {
+        "{\"name\":\"apicurio\",\"count\":3,\"tags\":[\"a\",\"b\"]}",
+        "{}",
+        "\"text\"",
+        "12345",
+        "[1,2,3]",
+        "null",
+        "{\"unicode\":\"žluťoučký kůň 😀\"}"
+    };
+
+    private static final long[] IDS = {0L, 1L, 42L, Integer.MAX_VALUE + 1L, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+
+    @Test
+    public void testSameBytesAsTree() throws Exception {
+        PrettyFormatStrategy strategy = new PrettyFormatStrategy();
+        for (long id : IDS) {
+            for (String payload : PAYLOADS) {
+                byte[] bytes = IoUtil.toBytes(payload);
+                assertArrayEquals(render("schemaId", "payload", id, bytes), strategy.fromConnectData(id, bytes), payload);
+            }
+        }
+    }
+
+    @Test
+    public void testSameBytesAsTreeWithCustomNames() throws Exception {
+        String[][] names = {
+            {"id", "data"},
+            {"globalId", "value"},
+            {"quoted \"id\"", "back\\slash"},
+            {"číslo", "údaje"},
+            {"", "-"}
+        };
+        for (String[] name : names) {
+            PrettyFormatStrategy strategy = new PrettyFormatStrategy().setIdName(name[0]).setPayloadName(name[1]);
+            for (String payload : PAYLOADS) {
+                byte[] bytes = IoUtil.toBytes(payload);
+                assertArrayEquals(render(name[0], name[1], 7L, bytes), strategy.fromConnectData(7L, bytes), name[0] + " " + payload);
+            }
+        }
+    }
+
+    @Test
+    public void testSameBytesAsTreeWithNullPayload() throws Exception {
+        PrettyFormatStrategy strategy = new PrettyFormatStrategy();
+        byte[] expected = render("schemaId", "payload", 3L, null);
+        assertEquals("{\"schemaId\":3,\"payload\":null}", new String(expected, StandardCharsets.UTF_8));
+        assertArrayEquals(expected, strategy.fromConnectData(3L, null));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        PrettyFormatStrategy strategy = new PrettyFormatStrategy().setIdName("id").setPayloadName("data");
+        for (String payload : PAYLOADS) {
+            FormatStrategy.IdPayload ip = strategy.toConnectData(strategy.fromConnectData(Long.MAX_VALUE, IoUtil.toBytes(payload)));
+            assertEquals(Long.MAX_VALUE, ip.getGlobalId());
+            assertEquals(payload, IoUtil.toString(ip.getPayload()));
+        }
+    }
+
+    /**
+     * The way {@link PrettyFormatStrategy} used to render the id and the payload.
+     */
+    private static byte[] render(String idName, String payloadName, long globalId, byte[] bytes) throws IOException {
+        ObjectNode root = JsonNodeFactory.instance.objectNode();
+        root.put(idName, globalId);
+        root.putRawValue(payloadName, new RawValue(IoUtil.toString(bytes)));
+        return new ObjectMapper().writeValueAsBytes(root);
+    }
+}
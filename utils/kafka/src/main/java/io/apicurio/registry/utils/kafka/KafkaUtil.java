@@ -133,7 +133,11 @@ public class KafkaUtil {
                 }
                 int minimumInSyncReplicas = Math.max(replicationFactor - 1, 1);
                 configs.putIfAbsent(TopicConfig.MIN_IN_SYNC_REPLICAS_CONFIG, String.valueOf(minimumInSyncReplicas));
-                return new NewTopic(topicName, 1, (short) replicationFactor).configs(configs);
+                int partitions = 1;
+                if (configs.containsKey("partitions")) {
+                    partitions = Integer.parseInt(configs.remove("partitions"));
+                }
+                return new NewTopic(topicName, partitions, (short) replicationFactor).configs(configs);
             }).whenComplete((nt, t) -> log.info("Created new topic: {}", topicName, t));
             topicsToCreate.add(toCompletionStage(newTopicKF));
         }